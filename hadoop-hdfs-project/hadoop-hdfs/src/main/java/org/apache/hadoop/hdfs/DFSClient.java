@@ -116,6 +116,8 @@ public class DFSClient implements java.io.Closeable {
   public static final long SERVER_DEFAULTS_VALIDITY_PERIOD = 60 * 60 * 1000L; // 1 hour
   static final int TCP_WINDOW_SIZE = 128 * 1024; // 128 KB
   final ClientProtocol namenode;
+  final NamenodeLoad namenodeLoad = new NamenodeLoad();
+  final InetSocketAddress nameNodeAddr;
   final ClientProtocol rpcNamenode;
   final UserGroupInformation ugi;
   volatile boolean clientRunning = true;
@@ -257,9 +259,10 @@ public class DFSClient implements java.io.Closeable {
     this.leaserenewer = LeaseRenewer.getInstance(authorities, ugi, this);
     this.clientName = leaserenewer.getClientName(dfsClientConf.taskId);
     this.socketCache = new SocketCache(dfsClientConf.socketCacheCapacity);
+    this.nameNodeAddr = nameNodeAddr;
     if (nameNodeAddr != null && rpcNamenode == null) {
       this.rpcNamenode = DFSUtil.createRPCNamenode(nameNodeAddr, conf, ugi);
-      this.namenode = DFSUtil.createNamenode(this.rpcNamenode);
+      this.namenode = NamenodeLoad.track(DFSUtil.createNamenode(this.rpcNamenode), namenodeLoad);
     } else if (nameNodeAddr == null && rpcNamenode != null) {
       //This case is used for testing.
       this.namenode = this.rpcNamenode = rpcNamenode;
@@ -1528,4 +1531,20 @@ public class DFSClient implements java.io.Closeable {
   public int getId() {
     return id;
   }
+
+  /**
+   * The calls in flight and the latency of the namenode, used in
+   * NamenodeSelector
+   */
+  NamenodeLoad getNamenodeLoad() {
+    return namenodeLoad;
+  }
+
+  /**
+   * @return the address of the namenode or null if the client was created
+   * with a namenode proxy
+   */
+  InetSocketAddress getNamenodeAddress() {
+    return nameNodeAddr;
+  }
 }
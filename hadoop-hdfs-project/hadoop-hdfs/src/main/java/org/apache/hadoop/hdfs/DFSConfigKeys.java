@@ -30,14 +30,28 @@ import org.apache.hadoop.fs.CommonConfigurationKeys;
 @InterfaceAudience.Private
 public class DFSConfigKeys extends CommonConfigurationKeys {
 
-  public static final boolean DFS_INODE_CACHE_ENABLED = System.getenv("KTHFS_INODE_CACHE") == null ? false : System.getenv("KTHFS_INODE_CACHE").equals("false") ? false : true;
-  
   public static final String DFS_SYSTEM_LEVEL_LOCK_ENABLED_KEY = "dfs.system.level.lock.enabled";
   public static final boolean DFS_SYSTEM_LEVEL_LOCK_ENABLED_DEFAULT = true;
   public static final String DFS_ROW_LEVEL_LOCK_ENABLED_KEY = "dfs.row.level.lock.enabled";
   public static final boolean DFS_ROW_LEVEL_LOCK_ENABLED_DEFAULT = true;
   public static final String DFS_QUOTA_ENABLED_KEY = "dfs.quota.enabled";
   public static final boolean DFS_QUOTA_ENABLED_KEY_DEFAULT = false;
+  public static final String DFS_DIR_COUNTS_VERIFY_INTERVAL_KEY = "dfs.namenode.dir.counts.verify.interval.ms";
+  public static final long DFS_DIR_COUNTS_VERIFY_INTERVAL_DEFAULT = 6 * 60 * 60 * 1000L; // 0 verifies at startup only
+  public static final String DFS_DIR_COUNTS_AGGREGATE_INTERVAL_KEY = "dfs.namenode.dir.counts.aggregate.interval.ms";
+  public static final long DFS_DIR_COUNTS_AGGREGATE_INTERVAL_DEFAULT = 1000;
+  public static final String DFS_DIR_COUNTS_AGGREGATE_BATCH_SIZE_KEY = "dfs.namenode.dir.counts.aggregate.batch.size";
+  public static final int DFS_DIR_COUNTS_AGGREGATE_BATCH_SIZE_DEFAULT = 1000;
+  public static final String DFS_SUBTREE_OPS_ENABLED_KEY = "dfs.namenode.subtree.ops.enabled";
+  public static final boolean DFS_SUBTREE_OPS_ENABLED_DEFAULT = false;
+  public static final String DFS_SUBTREE_BATCH_SIZE_KEY = "dfs.namenode.subtree.batch.size";
+  public static final int DFS_SUBTREE_BATCH_SIZE_DEFAULT = 500;
+  public static final String DFS_SUBTREE_EXECUTOR_THREADS_KEY = "dfs.namenode.subtree.executor.threads";
+  public static final int DFS_SUBTREE_EXECUTOR_THREADS_DEFAULT = 8;
+  public static final String DFS_SUBTREE_RECOVERY_INTERVAL_KEY = "dfs.namenode.subtree.recovery.interval.ms";
+  public static final long DFS_SUBTREE_RECOVERY_INTERVAL_DEFAULT = 60 * 1000L;
+  public static final String DFS_BLOCK_LOCATIONS_FAST_PATH_ENABLED_KEY = "dfs.namenode.block.locations.fast.path.enabled";
+  public static final boolean DFS_BLOCK_LOCATIONS_FAST_PATH_ENABLED_DEFAULT = true;
   public static final String DFS_STORAGE_TYPE_KEY = "dfs.storage.type";
   public static final String DFS_STORAGE_DERBY_PROTOCOL_KEY = "dfs.storage.derby.protocol";
   public static final String DFS_STORAGE_TYPE_DEFAULT = System.getenv("KTHFS_STORAGE_TYPE");
@@ -49,6 +63,40 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_STORAGE_MYSQL_PROTOCOL_KEY = "dfs.storage.mysql.protocol";
   public static final String DFS_STORAGE_MYSQL_USER_KEY = "dfs.storage.mysql.user";
   public static final String DFS_STORAGE_MYSQL_PASSWORD_KEY = "dfs.storage.mysql.password";
+  public static final String DFS_STORAGE_MEMORY_LATENCY_US_KEY = "dfs.storage.memory.latency.us";
+  public static final long DFS_STORAGE_MEMORY_LATENCY_US_DEFAULT = 0;
+  public static final String DFS_STORAGE_MEMORY_LOCK_TIMEOUT_MS_KEY = "dfs.storage.memory.lock.timeout.ms";
+  public static final long DFS_STORAGE_MEMORY_LOCK_TIMEOUT_MS_DEFAULT = 1200;
+  public static final String DFS_BATCHED_PATH_RESOLUTION_ENABLED_KEY = "dfs.namenode.path.resolution.batched";
+  public static final boolean DFS_BATCHED_PATH_RESOLUTION_ENABLED_DEFAULT = true;
+  public static final String DFS_INODE_HINT_CACHE_ENABLED_KEY = "dfs.namenode.inode.hint.cache.enabled";
+  public static final boolean DFS_INODE_HINT_CACHE_ENABLED_DEFAULT = true;
+  public static final String DFS_INODE_HINT_CACHE_SIZE_KEY = "dfs.namenode.inode.hint.cache.size";
+  public static final int DFS_INODE_HINT_CACHE_SIZE_DEFAULT = 100000;
+  public static final String DFS_BLOCK_INODE_CACHE_ENABLED_KEY = "dfs.namenode.block.inode.cache.enabled";
+  public static final boolean DFS_BLOCK_INODE_CACHE_ENABLED_DEFAULT = true;
+  public static final String DFS_BLOCK_INODE_CACHE_SIZE_KEY = "dfs.namenode.block.inode.cache.size";
+  public static final int DFS_BLOCK_INODE_CACHE_SIZE_DEFAULT = 1 << 20;
+  public static final String DFS_TX_RETRY_COUNT_KEY = "dfs.namenode.tx.retry.count";
+  public static final int DFS_TX_RETRY_COUNT_DEFAULT = 3;
+  public static final String DFS_TX_RETRY_BACKOFF_BASE_MS_KEY = "dfs.namenode.tx.retry.backoff.base.ms";
+  public static final long DFS_TX_RETRY_BACKOFF_BASE_MS_DEFAULT = 10;
+  public static final String DFS_TX_RETRY_BACKOFF_MAX_MS_KEY = "dfs.namenode.tx.retry.backoff.max.ms";
+  public static final long DFS_TX_RETRY_BACKOFF_MAX_MS_DEFAULT = 1000;
+  public static final String DFS_TX_RETRY_BUDGET_MS_KEY = "dfs.namenode.tx.retry.budget.ms";
+  public static final long DFS_TX_RETRY_BUDGET_MS_DEFAULT = 5000;
+  public static final String DFS_BLOCK_REPORT_BATCH_SIZE_KEY = "dfs.namenode.blockreport.batch.size";
+  public static final int DFS_BLOCK_REPORT_BATCH_SIZE_DEFAULT = 100;
+  public static final String DFS_BLOCK_REPORT_BATCH_PARALLELISM_KEY = "dfs.namenode.blockreport.batch.parallelism";
+  public static final int DFS_BLOCK_REPORT_BATCH_PARALLELISM_DEFAULT = 1;
+  public static final String DFS_BLOCK_REPORT_WORKERS_KEY = "dfs.namenode.blockreport.workers";
+  public static final int DFS_BLOCK_REPORT_WORKERS_DEFAULT = 4;
+  public static final String DFS_BLOCK_REPORT_QUEUE_SIZE_KEY = "dfs.namenode.blockreport.queue.size";
+  public static final int DFS_BLOCK_REPORT_QUEUE_SIZE_DEFAULT = 8;
+  public static final String DFS_BLOCK_REPORT_QUEUE_TIMEOUT_KEY = "dfs.namenode.blockreport.queue.timeout.ms";
+  public static final long DFS_BLOCK_REPORT_QUEUE_TIMEOUT_DEFAULT = 1000;
+  public static final String DFS_BLOCK_REPORT_MAX_WAIT_KEY = "dfs.namenode.blockreport.max.wait.ms";
+  public static final long DFS_BLOCK_REPORT_MAX_WAIT_DEFAULT = 60 * 1000;
   public static final String  DFS_BLOCK_SIZE_KEY = "dfs.blocksize";
   public static final long    DFS_BLOCK_SIZE_DEFAULT = 64*1024*1024;
   public static final String  DFS_REPLICATION_KEY = "dfs.replication";
@@ -114,6 +162,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean DFS_NAMENODE_REPLICATION_CONSIDERLOAD_DEFAULT = true;
   public static final String  DFS_NAMENODE_REPLICATION_INTERVAL_KEY = "dfs.namenode.replication.interval";
   public static final int     DFS_NAMENODE_REPLICATION_INTERVAL_DEFAULT = 3;
+  public static final String  DFS_NAMENODE_REPLICATION_SHARDED_KEY = "dfs.namenode.replication.sharded";
+  public static final boolean DFS_NAMENODE_REPLICATION_SHARDED_DEFAULT = true;
+  public static final String  DFS_NAMENODE_LEASE_RECOVERY_THREADS_KEY = "dfs.namenode.lease.recovery.threads";
+  public static final int     DFS_NAMENODE_LEASE_RECOVERY_THREADS_DEFAULT = 8;
+  public static final String  DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_KEY = "dfs.namenode.lease.renewal.flush.interval.ms";
+  public static final long    DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_DEFAULT = 1000;
+  public static final String  DFS_NAMENODE_LEASE_RENEWAL_BATCH_SIZE_KEY = "dfs.namenode.lease.renewal.batch.size";
+  public static final int     DFS_NAMENODE_LEASE_RENEWAL_BATCH_SIZE_DEFAULT = 500;
+  public static final String  DFS_NAMENODE_COUNTER_RANGE_SIZE_KEY = "dfs.namenode.counter.range.size";
+  public static final long    DFS_NAMENODE_COUNTER_RANGE_SIZE_DEFAULT = 1000;
+  public static final String  DFS_NAMENODE_COUNTER_RANGE_REFILL_THRESHOLD_KEY = "dfs.namenode.counter.range.refill.threshold";
+  public static final long    DFS_NAMENODE_COUNTER_RANGE_REFILL_THRESHOLD_DEFAULT = 250;
+  public static final String  DFS_NAMENODE_REPLICATION_WORK_BATCH_SIZE_KEY = "dfs.namenode.replication.work.batch.size";
+  public static final int     DFS_NAMENODE_REPLICATION_WORK_BATCH_SIZE_DEFAULT = 100;
   public static final String  DFS_NAMENODE_REPLICATION_MIN_KEY = "dfs.namenode.replication.min";
   public static final int     DFS_NAMENODE_REPLICATION_MIN_DEFAULT = 1;
   public static final String  DFS_NAMENODE_REPLICATION_PENDING_TIMEOUT_SEC_KEY = "dfs.namenode.replication.pending.timeout-sec";
@@ -256,6 +318,8 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final long    DFS_BLOCKREPORT_INTERVAL_MSEC_DEFAULT = 60 * 60 * 1000;
   public static final String  DFS_BLOCKREPORT_INITIAL_DELAY_KEY = "dfs.blockreport.initialDelay";
   public static final int     DFS_BLOCKREPORT_INITIAL_DELAY_DEFAULT = 0;
+  public static final String  DFS_BLOCKREPORT_FULL_EVERY_KEY = "dfs.blockreport.full.every";
+  public static final int     DFS_BLOCKREPORT_FULL_EVERY_DEFAULT = 1;
   public static final String  DFS_BLOCK_INVALIDATE_LIMIT_KEY = "dfs.block.invalidate.limit";
   public static final int     DFS_BLOCK_INVALIDATE_LIMIT_DEFAULT = 1000;
   public static final String  DFS_DEFAULT_MAX_CORRUPT_FILES_RETURNED_KEY = "dfs.corruptfilesreturned.max";
@@ -308,13 +372,13 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   /*for client failover api*/
   public static final String    DFS_NAMENODES_RPC_ADDRESS_KEY = "dfs.namenodes.rpc.address";  // format {ip:port, ip:port, ip:port} comma separated
   public static final String    DFS_NAMENODE_SELECTOR_POLICY_KEY = "dfs.namenode.selector-policy";
+  public static final String    DFS_NAMENODE_SELECTOR_PROBE_INTERVAL_KEY = "dfs.namenode.selector.probe.interval.ms";
+  public static final long      DFS_NAMENODE_SELECTOR_PROBE_INTERVAL_DEFAULT = 5 * 1000;
+  public static final String    DFS_NAMENODE_SELECTOR_READERS_KEY = "dfs.namenode.selector.readers"; // host:port list, empty for all namenodes
+  public static final String    DFS_NAMENODE_SELECTOR_WRITERS_KEY = "dfs.namenode.selector.writers"; // host:port list, empty for all namenodes
   public static final String    DFS_LEADER_CHECK_INTERVAL_KEY = "dfs.leader.check.interval";
   public static final int       DFS_LEADER_CHECK_INTERVAL_DEFAULT = 3*1000; // 1 second 
   public static final String    DFS_LEADER_MISSED_HB_THRESHOLD = "dfs.leader.missed.hb";
   public static final int       DFS_LEADER_MISSED_HB_THRESHOLD_DEFAULT = 1;
 
-  /* for memcache servers */
-  public static final String  DFS_MEMCACHE_SERVERS_KEY = "dfs.memcache.server.address";  // format {ip:port, ip:port, ip:port} comma separated
-  public static final String  DFS_MEMCACHE_SERVERS_DEFAULT = "127.0.0.1:11211"; 
-
 }
@@ -258,7 +258,7 @@ public class DistributedFileSystem extends FileSystem {
                                                long start, long len) throws IOException {
     statistics.incrementReadOps(1);
     //return dfs.getBlockLocations(getPathName(p), start, len);
-    return nnSelector.getNextNamenode().getBlockLocations(getPathName(p), start, len);
+    return nnSelector.getNextReaderNamenode().getBlockLocations(getPathName(p), start, len);
 
   }
 
@@ -276,7 +276,7 @@ public class DistributedFileSystem extends FileSystem {
    */
   public boolean recoverLease(Path f) throws IOException {
     //return dfs.recoverLease(getPathName(f));
-    return nnSelector.getNextNamenode().recoverLease(getPathName(f));
+    return nnSelector.getNextWriterNamenode().recoverLease(getPathName(f));
   }
 
   @SuppressWarnings("deprecation")
@@ -286,7 +286,7 @@ public class DistributedFileSystem extends FileSystem {
     //return new DFSClient.DFSDataInputStream(
     //        dfs.open(getPathName(f), bufferSize, verifyChecksum, statistics));
     return new DFSClient.DFSDataInputStream(
-            nnSelector.getNextNamenode().open(getPathName(f), bufferSize, verifyChecksum, statistics));
+            nnSelector.getNextReaderNamenode().open(getPathName(f), bufferSize, verifyChecksum, statistics));
   }
 
   /** This optional operation is not yet supported. */
@@ -296,7 +296,7 @@ public class DistributedFileSystem extends FileSystem {
 
     statistics.incrementWriteOps(1);
     //final DFSOutputStream op = dfs.append(getPathName(f), bufferSize, progress);
-    final DFSOutputStream op = nnSelector.getNextNamenode().append(getPathName(f), bufferSize, progress);
+    final DFSOutputStream op = nnSelector.getNextWriterNamenode().append(getPathName(f), bufferSize, progress);
     return new FSDataOutputStream(op, statistics, op.getInitialLen());
   }
 
@@ -309,7 +309,7 @@ public class DistributedFileSystem extends FileSystem {
 //                                             overwrite ? EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE)
 //                                             : EnumSet.of(CreateFlag.CREATE), replication, blockSize, progress,
 //                                             bufferSize), statistics);
-    return new FSDataOutputStream(nnSelector.getNextNamenode().create(getPathName(f), permission,
+    return new FSDataOutputStream(nnSelector.getNextWriterNamenode().create(getPathName(f), permission,
                                              overwrite ? EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE)
                                              : EnumSet.of(CreateFlag.CREATE), replication, blockSize, progress,
                                              bufferSize), statistics);
@@ -325,7 +325,7 @@ public class DistributedFileSystem extends FileSystem {
 //    return new FSDataOutputStream(dfs.primitiveCreate(getPathName(f),
 //                                                      absolutePermission, flag, true, replication, blockSize,
 //                                                      progress, bufferSize, bytesPerChecksum), statistics);
-    return new FSDataOutputStream(nnSelector.getNextNamenode().primitiveCreate(getPathName(f),
+    return new FSDataOutputStream(nnSelector.getNextWriterNamenode().primitiveCreate(getPathName(f),
                                                       absolutePermission, flag, true, replication, blockSize,
                                                       progress, bufferSize, bytesPerChecksum), statistics);
   }
@@ -342,7 +342,7 @@ public class DistributedFileSystem extends FileSystem {
     }
 //    return new FSDataOutputStream(dfs.create(getPathName(f), permission, flag,
 //                                             false, replication, blockSize, progress, bufferSize), statistics);
-    return new FSDataOutputStream(nnSelector.getNextNamenode().create(getPathName(f), permission, flag,
+    return new FSDataOutputStream(nnSelector.getNextWriterNamenode().create(getPathName(f), permission, flag,
                                              false, replication, blockSize, progress, bufferSize), statistics);
   }
 
@@ -351,7 +351,7 @@ public class DistributedFileSystem extends FileSystem {
                                 short replication) throws IOException {
     statistics.incrementWriteOps(1);
     //return dfs.setReplication(getPathName(src), replication);
-    return nnSelector.getNextNamenode().setReplication(getPathName(src), replication);
+    return nnSelector.getNextWriterNamenode().setReplication(getPathName(src), replication);
   }
 
   /**
@@ -370,7 +370,7 @@ public class DistributedFileSystem extends FileSystem {
     }
     statistics.incrementWriteOps(1);
     //dfs.concat(getPathName(trg), srcs);
-    nnSelector.getNextNamenode().concat(getPathName(trg), srcs);
+    nnSelector.getNextWriterNamenode().concat(getPathName(trg), srcs);
   }
 
   /** {@inheritDoc} */
@@ -379,7 +379,7 @@ public class DistributedFileSystem extends FileSystem {
   public boolean rename(Path src, Path dst) throws IOException {
     statistics.incrementWriteOps(1);
     //return dfs.rename(getPathName(src), getPathName(dst));
-    return nnSelector.getNextNamenode().rename(getPathName(src), getPathName(dst));
+    return nnSelector.getNextWriterNamenode().rename(getPathName(src), getPathName(dst));
   }
   /** 
    * {@inheritDoc}
@@ -390,14 +390,14 @@ public class DistributedFileSystem extends FileSystem {
   public void rename(Path src, Path dst, Options.Rename... options) throws IOException {
     statistics.incrementWriteOps(1);
     //dfs.rename(getPathName(src), getPathName(dst), options);
-    nnSelector.getNextNamenode().rename(getPathName(src), getPathName(dst), options);
+    nnSelector.getNextWriterNamenode().rename(getPathName(src), getPathName(dst), options);
   }
 
   @Override
   public boolean delete(Path f, boolean recursive) throws IOException {
     statistics.incrementWriteOps(1);
     //return dfs.delete(getPathName(f), recursive);
-    DFSClient client = nnSelector.getNextNamenode();
+    DFSClient client = nnSelector.getNextWriterNamenode();
     LOG.debug("writer used to delete: "+client.getId());
     return client.delete(getPathName(f), recursive);
     //return nnSelector.getNextWriterNameNode().delete(getPathName(f), recursive);
@@ -408,7 +408,7 @@ public class DistributedFileSystem extends FileSystem {
   public ContentSummary getContentSummary(Path f) throws IOException {
     statistics.incrementReadOps(1);
     //return dfs.getContentSummary(getPathName(f));
-    return nnSelector.getNextNamenode().getContentSummary(getPathName(f));
+    return nnSelector.getNextReaderNamenode().getContentSummary(getPathName(f));
   }
 
   /** Set a directory's quotas
@@ -417,7 +417,7 @@ public class DistributedFileSystem extends FileSystem {
   public void setQuota(Path src, long namespaceQuota, long diskspaceQuota)
           throws IOException {
     //dfs.setQuota(getPathName(src), namespaceQuota, diskspaceQuota);
-    nnSelector.getNextNamenode().setQuota(getPathName(src), namespaceQuota, diskspaceQuota);
+    nnSelector.getNextWriterNamenode().setQuota(getPathName(src), namespaceQuota, diskspaceQuota);
   }
 
   private FileStatus makeQualified(HdfsFileStatus f, Path parent) {
@@ -455,7 +455,7 @@ public class DistributedFileSystem extends FileSystem {
 
     // fetch the first batch of entries in the directory
     //DirectoryListing thisListing = dfs.listPaths(src, HdfsFileStatus.EMPTY_NAME);
-    DFSClient nextReaderNameNode = nnSelector.getNextNamenode();
+    DFSClient nextReaderNameNode = nnSelector.getNextReaderNamenode();
     DirectoryListing thisListing = nextReaderNameNode.listPaths(src, HdfsFileStatus.EMPTY_NAME);
     
     if (thisListing == null) { // the directory does not exist
@@ -519,7 +519,7 @@ public class DistributedFileSystem extends FileSystem {
         src = getPathName(p);
         // fetch the first batch of entries in the directory
         //thisListing = dfs.listPaths(src, HdfsFileStatus.EMPTY_NAME, true);
-        thisListing = nnSelector.getNextNamenode().listPaths(src, HdfsFileStatus.EMPTY_NAME, true);
+        thisListing = nnSelector.getNextReaderNamenode().listPaths(src, HdfsFileStatus.EMPTY_NAME, true);
         statistics.incrementReadOps(1);
         if (thisListing == null) { // the directory does not exist
           throw new FileNotFoundException("File " + p + " does not exist.");
@@ -547,7 +547,7 @@ public class DistributedFileSystem extends FileSystem {
             && thisListing.hasMore()) {
           // current listing is exhausted & fetch a new listing
           //thisListing = dfs.listPaths(src, thisListing.getLastName(), true);
-          thisListing = nnSelector.getNextNamenode().listPaths(src, thisListing.getLastName(), true);
+          thisListing = nnSelector.getNextReaderNamenode().listPaths(src, thisListing.getLastName(), true);
           statistics.incrementReadOps(1);
           if (thisListing == null) {
             return false;
@@ -576,14 +576,14 @@ public class DistributedFileSystem extends FileSystem {
   public boolean mkdir(Path f, FsPermission permission) throws IOException {
     statistics.incrementWriteOps(1);
     //return dfs.mkdirs(getPathName(f), permission, false);
-    return nnSelector.getNextNamenode().mkdirs(getPathName(f), permission, false);
+    return nnSelector.getNextWriterNamenode().mkdirs(getPathName(f), permission, false);
   }
 
   @Override
   public boolean mkdirs(Path f, FsPermission permission) throws IOException {
     statistics.incrementWriteOps(1);
     //return dfs.mkdirs(getPathName(f), permission, true);
-    return nnSelector.getNextNamenode().mkdirs(getPathName(f), permission, true);
+    return nnSelector.getNextWriterNamenode().mkdirs(getPathName(f), permission, true);
   }
 
   @SuppressWarnings("deprecation")
@@ -592,7 +592,7 @@ public class DistributedFileSystem extends FileSystem {
           throws IOException {
     statistics.incrementWriteOps(1);
     //return dfs.primitiveMkdir(getPathName(f), absolutePermission);
-    return nnSelector.getNextNamenode().primitiveMkdir(getPathName(f), absolutePermission);
+    return nnSelector.getNextWriterNamenode().primitiveMkdir(getPathName(f), absolutePermission);
   }
 
   /** {@inheritDoc} */
@@ -611,7 +611,9 @@ public class DistributedFileSystem extends FileSystem {
   /** {@inheritDoc} */
   private void closeAllReadersAndWriters() throws IOException {
     try {
-
+      if (nnSelector != null) {
+        nnSelector.close();
+      }
       for (DFSClient c : clients) {
         if (c.isClientRunning()) {
           c.close();
@@ -904,7 +906,7 @@ public class DistributedFileSystem extends FileSystem {
   public FileStatus getFileStatus(Path f) throws IOException {
     statistics.incrementReadOps(1);
     //HdfsFileStatus fi = dfs.getFileInfo(getPathName(f));
-    HdfsFileStatus fi = nnSelector.getNextNamenode().getFileInfo(getPathName(f));
+    HdfsFileStatus fi = nnSelector.getNextReaderNamenode().getFileInfo(getPathName(f));
     if (fi != null) {
       return makeQualified(fi, f);
     }
@@ -918,7 +920,7 @@ public class DistributedFileSystem extends FileSystem {
   public MD5MD5CRC32FileChecksum getFileChecksum(Path f) throws IOException {
     statistics.incrementReadOps(1);
     //return dfs.getFileChecksum(getPathName(f));
-    return nnSelector.getNextNamenode().getFileChecksum(getPathName(f));
+    return nnSelector.getNextReaderNamenode().getFileChecksum(getPathName(f));
   }
 
   /** {@inheritDoc }*/
@@ -926,7 +928,7 @@ public class DistributedFileSystem extends FileSystem {
   public void setPermission(Path p, FsPermission permission) throws IOException {
     statistics.incrementWriteOps(1);
     //dfs.setPermission(getPathName(p), permission);
-    nnSelector.getNextNamenode().setPermission(getPathName(p), permission);
+    nnSelector.getNextWriterNamenode().setPermission(getPathName(p), permission);
   }
 
   /** {@inheritDoc }*/
@@ -937,7 +939,7 @@ public class DistributedFileSystem extends FileSystem {
     }
     statistics.incrementWriteOps(1);
     //dfs.setOwner(getPathName(p), username, groupname);
-    nnSelector.getNextNamenode().setOwner(getPathName(p), username, groupname);
+    nnSelector.getNextWriterNamenode().setOwner(getPathName(p), username, groupname);
   }
 
   /** {@inheritDoc }*/
@@ -945,7 +947,7 @@ public class DistributedFileSystem extends FileSystem {
   public void setTimes(Path p, long mtime, long atime) throws IOException {
     statistics.incrementWriteOps(1);
     //dfs.setTimes(getPathName(p), mtime, atime);
-    nnSelector.getNextNamenode().setTimes(getPathName(p), mtime, atime);
+    nnSelector.getNextWriterNamenode().setTimes(getPathName(p), mtime, atime);
   }
 
   @Override
@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.net.NetUtils;
+
+/** An implementation of NameNodeSelector class which sends each operation to
+ * the namenode with the least expected wait, the calls in flight weighted by
+ * the moving average of the call latency.
+ *
+ * Liveness is cached: a namenode is marked inactive when a call to it cannot
+ * connect or times out, and a background thread pings the inactive and the
+ * idle namenodes every probe interval, so an operation never waits for a
+ * ping. Reads and writes can be pinned to different sets of namenodes with
+ * dfs.namenode.selector.readers and dfs.namenode.selector.writers.
+ */
+public class LoadAwareNameNodeSelector extends NameNodeSelector {
+
+  private static final Log LOG = LogFactory.getLog(LoadAwareNameNodeSelector.class);
+  private final Random rand = new Random();
+  private Set<InetSocketAddress> readers = Collections.emptySet();
+  private Set<InetSocketAddress> writers = Collections.emptySet();
+  private long probeInterval = DFSConfigKeys.DFS_NAMENODE_SELECTOR_PROBE_INTERVAL_DEFAULT;
+  private ScheduledExecutorService prober;
+
+  @Override
+  protected void initialize(Configuration conf) {
+    probeInterval = conf.getLong(DFSConfigKeys.DFS_NAMENODE_SELECTOR_PROBE_INTERVAL_KEY,
+            DFSConfigKeys.DFS_NAMENODE_SELECTOR_PROBE_INTERVAL_DEFAULT);
+    readers = getAddresses(conf, DFSConfigKeys.DFS_NAMENODE_SELECTOR_READERS_KEY);
+    writers = getAddresses(conf, DFSConfigKeys.DFS_NAMENODE_SELECTOR_WRITERS_KEY);
+    prober = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "NameNodeSelector prober");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    prober.scheduleWithFixedDelay(new Runnable() {
+
+      @Override
+      public void run() {
+        probe();
+      }
+    }, probeInterval, probeInterval, TimeUnit.MILLISECONDS);
+  }
+
+  private static Set<InetSocketAddress> getAddresses(Configuration conf, String key) {
+    Set<InetSocketAddress> addresses = new HashSet<InetSocketAddress>();
+    for (String address : conf.getTrimmedStringCollection(key)) {
+      addresses.add(NetUtils.createSocketAddr(address));
+    }
+    return addresses;
+  }
+
+  @Override
+  public void close() {
+    if (prober != null) {
+      prober.shutdownNow();
+    }
+  }
+
+  /**
+   * Pings the inactive namenodes and the namenodes which had no call in the
+   * last probe interval.
+   */
+  void probe() {
+    for (DFSClient client : namenodes) {
+      NamenodeLoad load = client.getNamenodeLoad();
+      if (!load.isActive() || load.isIdle(probeInterval)) {
+        boolean alive = client.pingNamenode();
+        if (alive != load.isActive()) {
+          LOG.info("NN [" + client.getId() + "] is " + (alive ? "active" : "inactive"));
+        }
+        load.setActive(alive);
+      }
+    }
+  }
+
+  @Override
+  protected DFSClient getNamenode() {
+    DFSClient client = select(Collections.<InetSocketAddress>emptySet());
+    return client != null ? client : namenodes.get(rand.nextInt(namenodes.size()));
+  }
+
+  @Override
+  public DFSClient getNextNamenode() throws IOException {
+    return getNextNamenode(Collections.<InetSocketAddress>emptySet());
+  }
+
+  @Override
+  public DFSClient getNextReaderNamenode() throws IOException {
+    return getNextNamenode(readers);
+  }
+
+  @Override
+  public DFSClient getNextWriterNamenode() throws IOException {
+    return getNextNamenode(writers);
+  }
+
+  private DFSClient getNextNamenode(Set<InetSocketAddress> pinned) throws IOException {
+    DFSClient client = select(pinned);
+    if (client == null && !pinned.isEmpty()) {
+      // the pinned namenodes are down, any namenode serves the operation
+      client = select(Collections.<InetSocketAddress>emptySet());
+    }
+    if (client == null) {
+      // all namenodes looked down at the last probe, check them once more
+      probe();
+      client = select(Collections.<InetSocketAddress>emptySet());
+    }
+    if (client == null) {
+      throw new IOException("getNextNamenode() :: Unable to connect to any Namenode");
+    }
+    return client;
+  }
+
+  /**
+   * @return the active namenode with the lowest expected wait, among the
+   * pinned namenodes if any, or null if there is none
+   */
+  DFSClient select(Set<InetSocketAddress> pinned) {
+    DFSClient best = null;
+    double bestScore = 0;
+    int ties = 0;
+    for (DFSClient client : namenodes) {
+      NamenodeLoad load = client.getNamenodeLoad();
+      if (!load.isActive() || (!pinned.isEmpty() && !pinned.contains(client.getNamenodeAddress()))) {
+        continue;
+      }
+      double score = load.getScore();
+      if (best == null || score < bestScore) {
+        best = client;
+        bestScore = score;
+        ties = 1;
+      } else if (score == bestScore && rand.nextInt(++ties) == 0) {
+        // spread the operations over the namenodes with the same score
+        best = client;
+      }
+    }
+    return best;
+  }
+}
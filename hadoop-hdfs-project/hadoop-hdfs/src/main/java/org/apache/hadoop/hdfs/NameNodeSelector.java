@@ -89,15 +89,28 @@ public abstract class NameNodeSelector {
       LOG.info("Selecting default Namenode selection policy");
       RoundRobinNameNodeSelector policy = new RoundRobinNameNodeSelector();
       policy.namenodes = nns;
+      policy.initialize(conf);
       return policy;
     }
     else {
       // No errors
       LOG.info("Successfully loaded Namenode selector policy [" + nnSelectorPolicy.getClass().getName() + "]");
+      nnSelectorPolicy.initialize(conf);
       return nnSelectorPolicy;
     }
   }
 
+  /**Called once the namenodes are set, before the first selection
+   * @param conf - The configuration from hdfs
+   */
+  protected void initialize(Configuration conf) {
+  }
+
+  /**Releases the resources of the policy when the file system is closed
+   */
+  public void close() {
+  }
+
   /**Gets the appropriate namenode for a read/write operation
    * @return DFSClient
    */
@@ -134,6 +147,20 @@ public abstract class NameNodeSelector {
     throw new IOException("getNextNamenode() :: Unable to connect to any Namenode");
   }
 
+  /**Gets the namenode for an operation which only reads the namespace
+   * @return DFSClient
+   */
+  public DFSClient getNextReaderNamenode() throws IOException {
+    return getNextNamenode();
+  }
+
+  /**Gets the namenode for an operation which changes the namespace
+   * @return DFSClient
+   */
+  public DFSClient getNextWriterNamenode() throws IOException {
+    return getNextNamenode();
+  }
+
   void printNamenodes() {
     String nns = "namenodes: ";
     for (DFSClient client : namenodes) {
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+
+/**
+ * The load a client sees on one namenode: the calls in flight, the moving
+ * average of the call latency and whether the namenode is reachable. Every
+ * call of a DFSClient to its namenode goes through {@link #track}, so the
+ * selectors get the load without a ping per call.
+ */
+@InterfaceAudience.Private
+class NamenodeLoad {
+
+  /** weight of the latest latency in the moving average */
+  static final double ALPHA = 0.2;
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private volatile double avgLatency = 0;
+  private volatile boolean active = true;
+  private volatile long lastCall = 0;
+
+  void begin() {
+    outstanding.incrementAndGet();
+  }
+
+  /**
+   * @param unreachable the call failed to connect or timed out
+   */
+  void end(long latency, boolean unreachable) {
+    outstanding.decrementAndGet();
+    lastCall = System.currentTimeMillis();
+    if (unreachable) {
+      active = false;
+      return;
+    }
+    active = true;
+    synchronized (this) {
+      avgLatency = avgLatency == 0 ? latency : avgLatency + ALPHA * (latency - avgLatency);
+    }
+  }
+
+  int getOutstanding() {
+    return outstanding.get();
+  }
+
+  double getAverageLatency() {
+    return avgLatency;
+  }
+
+  boolean isActive() {
+    return active;
+  }
+
+  void setActive(boolean active) {
+    this.active = active;
+  }
+
+  /**
+   * @return true if no call finished in the given time
+   */
+  boolean isIdle(long time) {
+    return System.currentTimeMillis() - lastCall > time;
+  }
+
+  /**
+   * The expected wait of a new call, a namenode without calls so far is
+   * preferred.
+   */
+  double getScore() {
+    return (outstanding.get() + 1) * avgLatency;
+  }
+
+  /**
+   * @return a ClientProtocol which records the calls to the namenode in the
+   * given load
+   */
+  static ClientProtocol track(final ClientProtocol namenode, final NamenodeLoad load) {
+    return (ClientProtocol) Proxy.newProxyInstance(ClientProtocol.class.getClassLoader(),
+            new Class[]{ClientProtocol.class}, new InvocationHandler() {
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        boolean unreachable = false;
+        long start = System.currentTimeMillis();
+        load.begin();
+        try {
+          return method.invoke(namenode, args);
+        } catch (InvocationTargetException ex) {
+          Throwable cause = ex.getCause();
+          unreachable = cause instanceof ConnectException || cause instanceof SocketTimeoutException;
+          throw cause;
+        } finally {
+          load.end(System.currentTimeMillis() - start, unreachable);
+        }
+      }
+    });
+  }
+}
@@ -45,7 +45,7 @@ public class BlockInfo extends Block {
 
   public static enum Finder implements org.apache.hadoop.hdfs.server.namenode.FinderType<BlockInfo> {
 
-    ById, ByInodeId, All, ByStorageId;
+    ById, ByIds, ByInodeId, ByInodeIds, All, ByStorageId;
 
     @Override
     public Class getType() {
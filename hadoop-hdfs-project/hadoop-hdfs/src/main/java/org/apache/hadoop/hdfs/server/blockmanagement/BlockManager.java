@@ -17,14 +17,22 @@
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -49,7 +57,9 @@ import org.apache.hadoop.hdfs.server.common.Util;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
 import org.apache.hadoop.hdfs.server.namenode.INodeFile;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.NamenodeShard;
 import org.apache.hadoop.hdfs.server.namenode.Namesystem;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations;
 import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations.BlockWithLocations;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
@@ -67,7 +77,6 @@ import org.apache.hadoop.hdfs.security.token.block.BlockTokenSecretManagerNN;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
 import org.apache.hadoop.hdfs.server.namenode.INode;
 import org.apache.hadoop.hdfs.server.namenode.lock.INodeUtil;
-import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager.LockType;
 import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
@@ -199,13 +208,31 @@ public class BlockManager {
      */
     final boolean shouldCheckForEnoughRacks;
     /**
-     * Last block index used for replication work.
+     * All the active namenodes share the replication work, not only the leader
      */
-    private int replIndex = 0;
+    final boolean shardedReplication;
+    /**
+     * The part of the replication work done by this namenode
+     */
+    private volatile NamenodeShard replicationShard = NamenodeShard.ALL;
     /**
      * for block replicas placement
      */
     private BlockPlacementPolicy blockplacement;
+    /**
+     * Number of under-replicated blocks which are scheduled in one transaction
+     */
+    final int replicationWorkBatchSize;
+    /**
+     * Number of reported blocks which are processed in one transaction
+     */
+    final int blockReportBatchSize;
+    /**
+     * Number of batches of one block report which are processed concurrently
+     */
+    final int blockReportParallelism;
+    private ExecutorService blockReportExecutor = null;
+    private final BlockReportProcessor blockReportProcessor;
 
     public BlockManager(FSNamesystem fsn, Configuration conf) throws IOException {
         namesystem = fsn;
@@ -259,12 +286,46 @@ public class BlockManager {
         this.replicationRecheckInterval =
                 conf.getInt(DFSConfigKeys.DFS_NAMENODE_REPLICATION_INTERVAL_KEY,
                 DFSConfigKeys.DFS_NAMENODE_REPLICATION_INTERVAL_DEFAULT) * 1000L;
+        this.shardedReplication = conf.getBoolean(DFSConfigKeys.DFS_NAMENODE_REPLICATION_SHARDED_KEY,
+                DFSConfigKeys.DFS_NAMENODE_REPLICATION_SHARDED_DEFAULT);
+        this.replicationWorkBatchSize = Math.max(1, conf.getInt(
+                DFSConfigKeys.DFS_NAMENODE_REPLICATION_WORK_BATCH_SIZE_KEY,
+                DFSConfigKeys.DFS_NAMENODE_REPLICATION_WORK_BATCH_SIZE_DEFAULT));
+        this.blockReportBatchSize = Math.max(1, conf.getInt(
+                DFSConfigKeys.DFS_BLOCK_REPORT_BATCH_SIZE_KEY,
+                DFSConfigKeys.DFS_BLOCK_REPORT_BATCH_SIZE_DEFAULT));
+        int parallelism = conf.getInt(
+                DFSConfigKeys.DFS_BLOCK_REPORT_BATCH_PARALLELISM_KEY,
+                DFSConfigKeys.DFS_BLOCK_REPORT_BATCH_PARALLELISM_DEFAULT);
+        if (parallelism > 1 && FSNamesystem.systemLevelLock()) {
+            // the batches would wait for the namesystem lock of the report.
+            LOG.warn(DFSConfigKeys.DFS_BLOCK_REPORT_BATCH_PARALLELISM_KEY
+                    + " is ignored with the system level lock");
+            parallelism = 1;
+        }
+        this.blockReportParallelism = Math.max(1, parallelism);
+        if (blockReportParallelism > 1) {
+            blockReportExecutor = Executors.newFixedThreadPool(blockReportParallelism);
+        }
         LOG.info("defaultReplication = " + defaultReplication);
         LOG.info("maxReplication     = " + maxReplication);
         LOG.info("minReplication     = " + minReplication);
         LOG.info("maxReplicationStreams      = " + maxReplicationStreams);
         LOG.info("shouldCheckForEnoughRacks  = " + shouldCheckForEnoughRacks);
         LOG.info("replicationRecheckInterval = " + replicationRecheckInterval);
+        LOG.info("shardedReplication         = " + shardedReplication);
+        LOG.info("replicationWorkBatchSize   = " + replicationWorkBatchSize);
+        LOG.info("blockReportBatchSize       = " + blockReportBatchSize);
+        LOG.info("blockReportParallelism     = " + blockReportParallelism);
+        this.blockReportProcessor = new BlockReportProcessor(
+                new BlockReportProcessor.ReportHandler() {
+
+                    @Override
+                    public void processReport(DatanodeID nodeID, String poolId,
+                            BlockListAsLongs report) throws IOException {
+                        applyReport(nodeID, poolId, report);
+                    }
+                }, conf);
     }
 
     private static BlockTokenSecretManagerNN createBlockTokenSecretManager(
@@ -316,6 +377,7 @@ public class BlockManager {
     public void activate(Configuration conf) throws IOException {
         datanodeManager.activate(conf);
         replicationThread.start();
+        blockReportProcessor.start();
       blockTokenSecretManager = createBlockTokenSecretManager((FSNamesystem)namesystem, conf);
     }
 
@@ -327,6 +389,12 @@ public class BlockManager {
         if (datanodeManager != null) {
             datanodeManager.close();
         }
+        if (blockReportProcessor != null) {
+            blockReportProcessor.stop();
+        }
+        if (blockReportExecutor != null) {
+            blockReportExecutor.shutdownNow();
+        }
     }
 
     /**
@@ -1119,7 +1187,13 @@ public class BlockManager {
      */
     int computeInvalidateWork(int nodesToProcess, OperationType opType) throws IOException {
 
-        final List<String> nodes = getStorageIdsOfIvalidatedBlocks(opType);
+        final List<String> nodes = new ArrayList<String>();
+        final NamenodeShard shard = replicationShard;
+        for (String storageId : getStorageIdsOfIvalidatedBlocks(opType)) {
+            if (shard.ownsKey(storageId)) {
+                nodes.add(storageId);
+            }
+        }
         Collections.shuffle(nodes);
 
         nodesToProcess = Math.min(nodes.size(), nodesToProcess);
@@ -1144,68 +1218,181 @@ public class BlockManager {
      *
      * @return number of blocks scheduled for replication during this iteration.
      */
-    private int computeReplicationWork(int blocksToProcess, OperationType opType) throws IOException {
+    @VisibleForTesting
+    int computeReplicationWork(int blocksToProcess, OperationType opType) throws IOException {
         // Choose the blocks to be replicated
         List<List<Block>> blocksToReplicate =
                 chooseUnderReplicatedBlocks(blocksToProcess, opType);
-        // replicate blocks
+        // replicate blocks, replicationWorkBatchSize blocks per transaction
         int scheduledReplicationCount = 0;
+        List<Block> batch = new ArrayList<Block>();
+        List<Integer> priorities = new ArrayList<Integer>();
         for (int i = 0; i < blocksToReplicate.size(); i++) {
             for (Block block : blocksToReplicate.get(i)) {
-                if (computeReplicationWorkForBlock(block, i, opType)) {
-                    scheduledReplicationCount++;
+                batch.add(block);
+                priorities.add(i);
+                if (batch.size() == replicationWorkBatchSize) {
+                    scheduledReplicationCount += computeReplicationWorkForBlocks(batch, priorities, opType);
+                    batch = new ArrayList<Block>();
+                    priorities = new ArrayList<Integer>();
                 }
             }
         }
+        if (!batch.isEmpty()) {
+            scheduledReplicationCount += computeReplicationWorkForBlocks(batch, priorities, opType);
+        }
         return scheduledReplicationCount;
     }
 
-  private boolean computeReplicationWorkForBlock(final Block b, final int priority, OperationType opType) throws IOException {
+  /**
+   * The replication of a block chosen in a transaction. It is handed to the
+   * datanode descriptors only after the transaction committed, so a rolled
+   * back or retried transaction does not queue it twice.
+   */
+  static class ReplicationWork {
+
+    final DatanodeDescriptor srcNode;
+    final Block block;
+    final DatanodeDescriptor[] targets;
+
+    ReplicationWork(DatanodeDescriptor srcNode, Block block, DatanodeDescriptor[] targets) {
+      this.srcNode = srcNode;
+      this.block = block;
+      this.targets = targets;
+    }
+  }
+
+  /**
+   * Queues the replications of a committed transaction at their datanodes.
+   */
+  private void scheduleReplications(List<ReplicationWork> work) {
+    for (ReplicationWork w : work) {
+      w.srcNode.addBlockToBeReplicated(w.block, w.targets);
+      for (DatanodeDescriptor dn : w.targets) {
+        dn.incBlocksScheduled();
+      }
+    }
+  }
+
+  /**
+   * Schedules the replication of a batch of blocks. A batch whose transaction
+   * rolls back is split in two halves which are scheduled again, so a block
+   * which keeps failing, e.g. with a stale inode hint, only costs its own
+   * replication and the other blocks of the batch are still scheduled. A
+   * block which fails with an IOException ends the batch, the blocks before
+   * it are committed and the ones after it are scheduled again.
+   *
+   * @return the number of blocks scheduled for replication
+   */
+  private int computeReplicationWorkForBlocks(List<Block> blocks, List<Integer> priorities,
+          OperationType opType) throws IOException {
+    BatchResult result = null;
+    IOException failure = null;
+    try {
+      result = computeReplicationWorkForBatch(blocks, priorities, opType);
+    } catch (InterruptedIOException ex) {
+      throw ex;
+    } catch (IOException ex) {
+      failure = ex;
+    }
+    if (result != null) {
+      scheduleReplications(result.work);
+      if (result.failure == null) {
+        return result.scheduled;
+      }
+      LOG.warn("Could not schedule the replication of " + blocks.get(result.failedAt)
+              + ", it is tried again in the next iteration", result.failure);
+      int next = result.failedAt + 1;
+      return result.scheduled + (next == blocks.size() ? 0
+              : computeReplicationWorkForBlocks(blocks.subList(next, blocks.size()),
+              priorities.subList(next, priorities.size()), opType));
+    }
+    if (blocks.size() == 1) {
+      LOG.warn("Could not schedule the replication of " + blocks.get(0)
+              + ", it is tried again in the next iteration", failure);
+      return 0;
+    }
+    int half = blocks.size() / 2;
+    return computeReplicationWorkForBlocks(blocks.subList(0, half), priorities.subList(0, half), opType)
+            + computeReplicationWorkForBlocks(blocks.subList(half, blocks.size()),
+            priorities.subList(half, priorities.size()), opType);
+  }
+
+  /**
+   * The outcome of a committed batch.
+   */
+  private static class BatchResult {
+
+    int scheduled = 0;
+    final List<ReplicationWork> work = new ArrayList<ReplicationWork>();
+    // the block which failed with an IOException, the blocks after it were
+    // not processed
+    int failedAt = -1;
+    IOException failure = null;
+  }
+
+  /**
+   * Schedules the replication of a batch of blocks in one transaction. The
+   * blocks are mapped to their inodes with one read before the transaction
+   * and the rows of the whole batch are read with one read per table, the
+   * targets are chosen from the in-memory datanode descriptors and the new
+   * pending blocks are written by the one commit.
+   *
+   * @return the replications to hand to the datanodes or null if the
+   * transaction rolled back
+   */
+  private BatchResult computeReplicationWorkForBatch(final List<Block> blocks, final List<Integer> priorities,
+          OperationType opType) throws IOException {
+    final List<Long> blockIds = new ArrayList<Long>(blocks.size());
+    for (Block b : blocks) {
+      blockIds.add(b.getBlockId());
+    }
     TransactionalRequestHandler computeReplicationWorkHandler = new TransactionalRequestHandler(opType) {
+      private Map<Long, Long> inodeIds;
+
       @Override
-      public Object performTask() throws PersistanceException, IOException {
-        return computeReplicationWorkForBlock(b, priority);
+      public void setUp() throws StorageException {
+        inodeIds = INodeUtil.findINodeIdsByBlocks(blockIds);
       }
-      private long inodeId;
 
       @Override
       public void acquireLock() throws PersistanceException, IOException {
         TransactionLockManager lm = new TransactionLockManager();
         lm.addINode(TransactionLockManager.INodeLockType.WRITE).
-                addBlock(LockType.WRITE, b.getBlockId()).
+                addBlocks(LockType.WRITE, blockIds).
                 addReplica(LockType.READ).
                 addExcess(LockType.READ).
                 addCorrupt(LockType.READ).
                 addPendingBlock(LockType.READ).
                 addUnderReplicatedBlock(LockType.WRITE).
                 addReplicaUc(LockType.READ);
-        lm.acquireByBlock(inodeId);
+        lm.acquireByBlocks(inodeIds.values());
       }
 
       @Override
-      public void setUp() throws StorageException {
-        inodeId = INodeUtil.findINodeIdByBlock(b.getBlockId());
+      public Object performTask() throws PersistanceException, IOException {
+        // a fresh result for every attempt of the transaction
+        BatchResult result = new BatchResult();
+        for (int i = 0; i < blocks.size(); i++) {
+          try {
+            if (computeReplicationWorkForBlock(blocks.get(i), priorities.get(i), result.work)) {
+              result.scheduled++;
+            }
+          } catch (InterruptedIOException ex) {
+            throw ex;
+          } catch (IOException ex) {
+            // the work of the blocks before it is committed
+            result.failedAt = i;
+            result.failure = ex;
+            break;
+          }
+        }
+        return result;
       }
     };
-    return (Boolean) computeReplicationWorkHandler.handle();
+    return (BatchResult) computeReplicationWorkHandler.handle();
   }
 
-    private Collection<UnderReplicatedBlock> getUnderReplicatedBlocks(OperationType opType) throws IOException {
-        TransactionalRequestHandler findAllUrbHander = new TransactionalRequestHandler(opType) {
-            @Override
-            public Object performTask() throws PersistanceException, IOException {
-                return EntityManager.findList(UnderReplicatedBlock.Finder.All);
-            }
-
-            @Override
-            public void acquireLock() throws PersistanceException, IOException {
-                TransactionLockAcquirer.acquireLockList(LockType.READ_COMMITTED,
-                        UnderReplicatedBlock.Finder.All, null);
-            }
-        };
-        return (Collection<UnderReplicatedBlock>) findAllUrbHander.handle();
-    }
-
     /**
      * Get a list of block lists to be replicated The index of block lists
      * represents the
@@ -1215,105 +1402,44 @@ public class BlockManager {
      * index represents its replication priority.
      */
     private List<List<Block>> chooseUnderReplicatedBlocks(int blocksToProcess, OperationType opType) throws IOException {
-        // initialize data structure for the return value
-        final List<List<Block>> blocksToReplicate = new ArrayList<List<Block>>(
-                UnderReplicatedBlocks.LEVEL);
-        for (int i = 0; i < UnderReplicatedBlocks.LEVEL; i++) {
-            blocksToReplicate.add(new ArrayList<Block>());
-        }
         namesystem.writeLock();
         try {
             synchronized (neededReplications) {
-
-//        if (neededReplications.size() == 0) {
-//          return blocksToReplicate;
-//        }
-
-                Collection<UnderReplicatedBlock> urblocks = getUnderReplicatedBlocks(opType);
-                if (urblocks.isEmpty()) {
-                    return blocksToReplicate;
-                }
-
-                Iterator<UnderReplicatedBlock> iterator = urblocks.iterator();
-                int urbSize = urblocks.size();
-                // skip to the first unprocessed block, which is at replIndex
-                for (int i = 0; i < replIndex && iterator.hasNext(); i++) {
-                    iterator.next();
-                }
-                // Go through all blocks that need replications.
                 // # of blocks to process equals either twice the number of live
                 // data-nodes or the number of under-replicated blocks whichever is less
-                blocksToProcess = Math.min(blocksToProcess, urbSize);
-
-                for (int blkCnt = 0; blkCnt < blocksToProcess; blkCnt++, replIndex++) {
-                    if (!iterator.hasNext()) {
-                        // start from the beginning
-                        replIndex = 0;
-                        blocksToProcess = Math.min(blocksToProcess, urbSize);
-                        if (blkCnt >= blocksToProcess) {
-                            break;
-                        }
-                        iterator = urblocks.iterator();
-                        assert iterator.hasNext() : "neededReplications should not be empty.";
-                    }
-                    UnderReplicatedBlock urb = iterator.next();
-                    urbSize = findBlock(blocksToReplicate, urb, urbSize, opType);
-                } // end for
+                return neededReplications.chooseBlocks(blocksToProcess, replicationShard, opType);
             } // end synchronized neededReplication
         } finally {
             namesystem.writeUnlock();
         }
-
-        return blocksToReplicate;
     }
 
-   private int findBlock(
-          final List<List<Block>> blocksToReplicate,
-          final UnderReplicatedBlock urb,
-          final int urbSize,
-          OperationType opType)
-          throws IOException {
-    TransactionalRequestHandler findBlock = new TransactionalRequestHandler(opType) {
-      @Override
-      public Object performTask() throws PersistanceException, IOException {
-        Block block = EntityManager.find(BlockInfo.Finder.ById, urb.getBlockId());
-        int priority = urb.getLevel();
-        if (priority < 0 || priority >= blocksToReplicate.size()) {
-          LOG.warn("Unexpected replication priority: "
-                  + priority + " " + block);
-        } else {
-          if (block == null) // Block does not exist and should be removed from UnderReplicatedBlocks.
-          {
-            neededReplications.remove(new Block(urb.getBlockId()), priority);
-            return urbSize - 1;
-          } else {
-            blocksToReplicate.get(priority).add(block);
-          }
-        }
-        return urbSize;
-      }
-
-      @Override
-      public void acquireLock() throws PersistanceException, IOException {
-        TransactionLockManager lm = new TransactionLockManager();
-        lm.addBlock(LockType.WRITE, urb.getBlockId());
-        lm.addUnderReplicatedBlock(LockType.WRITE);
-        lm.acquire();
-      }
-    };
-    return (Integer) findBlock.handle();
-  }
+    /**
+     * Replicate a block and queue it at its datanodes right away
+     *
+     * @see #computeReplicationWorkForBlock(Block, int, List)
+     */
+    @VisibleForTesting
+    boolean computeReplicationWorkForBlock(Block block, int priority) throws IOException, PersistanceException {
+        List<ReplicationWork> work = new ArrayList<ReplicationWork>();
+        boolean scheduled = computeReplicationWorkForBlock(block, priority, work);
+        scheduleReplications(work);
+        return scheduled;
+    }
 
     /**
      * Replicate a block
      *
      * @param block block to be replicated
      * @param priority a hint of its priority in the neededReplication queue
+     * @param work the replication is added to it, to be queued at the
+     * datanodes once the transaction committed
      * @return if the block gets replicated or not
      * @throws IOException
      */
     @VisibleForTesting
-    boolean computeReplicationWorkForBlock(Block block, int priority) throws IOException, PersistanceException {
+    boolean computeReplicationWorkForBlock(Block block, int priority,
+            List<ReplicationWork> work) throws IOException, PersistanceException {
         int requiredReplication, numEffectiveReplicas;
         List<DatanodeDescriptor> containingNodes, liveReplicaNodes;
         DatanodeDescriptor srcNode;
@@ -1329,9 +1455,11 @@ public class BlockManager {
                 // abandoned block or block reopened for append
                 if (fileINode == null || fileINode.isUnderConstruction()) {
                     neededReplications.remove(block, priority); // remove from neededReplications
-                    replIndex--;
                     return false;
                 }
+                // the queue holds only the block id, the datanodes need the
+                // length and the generation stamp too
+                block = storedBlock;
 
                 requiredReplication = fileINode.getReplication();
 
@@ -1355,7 +1483,6 @@ public class BlockManager {
                     if ((pendingReplications.getNumReplicas(block) > 0)
                             || (blockHasEnoughRacks(block))) {
                         neededReplications.remove(block, priority); // remove from neededReplications
-                        replIndex--;
                         NameNode.stateChangeLog.info("BLOCK* "
                                 + "Removing block " + block
                                 + " from neededReplications as it has enough replicas.");
@@ -1400,7 +1527,6 @@ public class BlockManager {
                 // abandoned block or block reopened for append
                 if (fileINode == null || fileINode.isUnderConstruction()) {
                     neededReplications.remove(block, priority); // remove from neededReplications
-                    replIndex--;
                     return false;
                 }
                 requiredReplication = fileINode.getReplication();
@@ -1414,7 +1540,6 @@ public class BlockManager {
                     if ((pendingReplications.getNumReplicas(block) > 0)
                             || (blockHasEnoughRacks(block))) {
                         neededReplications.remove(block, priority); // remove from neededReplications
-                        replIndex--;
                         NameNode.stateChangeLog.info("BLOCK* "
                                 + "Removing block " + block
                                 + " from neededReplications as it has enough replicas.");
@@ -1430,12 +1555,8 @@ public class BlockManager {
                     }
                 }
 
-                // Add block to the to be replicated list
-                srcNode.addBlockToBeReplicated(block, targets);
-
-                for (DatanodeDescriptor dn : targets) {
-                    dn.incBlocksScheduled();
-                }
+                // Add block to the to be replicated list, after the commit
+                work.add(new ReplicationWork(srcNode, block, targets));
 
                 // Move the block-replication into a "pending" state.
                 // The reason we use 'pending' is so we can retry
@@ -1451,7 +1572,6 @@ public class BlockManager {
                 // -------------------------------------------------------------------------
                 if (numEffectiveReplicas + targets.length >= requiredReplication) {
                     neededReplications.remove(block, priority); // remove from neededReplications
-                    replIndex--;
                 }
                 if (NameNode.stateChangeLog.isInfoEnabled()) {
                     StringBuilder targetList = new StringBuilder("datanode(s)");
@@ -1601,67 +1721,98 @@ public class BlockManager {
 
     /**
      * If there were any replication requests that timed out, reap them and put
-     * them back into the neededReplication queue
+     * them back into the neededReplication queue. The timed out requests are
+     * read in pages of replicationWorkBatchSize through the time stamp index,
+     * the oldest first, and every page is requeued in one transaction.
      *
      * @throws IOException
      */
     private void processPendingReplications(OperationType opType) throws IOException {
-        List<PendingBlockInfo> timedoutPendings = pendingReplications.getTimedOutBlocks(opType);
-        if (timedoutPendings != null) {
-            namesystem.writeLock();
-            try {
-                for (int i = 0; i < timedoutPendings.size(); i++) {
-                    PendingBlockInfo p = timedoutPendings.get(i);
-                    processTimedOutPendingBlock(p, opType);
+        final NamenodeShard shard = replicationShard;
+        long afterTime = Long.MIN_VALUE;
+        long afterBlockId = Long.MIN_VALUE;
+        List<PendingBlockInfo> timedoutPendings;
+        while ((timedoutPendings = pendingReplications.getTimedOutBlocks(afterTime, afterBlockId,
+                replicationWorkBatchSize, opType)) != null) {
+            List<Long> owned = new ArrayList<Long>(timedoutPendings.size());
+            for (PendingBlockInfo p : timedoutPendings) {
+                if (shard.ownsId(p.getBlockId())) {
+                    owned.add(p.getBlockId());
                 }
-            } finally {
-                namesystem.writeUnlock();
             }
-            /*
-             * If we know the target datanodes where the replication timedout, we
-             * could invoke decBlocksScheduled() on it. Its ok for now.
-             */
-
+            if (!owned.isEmpty()) {
+                namesystem.writeLock();
+                try {
+                    processTimedOutPendingBlocks(owned, opType);
+                } finally {
+                    namesystem.writeUnlock();
+                }
+            }
+            if (timedoutPendings.size() < replicationWorkBatchSize) {
+                break;
+            }
+            // the next page starts after the last row of this one, by time
+            // stamp and block id, so the rows which share its time stamp are
+            // not skipped and the blocks of the other shards are not read again
+            PendingBlockInfo last = timedoutPendings.get(timedoutPendings.size() - 1);
+            afterTime = last.getTimeStamp();
+            afterBlockId = last.getBlockId();
         }
+        /*
+         * If we know the target datanodes where the replication timedout, we
+         * could invoke decBlocksScheduled() on it. Its ok for now.
+         */
     }
 
-   private void processTimedOutPendingBlock(final PendingBlockInfo p, OperationType opType) throws IOException {
+  /**
+   * Requeues a batch of timed out replication requests and removes them from
+   * the pending blocks, so the next passes do not read them again.
+   */
+  private void processTimedOutPendingBlocks(final List<Long> blockIds, OperationType opType) throws IOException {
     new TransactionalRequestHandler(opType) {
+      private Map<Long, Long> inodeIds;
+
       @Override
-      public Object performTask() throws PersistanceException, IOException {
-        // [lock]: Validation for pending block
-        PendingBlockInfo pendingBlock = EntityManager.find(PendingBlockInfo.Finder.ByPKey, p.getBlockId());
-        if (pendingBlock != null && PendingReplicationBlocks.isTimedOut(pendingBlock)) {
-          Block timedOutItem = EntityManager.find(BlockInfo.Finder.ById, p.getBlockId());
-          NumberReplicas num = countNodes(timedOutItem);
-          if (isNeededReplication(timedOutItem, getReplication(timedOutItem),
-                  num.liveReplicas())) {
-            neededReplications.add(timedOutItem,
-                    num.liveReplicas(),
-                    num.decommissionedReplicas(),
-                    getReplication(timedOutItem));
-          }
-        }
-        return null;
+      public void setUp() throws StorageException {
+        inodeIds = INodeUtil.findINodeIdsByBlocks(blockIds);
       }
 
-      long inodeId;
       @Override
       public void acquireLock() throws PersistanceException, IOException {
         TransactionLockManager lm = new TransactionLockManager();
         lm.addINode(TransactionLockManager.INodeLockType.WRITE).
-                addBlock(LockType.WRITE, p.getBlockId()).
+                addBlocks(LockType.WRITE, blockIds).
                 addReplica(LockType.READ).
                 addExcess(LockType.READ).
                 addCorrupt(LockType.READ).
-                addPendingBlock(LockType.READ).
+                addPendingBlock(LockType.WRITE).
                 addUnderReplicatedBlock(LockType.WRITE);
-        lm.acquireByBlock(inodeId);
+        lm.acquireByBlocks(inodeIds.values());
       }
 
       @Override
-      public void setUp() throws StorageException {
-        inodeId = INodeUtil.findINodeIdByBlock(p.getBlockId());
+      public Object performTask() throws PersistanceException, IOException {
+        for (long blockId : blockIds) {
+          // [lock]: Validation for pending block
+          PendingBlockInfo pendingBlock = EntityManager.find(PendingBlockInfo.Finder.ByPKey, blockId);
+          if (pendingBlock == null || !PendingReplicationBlocks.isTimedOut(pendingBlock)) {
+            continue;
+          }
+          EntityManager.remove(pendingBlock);
+          Block timedOutItem = EntityManager.find(BlockInfo.Finder.ById, blockId);
+          if (timedOutItem == null) {
+            continue;
+          }
+          NumberReplicas num = countNodes(timedOutItem);
+          if (isNeededReplication(timedOutItem, getReplication(timedOutItem),
+                  num.liveReplicas())) {
+            neededReplications.add(timedOutItem,
+                    num.liveReplicas(),
+                    num.decommissionedReplicas(),
+                    getReplication(timedOutItem));
+          }
+        }
+        return null;
       }
     }.handle();
   }
@@ -1727,9 +1878,36 @@ public class BlockManager {
     /**
      * The given datanode is reporting all its blocks. Update the
      * (machine-->blocklist) and (block-->machinelist) maps.
+     *
+     * The report is processed by the worker of the datanode, the reports of a
+     * datanode are applied in order and the reports of different datanodes in
+     * parallel.
+     *
+     * @throws IOException if the report failed or the report queue is full
      */
     public void processReport(final DatanodeID nodeID, final String poolId,
             final BlockListAsLongs newReport) throws IOException {
+        blockReportProcessor.process(nodeID, poolId, newReport);
+    }
+
+    /**
+     * @return number of blocks in the block reports which are waiting or being
+     * processed on this namenode
+     */
+    public long getBlockReportBacklog() {
+        return blockReportProcessor.getBacklog();
+    }
+
+    /**
+     * @return recent block report processing rate of this namenode in blocks
+     * per second, 0 if it has not processed a report yet
+     */
+    public double getBlockReportRate() {
+        return blockReportProcessor.getRate();
+    }
+
+    void applyReport(final DatanodeID nodeID, final String poolId,
+            final BlockListAsLongs newReport) throws IOException {
         namesystem.writeLock();
         try {
             long startTime = 0;
@@ -1757,8 +1935,14 @@ public class BlockManager {
             } else {
                 processReport(node, newReport, existingBlocks);
             }
+            endTime = Util.now();
             // Log the block report processing stats from Namenode perspective
-            NameNode.getNameNodeMetrics().addBlockReport((int) (endTime - startTime));
+            NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+            if (metrics != null) {
+                metrics.addBlockReport((int) (endTime - startTime));
+                metrics.addBlockReportThroughput(newReport.getNumberOfBlocks() * 1000L
+                        / Math.max(1, endTime - startTime));
+            }
             NameNode.stateChangeLog.info(
                     "BLOCK* processReport: from "
                     + nodeID.getName() + ", blocks: " + newReport.getNumberOfBlocks()
@@ -1768,93 +1952,123 @@ public class BlockManager {
         }
     }
 
-  private void processReport(final DatanodeDescriptor node,
-          BlockListAsLongs report, final List<BlockInfo> existingBlocks) throws IOException {
-    if (report == null) {
-      report = new BlockListAsLongs();
-    }
-    // scan the report and process newly reported blocks
-    BlockReportIterator itBR = report.getBlockReportIterator();
+  /**
+   * The given datanode is reporting the blocks which changed since its
+   * previous report. The changed blocks are processed as in a full report
+   * and the removed blocks are taken off the datanode, the blocks of the
+   * datanode are not read.
+   *
+   * @return false if the namenode needs a full report instead
+   * @throws IOException if the report failed
+   */
+  public boolean processIncrementalReport(final DatanodeID nodeID, final String poolId,
+          final BlockListAsLongs changed, final long[] removed) throws IOException {
+    namesystem.writeLock();
+    try {
+      long startTime = Util.now();
+      final DatanodeDescriptor node = datanodeManager.getDatanode(nodeID);
+      if (node == null || !node.isAlive) {
+        throw new IOException("ProcessIncrementalReport from dead or unregistered node: "
+                + nodeID.getName());
+      }
+      // the safe mode counts the blocks of the full reports
+      if (isInStartUpSafeMode(OperationType.PROCESS_INCREMENTAL_REPORT)) {
+        return false;
+      }
 
-    TransactionalRequestHandler processReportHandler = new TransactionalRequestHandler(OperationType.PROCESS_REPORT) {
-      @Override
-      public Object performTask() throws PersistanceException, IOException {
-        Block iblk = (Block) getParams()[0];
-        ReplicaState iState = (ReplicaState) getParams()[1];
-        BlockInfo storedBlock = processReportedBlock(node, iblk, iState);
+      List<Block> blocks = new ArrayList<Block>(changed.getNumberOfBlocks());
+      List<ReplicaState> states = new ArrayList<ReplicaState>(changed.getNumberOfBlocks());
+      readReport(changed, blocks, states);
+      List<ReportBatchHandler> batches = new ArrayList<ReportBatchHandler>();
+      for (int from = 0; from < blocks.size(); from += blockReportBatchSize) {
+        int to = Math.min(from + blockReportBatchSize, blocks.size());
+        batches.add(new ReportBatchHandler(OperationType.PROCESS_INCREMENTAL_REPORT, blocks.subList(from, to), states.subList(from, to)) {
+          @Override
+          void addLocks(TransactionLockManager lm) {
+            lm.addReplicaUc(LockType.WRITE).
+                    addInvalidatedBlock(LockType.READ).
+                    addPendingBlock(LockType.READ);
+          }
 
-        // move block to the head of the list
-        if (storedBlock != null && storedBlock.hasReplicaIn(node.getStorageID())) {
-          existingBlocks.remove(storedBlock);
-        }
-        return null;
+          @Override
+          void processBlock(Block iblk, ReplicaState iState) throws PersistanceException, IOException {
+            processReportedBlock(node, iblk, iState);
+          }
+        });
       }
 
-      long inodeId;
-      @Override
-      public void acquireLock() throws PersistanceException, IOException {
-        Block iblk = (Block) getParams()[0];
-        TransactionLockManager lm = new TransactionLockManager();
-        lm.addINode(TransactionLockManager.INodeLockType.WRITE).
-                addBlock(LockType.WRITE, iblk.getBlockId()).
-                addReplica(LockType.WRITE).
-                addCorrupt(LockType.WRITE).
-                addExcess(LockType.WRITE).
-                addReplicaUc(LockType.WRITE).
-                addUnderReplicatedBlock(LockType.WRITE).
-                addInvalidatedBlock(LockType.READ).
-                addPendingBlock(LockType.READ);
-        lm.acquireByBlock(inodeId);
+      List<Block> toRemove = new ArrayList<Block>(removed.length);
+      for (long blockId : removed) {
+        toRemove.add(new Block(blockId));
       }
-
-      @Override
-      public void setUp() throws StorageException {
-        Block iblk = (Block) getParams()[0];
-        inodeId = INodeUtil.findINodeIdByBlock(iblk.getBlockId());
+      for (int from = 0; from < toRemove.size(); from += blockReportBatchSize) {
+        int to = Math.min(from + blockReportBatchSize, toRemove.size());
+        batches.add(new ReportBatchHandler(OperationType.PROCESS_INCREMENTAL_REPORT, toRemove.subList(from, to), null) {
+          @Override
+          void processBlock(Block b, ReplicaState state) throws PersistanceException, IOException {
+            removeStoredBlock(b, node);
+          }
+        });
       }
-    };
+      processBatches(batches);
 
-
-    while (itBR.hasNext()) {
-      Block iblk = itBR.next();
-      ReplicaState iState = itBR.getCurrentReplicaState();
-      processReportHandler.setParams(iblk, iState).handle();
+      NameNode.stateChangeLog.info("BLOCK* processIncrementalReport: from "
+              + nodeID.getName() + ", changed blocks: " + blocks.size()
+              + ", removed blocks: " + removed.length
+              + ", processing time: " + (Util.now() - startTime) + " msecs");
+      return true;
+    } finally {
+      namesystem.writeUnlock();
     }
+  }
 
-    TransactionalRequestHandler afterReportHandler = new TransactionalRequestHandler(OperationType.AFTER_PROCESS_REPORT) {
-      @Override
-      public Object performTask() throws PersistanceException, IOException {
-        Block b = (Block) getParams()[0];
-        removeStoredBlock(b, node);
-        return null;
-      }
+  private void processReport(final DatanodeDescriptor node,
+          BlockListAsLongs report, final List<BlockInfo> existingBlocks) throws IOException {
+    if (report == null) {
+      report = new BlockListAsLongs();
+    }
+    // The existing blocks which are reported are taken out, the rest are removed in the end.
+    final Set<BlockInfo> unreported = Collections.synchronizedSet(new HashSet<BlockInfo>(existingBlocks));
+    List<Block> blocks = new ArrayList<Block>(report.getNumberOfBlocks());
+    List<ReplicaState> states = new ArrayList<ReplicaState>(report.getNumberOfBlocks());
+    readReport(report, blocks, states);
 
-      long inodeId;
-      @Override
-      public void acquireLock() throws PersistanceException, IOException {
-        Block b = (Block) getParams()[0];
-        TransactionLockManager lm = new TransactionLockManager();
-        lm.addINode(TransactionLockManager.INodeLockType.WRITE).
-                addBlock(LockType.WRITE, b.getBlockId()).
-                addReplica(LockType.WRITE).
-                addExcess(LockType.WRITE).
-                addCorrupt(LockType.WRITE).
-                addUnderReplicatedBlock(LockType.WRITE);
-        lm.acquireByBlock(inodeId);
-      }
+    // scan the report and process newly reported blocks
+    List<ReportBatchHandler> batches = new ArrayList<ReportBatchHandler>();
+    for (int from = 0; from < blocks.size(); from += blockReportBatchSize) {
+      int to = Math.min(from + blockReportBatchSize, blocks.size());
+      batches.add(new ReportBatchHandler(OperationType.PROCESS_REPORT, blocks.subList(from, to), states.subList(from, to)) {
+        @Override
+        void addLocks(TransactionLockManager lm) {
+          lm.addReplicaUc(LockType.WRITE).
+                  addInvalidatedBlock(LockType.READ).
+                  addPendingBlock(LockType.READ);
+        }
 
-      @Override
-      public void setUp() throws StorageException {
-        Block b = (Block) getParams()[0];
-        inodeId = INodeUtil.findINodeIdByBlock(b.getBlockId());
-      }
-    };
+        @Override
+        void processBlock(Block iblk, ReplicaState iState) throws PersistanceException, IOException {
+          BlockInfo storedBlock = processReportedBlock(node, iblk, iState);
+          if (storedBlock != null && storedBlock.hasReplicaIn(node.getStorageID())) {
+            unreported.remove(storedBlock);
+          }
+        }
+      });
+    }
+    processBatches(batches);
 
     // collect blocks that have not been reported
-    for (Block b : existingBlocks) {
-      afterReportHandler.setParams(b);
-      afterReportHandler.handle();
+    List<Block> toRemove = new ArrayList<Block>(unreported);
+    batches.clear();
+    for (int from = 0; from < toRemove.size(); from += blockReportBatchSize) {
+      int to = Math.min(from + blockReportBatchSize, toRemove.size());
+      batches.add(new ReportBatchHandler(OperationType.AFTER_PROCESS_REPORT, toRemove.subList(from, to), null) {
+        @Override
+        void processBlock(Block b, ReplicaState state) throws PersistanceException, IOException {
+          removeStoredBlock(b, node);
+        }
+      });
     }
+    processBatches(batches);
   }
 
   /**
@@ -1876,72 +2090,162 @@ public class BlockManager {
     }
     assert (namesystem.hasWriteLock());
     assert (node.numBlocks() == 0);
-    BlockReportIterator itBR = report.getBlockReportIterator();
-    TransactionalRequestHandler processFirstBlockReportHandler = new TransactionalRequestHandler(OperationType.PROCESS_FIRST_BLOCK_REPORT) {
-      @Override
-      public Object performTask() throws PersistanceException, IOException {
-
-        Block iblk = (Block) getParams()[0];
-        ReplicaState reportedState = (ReplicaState) getParams()[1];
-
-        BlockInfo storedBlock = getStoredBlock(iblk);
-        // If block does not belong to any file, we are done.
-        if (storedBlock == null) {
-          return null;
-        }
-        // If block is corrupt, mark it and continue to next block.
-        BlockUCState ucState = storedBlock.getBlockUCState();
-        if (isReplicaCorrupt(iblk, reportedState, storedBlock, ucState, node)) {
-          markBlockAsCorrupt(storedBlock, node);
-          return null;
+    List<Block> blocks = new ArrayList<Block>(report.getNumberOfBlocks());
+    List<ReplicaState> states = new ArrayList<ReplicaState>(report.getNumberOfBlocks());
+    readReport(report, blocks, states);
+
+    List<ReportBatchHandler> batches = new ArrayList<ReportBatchHandler>();
+    for (int from = 0; from < blocks.size(); from += blockReportBatchSize) {
+      int to = Math.min(from + blockReportBatchSize, blocks.size());
+      batches.add(new ReportBatchHandler(OperationType.PROCESS_FIRST_BLOCK_REPORT, blocks.subList(from, to), states.subList(from, to)) {
+        @Override
+        void addLocks(TransactionLockManager lm) {
+          lm.addReplicaUc(LockType.WRITE).
+                  addInvalidatedBlock(LockType.READ).
+                  addPendingBlock(LockType.READ);
         }
 
-        // If block is under construction, add this replica to its list
-        if (isBlockUnderConstruction(storedBlock, ucState, reportedState)) {
-          ReplicaUnderConstruction expReplica =
-                  ((BlockInfoUnderConstruction) storedBlock).addExpectedReplica(node.getStorageID(), reportedState);
-          if (expReplica != null) {
-            EntityManager.add(expReplica);
+        @Override
+        void processBlock(Block iblk, ReplicaState reportedState) throws PersistanceException, IOException {
+          BlockInfo storedBlock = getStoredBlock(iblk);
+          // If block does not belong to any file, we are done.
+          if (storedBlock == null) {
+            return;
+          }
+          // If block is corrupt, mark it and continue to next block.
+          BlockUCState ucState = storedBlock.getBlockUCState();
+          if (isReplicaCorrupt(iblk, reportedState, storedBlock, ucState, node)) {
+            markBlockAsCorrupt(storedBlock, node);
+            return;
+          }
+
+          // If block is under construction, add this replica to its list
+          if (isBlockUnderConstruction(storedBlock, ucState, reportedState)) {
+            ReplicaUnderConstruction expReplica =
+                    ((BlockInfoUnderConstruction) storedBlock).addExpectedReplica(node.getStorageID(), reportedState);
+            if (expReplica != null) {
+              EntityManager.add(expReplica);
+            }
+            //and fall through to next clause
+          }
+          //add replica if appropriate
+          if (reportedState == ReplicaState.FINALIZED) {
+            addStoredBlockImmediate(storedBlock, node);
           }
-          //and fall through to next clause
-        }
-        //add replica if appropriate
-        if (reportedState == ReplicaState.FINALIZED) {
-          addStoredBlockImmediate(storedBlock, node);
         }
+      });
+    }
+    processBatches(batches);
+  }
 
-        return null;
+  /**
+   * Copies the blocks of a report, the iterator reuses the same block
+   * instance.
+   */
+  private void readReport(BlockListAsLongs report, List<Block> blocks, List<ReplicaState> states) {
+    BlockReportIterator itBR = report.getBlockReportIterator();
+    while (itBR.hasNext()) {
+      blocks.add(new Block(itBR.next()));
+      states.add(itBR.getCurrentReplicaState());
+    }
+  }
+
+  /**
+   * A batch of at most blockReportBatchSize reported blocks which is processed
+   * in one transaction. The blocks are mapped to their inodes with one read
+   * before the transaction, and the locks of the whole batch are taken with one
+   * read per table.
+   */
+  private abstract class ReportBatchHandler extends TransactionalRequestHandler {
+
+    private final List<Block> blocks;
+    private final List<ReplicaState> states;
+    private final List<Long> blockIds;
+    private Map<Long, Long> inodeIds;
+
+    ReportBatchHandler(OperationType opType, List<Block> blocks, List<ReplicaState> states) {
+      super(opType);
+      this.blocks = blocks;
+      this.states = states;
+      this.blockIds = new ArrayList<Long>(blocks.size());
+      for (Block b : blocks) {
+        blockIds.add(b.getBlockId());
       }
+    }
 
-      long inodeId;
-      @Override
-      public void acquireLock() throws PersistanceException, IOException {
-        Block b = (Block) getParams()[0];
-        TransactionLockManager lm = new TransactionLockManager();
-        lm.addINode(TransactionLockManager.INodeLockType.WRITE).
-                addBlock(LockType.WRITE, b.getBlockId()).
-                addReplica(LockType.WRITE).
-                addCorrupt(LockType.WRITE).
-                addExcess(LockType.WRITE).
-                addReplicaUc(LockType.WRITE).
-                addUnderReplicatedBlock(LockType.WRITE).
-                addInvalidatedBlock(LockType.READ).
-                addPendingBlock(LockType.READ);
-        lm.acquireByBlock(inodeId);
+    @Override
+    public void setUp() throws StorageException {
+      inodeIds = INodeUtil.findINodeIdsByBlocks(blockIds);
+    }
+
+    @Override
+    public void acquireLock() throws PersistanceException, IOException {
+      TransactionLockManager lm = new TransactionLockManager();
+      lm.addINode(TransactionLockManager.INodeLockType.WRITE).
+              addBlocks(LockType.WRITE, blockIds).
+              addReplica(LockType.WRITE).
+              addCorrupt(LockType.WRITE).
+              addExcess(LockType.WRITE).
+              addUnderReplicatedBlock(LockType.WRITE);
+      addLocks(lm);
+      lm.acquireByBlocks(inodeIds.values());
+    }
+
+    @Override
+    public Object performTask() throws PersistanceException, IOException {
+      for (int i = 0; i < blocks.size(); i++) {
+        processBlock(blocks.get(i), states == null ? null : states.get(i));
       }
+      return null;
+    }
 
-      @Override
-      public void setUp() throws StorageException {
-        Block b = (Block) getParams()[0];
-        inodeId = INodeUtil.findINodeIdByBlock(b.getBlockId());
+    /**
+     * Adds the locks which only some of the report operations need.
+     */
+    void addLocks(TransactionLockManager lm) {
+    }
+
+    abstract void processBlock(Block block, ReplicaState state) throws PersistanceException, IOException;
+  }
+
+  /**
+   * Runs the batches of a block report and returns when all of them are
+   * done. The batches run concurrently if blockReportParallelism is more than
+   * one.
+   */
+  private void processBatches(List<ReportBatchHandler> batches) throws IOException {
+    if (blockReportExecutor == null || batches.size() < 2) {
+      for (ReportBatchHandler batch : batches) {
+        batch.handle();
       }
-    };
+      return;
+    }
 
-    while (itBR.hasNext()) {
-      Block iblk = itBR.next();
-      ReplicaState reportedState = itBR.getCurrentReplicaState();
-      processFirstBlockReportHandler.setParams(iblk, reportedState);
-      processFirstBlockReportHandler.handle();
+    List<Future<Object>> results = new ArrayList<Future<Object>>(batches.size());
+    for (final ReportBatchHandler batch : batches) {
+      results.add(blockReportExecutor.submit(new Callable<Object>() {
+        @Override
+        public Object call() throws IOException {
+          return batch.handle();
+        }
+      }));
+    }
+    IOException failure = null;
+    for (Future<Object> result : results) {
+      try {
+        result.get();
+      } catch (ExecutionException ex) {
+        if (failure == null) {
+          failure = ex.getCause() instanceof IOException
+                  ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while processing a block report");
+      }
+    }
+    if (failure != null) {
+      throw failure;
     }
   }
 
@@ -3367,7 +3671,9 @@ public class BlockManager {
     }
 
     /**
-     * Periodically calls computeReplicationWork().
+     * Periodically calls computeReplicationWork(). With sharded replication
+     * every active namenode runs it on its own {@link NamenodeShard},
+     * otherwise only the leader does.
      */
     private class ReplicationMonitor implements Runnable {
 
@@ -3378,7 +3684,7 @@ public class BlockManager {
         public void run() {
             while (namesystem.isRunning()) {
                 try {
-                    if (!namesystem.isLeader()) {
+                    if (!shardedReplication && !namesystem.isLeader()) {
                         Thread.sleep(replicationRecheckInterval);
                         continue;
                     }
@@ -3388,6 +3694,10 @@ public class BlockManager {
                 }
 
                 try {
+                    if (shardedReplication && !updateReplicationShard()) {
+                        Thread.sleep(replicationRecheckInterval);
+                        continue;
+                    }
                     computeDatanodeWork(OperationType.REPLICATION_MONITOR);
                     processPendingReplications(OperationType.REPLICATION_MONITOR);
                     // TODO - JIM do we want the leader to wait before
@@ -3406,6 +3716,28 @@ public class BlockManager {
         }
     }
 
+    /**
+     * Derives the replication shard of this namenode from the active namenodes
+     * in the leader table. When a namenode joins or leaves, the shards of all
+     * the namenodes change in the next iteration of their monitors.
+     *
+     * @return false if this namenode is not in the list of active namenodes
+     * yet and should not do any replication work
+     */
+    private boolean updateReplicationShard() throws IOException {
+        NamenodeShard shard = NamenodeShard.forNamenode(namesystem.getNamenodeId(),
+                namesystem.getActiveNamenodeIds());
+        if (shard == null) {
+            return false;
+        }
+        if (!shard.equals(replicationShard)) {
+            LOG.info("Replication work of namenode " + namesystem.getNamenodeId()
+                    + " is now " + shard);
+            replicationShard = shard;
+        }
+        return true;
+    }
+
     /**
      * Compute block replication and block invalidation work that can be
      * scheduled on data-nodes. The datanode will be informed of this work at
@@ -0,0 +1,309 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.util.Daemon;
+
+import static org.apache.hadoop.hdfs.server.common.Util.now;
+
+/**
+ * Runs block reports on a bounded pool of workers. All the reports of a
+ * datanode go to the same worker and are processed in the order they arrive,
+ * reports of different datanodes are processed in parallel.
+ *
+ * Every worker has a bounded queue. The caller of process waits until its
+ * report is processed; if the queue of the worker stays full for longer than
+ * the queue timeout the report is rejected and the datanode sends it again
+ * later.
+ *
+ * The processor keeps the number of blocks in the reports it has not finished
+ * and a moving average of its processing rate, which the namenode publishes
+ * for the leader to pick the targets of the next reports.
+ */
+class BlockReportProcessor {
+
+  static final Log LOG = LogFactory.getLog(BlockReportProcessor.class);
+  /** weight of the last report in the moving average of the rate */
+  static final double ALPHA = 0.2;
+
+  /**
+   * Applies one block report.
+   */
+  interface ReportHandler {
+
+    void processReport(DatanodeID nodeID, String poolId, BlockListAsLongs report) throws IOException;
+  }
+
+  private static class Report {
+
+    final DatanodeID nodeID;
+    final String poolId;
+    final BlockListAsLongs blocks;
+    final long queuedAt = now();
+    private boolean done = false;
+    private IOException failure = null;
+
+    Report(DatanodeID nodeID, String poolId, BlockListAsLongs blocks) {
+      this.nodeID = nodeID;
+      this.poolId = poolId;
+      this.blocks = blocks;
+    }
+
+    synchronized void finish(IOException failure) {
+      if (done) {
+        return;
+      }
+      this.failure = failure;
+      this.done = true;
+      notifyAll();
+    }
+
+    synchronized void await() throws IOException {
+      while (!done) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for the block report of "
+                  + nodeID.getName());
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  private class Worker implements Runnable {
+
+    private final BlockingQueue<Report> queue;
+
+    Worker(BlockingQueue<Report> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+      while (running) {
+        Report report;
+        try {
+          report = queue.take();
+        } catch (InterruptedException e) {
+          break;
+        }
+        NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+        if (metrics != null) {
+          metrics.decrBlockReportQueueDepth();
+          metrics.addBlockReportQueueTime(now() - report.queuedAt);
+        }
+        IOException failure = null;
+        try {
+          apply(report.nodeID, report.poolId, report.blocks);
+        } catch (IOException e) {
+          failure = e;
+        } catch (RuntimeException e) {
+          LOG.error("Block report of " + report.nodeID.getName() + " failed", e);
+          failure = new IOException(e);
+        }
+        report.finish(failure);
+      }
+      failPending(queue);
+    }
+  }
+  private final ReportHandler handler;
+  private final BlockingQueue<Report>[] queues;
+  private final Daemon[] workers;
+  private final long queueTimeout;
+  private volatile boolean running = false;
+  private volatile boolean stopped = false;
+  private final AtomicLong backlog = new AtomicLong();
+  private double rate = 0;
+
+  BlockReportProcessor(ReportHandler handler, Configuration conf) {
+    this.handler = handler;
+    int numWorkers = Math.max(0, conf.getInt(
+            DFSConfigKeys.DFS_BLOCK_REPORT_WORKERS_KEY,
+            DFSConfigKeys.DFS_BLOCK_REPORT_WORKERS_DEFAULT));
+    int queueSize = Math.max(1, conf.getInt(
+            DFSConfigKeys.DFS_BLOCK_REPORT_QUEUE_SIZE_KEY,
+            DFSConfigKeys.DFS_BLOCK_REPORT_QUEUE_SIZE_DEFAULT));
+    this.queueTimeout = conf.getLong(
+            DFSConfigKeys.DFS_BLOCK_REPORT_QUEUE_TIMEOUT_KEY,
+            DFSConfigKeys.DFS_BLOCK_REPORT_QUEUE_TIMEOUT_DEFAULT);
+    this.queues = new BlockingQueue[numWorkers];
+    this.workers = new Daemon[numWorkers];
+    for (int i = 0; i < numWorkers; i++) {
+      queues[i] = new ArrayBlockingQueue<Report>(queueSize);
+      workers[i] = new Daemon(new Worker(queues[i]));
+      workers[i].setName("BlockReportWorker-" + i);
+    }
+    LOG.info(DFSConfigKeys.DFS_BLOCK_REPORT_WORKERS_KEY + " = " + numWorkers
+            + ", " + DFSConfigKeys.DFS_BLOCK_REPORT_QUEUE_SIZE_KEY + " = " + queueSize);
+  }
+
+  void start() {
+    running = true;
+    for (Daemon worker : workers) {
+      worker.start();
+    }
+  }
+
+  /**
+   * Stops the workers. The reports waiting in the queues fail, and so do the
+   * reports offered after the stop, their callers do not wait for a worker
+   * which has exited.
+   */
+  void stop() {
+    stopped = true;
+    running = false;
+    for (Daemon worker : workers) {
+      worker.interrupt();
+    }
+    for (BlockingQueue<Report> queue : queues) {
+      failPending(queue);
+    }
+  }
+
+  private void failPending(BlockingQueue<Report> queue) {
+    for (Report report = queue.poll(); report != null; report = queue.poll()) {
+      backlog.addAndGet(-report.blocks.getNumberOfBlocks());
+      NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      if (metrics != null) {
+        metrics.decrBlockReportQueueDepth();
+      }
+      report.finish(new IOException("Block report processor is stopped"));
+    }
+  }
+
+  /**
+   * Processes the report on the worker of the datanode and waits until it is
+   * done. Without workers, or before the processor is started, the report is
+   * processed on the calling thread. After the stop the report is rejected.
+   *
+   * @throws IOException if the report failed or was rejected
+   */
+  void process(DatanodeID nodeID, String poolId, BlockListAsLongs blocks) throws IOException {
+    if (stopped) {
+      throw new IOException("Block report of " + nodeID.getName()
+              + " is rejected, the block report processor is stopped");
+    }
+    if (!running || workers.length == 0) {
+      backlog.addAndGet(blocks.getNumberOfBlocks());
+      apply(nodeID, poolId, blocks);
+      return;
+    }
+
+    Report report = new Report(nodeID, poolId, blocks);
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      // counted before the offer, the worker may take the report right away
+      metrics.incrBlockReportQueueDepth();
+    }
+    boolean queued = false;
+    backlog.addAndGet(blocks.getNumberOfBlocks());
+    try {
+      queued = queues[workerOf(nodeID)].offer(report, queueTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while queueing the block report of "
+              + nodeID.getName());
+    } finally {
+      if (!queued) {
+        backlog.addAndGet(-blocks.getNumberOfBlocks());
+        if (metrics != null) {
+          metrics.decrBlockReportQueueDepth();
+        }
+      }
+    }
+    if (!queued) {
+      if (metrics != null) {
+        metrics.incrBlockReportsRejected();
+      }
+      throw new IOException("Block report of " + nodeID.getName()
+              + " is rejected, too many block reports are waiting");
+    }
+    if (stopped) {
+      // the stop may have drained the queues before the offer, the report
+      // fails unless a worker or the stop has taken it already
+      failPending(queues[workerOf(nodeID)]);
+    }
+    report.await();
+  }
+
+  /**
+   * Applies a report which is counted in the backlog and updates the rate.
+   */
+  private void apply(DatanodeID nodeID, String poolId, BlockListAsLongs blocks) throws IOException {
+    long start = now();
+    try {
+      handler.processReport(nodeID, poolId, blocks);
+      updateRate(blocks.getNumberOfBlocks(), now() - start);
+    } finally {
+      backlog.addAndGet(-blocks.getNumberOfBlocks());
+    }
+  }
+
+  private synchronized void updateRate(int numBlocks, long millis) {
+    double reportRate = numBlocks * 1000.0 / Math.max(1, millis);
+    rate = rate == 0 ? reportRate : (1 - ALPHA) * rate + ALPHA * reportRate;
+  }
+
+  /**
+   * @return number of blocks in the reports which are waiting or being
+   * processed
+   */
+  long getBacklog() {
+    return backlog.get();
+  }
+
+  /**
+   * @return moving average of the processing rate in blocks per second, 0
+   * before the first report
+   */
+  synchronized double getRate() {
+    return rate;
+  }
+
+  /**
+   * @return number of reports waiting for a worker
+   */
+  int getQueueDepth() {
+    int depth = 0;
+    for (BlockingQueue<Report> queue : queues) {
+      depth += queue.size();
+    }
+    return depth;
+  }
+
+  private int workerOf(DatanodeID nodeID) {
+    return (nodeID.getStorageID().hashCode() & Integer.MAX_VALUE) % workers.length;
+  }
+}
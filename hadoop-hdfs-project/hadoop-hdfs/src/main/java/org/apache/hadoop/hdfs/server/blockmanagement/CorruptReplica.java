@@ -18,7 +18,7 @@ public class CorruptReplica extends Replica {
   
   public static enum Finder implements org.apache.hadoop.hdfs.server.namenode.FinderType<CorruptReplica> {
 
-    All, ByBlockId, ByPk;
+    All, ByBlockId, ByBlockIds, ByPk;
 
     @Override
     public Class getType() {
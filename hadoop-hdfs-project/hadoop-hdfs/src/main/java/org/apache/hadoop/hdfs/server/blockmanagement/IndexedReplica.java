@@ -9,7 +9,7 @@ public class IndexedReplica extends Replica {
 
   public static enum Finder implements org.apache.hadoop.hdfs.server.namenode.FinderType<IndexedReplica> {
 
-    ByBlockId;
+    ByBlockId, ByBlockIds;
 
     @Override
     public Class getType() {
@@ -14,7 +14,7 @@ public class PendingBlockInfo {
 
   public static enum Finder implements org.apache.hadoop.hdfs.server.namenode.FinderType<PendingBlockInfo> {
 
-    ByPKey, All, ByTimeLimit;
+    ByPKey, ByBlockIds, All, ByTimeLimit;
 
     @Override
     public Class getType() {
@@ -134,12 +134,26 @@ class PendingReplicationBlocks {
    * Returns null if no blocks have timed out.
    */
   List<PendingBlockInfo> getTimedOutBlocks(TransactionalRequestHandler.OperationType opType) throws IOException {
+    return getTimedOutBlocks(Long.MIN_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE, opType);
+  }
+
+  /**
+   * Returns one page of the blocks that have timed out their replication
+   * requests, sorted by time stamp and block id, read through the time stamp
+   * index. Returns null if no more blocks have timed out.
+   *
+   * @param afterTime the page starts after the block of the previous page
+   * with this time stamp and afterBlockId, many blocks can share a time stamp
+   * @param limit the maximum number of blocks to return
+   */
+  List<PendingBlockInfo> getTimedOutBlocks(final long afterTime, final long afterBlockId, final int limit,
+          TransactionalRequestHandler.OperationType opType) throws IOException {
     return (List<PendingBlockInfo>) new LightWeightRequestHandler(opType) {
       @Override
       public Object performTask() throws PersistanceException, IOException {
         long timeLimit = getTimeLimit();
         PendingBlockDataAccess da = (PendingBlockDataAccess) StorageFactory.getDataAccess(PendingBlockDataAccess.class);
-        List<PendingBlockInfo> timedoutPendings = (List<PendingBlockInfo>) da.findByTimeLimit(timeLimit);
+        List<PendingBlockInfo> timedoutPendings = da.findByTimeRange(afterTime, afterBlockId, timeLimit, limit);
         if (timedoutPendings == null || timedoutPendings.size() <= 0) {
           return null;
         }
@@ -16,7 +16,7 @@ public class ReplicaUnderConstruction extends IndexedReplica {
 
   public static enum Finder implements org.apache.hadoop.hdfs.server.namenode.FinderType<ReplicaUnderConstruction> {
 
-    ByBlockId;
+    ByBlockId, ByBlockIds;
 
     @Override
     public Class getType() {
@@ -17,10 +17,12 @@
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
 import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.NamenodeShard;
 import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
 import org.apache.hadoop.hdfs.server.namenode.persistance.LightWeightRequestHandler;
 import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
@@ -38,6 +40,73 @@ class UnderReplicatedBlocks {
 
   static final int LEVEL = 5;
   static final int QUEUE_WITH_CORRUPT_BLOCKS = 4;
+  /**
+   * The id of the next block to visit in every level
+   */
+  private final long[] cursors = new long[LEVEL];
+
+  UnderReplicatedBlocks() {
+    resetCursors();
+  }
+
+  /**
+   * Starts every level from its first block again.
+   */
+  synchronized void resetCursors() {
+    Arrays.fill(cursors, Long.MIN_VALUE);
+  }
+
+  /**
+   * Chooses the next blocks to replicate. The levels are visited from the
+   * highest priority, every level from the block after the last one chosen
+   * in it, so a call reads only the blocks it returns, or the pages it
+   * filters when the work is sharded. A level that comes to its end starts
+   * from its first block in the next call.
+   *
+   * @param blocksToProcess the maximum number of blocks to choose
+   * @param shard the blocks this namenode replicates
+   * @return the chosen blocks, the list index is the priority of the block
+   */
+  synchronized List<List<Block>> chooseBlocks(final int blocksToProcess,
+          final NamenodeShard shard, OperationType opType) throws IOException {
+    return (List<List<Block>>) new LightWeightRequestHandler(opType) {
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        UnderReplicatedBlockDataAccess da = (UnderReplicatedBlockDataAccess) StorageFactory.getDataAccess(UnderReplicatedBlockDataAccess.class);
+        List<List<Block>> chosen = new ArrayList<List<Block>>(LEVEL);
+        for (int i = 0; i < LEVEL; i++) {
+          chosen.add(new ArrayList<Block>());
+        }
+        int remaining = blocksToProcess;
+        for (int level = 0; level < LEVEL && remaining > 0; level++) {
+          while (remaining > 0) {
+            // a namenode owns about one block in shard.getCount()
+            int limit = remaining * shard.getCount();
+            List<UnderReplicatedBlock> page = da.findByLevelFromBlockId(level, cursors[level], limit);
+            int visited = 0;
+            for (UnderReplicatedBlock urb : page) {
+              if (remaining == 0) {
+                break;
+              }
+              visited++;
+              // after Long.MAX_VALUE the cursor wraps to the start of the level
+              cursors[level] = urb.getBlockId() + 1;
+              if (shard.ownsId(urb.getBlockId())) {
+                chosen.get(level).add(new Block(urb.getBlockId()));
+                remaining--;
+              }
+            }
+            boolean endOfLevel = visited == page.size() && page.size() < limit;
+            if (endOfLevel || cursors[level] == Long.MIN_VALUE) {
+              cursors[level] = Long.MIN_VALUE;
+              break;
+            }
+          }
+        }
+        return chosen;
+      }
+    }.handle();
+  }
 
   /**
    * Empty the queues.
@@ -177,5 +177,14 @@ public final class HdfsServerConstants {
   }
   
   public static final String NAMENODE_LEASE_HOLDER = "HDFS_NameNode";
+
+  /**
+   * The holder of the files whose lease recovery a namenode started. Every
+   * namenode has its own, so the recoveries of the namenodes do not lock the
+   * same lease row.
+   */
+  public static String getNamenodeLeaseHolder(long namenodeId) {
+    return NAMENODE_LEASE_HOLDER + "_" + namenodeId;
+  }
   public static final long NAMENODE_LEASE_RECHECK_INTERVAL = 2000;
 }
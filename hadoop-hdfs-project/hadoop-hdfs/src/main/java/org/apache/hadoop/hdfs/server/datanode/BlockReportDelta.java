@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+
+/**
+ * The replicas of a block pool which changed since the last block report.
+ * The replicas which exist are listed with their current length, generation
+ * stamp and state in the same encoding as a full report, the removed ones
+ * only by block id.
+ */
+@InterfaceAudience.Private
+public class BlockReportDelta {
+
+  private final BlockListAsLongs changed;
+  private final long[] removed;
+
+  public BlockReportDelta(BlockListAsLongs changed, long[] removed) {
+    this.changed = changed;
+    this.removed = removed;
+  }
+
+  public BlockListAsLongs getChanged() {
+    return changed;
+  }
+
+  public long[] getRemoved() {
+    return removed;
+  }
+
+  public int size() {
+    return changed.getNumberOfBlocks() + removed.length;
+  }
+}
@@ -395,6 +395,9 @@ public class DataNode extends Configured
   ThreadGroup threadGroup = null;
   long blockReportInterval;
   boolean resetBlockReportTime = true;
+  int fullBlockReportEvery;
+  // block reports sent since the last full report, -1 if the next one is full
+  private int reportsSinceFullReport = -1;
   long deleteReportInterval;
   //long lastDeletedReport = 0;
   long initialBlockReportDelay = DFS_BLOCKREPORT_INTERVAL_MSEC_DEFAULT * 1000L;
@@ -502,6 +505,8 @@ public class DataNode extends Configured
                                        DFS_CLIENT_WRITE_PACKET_SIZE_DEFAULT);
     this.blockReportInterval = conf.getLong(DFS_BLOCKREPORT_INTERVAL_MSEC_KEY,
         DFS_BLOCKREPORT_INTERVAL_MSEC_DEFAULT);
+    this.fullBlockReportEvery = conf.getInt(DFS_BLOCKREPORT_FULL_EVERY_KEY,
+        DFS_BLOCKREPORT_FULL_EVERY_DEFAULT);
     this.initialBlockReportDelay = conf.getLong(
         DFS_BLOCKREPORT_INITIAL_DELAY_KEY,
         DFS_BLOCKREPORT_INITIAL_DELAY_DEFAULT) * 1000L;
@@ -779,6 +784,8 @@ public class DataNode extends Configured
     //private boolean isBlockTokenInitialized = false;
     UpgradeManagerDatanode upgradeManager = null;
     private long lastDeletedReport = 0;
+    // the leader deferred the block report, the timer is kept expired
+    private boolean blockReportDeferred = false;
     //private final LinkedList<ReceivedDeletedBlockInfo> receivedAndDeletedBlockList  = new LinkedList<ReceivedDeletedBlockInfo>();
     //private volatile int pendingReceivedRequests = 0;
     
@@ -1102,12 +1109,20 @@ public class DataNode extends Configured
     InetSocketAddress getNextNamenodeToSendBlockReport() throws IOException {
       
       String nextNamenode = "";
+      blockReportDeferred = false;
       // send block report if timer has expired.
       long startTime = now();
       if (startTime - lastBlockReport > blockReportInterval) {
         
-        nextNamenode = bpNamenode.getNextNamenodeToSendBlockReport();
+        // an incremental report is small
+        long numBlocks = isFullBlockReportDue() ? data.getNumReplicas(blockPoolId) : 0;
+        nextNamenode = bpNamenode.getNextNamenodeToSendBlockReport(numBlocks);
         LOG.info("Requested for the next namenode to send block report to. Next namenode:"+nextNamenode);
+        if (nextNamenode == null || nextNamenode.isEmpty()) {
+          // all namenodes are busy, ask again at the next heartbeat
+          blockReportDeferred = true;
+          return null;
+        }
         return NetUtils.createSocketAddr(nextNamenode);
       }
       // Maybe the time interval has not expired yet
@@ -1158,15 +1173,29 @@ public class DataNode extends Configured
       // send block report if timer has expired.
       DatanodeCommand cmd = null;
 
-      // Create block report
+      if (!isFullBlockReportDue()) {
+        BlockReportDelta delta = data.getBlockReportDelta(blockPoolId);
+        if (delta != null) {
+          return incrementalBlockReport(delta);
+        }
+      }
+
+      // Create block report, the changes so far are in the full report
       long brCreateStartTime = now();
+      data.getBlockReportDelta(blockPoolId);
       BlockListAsLongs bReport = data.getBlockReport(blockPoolId);
 
       // Send block report
       LOG.info("DN ["+getStorageId()+"] sending block report to ["+nnAddr+"]. Total blocks: ["+bReport.getNumberOfBlocks()+"]");
       long brSendStartTime = now();
+      try {
         cmd = bpNamenode.blockReport(bpRegistration, blockPoolId, bReport
           .getBlockListAsLongs());
+      } catch (IOException e) {
+        requestFullBlockReport();
+        throw e;
+      }
+      blockReportSent(true);
 
       // Log the block report processing stats from Datanode perspective
       long brSendCost = now() - brSendStartTime;
@@ -1180,6 +1209,35 @@ public class DataNode extends Configured
       return cmd;
     }
 
+    /**
+     * Report the blocks which changed since the previous report to the
+     * Namenode. If the report fails the changes are lost, so the next report
+     * is a full one.
+     * @throws IOException
+     */
+    private DatanodeCommand incrementalBlockReport(BlockReportDelta delta)
+        throws IOException {
+      long brSendStartTime = now();
+      DatanodeCommand cmd;
+      try {
+        cmd = bpNamenode.incrementalBlockReport(bpRegistration, blockPoolId,
+            delta.getChanged().getBlockListAsLongs(), delta.getRemoved());
+      } catch (IOException e) {
+        requestFullBlockReport();
+        throw e;
+      }
+      blockReportSent(false);
+
+      long brSendCost = now() - brSendStartTime;
+      metrics.addBlockReport(brSendCost);
+      LOG.info("Incremental BlockReport [From:" + getStorageId() + ", To:"
+          + nnAddr.getAddress().getHostAddress() + ":" + nnAddr.getPort()
+          + "] of " + delta.getChanged().getNumberOfBlocks() + " changed and "
+          + delta.getRemoved().length + " removed blocks took " + brSendCost
+          + " msecs for RPC and NN processing");
+      return cmd;
+    }
+
     /**
      * Report the list blocks to the Namenode
      * @throws IOException
@@ -1377,13 +1435,17 @@ public class DataNode extends Configured
           }
 
           // Ask the leader namenode which is the next namenode to send block reports to
+          boolean blockReportDeferred = false;
           if(isLeader(leaderAddr)) {
             blockPoolManager.setNextNamenodeForBlockReports(getNextNamenodeToSendBlockReport());
+            blockReportDeferred = this.blockReportDeferred;
           }
           
           // Determines which namenode to send block reports to
           // This is provided by the leader
-          blockReport(blockPoolManager.getNextNamenodeForBlockReports());
+          if (!blockReportDeferred) {
+            blockReport(blockPoolManager.getNextNamenodeForBlockReports());
+          }
           
           /** [J] Modified block reporting to allow DNs to report to NNs in round-robin fashion
           DatanodeCommand cmd = blockReport();
@@ -1530,6 +1592,7 @@ public class DataNode extends Configured
       LOG.info("in register:" + ";bpDNR="+bpRegistration.storageInfo);
 
       // random short delay - helps scatter the BR from all DNs
+      requestFullBlockReport();
       scheduleBlockReport(initialBlockReportDelay);
     }
 
@@ -1620,7 +1683,7 @@ public class DataNode extends Configured
      * @return true if further processing may be required or false otherwise. 
      * @throws IOException
      */
-    private boolean processCommand(DatanodeCommand cmd) throws IOException {
+    boolean processCommand(DatanodeCommand cmd) throws IOException {
       if (cmd == null)
         return true;
       final BlockCommand bcmd = 
@@ -1661,6 +1724,12 @@ public class DataNode extends Configured
           register();
         }
         break;
+      case DatanodeProtocol.DNA_BLOCKREPORT:
+        // namenode could not apply an incremental report
+        LOG.info("DatanodeCommand action: DNA_BLOCKREPORT");
+        requestFullBlockReport();
+        processCommand(blockReport());
+        break;
       case DatanodeProtocol.DNA_FINALIZE:
         storage.finalizeUpgrade(((DatanodeCommand.Finalize) cmd)
             .getBlockPoolId());
@@ -2624,6 +2693,23 @@ public class DataNode extends Configured
     }
   }
 
+  /**
+   * @return true if the next block report has to be a full report, at the
+   * registration, after a failed report or every fullBlockReportEvery reports
+   */
+  synchronized boolean isFullBlockReportDue() {
+    return reportsSinceFullReport < 0
+        || reportsSinceFullReport + 1 >= fullBlockReportEvery;
+  }
+
+  synchronized void blockReportSent(boolean full) {
+    reportsSinceFullReport = full ? 0 : reportsSinceFullReport + 1;
+  }
+
+  synchronized void requestFullBlockReport() {
+    reportsSinceFullReport = -1;
+  }
+
   /**
    * This method is used for testing. 
    * Examples are adding and deleting blocks directly.
@@ -1169,6 +1169,11 @@ public class FSDataset implements FSDatasetInterface {
     }
     
     volumeMap = new ReplicasMap(this);
+    if (conf.getInt(DFSConfigKeys.DFS_BLOCKREPORT_FULL_EVERY_KEY,
+        DFSConfigKeys.DFS_BLOCKREPORT_FULL_EVERY_DEFAULT) > 1) {
+      // only the incremental block reports need the changes
+      volumeMap.trackChanges();
+    }
 
     BlockVolumeChoosingPolicy blockChooserImpl =
       (BlockVolumeChoosingPolicy) ReflectionUtils.newInstance(
@@ -1600,7 +1605,7 @@ public class FSDataset implements FSDatasetInterface {
       return append(b.getBlockPoolId(), (FinalizedReplica) replicaInfo, newGS, 
           b.getNumBytes());
     } else { //RBW
-      bumpReplicaGS(replicaInfo, newGS);
+      bumpReplicaGS(b.getBlockPoolId(), replicaInfo, newGS);
       return (ReplicaBeingWritten)replicaInfo;
     }
   }
@@ -1613,7 +1618,7 @@ public class FSDataset implements FSDatasetInterface {
     ReplicaInfo replicaInfo = recoverCheck(b, newGS,
         expectedBlockLen);
     // bump the replica's GS
-    bumpReplicaGS(replicaInfo, newGS);
+    bumpReplicaGS(b.getBlockPoolId(), replicaInfo, newGS);
     // finalize the replica if RBW
     if (replicaInfo.getState() == ReplicaState.RBW) {
       finalizeReplica(b.getBlockPoolId(), replicaInfo);
@@ -1624,11 +1629,12 @@ public class FSDataset implements FSDatasetInterface {
    * Bump a replica's generation stamp to a new one.
    * Its on-disk meta file name is renamed to be the new one too.
    * 
+   * @param bpid block pool id
    * @param replicaInfo a replica
    * @param newGS new generation stamp
    * @throws IOException if rename fails
    */
-  private void bumpReplicaGS(ReplicaInfo replicaInfo, 
+  private void bumpReplicaGS(String bpid, ReplicaInfo replicaInfo, 
       long newGS) throws IOException { 
     long oldGS = replicaInfo.getGenerationStamp();
     File oldmeta = replicaInfo.getMetaFile();
@@ -1645,6 +1651,7 @@ public class FSDataset implements FSDatasetInterface {
                             " Unable to move meta file  " + oldmeta +
                             " to " + newmeta);
     }
+    volumeMap.markChanged(bpid, replicaInfo.getBlockId());
   }
 
   @Override // FSDatasetInterface
@@ -1707,7 +1714,7 @@ public class FSDataset implements FSDatasetInterface {
     }
 
     // bump the replica's generation stamp to newGS
-    bumpReplicaGS(rbw, newGS);
+    bumpReplicaGS(b.getBlockPoolId(), rbw, newGS);
     
     return rbw;
   }
@@ -1950,6 +1957,51 @@ public class FSDataset implements FSDatasetInterface {
     }
   }
 
+  @Override // FSDatasetInterface
+  public int getNumReplicas(String bpid) {
+    return volumeMap.size(bpid);
+  }
+
+  /**
+   * Generates the changes since the last call from the in-memory block map.
+   * A changed replica is reported in its current state, a temporary replica
+   * is left out as in the full report.
+   */
+  @Override // FSDatasetInterface
+  public synchronized BlockReportDelta getBlockReportDelta(String bpid) {
+    Set<Long> changed = volumeMap.takeChanged(bpid);
+    if (changed == null) {
+      return null;
+    }
+    ArrayList<ReplicaInfo> finalized = new ArrayList<ReplicaInfo>();
+    ArrayList<ReplicaInfo> uc = new ArrayList<ReplicaInfo>();
+    long[] removed = new long[changed.size()];
+    int numRemoved = 0;
+    for (long blockId : changed) {
+      ReplicaInfo b = volumeMap.get(bpid, blockId);
+      if (b == null) {
+        removed[numRemoved++] = blockId;
+        continue;
+      }
+      switch(b.getState()) {
+      case FINALIZED:
+        finalized.add(b);
+        break;
+      case RBW:
+      case RWR:
+        uc.add(b);
+        break;
+      case RUR:
+        uc.add(((ReplicaUnderRecovery)b).getOriginalReplica());
+        break;
+      default:
+        break;
+      }
+    }
+    return new BlockReportDelta(new BlockListAsLongs(finalized, uc),
+        Arrays.copyOf(removed, numRemoved));
+  }
+
   /**
    * Get the list of finalized blocks from in-memory blockmap for a block pool.
    */
@@ -2307,6 +2359,7 @@ public class FSDataset implements FSDatasetInterface {
       /*
        * Block exists in volumeMap and the block file exists on the disk
        */
+      volumeMap.markChanged(bpid, blockId);
       // Compare block files
       File memFile = memBlockInfo.getBlockFile();
       if (memFile.exists()) {
@@ -2524,7 +2577,7 @@ public class FSDataset implements FSDatasetInterface {
     }
 
     // bump rur's GS to be recovery id
-    bumpReplicaGS(rur, recoveryId);
+    bumpReplicaGS(bpid, rur, recoveryId);
 
     //update length
     final File replicafile = rur.getBlockFile();
@@ -292,6 +292,21 @@ public interface FSDatasetInterface extends FSDatasetMBean {
    */
   public BlockListAsLongs getBlockReport(String bpid);
 
+  /**
+   * Returns the replicas of a block pool which were added, changed or
+   * removed since the last call, and starts collecting the next changes.
+   * @param bpid Block Pool Id
+   * @return - the changes since the last call, or null if the dataset does
+   *     not track the changes and only full reports can be sent
+   */
+  public BlockReportDelta getBlockReportDelta(String bpid);
+
+  /**
+   * @param bpid Block Pool Id
+   * @return - the number of replicas stored under a block pool
+   */
+  public int getNumReplicas(String bpid);
+
   /**
    * Is the block valid?
    * @param b
@@ -19,7 +19,9 @@ package org.apache.hadoop.hdfs.server.datanode;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.hdfs.protocol.Block;
@@ -34,6 +36,10 @@ class ReplicasMap {
   // Map of block pool Id to another map of block Id to ReplicaInfo.
   private Map<String, Map<Long, ReplicaInfo>> map = 
     new HashMap<String, Map<Long, ReplicaInfo>>();
+
+  // Map of block pool Id to the ids of the replicas added, changed or removed
+  // since the last call to takeChanged, null if the changes are not tracked
+  private Map<String, Set<Long>> changed = null;
   
   ReplicasMap(Object mutex) {
     if (mutex == null) {
@@ -113,6 +119,7 @@ class ReplicasMap {
         m = new HashMap<Long, ReplicaInfo>();
         map.put(bpid, m);
       }
+      markChanged(bpid, replicaInfo.getBlockId());
       return  m.put(replicaInfo.getBlockId(), replicaInfo);
     }
   }
@@ -135,6 +142,7 @@ class ReplicasMap {
         ReplicaInfo replicaInfo = m.get(key);
         if (replicaInfo != null &&
             block.getGenerationStamp() == replicaInfo.getGenerationStamp()) {
+          markChanged(bpid, key);
           return m.remove(key);
         } 
       }
@@ -154,6 +162,7 @@ class ReplicasMap {
     synchronized(mutex) {
       Map<Long, ReplicaInfo> m = map.get(bpid);
       if (m != null) {
+        markChanged(bpid, blockId);
         return m.remove(blockId);
       }
     }
@@ -205,6 +214,59 @@ class ReplicasMap {
     checkBlockPool(bpid);
     synchronized(mutex) {
       map.remove(bpid);
+      if (changed != null) {
+        changed.remove(bpid);
+      }
+    }
+  }
+
+  /**
+   * Start tracking the replicas which are added, changed or removed, for the
+   * incremental block reports
+   */
+  void trackChanges() {
+    synchronized(mutex) {
+      if (changed == null) {
+        changed = new HashMap<String, Set<Long>>();
+      }
+    }
+  }
+
+  /**
+   * Record that the replica of the given block changed in place, such as a
+   * new generation stamp or length
+   * @param bpid block pool id
+   * @param blockId the block id of the replica
+   */
+  void markChanged(String bpid, long blockId) {
+    synchronized(mutex) {
+      if (changed == null) {
+        return;
+      }
+      Set<Long> s = changed.get(bpid);
+      if (s == null) {
+        s = new HashSet<Long>();
+        changed.put(bpid, s);
+      }
+      s.add(blockId);
+    }
+  }
+
+  /**
+   * Get the ids of the replicas added, changed or removed since the last call
+   * and start collecting the changes again
+   * @param bpid block pool id
+   * @return the ids of the changed replicas, null if the changes are not
+   *         tracked
+   */
+  Set<Long> takeChanged(String bpid) {
+    checkBlockPool(bpid);
+    synchronized(mutex) {
+      if (changed == null) {
+        return null;
+      }
+      Set<Long> s = changed.remove(bpid);
+      return s != null ? s : new HashSet<Long>();
     }
   }
   
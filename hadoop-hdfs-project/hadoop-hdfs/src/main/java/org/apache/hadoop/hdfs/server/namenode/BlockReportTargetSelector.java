@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the namenode a datanode sends its next block report to. Every
+ * namenode publishes its block report load with its counter in the leader
+ * table: the blocks of the reports it has not finished, its recent processing
+ * rate and the length of its rpc queue. The leader sends a report to the
+ * namenode with the shortest expected wait, counting the reports it assigned
+ * since the namenode last published its load.
+ *
+ * If even that namenode is busy for longer than the maximum wait, the report
+ * is deferred and the datanode asks again at its next heartbeat, so the
+ * reports after a cluster restart are spread out instead of queueing up.
+ */
+class BlockReportTargetSelector {
+
+  /** the wait of a call in the rpc queue, which is not measured */
+  static final long RPC_CALL_MILLIS = 1;
+  /** the rate in blocks per second when no namenode processed a report yet */
+  static final double DEFAULT_RATE = 10000;
+
+  private static class Assignment {
+
+    final long time;
+    final long numBlocks;
+
+    Assignment(long time, long numBlocks) {
+      this.time = time;
+      this.numBlocks = numBlocks;
+    }
+  }
+  private final long maxWait;
+  private final long assignmentTimeout;
+  private final Map<Long, List<Assignment>> assignments = new HashMap<Long, List<Assignment>>();
+  private int next = 0;
+
+  /**
+   * @param maxWait the longest expected wait a report is sent with, 0 to
+   * never defer a report
+   * @param assignmentTimeout how long after an assignment the load a
+   * namenode publishes includes the report
+   */
+  BlockReportTargetSelector(long maxWait, long assignmentTimeout) {
+    this.maxWait = maxWait;
+    this.assignmentTimeout = assignmentTimeout;
+  }
+
+  /**
+   * @param namenodes the active namenodes with their published load
+   * @param numBlocks the blocks in the report
+   * @param now the current time
+   * @return the namenode to send the report to, or null if the report is
+   * deferred
+   */
+  synchronized Leader select(Collection<Leader> namenodes, long numBlocks, long now) {
+    if (namenodes.isEmpty()) {
+      return null;
+    }
+    List<Leader> list = new ArrayList<Leader>(namenodes);
+    double defaultRate = getAverageRate(list);
+    Set<Long> ids = new HashSet<Long>();
+    // idle namenodes have the same wait, they get the reports in turn
+    next = (next + 1) % list.size();
+    Leader best = null;
+    long bestWait = 0;
+    for (int i = 0; i < list.size(); i++) {
+      Leader namenode = list.get((next + i) % list.size());
+      ids.add(namenode.getId());
+      long wait = getExpectedWait(namenode, getAssignedBlocks(namenode), defaultRate);
+      if (best == null || wait < bestWait) {
+        best = namenode;
+        bestWait = wait;
+      }
+    }
+    assignments.keySet().retainAll(ids);
+
+    if (maxWait > 0 && bestWait > maxWait) {
+      return null;
+    }
+    List<Assignment> assigned = assignments.get(best.getId());
+    if (assigned == null) {
+      assigned = new ArrayList<Assignment>();
+      assignments.put(best.getId(), assigned);
+    }
+    assigned.add(new Assignment(now, numBlocks));
+    return best;
+  }
+
+  /**
+   * @return the blocks of the reports assigned to the namenode which are not
+   * in its published load yet
+   */
+  private long getAssignedBlocks(Leader namenode) {
+    List<Assignment> assigned = assignments.get(namenode.getId());
+    if (assigned == null) {
+      return 0;
+    }
+    long numBlocks = 0;
+    for (Iterator<Assignment> it = assigned.iterator(); it.hasNext();) {
+      Assignment assignment = it.next();
+      if (assignment.time + assignmentTimeout < namenode.getTimeStamp()) {
+        it.remove();
+      } else {
+        numBlocks += assignment.numBlocks;
+      }
+    }
+    return numBlocks;
+  }
+
+  /**
+   * @return the average rate of the namenodes which processed a report, the
+   * rate of the others
+   */
+  static double getAverageRate(Collection<Leader> namenodes) {
+    double sum = 0;
+    int count = 0;
+    for (Leader namenode : namenodes) {
+      if (namenode.getReportRate() > 0) {
+        sum += namenode.getReportRate();
+        count++;
+      }
+    }
+    return count == 0 ? DEFAULT_RATE : sum / count;
+  }
+
+  /**
+   * @return the milliseconds until the namenode could start on a new report
+   */
+  static long getExpectedWait(Leader namenode, long assignedBlocks, double defaultRate) {
+    double rate = namenode.getReportRate() > 0 ? namenode.getReportRate() : defaultRate;
+    return (long) ((namenode.getReportBacklog() + assignedBlocks) * 1000 / rate)
+            + namenode.getRpcQueueLength() * RPC_CALL_MILLIS;
+  }
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.blockmanagement.GenerationStamp;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
+import org.apache.hadoop.util.Daemon;
+
+/**
+ * Hands out the generation stamps and the block ids of a namenode from a
+ * range of the global counter. A range is leased by one transaction which
+ * moves the counter forward by the range size, the values of the range are
+ * then taken from memory without a round trip to the storage. The next range
+ * is leased on a background thread when the current one runs low, so the
+ * counter row is not locked by the operations which need a value.
+ *
+ * The values are unique across the namenodes and grow on each namenode, but
+ * a value of one namenode may be lower than a value another namenode handed
+ * out before. A caller which needs a value above a known stamp, like a new
+ * stamp for a block, passes it and the values up to it are skipped, leasing
+ * a new range if needed. A range leased after the known stamp was handed out
+ * is always above it.
+ *
+ * The values left in the range when the namenode stops are never used.
+ */
+@InterfaceAudience.Private
+class CounterRangeAllocator {
+
+  static final Log LOG = LogFactory.getLog(CounterRangeAllocator.class);
+
+  /**
+   * Leases the ranges of the counter.
+   */
+  interface RangeSource {
+
+    /**
+     * Moves the counter forward by the given size.
+     *
+     * @return the first value of the leased range
+     */
+    long lease(long size) throws IOException;
+  }
+  private final RangeSource source;
+  private final long rangeSize;
+  private final long refillThreshold;
+  private final ExecutorService refiller = Executors.newSingleThreadExecutor(new Daemon.DaemonFactory());
+  // the next value to hand out and the end (exclusive) of the current range
+  private long next = 0;
+  private long end = 0;
+  private Future<Long> nextRange;
+
+  CounterRangeAllocator(final FSNamesystem namesystem, Configuration conf) {
+    this(new RangeSource() {
+
+      @Override
+      public long lease(final long size) throws IOException {
+        Long first = (Long) new TransactionalRequestHandler(OperationType.LEASE_COUNTER_RANGE) {
+
+          @Override
+          public void acquireLock() throws PersistanceException, IOException {
+            TransactionLockAcquirer.acquireLock(TransactionLockManager.LockType.WRITE, GenerationStamp.Finder.Counter);
+          }
+
+          @Override
+          public Object performTask() throws PersistanceException, IOException {
+            GenerationStamp counter = EntityManager.find(GenerationStamp.Finder.Counter);
+            long first = counter.getCounter() + 1;
+            EntityManager.update(new GenerationStamp(counter.getCounter() + size));
+            return first;
+          }
+        }.handle(namesystem);
+        if (first == null) {
+          throw new IOException("Could not lease a range of the counter, the transaction was rolled back");
+        }
+        return first;
+      }
+    }, conf.getLong(DFSConfigKeys.DFS_NAMENODE_COUNTER_RANGE_SIZE_KEY,
+            DFSConfigKeys.DFS_NAMENODE_COUNTER_RANGE_SIZE_DEFAULT),
+            conf.getLong(DFSConfigKeys.DFS_NAMENODE_COUNTER_RANGE_REFILL_THRESHOLD_KEY,
+            DFSConfigKeys.DFS_NAMENODE_COUNTER_RANGE_REFILL_THRESHOLD_DEFAULT));
+  }
+
+  CounterRangeAllocator(RangeSource source, long rangeSize, long refillThreshold) {
+    this.source = source;
+    this.rangeSize = Math.max(1, rangeSize);
+    this.refillThreshold = Math.max(0, Math.min(refillThreshold, this.rangeSize - 1));
+  }
+
+  /**
+   * @return the next value of the range, it waits for a new range if the
+   * current one is used up
+   */
+  long next() throws IOException {
+    return nextAbove(Long.MIN_VALUE);
+  }
+
+  /**
+   * @return the next value of the range which is greater than the given one
+   */
+  synchronized long nextAbove(long lowerBound) throws IOException {
+    while (true) {
+      if (next <= lowerBound) {
+        next = Math.min(end, lowerBound + 1);
+      }
+      if (next < end) {
+        long value = next++;
+        if (end - next <= refillThreshold) {
+          prefetch();
+        }
+        return value;
+      }
+      prefetch();
+      next = awaitRange();
+      end = next + rangeSize;
+    }
+  }
+
+  /**
+   * Stops leasing ranges, a lease in progress is abandoned.
+   */
+  void close() {
+    refiller.shutdownNow();
+  }
+
+  private void prefetch() {
+    if (nextRange == null) {
+      nextRange = refiller.submit(new Callable<Long>() {
+
+        @Override
+        public Long call() throws IOException {
+          return source.lease(rangeSize);
+        }
+      });
+    }
+  }
+
+  private long awaitRange() throws IOException {
+    try {
+      return nextRange.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for a range of the counter");
+    } catch (ExecutionException ex) {
+      LOG.error("Could not lease a range of the counter", ex.getCause());
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException(ex.getCause());
+    } finally {
+      nextRange = null;
+    }
+  }
+}
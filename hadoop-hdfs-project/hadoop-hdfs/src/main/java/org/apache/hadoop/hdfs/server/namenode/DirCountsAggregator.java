@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.LightWeightRequestHandler;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.DirCountsDeltaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageFactory;
+
+/**
+ * Folds the {@link DirCountsDelta}s written by the namespace operations into
+ * the counters of their directories. The operations only insert deltas for
+ * the directories without a quota, so they never write the rows of the
+ * ancestors they share with the other operations.
+ *
+ * Every directory is folded in its own transaction. The deltas of a deleted
+ * directory are removed. Only the leader runs it.
+ */
+@InterfaceAudience.Private
+class DirCountsAggregator implements Runnable {
+
+  static final Log LOG = LogFactory.getLog(DirCountsAggregator.class);
+  private final FSNamesystem namesystem;
+  private final long interval;
+  private final int batchSize;
+
+  DirCountsAggregator(FSNamesystem namesystem, long interval, int batchSize) {
+    this.namesystem = namesystem;
+    this.interval = interval;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public void run() {
+    while (namesystem.isRunning()) {
+      try {
+        Thread.sleep(interval);
+      } catch (InterruptedException ie) {
+        LOG.debug("DirCountsAggregator is interrupted", ie);
+        return;
+      }
+      if (!namesystem.isLeader()) {
+        continue;
+      }
+      try {
+        int folded = aggregate();
+        if (folded > 0 && LOG.isDebugEnabled()) {
+          LOG.debug("Folded " + folded + " directory counter deltas");
+        }
+      } catch (IOException ex) {
+        LOG.error("Folding the directory counter deltas failed", ex);
+      }
+    }
+  }
+
+  /**
+   * Folds the deltas of at most batchSize directories.
+   *
+   * @return number of folded deltas
+   */
+  int aggregate() throws IOException {
+    int folded = 0;
+    Collection<Long> ids = (Collection<Long>) getINodeIdsHandler.handle();
+    for (Long id : ids) {
+      if (!namesystem.isRunning()) {
+        break;
+      }
+      Integer result = (Integer) aggregateHandler.setParams(id).handle();
+      if (result != null) {
+        folded += result;
+      }
+    }
+    return folded;
+  }
+  private LightWeightRequestHandler getINodeIdsHandler = new LightWeightRequestHandler(OperationType.GET_DIR_COUNTS_DELTA_INODES) {
+
+    @Override
+    public Object performTask() throws PersistanceException, IOException {
+      DirCountsDeltaDataAccess da = (DirCountsDeltaDataAccess) StorageFactory.getDataAccess(DirCountsDeltaDataAccess.class);
+      return da.findINodeIds(batchSize);
+    }
+  };
+  private TransactionalRequestHandler aggregateHandler = new TransactionalRequestHandler(OperationType.AGGREGATE_DIR_COUNTS) {
+
+    @Override
+    public Object performTask() throws PersistanceException, IOException {
+      long id = (Long) getParams()[0];
+      INode inode = EntityManager.find(INode.Finder.ByPKey, id);
+      if (inode instanceof INodeDirectory) {
+        return namesystem.dir.foldDirCountsDeltas((INodeDirectory) inode);
+      }
+      Collection<DirCountsDelta> deltas = EntityManager.findList(DirCountsDelta.Finder.ByINodeIds,
+              Collections.singletonList(id));
+      for (DirCountsDelta delta : deltas) {
+        EntityManager.remove(delta);
+      }
+      return deltas.size();
+    }
+
+    @Override
+    public void acquireLock() throws PersistanceException, IOException {
+      long id = (Long) getParams()[0];
+      TransactionLockAcquirer.acquireINodeLockById(TransactionLockManager.INodeLockType.WRITE, id);
+      TransactionLockAcquirer.acquireLockList(TransactionLockManager.LockType.WRITE,
+              DirCountsDelta.Finder.ByINodeIds, Collections.singletonList(id));
+    }
+  };
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import org.apache.hadoop.hdfs.DFSUtil;
+
+/**
+ * A change of the counters of a directory which is not applied to the
+ * directory row itself. Writing a delta does not need a lock on the
+ * directory, so the operations in the tree of a directory do not serialize
+ * on it. The deltas are folded into the directory by
+ * {@link DirCountsAggregator}, until then the counters of a directory are
+ * the ones of its row plus its deltas.
+ */
+public class DirCountsDelta {
+
+  public static enum Finder implements FinderType<DirCountsDelta> {
+
+    ByINodeIds;
+
+    @Override
+    public Class getType() {
+      return DirCountsDelta.class;
+    }
+  }
+  private final long inodeId;
+  private final long id;
+  private long nsDelta;
+  private long dsDelta;
+  private long fileDelta;
+  private long lengthDelta;
+
+  public DirCountsDelta(long inodeId, long id, long nsDelta, long dsDelta,
+          long fileDelta, long lengthDelta) {
+    this.inodeId = inodeId;
+    this.id = id;
+    this.nsDelta = nsDelta;
+    this.dsDelta = dsDelta;
+    this.fileDelta = fileDelta;
+    this.lengthDelta = lengthDelta;
+  }
+
+  /**
+   * A new delta, the id only has to be unique among the deltas of the
+   * directory which are written concurrently.
+   */
+  DirCountsDelta(long inodeId, INode.DirCounts delta) {
+    this(inodeId, DFSUtil.getRandom().nextLong(), delta.getNsCount(),
+            delta.getDsCount(), delta.getFileCount(), delta.getLength());
+  }
+
+  public long getInodeId() {
+    return inodeId;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public long getNsDelta() {
+    return nsDelta;
+  }
+
+  public long getDsDelta() {
+    return dsDelta;
+  }
+
+  public long getFileDelta() {
+    return fileDelta;
+  }
+
+  public long getLengthDelta() {
+    return lengthDelta;
+  }
+
+  /**
+   * Merges another delta of the same directory into this one.
+   */
+  public void merge(DirCountsDelta other) {
+    nsDelta += other.nsDelta;
+    dsDelta += other.dsDelta;
+    fileDelta += other.fileDelta;
+    lengthDelta += other.lengthDelta;
+  }
+
+  /**
+   * Adds this delta to the given counters and returns them.
+   */
+  INode.DirCounts addTo(INode.DirCounts counts) {
+    counts.nsCount += nsDelta;
+    counts.dsCount += dsDelta;
+    counts.fileCount += fileDelta;
+    counts.length += lengthDelta;
+    return counts;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof DirCountsDelta)) {
+      return false;
+    }
+    DirCountsDelta other = (DirCountsDelta) obj;
+    return inodeId == other.inodeId && id == other.id;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 7;
+    hash = 37 * hash + (int) (inodeId ^ (inodeId >>> 32));
+    hash = 37 * hash + (int) (id ^ (id >>> 32));
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return "DirCountsDelta[inode=" + inodeId + ", id=" + id + ", ns=" + nsDelta
+            + ", ds=" + dsDelta + ", files=" + fileDelta + ", length=" + lengthDelta + "]";
+  }
+}
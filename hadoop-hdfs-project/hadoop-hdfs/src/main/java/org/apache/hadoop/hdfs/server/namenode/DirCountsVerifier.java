@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.util.List;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
+
+/**
+ * Periodically walks the namespace bottom-up and fixes the counters of the
+ * directories which drifted from their children. The counters are updated
+ * in the transactions which change the namespace, a few paths such as the
+ * pipeline recovery change the length of a block without updating them.
+ *
+ * The first pass runs as soon as the namenode is the leader, it fills in the
+ * counters of a namespace which was written before they were maintained.
+ * Every directory is verified in its own transaction, so the walk does not
+ * hold the locks of a whole tree. Only the leader runs it.
+ */
+@InterfaceAudience.Private
+class DirCountsVerifier implements Runnable {
+
+  static final Log LOG = LogFactory.getLog(DirCountsVerifier.class);
+  private final FSNamesystem namesystem;
+  private final long interval;
+  /**
+   * How often a namenode which is not the leader yet checks whether it has
+   * to run the first pass.
+   */
+  static final long LEADER_CHECK_INTERVAL = 1000;
+
+  DirCountsVerifier(FSNamesystem namesystem, long interval) {
+    this.namesystem = namesystem;
+    this.interval = interval;
+  }
+
+  @Override
+  public void run() {
+    boolean verified = false;
+    while (namesystem.isRunning()) {
+      try {
+        Thread.sleep(verified ? interval : LEADER_CHECK_INTERVAL);
+      } catch (InterruptedException ie) {
+        LOG.debug("DirCountsVerifier is interrupted", ie);
+        return;
+      }
+      if (!namesystem.isLeader()) {
+        continue;
+      }
+      try {
+        long start = System.currentTimeMillis();
+        int fixed = verify(Path.SEPARATOR);
+        LOG.info("Verified the directory counters in "
+                + (System.currentTimeMillis() - start) + " msec, fixed " + fixed + " directories");
+      } catch (IOException ex) {
+        LOG.error("Verifying the directory counters failed", ex);
+      }
+      verified = true;
+      if (interval <= 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Verifies the sub-directories of the given directory before the directory
+   * itself.
+   *
+   * @return number of fixed directories
+   */
+  int verify(String path) throws IOException {
+    int fixed = 0;
+    List<String> subdirs;
+    try {
+      subdirs = (List<String>) getSubdirectoriesHandler.setParams(path).handle();
+    } catch (SubtreeLockedException ex) {
+      LOG.debug("Skipping " + path, ex);
+      return fixed;
+    }
+    for (String subdir : subdirs) {
+      if (!namesystem.isRunning()) {
+        return fixed;
+      }
+      fixed += verify(subdir);
+    }
+    Object result;
+    try {
+      result = verifyHandler.setParams(path).handle();
+    } catch (SubtreeLockedException ex) {
+      LOG.debug("Skipping " + path, ex);
+      return fixed;
+    }
+    if (result != null) {
+      NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      if (metrics != null) {
+        metrics.incrDirCountsFixed();
+      }
+      fixed++;
+    }
+    return fixed;
+  }
+  private TransactionalRequestHandler getSubdirectoriesHandler = new TransactionalRequestHandler(OperationType.GET_SUBDIRECTORIES) {
+
+    @Override
+    public Object performTask() throws PersistanceException, IOException {
+      return namesystem.dir.getSubdirectories((String) getParams()[0]);
+    }
+
+    @Override
+    public void acquireLock() throws PersistanceException, IOException {
+      TransactionLockManager tla = new TransactionLockManager();
+      tla.addINode(TransactionLockManager.INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN,
+              TransactionLockManager.INodeLockType.READ_COMMITED,
+              new String[]{(String) getParams()[0]}).
+              acquire();
+    }
+  };
+  private TransactionalRequestHandler verifyHandler = new TransactionalRequestHandler(OperationType.VERIFY_DIR_COUNTS) {
+
+    @Override
+    public Object performTask() throws PersistanceException, IOException {
+      return namesystem.dir.verifyDirCounts((String) getParams()[0]);
+    }
+
+    @Override
+    public void acquireLock() throws PersistanceException, IOException {
+      TransactionLockManager tla = new TransactionLockManager();
+      tla.addINode(TransactionLockManager.INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN,
+              TransactionLockManager.INodeLockType.WRITE,
+              new String[]{(String) getParams()[0]}).
+              addBlock(TransactionLockManager.LockType.READ).
+              addDirCountsDelta(TransactionLockManager.LockType.READ_COMMITTED).
+              acquire();
+    }
+  };
+}
@@ -23,6 +23,9 @@ import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -39,6 +42,7 @@ import org.apache.hadoop.fs.UnresolvedLinkException;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
@@ -269,10 +273,13 @@ public class FSDirectory implements Closeable {
           newNode.convertToUnderConstruction(clientName, clientMachine, clientNode);
         } 
         else
+        {
           newNode = new INodeFile(true,
                 permissions, replication,
                 preferredBlockSize, modTime, clientName,
                 clientMachine, clientNode);
+          newNode.setBlocks(new ArrayList<BlockInfo>()); // a new file has no blocks to read
+        }
         writeLock();
         try {
             newNode = addNode(path, newNode, UNKNOWN_DISK_SPACE, false, reuseId);
@@ -313,6 +320,8 @@ public class FSDirectory implements Closeable {
             newNode = new INodeFile(false, permissions, replication,
                     modificationTime, atime, preferredBlockSize);
             diskspace = ((INodeFile) newNode).diskspaceConsumed(blocks);
+            // counted in the length of the ancestors when the file is added
+            ((INodeFile) newNode).setBlocks(new ArrayList<BlockInfo>(Arrays.asList(blocks)));
         }
         writeLock();
         try {
@@ -481,8 +490,9 @@ public class FSDirectory implements Closeable {
 
             // update space consumed
             INode[] pathINodes = getExistingPathINodes(path);
-            updateCount(pathINodes, pathINodes.length - 1, 0,
-                    -fileNode.getPreferredBlockSize() * fileNode.getReplication(), true);
+            updateCount(pathINodes, pathINodes.length - 1, new INode.DirCounts(0,
+                    -fileNode.getPreferredBlockSize() * fileNode.getReplication(),
+                    0, -block.getNumBytes()), true);
         } finally {
             writeUnlock();
         }
@@ -749,8 +759,9 @@ public class FSDirectory implements Closeable {
                         + error);
                 throw new FileAlreadyExistsException(error);
             }
+            // one child is enough, a rename does not read the tree of dst
             List<INode> children = dstInode.isDirectory()
-                    ? ((INodeDirectory) dstInode).getChildren() : null;
+                    ? ((INodeDirectory) dstInode).getChildrenPage("", 1) : null;
             if (children != null && children.size() != 0) {
                 error = "rename cannot overwrite non empty destination directory "
                         + dst;
@@ -1048,7 +1059,8 @@ public class FSDirectory implements Closeable {
         EntityManager.update(trgParent);
         // update quota on the parent directory ('count' files removed, 0 space)
         if (quotaEnabled) {
-            unprotectedUpdateCount(trgINodes, trgINodes.length - 1, -srcs.length, 0);
+            unprotectedUpdateCount(trgINodes, trgINodes.length - 1,
+                    new INode.DirCounts(-srcs.length, 0, -srcs.length, 0));
         }
     }
 
@@ -1193,7 +1205,9 @@ public class FSDirectory implements Closeable {
     }
 
     /**
-     * Get a partial listing of the indicated directory
+     * Get a partial listing of the indicated directory. Only one more child
+     * than the listing limit is read, so the remaining entries of the listing
+     * is 1 if there are more children and 0 otherwise.
      *
      * @param src the directory name
      * @param startAfter the name to start listing after
@@ -1221,22 +1235,29 @@ public class FSDirectory implements Closeable {
 
             // Else its a directory
             INodeDirectory dirInode = (INodeDirectory) targetNode;
-            List<INode> contents = dirInode.getChildren();
-            int startChild = dirInode.nextChild(startAfter, contents);
-            int totalNumChildren = contents.size();
-            int numOfListing = Math.min(totalNumChildren - startChild, this.lsLimit);
+            List<INode> contents = dirInode.getChildrenPage(
+                    DFSUtil.bytes2String(startAfter), getListingPageSize());
+            int numOfListing = Math.min(contents.size(), this.lsLimit);
             HdfsFileStatus listing[] = new HdfsFileStatus[numOfListing];
             for (int i = 0; i < numOfListing; i++) {
-                INode cur = contents.get(startChild + i);
+                INode cur = contents.get(i);
                 listing[i] = createFileStatus(cur.name, cur, needLocation);
             }
             return new DirectoryListing(
-                    listing, totalNumChildren - startChild - numOfListing);
+                    listing, contents.size() - numOfListing);
         } finally {
             readUnlock();
         }
     }
 
+    /**
+     * @return the number of children read for a listing, the listing limit
+     * and one more to tell whether there are more children.
+     */
+    int getListingPageSize() {
+        return lsLimit + 1;
+    }
+
     /**
      * Get the file info for a specific file.
      *
@@ -1402,6 +1423,20 @@ public class FSDirectory implements Closeable {
             UnresolvedLinkException,
             PersistanceException,
             IOException{
+        updateSpaceConsumed(path, nsDelta, dsDelta, 0);
+    }
+
+    /**
+     * Updates the count of the directories along the path like
+     * {@link #updateSpaceConsumed(String, long, long)}, also changing the
+     * length of their files by lengthDelta.
+     */
+    void updateSpaceConsumed(String path, long nsDelta, long dsDelta, long lengthDelta)
+            throws QuotaExceededException,
+            FileNotFoundException,
+            UnresolvedLinkException,
+            PersistanceException,
+            IOException{
         writeLock();
         try {
             INode[] inodes = getRootDir().getExistingPathINodes(path, false);
@@ -1410,7 +1445,8 @@ public class FSDirectory implements Closeable {
                 throw new FileNotFoundException(path
                         + " does not exist under rootDir.");
             }
-            updateCount(inodes, len - 1, nsDelta, dsDelta, true);
+            updateCount(inodes, len - 1,
+                    new INode.DirCounts(nsDelta, dsDelta, 0, lengthDelta), true);
         } finally {
             writeUnlock();
         }
@@ -1429,6 +1465,18 @@ public class FSDirectory implements Closeable {
     private void updateCount(INode[] inodes, int numOfINodes,
             long nsDelta, long dsDelta, boolean checkQuota)
             throws QuotaExceededException, PersistanceException {
+        updateCount(inodes, numOfINodes, new INode.DirCounts(nsDelta, dsDelta, 0, 0), checkQuota);
+    }
+
+    /**
+     * update all the counters of each directory on the path, see
+     * {@link #updateCount(INode[], int, long, long, boolean)}
+     */
+    private void updateCount(INode[] inodes, int numOfINodes,
+            INode.DirCounts delta, boolean checkQuota)
+            throws QuotaExceededException, PersistanceException {
+        long nsDelta = delta.getNsCount();
+        long dsDelta = delta.getDsCount();
         if (quotaEnabled) {
             assert hasWriteLock();
             if (!ready) {
@@ -1444,23 +1492,80 @@ public class FSDirectory implements Closeable {
 
             for (int i = 0; i < numOfINodes; i++) {
                 if (inodes[i] instanceof INodeDirectory) { // a directory
-                    INodeDirectory node = (INodeDirectory) inodes[i];
-                    node.updateNumItemsInTree(nsDelta, dsDelta);
-                    EntityManager.update(node);
+                    applyCount((INodeDirectory) inodes[i], delta);
                 }
             }
         }
     }
 
+    /**
+     * Changes the counters of a directory. A directory with a quota is
+     * checked against it with its counters, so they are updated in place and
+     * the directory is write locked by the operation. The other directories
+     * get a {@link DirCountsDelta}, which needs no lock on the directory.
+     */
+    private static void applyCount(INodeDirectory node, INode.DirCounts delta)
+            throws PersistanceException {
+        if (delta.isZero()) {
+            return;
+        }
+        if (node.isQuotaLimited()) {
+            node.updateNumItemsInTree(delta);
+            EntityManager.update(node);
+        } else {
+            EntityManager.add(new DirCountsDelta(node.getId(), delta));
+        }
+    }
+
+    /**
+     * Applies the deltas of a directory to its row and removes them. The
+     * directory and its deltas have to be write locked.
+     *
+     * @return the number of folded deltas
+     */
+    int foldDirCountsDeltas(INodeDirectory dir) throws PersistanceException {
+        Collection<DirCountsDelta> deltas = EntityManager.findList(
+                DirCountsDelta.Finder.ByINodeIds, Collections.singletonList(dir.getId()));
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        INode.DirCounts counts = new INode.DirCounts();
+        for (DirCountsDelta delta : deltas) {
+            delta.addTo(counts);
+            EntityManager.remove(delta);
+        }
+        dir.updateNumItemsInTree(counts);
+        EntityManager.update(dir);
+        return deltas.size();
+    }
+
+    /**
+     * Adds the counters of the tree of an inode to counts, with the deltas
+     * of the inode which are not folded into it yet. The deltas are only
+     * known for the directories the operation read them for, see
+     * {@link org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager#addDirCountsDelta}.
+     */
+    INode.DirCounts countsInTree(INode node, INode.DirCounts counts)
+            throws PersistanceException {
+        node.spaceConsumedInTree(counts);
+        if (quotaEnabled && node instanceof INodeDirectory) {
+            for (DirCountsDelta delta : EntityManager.findList(DirCountsDelta.Finder.ByINodeIds,
+                    Collections.singletonList(node.getId()))) {
+                delta.addTo(counts);
+            }
+        }
+        return counts;
+    }
+
     /**
      * update quota of each inode and check to see if quota is exceeded. See
      * {@link #updateCount(INode[], int, long, long, boolean)}
      */
     private void updateCountNoQuotaCheck(INode[] inodes, int numOfINodes,
-            long nsDelta, long dsDelta) throws PersistanceException {
+            INode.DirCounts delta) throws PersistanceException {
         assert hasWriteLock();
         try {
-            updateCount(inodes, numOfINodes, nsDelta, dsDelta, false);
+            updateCount(inodes, numOfINodes, delta, false);
         } catch (QuotaExceededException e) {
             NameNode.LOG.warn("FSDirectory.updateCountNoQuotaCheck - unexpected ", e);
         }
@@ -1477,12 +1582,15 @@ public class FSDirectory implements Closeable {
      */
     void unprotectedUpdateCount(INode[] inodes, int numOfINodes,
             long nsDelta, long dsDelta) throws PersistanceException {
+        unprotectedUpdateCount(inodes, numOfINodes, new INode.DirCounts(nsDelta, dsDelta, 0, 0));
+    }
+
+    void unprotectedUpdateCount(INode[] inodes, int numOfINodes,
+            INode.DirCounts delta) throws PersistanceException {
         assert hasWriteLock();
         for (int i = 0; i < numOfINodes; i++) {
             if (inodes[i] instanceof INodeDirectory) { // a directory with quota
-                INodeDirectory node = (INodeDirectory) inodes[i];
-                node.updateNumItemsInTree(nsDelta, dsDelta);
-                EntityManager.update(node);
+                applyCount((INodeDirectory) inodes[i], delta);
             }
         }
     }
@@ -1702,7 +1810,7 @@ public class FSDirectory implements Closeable {
                     // ancestor is reached
                     return;
                 }
-                if (inodes[i].isQuotaSet()) { // a directory with quota
+                if (inodes[i].isQuotaLimited()) { // a directory with quota
                     INodeDirectoryWithQuota node = (INodeDirectoryWithQuota) inodes[i];
                     node.verifyQuota(nsDelta, dsDelta);
                 }
@@ -1732,16 +1840,14 @@ public class FSDirectory implements Closeable {
         for (int i = 0; srcInodes[i].equals(dstInodes[i]); i++) {
             commonAncestor = srcInodes[i];
         }
-        INode.DirCounts srcCounts = new INode.DirCounts();
-        srcInode.spaceConsumedInTree(srcCounts);
+        INode.DirCounts srcCounts = countsInTree(srcInode, new INode.DirCounts());
         long nsDelta = srcCounts.getNsCount();
         long dsDelta = srcCounts.getDsCount();
 
         // Reduce the required quota by dst that is being removed
         INode dstInode = dstInodes[dstInodes.length - 1];
         if (dstInode != null) {
-            INode.DirCounts dstCounts = new INode.DirCounts();
-            dstInode.spaceConsumedInTree(dstCounts);
+            INode.DirCounts dstCounts = countsInTree(dstInode, new INode.DirCounts());
             nsDelta -= dstCounts.getNsCount();
             dsDelta -= dstCounts.getDsCount();
         }
@@ -1806,21 +1912,19 @@ public class FSDirectory implements Closeable {
             verifyFsLimits(pathComponents, pos, child);
         }
 
-        INode.DirCounts counts = new INode.DirCounts();
-        child.spaceConsumedInTree(counts);
+        INode.DirCounts counts = countsInTree(child, new INode.DirCounts());
         if (childDiskspace < 0) {
             childDiskspace = counts.getDsCount();
         }
-        updateCount(pathComponents, pos, counts.getNsCount(), childDiskspace,
-                checkQuota);
+        counts.dsCount = childDiskspace;
+        updateCount(pathComponents, pos, counts, checkQuota);
         if (pathComponents[pos - 1] == null) {
             throw new NullPointerException("Panic: parent does not exist");
         }
         T addedNode = ((INodeDirectory) pathComponents[pos - 1]).addChild(
                 child, inheritPermission, true, reuseID);
         if (addedNode == null) {
-            updateCount(pathComponents, pos, -counts.getNsCount(),
-                    -childDiskspace, true);
+            updateCount(pathComponents, pos, counts.negate(), true);
         } else {
 //            if (reuseID) {
 //                EntityManager.update(addedNode); //for move or rename
@@ -1870,10 +1974,8 @@ public class FSDirectory implements Closeable {
     private INode removeChild(INode[] pathComponents, int pos) throws PersistanceException {
         INodeDirectory dir = ((INodeDirectory) pathComponents[pos - 1]);	//parent of file/dir being removed
         INode removedNode = dir.removeChild(pathComponents[pos]);
-        INode.DirCounts counts = new INode.DirCounts();
-        removedNode.spaceConsumedInTree(counts);
-        updateCountNoQuotaCheck(pathComponents, pos,
-                -counts.getNsCount(), -counts.getDsCount());
+        INode.DirCounts counts = countsInTree(removedNode, new INode.DirCounts());
+        updateCountNoQuotaCheck(pathComponents, pos, counts.negate());
         EntityManager.remove(removedNode);
         return removedNode;
     }
@@ -1887,7 +1989,13 @@ public class FSDirectory implements Closeable {
         return src;
     }
 
-    ContentSummary getContentSummary(String src)
+    /**
+     * @param useCounters read the counters of a directory instead of walking
+     * its tree, only with quota
+     * @return null if the counters are used and the directory has deltas
+     * which are not folded yet, then its tree has to be walked
+     */
+    ContentSummary getContentSummary(String src, boolean useCounters)
             throws FileNotFoundException, UnresolvedLinkException,
             PersistanceException, IOException {
         String srcs = normalizePath(src);
@@ -1896,6 +2004,18 @@ public class FSDirectory implements Closeable {
             INode targetNode = getRootDir().getNode(srcs, false);
             if (targetNode == null) {
                 throw new FileNotFoundException("File does not exist: " + srcs);
+            } else if (useCounters && quotaEnabled && targetNode.isDirectory()) {
+                // the counters are exact once the deltas are folded, every
+                // change in the tree has a delta on this directory until then
+                INodeDirectory dir = (INodeDirectory) targetNode;
+                if (!EntityManager.findList(DirCountsDelta.Finder.ByINodeIds,
+                        Collections.singletonList(dir.getId())).isEmpty()) {
+                    return null;
+                }
+                INode.DirCounts counts = countsInTree(dir, new INode.DirCounts());
+                return new ContentSummary(counts.getLength(), counts.getFileCount(),
+                        counts.getNsCount() - counts.getFileCount(), dir.getNsQuota(),
+                        counts.getDsCount(), dir.getDsQuota());
             } else {
                 return targetNode.computeContentSummary();
             }
@@ -1904,6 +2024,77 @@ public class FSDirectory implements Closeable {
         }
     }
 
+    /**
+     * @return the paths of the immediate sub-directories of the directory
+     */
+    List<String> getSubdirectories(String src)
+            throws UnresolvedLinkException, PersistanceException, IOException {
+        String srcs = normalizePath(src);
+        List<String> subdirs = new ArrayList<String>();
+        readLock();
+        try {
+            INode targetNode = getRootDir().getNode(srcs, false);
+            if (targetNode instanceof INodeDirectory) {
+                String prefix = srcs.endsWith(Path.SEPARATOR) ? srcs : srcs + Path.SEPARATOR;
+                for (INode child : ((INodeDirectory) targetNode).getChildren()) {
+                    if (child.isDirectory()) {
+                        subdirs.add(prefix + child.getName());
+                    }
+                }
+            }
+        } finally {
+            readUnlock();
+        }
+        return subdirs;
+    }
+
+    /**
+     * Compares the counters of a directory with the ones computed from its
+     * immediate children and fixes the directory and all its ancestors if the
+     * counters drifted. The sub-directories are expected to be verified
+     * before, so a whole tree is fixed in one bottom-up pass.
+     *
+     * @return the difference which was added to the counters, null if they
+     * were right
+     */
+    INode.DirCounts verifyDirCounts(String src)
+            throws UnresolvedLinkException, PersistanceException, IOException {
+        String srcs = normalizePath(src);
+        writeLock();
+        try {
+            if (!quotaEnabled || !ready) {
+                return null;
+            }
+            INode[] inodes = getRootDir().getExistingPathINodes(srcs, false);
+            if (!(inodes[inodes.length - 1] instanceof INodeDirectory)) {
+                return null;
+            }
+            INodeDirectory dir = (INodeDirectory) inodes[inodes.length - 1];
+            INode.DirCounts current = countsInTree(dir, new INode.DirCounts());
+            INode.DirCounts expected = new INode.DirCounts(1, 0, 0, 0);
+            for (INode child : dir.getChildren()) {
+                countsInTree(child, expected);
+            }
+            INode.DirCounts delta = new INode.DirCounts(
+                    expected.getNsCount() - current.getNsCount(),
+                    expected.getDsCount() - current.getDsCount(),
+                    expected.getFileCount() - current.getFileCount(),
+                    expected.getLength() - current.getLength());
+            if (delta.isZero()) {
+                return null;
+            }
+            NameNode.LOG.warn("Fixing the counts of directory " + srcs
+                    + ". Namespace : " + current.getNsCount() + " -> " + expected.getNsCount()
+                    + ", Diskspace : " + current.getDsCount() + " -> " + expected.getDsCount()
+                    + ", Files : " + current.getFileCount() + " -> " + expected.getFileCount()
+                    + ", Length : " + current.getLength() + " -> " + expected.getLength());
+            unprotectedUpdateCount(inodes, inodes.length, delta);
+            return delta;
+        } finally {
+            writeUnlock();
+        }
+    }
+
     /**
      * Update the count of each directory with quota in the namespace A
      * directory's count is defined as the total number inodes in the tree
@@ -1934,8 +2125,13 @@ public class FSDirectory implements Closeable {
         long parentNamespace = counts.nsCount;
         long parentDiskspace = counts.dsCount;
 
+        long parentFileCount = counts.fileCount;
+        long parentLength = counts.length;
+
         counts.nsCount = 1L;//for self. should not call node.spaceConsumedInTree()
         counts.dsCount = 0L;
+        counts.fileCount = 0L;
+        counts.length = 0L;
 
         /*
          * We don't need nodesInPath if we could use 'parent' field in INode. using
@@ -1947,17 +2143,16 @@ public class FSDirectory implements Closeable {
             if (child.isDirectory()) {
                 updateCountForINodeDirectory((INodeDirectory) child,
                         counts, nodesInPath);
-            } else if (child.isLink()) {
-                counts.nsCount += 1;
             } else { // reduce recursive calls
-                counts.nsCount += 1;
-                counts.dsCount += ((INodeFile) child).diskspaceConsumed();
+                child.spaceConsumedInTree(counts);
             }
         }
 
         if (dir instanceof INodeDirectory) {
             ((INodeDirectory) dir).setSpaceConsumed(counts.nsCount,
                     counts.dsCount);
+            ((INodeDirectory) dir).setContentCounts(counts.fileCount,
+                    counts.length);
 
             // check if quota is violated for some reason.
             if ((dir.getNsQuota() >= 0 && counts.nsCount > dir.getNsQuota())
@@ -1983,6 +2178,8 @@ public class FSDirectory implements Closeable {
 
         counts.nsCount += parentNamespace;
         counts.dsCount += parentDiskspace;
+        counts.fileCount += parentFileCount;
+        counts.length += parentLength;
     }
 
     /**
@@ -2046,6 +2243,10 @@ public class FSDirectory implements Closeable {
                 EntityManager.update(newNode);
                 dirNode = newNode;
             }
+            if (quotaEnabled && dirNode.isQuotaLimited()) {
+                // checked against the quota from now on, with exact counters
+                foldDirCountsDeltas(dirNode);
+            }
             return (oldNsQuota != nsQuota || oldDsQuota != dsQuota) ? dirNode : null;
         }
     }
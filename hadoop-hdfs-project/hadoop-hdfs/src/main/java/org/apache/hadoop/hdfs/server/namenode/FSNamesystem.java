@@ -136,16 +136,20 @@ import org.apache.hadoop.hdfs.server.common.Storage;
 import org.apache.hadoop.hdfs.server.common.StorageInfo;
 import org.apache.hadoop.hdfs.server.common.UpgradeStatusReport;
 import org.apache.hadoop.hdfs.server.common.Util;
+import org.apache.hadoop.hdfs.server.namenode.lock.BlockINodeIdCache;
+import org.apache.hadoop.hdfs.server.namenode.lock.INodeHintCache;
 import org.apache.hadoop.hdfs.server.namenode.lock.INodeUtil;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager.*;
 import org.apache.hadoop.hdfs.server.namenode.metrics.FSNamesystemMBean;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
 import org.apache.hadoop.hdfs.server.namenode.persistance.LightWeightRequestHandler;
 import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
 import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
 import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler.*;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionRetryPolicy;
 import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.StorageInfoDataAccess;
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.UnderReplicatedBlockDataAccess;
@@ -262,6 +266,13 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
   LeaseManager leaseManager = new LeaseManager(this);
   Daemon lmthread = null;   // LeaseMonitor thread
   Daemon smmthread = null;  // SafeModeMonitor thread
+  Daemon dcvthread = null;  // DirCountsVerifier thread
+  Daemon dcathread = null;  // DirCountsAggregator thread
+  Daemon stmthread = null;  // SubtreeOperations monitor thread
+  Daemon lrbthread = null;  // LeaseRenewalBuffer flush thread
+  LeaseRenewalBuffer leaseRenewals;
+  CounterRangeAllocator counterRanges; // generation stamps and block ids
+  SubtreeOperations subtreeOps;
   //TODO:kamal resource monitor
 //  Daemon nnrmthread = null; // NamenodeResourceMonitor thread
 //TODO:kamal resource monitor
@@ -289,6 +300,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
   //private final GenerationStamp generationStamp = new GenerationStamp();
   // precision of access times.
   private long accessTimePrecision = 0;
+  boolean blockLocationsFastPathEnabled;
   // lock to protect FSNamesystem. TODO - JIM Remove this!!
   private ReentrantReadWriteLock fsLock;
   private NameNode nameNode;
@@ -327,9 +339,17 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
     systemLevelLockEnabled = conf.getBoolean(DFSConfigKeys.DFS_SYSTEM_LEVEL_LOCK_ENABLED_KEY, DFSConfigKeys.DFS_SYSTEM_LEVEL_LOCK_ENABLED_DEFAULT);
     rowLevelLockEnabled = conf.getBoolean(DFSConfigKeys.DFS_ROW_LEVEL_LOCK_ENABLED_KEY, DFSConfigKeys.DFS_ROW_LEVEL_LOCK_ENABLED_DEFAULT);
     StorageFactory.setConfiguration(conf);
+    INodeHintCache.setConfiguration(conf);
+    BlockINodeIdCache.setConfiguration(conf);
+    TransactionRetryPolicy.setConfiguration(conf);
+    TransactionLockAcquirer.setConfiguration(conf);
+    subtreeOps = new SubtreeOperations(this, conf);
+    leaseRenewals = new LeaseRenewalBuffer(this, conf);
+    counterRanges = new CounterRangeAllocator(this, conf);
     LOG.fatal(DFSConfigKeys.DFS_SYSTEM_LEVEL_LOCK_ENABLED_KEY + " = " + systemLevelLockEnabled);
     LOG.fatal(DFSConfigKeys.DFS_ROW_LEVEL_LOCK_ENABLED_KEY + " = " + rowLevelLockEnabled);
-    LOG.info("DFS_INODE_CACHE_ENABLED=" + DFSConfigKeys.DFS_INODE_CACHE_ENABLED);
+    LOG.info(DFSConfigKeys.DFS_INODE_HINT_CACHE_ENABLED_KEY + " = " + INodeHintCache.isEnabled());
+    LOG.info(DFSConfigKeys.DFS_BLOCK_INODE_CACHE_ENABLED_KEY + " = " + BlockINodeIdCache.isEnabled());
     this.systemStart = now();
     this.blockManager = new BlockManager(this, conf);
     this.fsLock = new ReentrantReadWriteLock(true); // fair locking
@@ -372,12 +392,6 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
     };
     initHandler.handle();
 
-    if (DFSConfigKeys.DFS_INODE_CACHE_ENABLED) {
-//      INodeCache cache = INodeCacheImpl.getInstance(); //added for magic cache
-//      cache.putRoot(this.dir.rootDir); //added for magic cache
-      // TODO - JUDE Integrate Memcachd
-    }
-
     this.safeMode = new SafeModeInfo(conf);
   }
 
@@ -411,8 +425,28 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
       setBlockTotal();
       EntityManager.commit();
       blockManager.activate(conf);
-      lmthread = new Daemon(leaseManager.new Monitor());
+      lmthread = new Daemon(leaseManager.new Monitor(conf));
       lmthread.start();
+      if (leaseRenewals.isEnabled()) {
+        lrbthread = new Daemon(leaseRenewals);
+        lrbthread.start();
+      }
+      long verifyInterval = conf.getLong(DFSConfigKeys.DFS_DIR_COUNTS_VERIFY_INTERVAL_KEY,
+              DFSConfigKeys.DFS_DIR_COUNTS_VERIFY_INTERVAL_DEFAULT);
+      if (dir.isQuotaEnabled()) {
+        dcvthread = new Daemon(new DirCountsVerifier(this, verifyInterval));
+        dcvthread.start();
+        dcathread = new Daemon(new DirCountsAggregator(this,
+                conf.getLong(DFSConfigKeys.DFS_DIR_COUNTS_AGGREGATE_INTERVAL_KEY,
+                DFSConfigKeys.DFS_DIR_COUNTS_AGGREGATE_INTERVAL_DEFAULT),
+                conf.getInt(DFSConfigKeys.DFS_DIR_COUNTS_AGGREGATE_BATCH_SIZE_KEY,
+                DFSConfigKeys.DFS_DIR_COUNTS_AGGREGATE_BATCH_SIZE_DEFAULT)));
+        dcathread.start();
+      }
+      stmthread = subtreeOps.createMonitor();
+      if (stmthread != null) {
+        stmthread.start();
+      }
       registerMXBean();
 ////      TODO:kamal, resouce monitor
 ////      this.nnrmthread = new Daemon(new NameNodeResourceMonitor());
@@ -598,6 +632,8 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
             DFS_NAMENODE_MAX_OBJECTS_DEFAULT);
 
     this.accessTimePrecision = conf.getLong(DFS_NAMENODE_ACCESSTIME_PRECISION_KEY, 0);
+    this.blockLocationsFastPathEnabled = conf.getBoolean(DFSConfigKeys.DFS_BLOCK_LOCATIONS_FAST_PATH_ENABLED_KEY,
+            DFSConfigKeys.DFS_BLOCK_LOCATIONS_FAST_PATH_ENABLED_DEFAULT);
     this.supportAppends = conf.getBoolean(DFS_SUPPORT_APPEND_KEY,
             DFS_SUPPORT_APPEND_DEFAULT);
 
@@ -640,6 +676,24 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
       if (smmthread != null) {
         smmthread.interrupt();
       }
+      if (dcvthread != null) {
+        dcvthread.interrupt();
+      }
+      if (dcathread != null) {
+        dcathread.interrupt();
+      }
+      if (stmthread != null) {
+        stmthread.interrupt();
+      }
+      if (lrbthread != null) {
+        lrbthread.interrupt();
+      }
+      if (subtreeOps != null) {
+        subtreeOps.shutdown();
+      }
+      if (counterRanges != null) {
+        counterRanges.close();
+      }
       if (dtSecretManager != null) {
         dtSecretManager.stopThreads();
       }
@@ -663,9 +717,8 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
         IOUtils.cleanup(LOG, dir);
       }
     }
-    if (DFSConfigKeys.DFS_INODE_CACHE_ENABLED) {
-      MemcacheForINode.getInstance().close();
-    }
+    INodeHintCache.clear();
+    BlockINodeIdCache.clear();
   }
 
   @Override
@@ -837,6 +890,23 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
   LocatedBlocks getBlockLocations(final String src, final long offset, final long length,
           final boolean doAccessTime, final boolean needBlockToken) throws FileNotFoundException,
           UnresolvedLinkException, IOException {
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (blockLocationsFastPathEnabled) {
+      long fastPathStart = now();
+      LocatedBlocks ret = getBlockLocationsFastPath(src, offset, length, doAccessTime, needBlockToken);
+      if (metrics != null) {
+        if (ret != null) {
+          metrics.addGetBlockLocationsFastPath(now() - fastPathStart);
+        } else {
+          metrics.addGetBlockLocationsFastPathMiss(now() - fastPathStart);
+        }
+      }
+      if (ret != null) {
+        return ret;
+      }
+    }
+    // the locked path is timed on its own, a missed fast path is not in it
+    long start = now();
     TransactionalRequestHandler getBlockLocationsHandler = new TransactionalRequestHandler(OperationType.GET_BLOCK_LOCATIONS) {
       @Override
       public Object performTask() throws PersistanceException, IOException {
@@ -845,14 +915,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
           checkPathAccess(src, FsAction.READ);
         }
 
-        if (offset < 0) {
-          throw new HadoopIllegalArgumentException(
-                  "Negative offset is not supported. File: " + src);
-        }
-        if (length < 0) {
-          throw new HadoopIllegalArgumentException(
-                  "Negative length is not supported. File: " + src);
-        }
+        checkBlockLocationsRange(src, offset, length);
         final LocatedBlocks ret = getBlockLocationsUpdateTimes(src,
                 offset, length, doAccessTime, needBlockToken);
         if (auditLog.isInfoEnabled() && isExternalInvocation()) {
@@ -875,7 +938,82 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
         lm.acquire();
       }
     };
-    return (LocatedBlocks) getBlockLocationsHandler.handle();
+    LocatedBlocks ret = (LocatedBlocks) getBlockLocationsHandler.handle();
+    if (metrics != null) {
+      metrics.addGetBlockLocationsLocked(now() - start);
+    }
+    return ret;
+  }
+
+  private void checkBlockLocationsRange(String src, long offset, long length) {
+    if (offset < 0) {
+      throw new HadoopIllegalArgumentException(
+              "Negative offset is not supported. File: " + src);
+    }
+    if (length < 0) {
+      throw new HadoopIllegalArgumentException(
+              "Negative length is not supported. File: " + src);
+    }
+  }
+
+  /**
+   * Reads the block locations of a closed file without row locks. It is not
+   * a snapshot: read committed reads see the committed data of one row at a
+   * time, so the inode, blocks and replicas may come from before and after
+   * a concurrent append, delete or rename of the file, or a replica change.
+   * The client handles such locations as it handles the ones which change
+   * after a locked read returned, it finds a replica missing when it reads
+   * the data and asks again. The file is read with the locks when it is
+   * under construction, has an incomplete block or needs its access time
+   * updated.
+   *
+   * @return the block locations or null if the locked path has to be taken
+   */
+  private LocatedBlocks getBlockLocationsFastPath(final String src, final long offset, final long length,
+          final boolean doAccessTime, final boolean needBlockToken) throws IOException {
+    TransactionalRequestHandler fastPathHandler = new TransactionalRequestHandler(OperationType.GET_BLOCK_LOCATIONS_FAST_PATH) {
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        INodeFile inode = dir.getFileINode(src);
+        if (inode == null || inode.isUnderConstruction()) {
+          return null;
+        }
+        if (doAccessTime && isAccessTimeSupported() && !isInSafeMode()
+                && now() > inode.getAccessTime() + getAccessTimePrecision()) {
+          return null;
+        }
+        List<BlockInfo> blocks = inode.getBlocks();
+        for (BlockInfo block : blocks) {
+          if (!block.isComplete()) {
+            return null;
+          }
+        }
+        if (isPermissionEnabled) {
+          checkPathAccess(src, FsAction.READ);
+        }
+        checkBlockLocationsRange(src, offset, length);
+        LocatedBlocks ret = blockManager.createLocatedBlocks(blocks,
+                inode.computeFileSize(false), false, offset, length, needBlockToken);
+        if (auditLog.isInfoEnabled() && isExternalInvocation()) {
+          logAuditEvent(UserGroupInformation.getCurrentUser(),
+                  Server.getRemoteIp(),
+                  "open", src, null, null);
+        }
+        return ret;
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager lm = new TransactionLockManager();
+        lm.addINode(INodeResolveType.ONLY_PATH, INodeLockType.READ_COMMITED, new String[]{src});
+        lm.addBlock(LockType.READ_COMMITTED).
+                addReplica(LockType.READ_COMMITTED).
+                addExcess(LockType.READ_COMMITTED).
+                addCorrupt(LockType.READ_COMMITTED);
+        lm.acquire();
+      }
+    };
+    return (LocatedBlocks) fastPathHandler.handle();
   }
 
   /*
@@ -1479,7 +1617,6 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
                 addCorrupt(TransactionLockManager.LockType.WRITE).
                 addExcess(TransactionLockManager.LockType.READ).
                 addReplicaUc(TransactionLockManager.LockType.WRITE).
-                addGenerationStamp(LockType.WRITE).
                 addUnderReplicatedBlock(TransactionLockManager.LockType.WRITE).
                 acquire();
       }
@@ -1687,7 +1824,6 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
                 addExcess(TransactionLockManager.LockType.READ).
                 addReplicaUc(TransactionLockManager.LockType.READ).
                 addUnderReplicatedBlock(LockType.WRITE).
-                addGenerationStamp(LockType.WRITE).
                 acquire();
       }
     };
@@ -1875,7 +2011,6 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
                 addCorrupt(TransactionLockManager.LockType.WRITE).
                 addExcess(TransactionLockManager.LockType.WRITE).
                 addReplicaUc(TransactionLockManager.LockType.WRITE).
-                addGenerationStamp(LockType.WRITE).
                 acquire();
       }
     };
@@ -2250,12 +2385,9 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
   private Block allocateBlock(String src, INode[] inodes,
           DatanodeDescriptor targets[]) throws IOException, PersistanceException {
     assert hasWriteLock();
-    Block b = new Block(DFSUtil.getRandom().nextLong(), 0, 0);
-    // FIXME JUDE not allowed to check a new bid in the db. THIS CODE IS STILL IN JUDE'S BRANCH.
-//    while (isValidBlock(b)) {
-//      b.setBlockId(DFSUtil.getRandom().nextLong());
-//    }
-    b.setGenerationStamp(getGenerationStamp());
+    // the ids come from the range of the counter, they are unique without a check in the db
+    Block b = new Block(counterRanges.next(), 0, 0);
+    b.setGenerationStamp(nextGenerationStamp());
     b = dir.addBlock(src, inodes, b, targets);
     NameNode.stateChangeLog.info("BLOCK* NameSystem.allocateBlock: "
             + src + ". " + blockPoolId + " " + b);
@@ -2361,11 +2493,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
       @Override
       public void acquireLock() throws PersistanceException, IOException {
         TransactionLockManager tla = new TransactionLockManager();
-        tla.addINode(
-                TransactionLockManager.INodeResolveType.PATH_AND_ALL_CHILDREN_RECURESIVELY,
-                TransactionLockManager.INodeLockType.WRITE,
-                false,
-                new String[]{src, dst}).
+        addRenameINodes(tla, src, dst).
                 addLease(TransactionLockManager.LockType.WRITE).
                 addLeasePath(TransactionLockManager.LockType.WRITE).
                 addBlock(TransactionLockManager.LockType.WRITE).
@@ -2447,11 +2575,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
       @Override
       public void acquireLock() throws PersistanceException, IOException {
         TransactionLockManager tla = new TransactionLockManager();
-        tla.addINode(
-                TransactionLockManager.INodeResolveType.PATH_AND_ALL_CHILDREN_RECURESIVELY,
-                TransactionLockManager.INodeLockType.WRITE,
-                false,
-                new String[]{src, dst}).
+        addRenameINodes(tla, src, dst).
                 addLease(TransactionLockManager.LockType.WRITE).
                 addLeasePath(TransactionLockManager.LockType.WRITE).
                 addBlock(TransactionLockManager.LockType.WRITE).
@@ -2465,6 +2589,115 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
     renameTo2Handler.handleWithWriteLock(this);
   }
 
+  /**
+   * With the subtree operations a rename does not lock the tree of src, which
+   * is moved by changing the parent of its root. Only the paths, the first
+   * child of dst and the leases of the files under construction below src
+   * are locked.
+   */
+  private TransactionLockManager addRenameINodes(TransactionLockManager tla, String src, String dst) {
+    // the counters of src and dst are moved between the ancestors
+    tla.addDirCountsDelta(TransactionLockManager.LockType.READ_COMMITTED);
+    if (!subtreeOps.isEnabled()) {
+      return tla.addINode(
+              TransactionLockManager.INodeResolveType.PATH_AND_ALL_CHILDREN_RECURESIVELY,
+              TransactionLockManager.INodeLockType.WRITE,
+              false,
+              new String[]{src, dst});
+    }
+    return tla.addINode(
+            TransactionLockManager.INodeResolveType.PATH_AND_CHILDREN_PAGE,
+            TransactionLockManager.INodeLockType.WRITE,
+            false,
+            new String[]{src, dst}).
+            addChildrenPage("", 1).
+            addLeasesByPathPrefix(src).
+            setCheckSubtreeLocksBelow();
+  }
+
+  /**
+   * Checks that src may be deleted if it is a non-empty directory, its parent
+   * for write and itself for all access.
+   *
+   * @return the id of the directory or INode.NON_EXISTING_ID if the delete
+   * runs in one transaction
+   */
+  private long findSubtreeRoot(final String src, final boolean recursive)
+          throws IOException {
+    TransactionalRequestHandler findHandler = new TransactionalRequestHandler(OperationType.SUBTREE_FIND_ROOT) {
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        if (isInSafeMode()) {
+          throw new SafeModeException("Cannot delete " + src, safeMode);
+        }
+        INode inode = dir.getRootDir().getNode(src, false);
+        if (!isNonEmptyDirectory(inode)) {
+          return INode.NON_EXISTING_ID;
+        }
+        if (!recursive) {
+          throw new IOException(src + " is non empty");
+        }
+        if (isPermissionEnabled) {
+          checkParentAccess(src, FsAction.WRITE).checkINode(inode, FsAction.ALL);
+        }
+        return inode.getId();
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager tla = new TransactionLockManager();
+        tla.addINode(
+                TransactionLockManager.INodeResolveType.PATH_AND_CHILDREN_PAGE,
+                TransactionLockManager.INodeLockType.READ_COMMITED,
+                false,
+                new String[]{src}).
+                addChildrenPage("", 1).
+                acquire();
+      }
+    };
+    return (Long) findHandler.handle(this);
+  }
+
+  /**
+   * Sets the subtree lock of src if it is still the non-empty directory that
+   * was read. It is refused if another subtree operation runs inside it.
+   *
+   * @return false if src changed and is deleted in one transaction
+   */
+  private boolean lockSubtreeForDelete(final String src, final long rootId)
+          throws IOException {
+    TransactionalRequestHandler lockHandler = new TransactionalRequestHandler(OperationType.SUBTREE_LOCK) {
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        INode inode = dir.getRootDir().getNode(src, false);
+        if (inode == null || inode.getId() != rootId || !isNonEmptyDirectory(inode)) {
+          return false;
+        }
+        subtreeOps.lockSubtree(inode);
+        return true;
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager tla = new TransactionLockManager();
+        tla.addINode(
+                TransactionLockManager.INodeResolveType.PATH_AND_CHILDREN_PAGE,
+                TransactionLockManager.INodeLockType.WRITE,
+                false,
+                new String[]{src}).
+                addChildrenPage("", 1).
+                setCheckSubtreeLocksBelow().
+                acquire();
+      }
+    };
+    return (Boolean) lockHandler.handleWithWriteLock(this);
+  }
+
+  private boolean isNonEmptyDirectory(INode inode) throws PersistanceException {
+    return inode != null && inode.isDirectory() && inode.getId() != FSDirectory.ROOT_ID
+            && !((INodeDirectory) inode).getChildrenPage("", 1).isEmpty();
+  }
+
   private void renameToInternal(String src, String dst, Options.Rename... options) throws IOException, PersistanceException {
     assert hasWriteLock();
     if (isInSafeMode()) {
@@ -2493,7 +2726,35 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
   boolean deleteWithTransaction(final String src, final boolean recursive)
           throws AccessControlException, SafeModeException,
           UnresolvedLinkException, IOException {
-    TransactionalRequestHandler deleteHandler = new TransactionalRequestHandler(OperationType.DELETE) {
+    long rootId = subtreeOps.isEnabled() ? findSubtreeRoot(src, recursive) : INode.NON_EXISTING_ID;
+    if (rootId != INode.NON_EXISTING_ID) {
+      // the tree is read and checked before it is locked, a subtree lock is
+      // only set for a delete which is allowed and can always be finished
+      SubtreeOperations.Subtree tree = subtreeOps.readSubtree(src, rootId, getPermissionChecker(), FsAction.ALL);
+      if (lockSubtreeForDelete(src, rootId)) {
+        try {
+          return deleteLockedSubtree(src, tree);
+        } finally {
+          subtreeOps.done(rootId);
+        }
+      }
+    }
+    return (Boolean) deleteHandler(src, recursive, INode.NON_EXISTING_ID).handleWithWriteLock(this);
+  }
+
+  /**
+   * Removes the descendants of a subtree locked directory in batches and the
+   * emptied directory with the usual delete, which clears the lock. The
+   * monitor of the subtree operations calls it again if it fails.
+   */
+  boolean deleteLockedSubtree(String src, SubtreeOperations.Subtree tree) throws IOException {
+    subtreeOps.deleteDescendants(tree);
+    return (Boolean) deleteHandler(src, true, tree.rootId).handleWithWriteLock(this);
+  }
+
+  private TransactionalRequestHandler deleteHandler(final String src, final boolean recursive,
+          final long subtreeRootId) {
+    return new TransactionalRequestHandler(OperationType.DELETE) {
       @Override
       public Object performTask() throws PersistanceException, IOException {
         return delete(src, recursive);
@@ -2508,6 +2769,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
                 TransactionLockManager.INodeLockType.WRITE,
                 false,
                 new String[]{src}).
+                setSubtreeRoot(subtreeRootId).
                 addLease(TransactionLockManager.LockType.WRITE).
                 addLeasePath(TransactionLockManager.LockType.WRITE).
                 addBlock(TransactionLockManager.LockType.WRITE).
@@ -2515,10 +2777,10 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
                 addCorrupt(TransactionLockManager.LockType.WRITE).
                 addReplicaUc(TransactionLockManager.LockType.WRITE).
                 addUnderReplicatedBlock(TransactionLockManager.LockType.WRITE).
+                addDirCountsDelta(TransactionLockManager.LockType.READ_COMMITTED).
                 acquire();
       }
     };
-    return (Boolean) deleteHandler.handleWithWriteLock(this);
   }
 
   /**
@@ -2587,7 +2849,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
    *
    * @throws IOException
    */
-  private void removeBlocks(List<Block> blocks) throws IOException, PersistanceException {
+  void removeBlocks(List<Block> blocks) throws IOException, PersistanceException {
     assert hasWriteLock();
     int start = 0;
     int end = 0;
@@ -2742,22 +3004,39 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
 
   ContentSummary getContentSummary(final String src) throws AccessControlException,
           FileNotFoundException, UnresolvedLinkException, IOException {
+    if (dir.isQuotaEnabled()) {
+      // the directories keep the counts of their trees, the tree is only
+      // walked while the directory has deltas which are not folded
+      ContentSummary summary = getContentSummary(src, true);
+      if (summary != null) {
+        return summary;
+      }
+      NameNode.getNameNodeMetrics().incrContentSummaryWalks();
+    }
+    return getContentSummary(src, false);
+  }
+
+  private ContentSummary getContentSummary(final String src, final boolean useCounters)
+          throws AccessControlException, FileNotFoundException, UnresolvedLinkException, IOException {
     TransactionalRequestHandler getContentSummaryHandler = new TransactionalRequestHandler(OperationType.GET_CONTENT_SUMMARY) {
       @Override
       public Object performTask() throws PersistanceException, IOException {
         if (isPermissionEnabled) {
           checkPermission(src, false, null, null, null, FsAction.READ_EXECUTE);
         }
-        return dir.getContentSummary(src);
+        return dir.getContentSummary(src, useCounters);
       }
 
       @Override
       public void acquireLock() throws PersistanceException, IOException {
         TransactionLockManager tla = new TransactionLockManager();
-        tla.addINode(TransactionLockManager.INodeResolveType.PATH_AND_ALL_CHILDREN_RECURESIVELY,
+        tla.addINode(useCounters
+                ? TransactionLockManager.INodeResolveType.ONLY_PATH
+                : TransactionLockManager.INodeResolveType.PATH_AND_ALL_CHILDREN_RECURESIVELY,
                 TransactionLockManager.INodeLockType.READ,
                 new String[]{src});
         tla.addBlock(TransactionLockManager.LockType.READ).
+                addDirCountsDelta(TransactionLockManager.LockType.READ_COMMITTED).
                 acquire();
       }
     };
@@ -2789,6 +3068,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
         tla.addINode(TransactionLockManager.INodeResolveType.ONLY_PATH,
                 TransactionLockManager.INodeLockType.WRITE,
                 new String[]{path}).
+                addDirCountsDelta(TransactionLockManager.LockType.WRITE).
                 acquire();
       }
     };
@@ -2959,7 +3239,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
 //                    lastBlock.setExpectedLocations(blockManager.getNodes(lastBlock));
 //                }
         // start recovery of the last block for this file
-        long blockRecoveryId = nextGenerationStamp();
+        long blockRecoveryId = nextGenerationStamp(getHighestStamp(lastBlock));
         lease = reassignLease(lease, src, recoveryLeaseHolder, pendingFile);
         lastBlock.initializeBlockRecovery(blockRecoveryId, getBlockManager().getDatanodeManager());
         EntityManager.update(lastBlock);
@@ -3029,6 +3309,8 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
           final Block commitBlock) throws IOException, PersistanceException {
     assert fileINode.isUnderConstruction();
     assert hasWriteLock();
+    BlockInfo lastBlock = fileINode.getLastBlock();
+    final long oldLength = lastBlock == null ? 0 : lastBlock.getNumBytes();
     if (!blockManager.commitOrCompleteLastBlock(fileINode, commitBlock)) {
       return;
     }
@@ -3037,10 +3319,12 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
     if (getFsDirectory().isQuotaEnabled()) {
       // Adjust disk space consumption if required
       final long diff = fileINode.getPreferredBlockSize() - commitBlock.getNumBytes();
-      if (diff > 0) {
+      final long lengthDelta = commitBlock.getNumBytes() - oldLength;
+      if (diff > 0 || lengthDelta != 0) {
         try {
           String path = leaseManager.findPath(fileINode);
-          dir.updateSpaceConsumed(path, 0, -diff * fileINode.getReplication());
+          dir.updateSpaceConsumed(path, 0,
+                  diff > 0 ? -diff * fileINode.getReplication() : 0, lengthDelta);
         } catch (IOException e) {
           LOG.warn("Unexpected exception while updating disk space.", e);
         }
@@ -3206,9 +3490,22 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
   }
 
   /**
-   * Renew the lease(s) held by the given client
+   * Renew the lease(s) held by the given client. Unless the lease renewal
+   * buffer is disabled, the renewal is written back later with the others of
+   * its flush interval.
    */
   void renewLease(final String holder) throws ImproperUsageException, IOException {
+    if (leaseRenewals.isEnabled()) {
+      try {
+        if (isInSafeMode()) {
+          throw new SafeModeException("Cannot renew lease for " + holder, safeMode);
+        }
+      } catch (PersistanceException ex) {
+        throw new IOException(ex);
+      }
+      leaseRenewals.renew(holder);
+      return;
+    }
     TransactionalRequestHandler renewLeaseHandler = new TransactionalRequestHandler(OperationType.RENEW_LEASE) {
       @Override
       public Object performTask() throws PersistanceException, IOException {
@@ -3266,9 +3563,10 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
       @Override
       public void acquireLock() throws PersistanceException, IOException {
         TransactionLockManager tla = new TransactionLockManager();
-        tla.addINode(TransactionLockManager.INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN,
+        tla.addINode(TransactionLockManager.INodeResolveType.PATH_AND_CHILDREN_PAGE,
                 TransactionLockManager.INodeLockType.READ,
                 new String[]{src}).
+                addChildrenPage(DFSUtil.bytes2String(startAfter), dir.getListingPageSize()).
                 addBlock(TransactionLockManager.LockType.READ).
                 addReplica(TransactionLockManager.LockType.READ).
                 addExcess(TransactionLockManager.LockType.READ).
@@ -4387,6 +4685,18 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
     return new PermissionStatus(fsOwner.getShortUserName(), supergroup, permission);
   }
 
+  /**
+   * @return the permission checker of the current user or null if the
+   * permissions are not checked for the user
+   */
+  FSPermissionChecker getPermissionChecker() throws AccessControlException {
+    if (!isPermissionEnabled) {
+      return null;
+    }
+    FSPermissionChecker pc = new FSPermissionChecker(fsOwner.getShortUserName(), supergroup);
+    return pc.isSuper ? null : pc;
+  }
+
   private FSPermissionChecker checkOwner(String path) throws AccessControlException,
           UnresolvedLinkException, PersistanceException, IOException {
     return checkPermission(path, true, null, null, null, null);
@@ -4624,17 +4934,35 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
   }
 
   /**
-   * Increments, logs and then returns the stamp
+   * Returns a new stamp from the range of the counter leased by this namenode
    */
-  private long nextGenerationStamp() throws SafeModeException, PersistanceException {
+  private long nextGenerationStamp() throws IOException, PersistanceException {
+    return nextGenerationStamp(Long.MIN_VALUE);
+  }
+
+  /**
+   * Returns a new stamp which is greater than the current stamp of a block,
+   * the stamps of the other namenodes may be ahead of the range of this one
+   */
+  private long nextGenerationStamp(long currentStamp) throws IOException, PersistanceException {
     assert hasWriteLock();
     if (isInSafeMode()) {
       throw new SafeModeException(
               "Cannot get next generation stamp", safeMode);
     }
-    long gs = getGenerationStamp();
-    setGenerationStamp(++gs);
-    return gs;
+    return counterRanges.nextAbove(currentStamp);
+  }
+
+  /**
+   * Returns the highest stamp handed out for a block, the recovery id of a
+   * block under recovery is above its stamp
+   */
+  private static long getHighestStamp(BlockInfo block) {
+    long stamp = block.getGenerationStamp();
+    if (block instanceof BlockInfoUnderConstruction) {
+      stamp = Math.max(stamp, ((BlockInfoUnderConstruction) block).getBlockRecoveryId());
+    }
+    return stamp;
   }
 
   private INodeFile checkUCBlock(ExtendedBlock block,
@@ -4691,8 +5019,12 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
         // check vadility of parameters
         checkUCBlock(block, clientName);
 
-        // get a new generation stamp and an access token
-        block.setGenerationStamp(nextGenerationStamp());
+        // get a new generation stamp and an access token, above the stamp
+        // and the recovery id of the stored block, which a block recovery
+        // may have raised
+        BlockInfo storedBlock = blockManager.getStoredBlock(ExtendedBlock.getLocalBlock(block));
+        block.setGenerationStamp(nextGenerationStamp(
+                Math.max(block.getGenerationStamp(), getHighestStamp(storedBlock))));
         locatedBlock = new LocatedBlock(block, new DatanodeInfo[0]);
         blockManager.setBlockToken(locatedBlock, AccessMode.WRITE);
         // Ensure we record the new generation stamp
@@ -4705,8 +5037,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
       public void acquireLock() throws PersistanceException, IOException {
         TransactionLockManager lm = new TransactionLockManager();
         lm.addINode(INodeLockType.READ).
-                addBlock(LockType.READ, block.getBlockId()).
-                addGenerationStamp(LockType.WRITE);
+                addBlock(LockType.READ, block.getBlockId());
         lm.acquireByBlock(inodeId);
       }
 
@@ -5389,6 +5720,27 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
     return nameNode.getId();
   }
 
+  /**
+   * @return ids of the namenodes which are alive
+   */
+  @Override
+  public Set<Long> getActiveNamenodeIds() throws IOException {
+    TransactionalRequestHandler activeNamenodesHandler = new TransactionalRequestHandler(OperationType.SELECT_ALL_NAMENODES) {
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager tlm = new TransactionLockManager();
+        tlm.addLeaderLock(TransactionLockManager.LockType.READ_COMMITTED).
+                acquire();
+      }
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        return new HashSet<Long>(nameNode.getLeaderAlgo().getActiveNamenodes().keySet());
+      }
+    };
+    return (Set<Long>) activeNamenodesHandler.handle();
+  }
+
   private boolean setPartition(String src) throws UnresolvedLinkException,
           PersistanceException, IOException {
     // fetching inodes in the begining and passing them over to the functions to restrict db access
@@ -5398,11 +5750,7 @@ public class FSNamesystem implements Namesystem, FSClusterStats,
       inode = (INodeFile) inodesOnPath[inodesOnPath.length - 1];
 
       // setting the partition key to inode id (will benefit from append and override functionaility)
-      Object[] partitionK = new Object[2];
-      partitionK[0] = inode.getId();
-      partitionK[1] = null;
-//            DBConnector.obtainSession().setPartitionKey(BlockInfoTable.class, partitionK);
-      EntityManager.setPartitionKey(BlockInfo.class, partitionK);
+      EntityManager.setPartitionKey(BlockInfo.class, inode.getId());
       return true;
     } else {
       return false;
@@ -182,6 +182,16 @@ class FSPermissionChecker {
     }
   }
 
+  /**
+   * Checks a single inode, used by the subtree operations which read the
+   * subtree without loading it as a tree.
+   */
+  void checkINode(INode inode, FsAction access) throws AccessControlException {
+    if (!isSuper) {
+      check(inode, access);
+    }
+  }
+
   private void check(INode[] inodes, int i, FsAction access
       ) throws AccessControlException {
     check(i >= 0? inodes[i]: null, access);
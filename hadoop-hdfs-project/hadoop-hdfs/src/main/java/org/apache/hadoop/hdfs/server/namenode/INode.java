@@ -41,7 +41,7 @@ public abstract class INode implements Comparable<byte[]>, FSInodeInfo {
 
     public static enum Finder implements org.apache.hadoop.hdfs.server.namenode.FinderType<INode> {
 
-        ByPKey, ByParentId, ByNameAndParentId, ByIds;
+        ByPKey, ByPKeyUncached, ByParentId, ByParentIdAfterName, ByNameAndParentId, ByIds, SubtreeLocked;
 
         @Override
         public Class getType() {
@@ -83,17 +83,31 @@ public abstract class INode implements Comparable<byte[]>, FSInodeInfo {
     protected long accessTime;
     protected long id; // Added for KTHFS
     protected long parentid; // Added for KTHFS
+    protected long subtreeLockOwner; // id of the namenode running a subtree operation on this inode, 0 if none
     // FIXME [H]: min value can be chosen as the inode id. Change this.
     public static final long NON_EXISTING_ID = Long.MIN_VALUE;
 
     /**
-     * Simple wrapper for two counters : nsCount (namespace consumed) and
-     * dsCount (diskspace consumed).
+     * Simple wrapper for the counters : nsCount (namespace consumed),
+     * dsCount (diskspace consumed), fileCount (files and symlinks) and length
+     * (bytes of the files).
      */
     public static class DirCounts {
 
         long nsCount = 0;
         long dsCount = 0;
+        long fileCount = 0;
+        long length = 0;
+
+        DirCounts() {
+        }
+
+        DirCounts(long nsCount, long dsCount, long fileCount, long length) {
+            this.nsCount = nsCount;
+            this.dsCount = dsCount;
+            this.fileCount = fileCount;
+            this.length = length;
+        }
 
         /**
          * returns namespace count
@@ -108,6 +122,26 @@ public abstract class INode implements Comparable<byte[]>, FSInodeInfo {
         long getDsCount() {
             return dsCount;
         }
+
+        long getFileCount() {
+            return fileCount;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        boolean isZero() {
+            return nsCount == 0 && dsCount == 0 && fileCount == 0 && length == 0;
+        }
+
+        /**
+         * @return the counters with the opposite sign, to take back what the
+         * counters added.
+         */
+        DirCounts negate() {
+            return new DirCounts(-nsCount, -dsCount, -fileCount, -length);
+        }
     }
     // Only updated by updatePermissionStatus(...).
     // Other codes should not modify it.
@@ -167,6 +201,7 @@ public abstract class INode implements Comparable<byte[]>, FSInodeInfo {
         this.parent = other.getParent();
         this.parentId = other.getParentId();
         this.accessTime = other.getAccessTime();
+        this.subtreeLockOwner = other.getSubtreeLockOwner();
         setPermissionStatus(other.getPermissionStatus());
         setModificationTime(other.getModificationTime());
     }
@@ -300,6 +335,22 @@ public abstract class INode implements Comparable<byte[]>, FSInodeInfo {
         return getNsQuota() >= 0 || getDsQuota() >= 0;
     }
 
+    /**
+     * The root always has the namespace quota it is created with, which can
+     * not be exceeded in practice. Only the directories with a quota set by
+     * an administrator keep their counts up to date in place, the others get
+     * their counts changed through {@link DirCountsDelta}s.
+     *
+     * @return true if a change in the tree of this inode has to be checked
+     * against its quota
+     */
+    public boolean isQuotaLimited() {
+        if (!isQuotaSet()) {
+            return false;
+        }
+        return !isRoot() || getNsQuota() != Integer.MAX_VALUE || getDsQuota() >= 0;
+    }
+
     /**
      * Adds total number of names and total disk space taken under this tree to
      * counts. Returns updated counts object.
@@ -556,6 +607,22 @@ public abstract class INode implements Comparable<byte[]>, FSInodeInfo {
         return this.parentId;
     }
 
+    /**
+     * @return id of the namenode which runs a subtree operation on the tree
+     * rooted at this inode, 0 if there is none
+     */
+    public long getSubtreeLockOwner() {
+        return subtreeLockOwner;
+    }
+
+    public void setSubtreeLockOwner(long subtreeLockOwner) {
+        this.subtreeLockOwner = subtreeLockOwner;
+    }
+
+    public boolean isSubtreeLocked() {
+        return subtreeLockOwner != 0;
+    }
+
     public String nameParentKey() {
         return parentId + getName();
     }
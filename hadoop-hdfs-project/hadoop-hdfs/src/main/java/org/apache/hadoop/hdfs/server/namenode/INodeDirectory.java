@@ -17,6 +17,7 @@
 package org.apache.hadoop.hdfs.server.namenode;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -41,6 +42,8 @@ public class INodeDirectory extends INode {
   private List<INode> children = null;
   protected long nsCount;
   protected long diskspace;
+  protected long fileCount;
+  protected long filesLength;
 
   public INodeDirectory(String name, PermissionStatus permissions) {
     super(name, permissions);
@@ -68,6 +71,8 @@ public class INodeDirectory extends INode {
     super(other);
     this.nsCount = other.getNsCount();
     this.diskspace = other.getDsCount();
+    this.fileCount = other.getFileCount();
+    this.filesLength = other.getFilesLength();
     this.children = other.getChildren();
     for (INode inode : children) {
       inode.setParent(this);
@@ -82,6 +87,20 @@ public class INodeDirectory extends INode {
     return diskspace;
   }
 
+  /**
+   * @return number of files and symlinks in the tree rooted at this directory
+   */
+  public long getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * @return total length of the files in the tree rooted at this directory
+   */
+  public long getFilesLength() {
+    return filesLength;
+  }
+
   /**
    * Check whether it's a directory
    */
@@ -434,6 +453,8 @@ public class INodeDirectory extends INode {
   public DirCounts spaceConsumedInTree(DirCounts counts) {
     counts.nsCount += nsCount;
     counts.dsCount += diskspace;
+    counts.fileCount += fileCount;
+    counts.length += filesLength;
     return counts;
   }
 
@@ -442,6 +463,13 @@ public class INodeDirectory extends INode {
     diskspace += dsDelta;
   }
 
+  void updateNumItemsInTree(DirCounts delta) {
+    nsCount += delta.nsCount;
+    diskspace += delta.dsCount;
+    fileCount += delta.fileCount;
+    filesLength += delta.length;
+  }
+
   /**
    * Sets namespace and diskspace take by the directory rooted at this INode.
    * This should be used carefully. It does not check for quota violations.
@@ -454,6 +482,15 @@ public class INodeDirectory extends INode {
     this.diskspace = diskspace;
   }
 
+  /**
+   * Sets the number of files and their total length in the directory rooted
+   * at this INode. Like setSpaceConsumed, it does not check quotas.
+   */
+  public void setContentCounts(long fileCount, long filesLength) {
+    this.fileCount = fileCount;
+    this.filesLength = filesLength;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -494,6 +531,22 @@ public class INodeDirectory extends INode {
     return children;
   }
 
+  /**
+   * Reads only the given page of the children, sorted by name.
+   *
+   * @param startAfter the name to start after, empty for the first page
+   * @param limit the maximum number of children to return
+   */
+  public List<INode> getChildrenPage(String startAfter, int limit) throws PersistanceException {
+    if (children != null) {
+      List<INode> page = new ArrayList<INode>();
+      int start = nextChild(DFSUtil.string2Bytes(startAfter), children);
+      page.addAll(children.subList(start, Math.min(children.size(), start + limit)));
+      return page;
+    }
+    return (List<INode>) EntityManager.findList(INode.Finder.ByParentIdAfterName, getId(), startAfter, limit);
+  }
+
   @Override
   public int collectSubtreeBlocksAndClear(List<Block> v) throws PersistanceException {
     int total = 1;
@@ -221,6 +221,8 @@ public class INodeFile extends INode {
   public DirCounts spaceConsumedInTree(DirCounts counts) throws PersistanceException {
     counts.nsCount += 1;
     counts.dsCount += diskspaceConsumed();
+    counts.fileCount += 1;
+    counts.length += computeFileSize(true);
     return counts;
   }
 
@@ -62,6 +62,7 @@ public class INodeSymlink extends INode {
   @Override
   public DirCounts spaceConsumedInTree(DirCounts counts) {
     counts.nsCount += 1;
+    counts.fileCount += 1;
     return counts;
   }
   
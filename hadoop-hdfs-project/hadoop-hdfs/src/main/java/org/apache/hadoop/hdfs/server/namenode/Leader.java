@@ -51,6 +51,10 @@ public class Leader implements Comparable<Leader>
     private String hostName;
     private int avgRequestProcessingLatency;
     private int partitionVal;
+    // block report load the namenode published with its counter
+    private long reportBacklog;
+    private int reportRate;
+    private int rpcQueueLength;
 
     public Leader(long id, long counter, long timeStamp, String hostName, int avgRequestProcessingLatency, int partitionVal)
     {
@@ -129,6 +133,36 @@ public class Leader implements Comparable<Leader>
         this.avgRequestProcessingLatency = avgRequestProcessingLatency;
     }
 
+    public long getReportBacklog()
+    {
+        return reportBacklog;
+    }
+
+    public void setReportBacklog(long reportBacklog)
+    {
+        this.reportBacklog = reportBacklog;
+    }
+
+    public int getReportRate()
+    {
+        return reportRate;
+    }
+
+    public void setReportRate(int reportRate)
+    {
+        this.reportRate = reportRate;
+    }
+
+    public int getRpcQueueLength()
+    {
+        return rpcQueueLength;
+    }
+
+    public void setRpcQueueLength(int rpcQueueLength)
+    {
+        this.rpcQueueLength = rpcQueueLength;
+    }
+
     public int getPartitionVal()
     {
         return partitionVal;
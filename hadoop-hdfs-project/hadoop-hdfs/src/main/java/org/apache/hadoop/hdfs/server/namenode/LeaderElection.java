@@ -238,6 +238,10 @@ public class LeaderElection extends Thread {
     // otherwise create a new row
     
     Leader leader = new Leader(id, counter, now(), hostname);
+    // publish the block report load for the leader to pick report targets
+    leader.setReportBacklog(nn.getNamesystem().getBlockManager().getBlockReportBacklog());
+    leader.setReportRate((int) nn.getNamesystem().getBlockManager().getBlockReportRate());
+    leader.setRpcQueueLength(nn.getRpcCallQueueLength());
     LOG.info(hostname+") Adding/updating row "+leader.toString());
     EntityManager.add(leader);
   }
@@ -267,12 +271,7 @@ public class LeaderElection extends Thread {
   }
 
   public SortedMap<Long, InetSocketAddress> getActiveNamenodes() throws PersistanceException, IOException {
-    // get max counter and total namenode count
-    long maxCounter = getLeaderRowCount();
-    int totalNamenodes = getAllNamenodesInternal().size();
-
-    // get all active namenodes
-    List<Leader> nns = getActiveNamenodesInternal(maxCounter, totalNamenodes);
+    List<Leader> nns = getActiveNamenodeRows();
 
     // Order by id
     SortedMap<Long, InetSocketAddress> activennMap = new TreeMap<Long, InetSocketAddress>();
@@ -284,6 +283,16 @@ public class LeaderElection extends Thread {
     return activennMap;
   }
 
+  /* The rows of the actively running NNs, with the load they published */
+  List<Leader> getActiveNamenodeRows() throws PersistanceException, IOException {
+    // get max counter and total namenode count
+    long maxCounter = getLeaderRowCount();
+    int totalNamenodes = getAllNamenodesInternal().size();
+
+    // get all active namenodes
+    return getActiveNamenodesInternal(maxCounter, totalNamenodes);
+  }
+
   public void removePrevoiouslyElectedLeaders(long id) throws PersistanceException {
     List<Leader> prevLeaders = getPreceedingNamenodesInternal(id);
     // Sort the leaders based on the id to avoid the scenario that there are two NNs
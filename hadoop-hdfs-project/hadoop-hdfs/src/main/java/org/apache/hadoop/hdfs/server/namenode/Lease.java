@@ -27,7 +27,7 @@ public class Lease implements Comparable<Lease> {
 
   public static enum Finder implements org.apache.hadoop.hdfs.server.namenode.FinderType<Lease> {
 
-    ByPKey, ByHolderId, All, ByTimeLimit;
+    ByPKey, ByHolderId, All, ByTimeLimit, ByHolders;
 
     @Override
     public Class getType() {
@@ -23,12 +23,18 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.UnresolvedLinkException;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
@@ -36,6 +42,7 @@ import org.apache.hadoop.hdfs.server.namenode.persistance.LightWeightRequestHand
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager.LockType;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
 
 import static org.apache.hadoop.hdfs.server.common.Util.now;
@@ -46,6 +53,7 @@ import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHa
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.LeaseDataAccess;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageFactory;
+import org.apache.hadoop.util.Daemon;
 
 /**
  * LeaseManager does the lease housekeeping for writing on files. This class
@@ -314,38 +322,123 @@ public class LeaseManager {
    * Monitor checks for leases that have expired, and disposes of them.
    * ****************************************************
    */
+  /**
+   * Recovers the expired leases periodically. A pass finds the expired leases
+   * and recovers the ones of this namenode's {@link NamenodeShard} of the
+   * holders on a pool of workers, one transaction per holder. The recovery
+   * does not hold the global lock, with system level locking a transaction
+   * takes it only for its own holder.
+   */
   class Monitor implements Runnable {
 
     final String name = getClass().getSimpleName();
+    private final int recoveryThreads;
+
+    Monitor(Configuration conf) {
+      this.recoveryThreads = Math.max(1, conf.getInt(DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_THREADS_KEY,
+              DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_THREADS_DEFAULT));
+    }
 
     /**
      * Check leases periodically.
      */
     @Override
     public void run() {
-      for (; fsnamesystem.isRunning();) {
-        fsnamesystem.writeLock();
-        try {
-          if (!(Boolean) isInSafeModeHandler.handle()) {
-            SortedSet<Lease> sortedLeases = (SortedSet<Lease>) findExpiredLeaseHandler.handle();
-            if (sortedLeases != null) {
-              for (Lease expiredLease : sortedLeases) {
-                expiredLeaseHandler.setParams(expiredLease.getHolder()).handle();
-              }
+      ExecutorService recoveryPool = Executors.newFixedThreadPool(recoveryThreads, new Daemon.DaemonFactory());
+      try {
+        for (; fsnamesystem.isRunning();) {
+          try {
+            if (!(Boolean) isInSafeModeHandler.handle()) {
+              recoverExpiredLeases(recoveryPool);
+            }
+          } catch (IOException ex) {
+            LOG.error(ex);
+          }
+          try {
+            Thread.sleep(HdfsServerConstants.NAMENODE_LEASE_RECHECK_INTERVAL);
+
+          } catch (InterruptedException ie) {
+            if (LOG.isDebugEnabled()) {
+              LOG.debug(name + " is interrupted", ie);
             }
           }
-        } catch (IOException ex) {
-          LOG.error(ex);
-        } finally {
-          fsnamesystem.writeUnlock();
         }
-        try {
-          Thread.sleep(HdfsServerConstants.NAMENODE_LEASE_RECHECK_INTERVAL);
+      } finally {
+        recoveryPool.shutdownNow();
+      }
+    }
 
+    /**
+     * Recovers the expired leases of the holders in the shard of this
+     * namenode, the oldest first, and waits until all of them are done.
+     */
+    private void recoverExpiredLeases(ExecutorService recoveryPool) throws IOException {
+      NamenodeShard shard = NamenodeShard.forNamenode(fsnamesystem.getNamenodeId(),
+              fsnamesystem.getActiveNamenodeIds());
+      if (shard == null) {
+        // not in the list of active namenodes yet, the others own all the holders
+        return;
+      }
+      SortedSet<Lease> sortedLeases = (SortedSet<Lease>) findExpiredLeaseHandler.handle();
+      List<String> holders = new ArrayList<String>();
+      if (sortedLeases != null) {
+        for (Lease expiredLease : sortedLeases) {
+          if (shard.ownsKey(expiredLease.getHolder())) {
+            holders.add(expiredLease.getHolder());
+          }
+        }
+      }
+      NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      if (metrics != null) {
+        metrics.setLeaseRecoveryBacklog(holders.size());
+      }
+      if (holders.isEmpty()) {
+        return;
+      }
+      LOG.info("Recovering the expired leases of " + holders.size() + " holders, " + shard);
+
+      List<Future<?>> recoveries = new ArrayList<Future<?>>(holders.size());
+      for (final String holder : holders) {
+        recoveries.add(recoveryPool.submit(new Runnable() {
+
+          @Override
+          public void run() {
+            recoverLease(holder);
+          }
+        }));
+      }
+      // every recovery is waited for, so the next pass does not submit a
+      // holder whose recovery still runs
+      for (Future<?> recovery : recoveries) {
+        try {
+          recovery.get();
         } catch (InterruptedException ie) {
-          if (LOG.isDebugEnabled()) {
-            LOG.debug(name + " is interrupted", ie);
+          // the namenode is stopping, the holders which are left wait for the next pass
+          Thread.currentThread().interrupt();
+          for (Future<?> left : recoveries) {
+            left.cancel(false);
           }
+          return;
+        } catch (ExecutionException ex) {
+          LOG.error("Lease recovery failed", ex.getCause());
+        }
+      }
+    }
+
+    private void recoverLease(String holder) {
+      long start = now();
+      NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      try {
+        newExpiredLeaseHandler().setParams(holder).handleWithWriteLock(fsnamesystem);
+      } catch (IOException ex) {
+        LOG.error("Cannot recover the lease of " + holder, ex);
+        if (metrics != null) {
+          metrics.incrLeaseRecoveryFailures();
+        }
+      } finally {
+        if (metrics != null) {
+          metrics.decrLeaseRecoveryBacklog();
+          metrics.addLeaseRecovery(now() - start);
         }
       }
     }
@@ -371,44 +464,50 @@ public class LeaseManager {
         return da.findByTimeLimit(expiredTime);
       }
     };
-    
-    TransactionalRequestHandler expiredLeaseHandler = new TransactionalRequestHandler(OperationType.LEASE_MANAGER_MONITOR) {
 
-      @Override
-      public Object performTask() throws PersistanceException, IOException {
-        String holder = (String) getParams()[0];
-        if (holder != null) {
-          checkLeases(holder);
+    /**
+     * A handler keeps the lease paths of its holder between setUp and
+     * acquireLock, so every recovery needs its own.
+     */
+    private TransactionalRequestHandler newExpiredLeaseHandler() {
+      return new TransactionalRequestHandler(OperationType.LEASE_MANAGER_MONITOR) {
+
+        @Override
+        public Object performTask() throws PersistanceException, IOException {
+          String holder = (String) getParams()[0];
+          if (holder != null) {
+            checkLeases(holder);
+          }
+          return null;
         }
-        return null;
-      }
 
-      private SortedSet<String> leasePaths = null;
-      @Override
-      public void acquireLock() throws PersistanceException, IOException {
-        String holder = (String) getParams()[0];
-        TransactionLockManager tlm = new TransactionLockManager();
-        tlm.addINode(TransactionLockManager.INodeLockType.WRITE).
-                addBlock(TransactionLockManager.LockType.WRITE).
-                addLease(TransactionLockManager.LockType.WRITE, holder).
-                addNameNodeLease(LockType.WRITE).
-                addLeasePath(TransactionLockManager.LockType.WRITE).
-                addReplica(TransactionLockManager.LockType.READ).
-                addCorrupt(TransactionLockManager.LockType.READ).
-                addExcess(TransactionLockManager.LockType.READ).
-                addReplicaUc(TransactionLockManager.LockType.READ).
-                addUnderReplicatedBlock(LockType.READ).
-                addGenerationStamp(LockType.WRITE).
-                acquireByLease(leasePaths);
-      }
-      
-      @Override
-      public void setUp() throws StorageException
-      {
-        String holder = (String) getParams()[0];
-        leasePaths = INodeUtil.findPathsByLeaseHolder(holder);
-      }
-    };
+        private SortedSet<String> leasePaths = null;
+        @Override
+        public void acquireLock() throws PersistanceException, IOException {
+          String holder = (String) getParams()[0];
+          TransactionLockManager tlm = new TransactionLockManager();
+          tlm.addINode(TransactionLockManager.INodeLockType.WRITE).
+                  addBlock(TransactionLockManager.LockType.WRITE).
+                  addLease(TransactionLockManager.LockType.WRITE, holder).
+                  addNameNodeLease(LockType.WRITE,
+                  HdfsServerConstants.getNamenodeLeaseHolder(fsnamesystem.getNamenodeId())).
+                  addLeasePath(TransactionLockManager.LockType.WRITE).
+                  addReplica(TransactionLockManager.LockType.READ).
+                  addCorrupt(TransactionLockManager.LockType.READ).
+                  addExcess(TransactionLockManager.LockType.READ).
+                  addReplicaUc(TransactionLockManager.LockType.READ).
+                  addUnderReplicatedBlock(LockType.READ).
+                  acquireByLease(leasePaths);
+        }
+
+        @Override
+        public void setUp() throws StorageException
+        {
+          String holder = (String) getParams()[0];
+          leasePaths = INodeUtil.findPathsByLeaseHolder(holder);
+        }
+      };
+    }
   }
 
   /**
@@ -440,7 +539,7 @@ public class LeaseManager {
       try {
         boolean leaseReleased = false;
         leaseReleased = fsnamesystem.internalReleaseLease(oldest, lPath.getPath(),
-                HdfsServerConstants.NAMENODE_LEASE_HOLDER);
+                HdfsServerConstants.getNamenodeLeaseHolder(fsnamesystem.getNamenodeId()));
         if (leaseReleased) {
           LOG.info("Lease recovery for file " + lPath
                   + " is complete. File closed.");
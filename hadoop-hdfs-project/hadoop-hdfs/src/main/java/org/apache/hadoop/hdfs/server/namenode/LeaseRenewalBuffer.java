@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
+
+import static org.apache.hadoop.hdfs.server.common.Util.now;
+
+/**
+ * Coalesces the lease renewals of the clients and writes them back in
+ * batches. A renewal only records the time of its holder in memory, and
+ * every flush interval the pending times are written in one transaction per
+ * batch of leases. The renewals of a holder within an interval become one
+ * write.
+ *
+ * A lease is written at most one interval late, which is small against the
+ * soft and hard limits checked by the lease monitor and the lease recovery,
+ * so they never take a renewed lease as expired. A renewal never moves the
+ * last update of a lease back.
+ */
+@InterfaceAudience.Private
+class LeaseRenewalBuffer implements Runnable {
+
+  static final Log LOG = LogFactory.getLog(LeaseRenewalBuffer.class);
+  private final FSNamesystem namesystem;
+  private final long flushInterval;
+  private final int batchSize;
+  private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<String, Long>();
+
+  LeaseRenewalBuffer(FSNamesystem namesystem, Configuration conf) {
+    this.namesystem = namesystem;
+    this.flushInterval = conf.getLong(DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_KEY,
+            DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_DEFAULT);
+    this.batchSize = Math.max(1, conf.getInt(DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_BATCH_SIZE_KEY,
+            DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_BATCH_SIZE_DEFAULT));
+  }
+
+  /**
+   * @return false if the renewals are written by their own transactions
+   */
+  boolean isEnabled() {
+    return flushInterval > 0;
+  }
+
+  void renew(String holder) {
+    pending.put(holder, now());
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      metrics.incrLeaseRenewals();
+    }
+  }
+
+  /**
+   * @return the number of holders whose renewal is not written yet
+   */
+  int getPendingCount() {
+    return pending.size();
+  }
+
+  @Override
+  public void run() {
+    while (namesystem.isRunning()) {
+      try {
+        Thread.sleep(flushInterval);
+      } catch (InterruptedException ie) {
+        LOG.debug("LeaseRenewalBuffer is interrupted", ie);
+        break;
+      }
+      flush();
+    }
+  }
+
+  /**
+   * Writes back the pending renewals, the holders in order and a batch per
+   * transaction. The renewals of a batch which fails are kept for the next
+   * flush unless the holder renewed again meanwhile.
+   *
+   * @return the number of leases written
+   */
+  int flush() {
+    SortedMap<String, Long> renewals = new TreeMap<String, Long>();
+    for (String holder : pending.keySet()) {
+      Long time = pending.remove(holder);
+      if (time != null) {
+        renewals.put(holder, time);
+      }
+    }
+    int written = 0;
+    SortedMap<String, Long> batch = new TreeMap<String, Long>();
+    for (Map.Entry<String, Long> renewal : renewals.entrySet()) {
+      batch.put(renewal.getKey(), renewal.getValue());
+      if (batch.size() == batchSize) {
+        written += write(batch);
+        batch = new TreeMap<String, Long>();
+      }
+    }
+    if (!batch.isEmpty()) {
+      written += write(batch);
+    }
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null && written > 0) {
+      metrics.incrLeaseRenewalWrites(written);
+    }
+    return written;
+  }
+
+  private int write(SortedMap<String, Long> batch) {
+    Integer renewed = null;
+    try {
+      renewed = writeBatch(batch);
+    } catch (IOException ex) {
+      LOG.error("Could not write back the renewals of " + batch.size() + " leases", ex);
+    }
+    if (renewed == null) {
+      for (Map.Entry<String, Long> renewal : batch.entrySet()) {
+        pending.putIfAbsent(renewal.getKey(), renewal.getValue());
+      }
+      return 0;
+    }
+    return renewed;
+  }
+
+  /**
+   * @return the number of leases written, null if the transaction was rolled
+   * back
+   */
+  @VisibleForTesting
+  Integer writeBatch(final SortedMap<String, Long> batch) throws IOException {
+    return (Integer) new TransactionalRequestHandler(OperationType.RENEW_LEASE) {
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        // one read for the batch, the leases which are gone are not returned
+        TransactionLockAcquirer.acquireLockList(TransactionLockManager.LockType.WRITE, Lease.Finder.ByHolders,
+                batch.keySet());
+      }
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        int renewed = 0;
+        for (Map.Entry<String, Long> renewal : batch.entrySet()) {
+          Lease lease = EntityManager.find(Lease.Finder.ByPKey, renewal.getKey());
+          // the lease is gone if its files were closed or it was recovered
+          if (lease != null && lease.getLastUpdated() < renewal.getValue()) {
+            lease.setLastUpdate(renewal.getValue());
+            EntityManager.update(lease);
+            renewed++;
+          }
+        }
+        return renewed;
+      }
+    }.handleWithWriteLock(namesystem);
+  }
+}
@@ -42,6 +42,8 @@ import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.NamenodeRole;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.StartupOption;
 import org.apache.hadoop.hdfs.server.common.StorageInfo;
 import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.namenode.lock.BlockINodeIdCache;
+import org.apache.hadoop.hdfs.server.namenode.lock.INodeHintCache;
 import org.apache.hadoop.hdfs.server.namenode.persistance.LightWeightRequestHandler;
 import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
 import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
@@ -191,6 +193,14 @@ public class NameNode
         return rpcServer;
     }
 
+    /**
+     * @return number of calls waiting in the rpc queues of this namenode
+     */
+    int getRpcCallQueueLength()
+    {
+        return rpcServer == null ? 0 : rpcServer.getCallQueueLength();
+    }
+
     static void initMetrics(Configuration conf, NamenodeRole role)
     {
         metrics = NameNodeMetrics.create(conf, role);
@@ -719,15 +729,12 @@ public class NameNode
                     return true;
                 }
             }
-
-            // clear cache
-      if (DFSConfigKeys.DFS_INODE_CACHE_ENABLED) {
-                MemcacheForINode cache = MemcacheForINode.getInstance();
-                cache.setConfiguration(conf);
-                cache.clear();
-            }
         }
 
+        // clear the inode hints of the old namespace
+        INodeHintCache.clear();
+        BlockINodeIdCache.clear();
+
         // if clusterID is not provided - see if you can find the current one
         String clusterId = StartupOption.FORMAT.getClusterId();
     if (clusterId == null || clusterId.equals("")) {
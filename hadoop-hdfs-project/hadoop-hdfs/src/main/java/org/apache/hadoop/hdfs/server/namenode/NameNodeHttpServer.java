@@ -176,6 +176,8 @@ public class NameNodeHttpServer {
         FileChecksumServlets.RedirectServlet.class, false);
     httpServer.addInternalServlet("contentSummary", "/contentSummary/*",
         ContentSummaryServlet.class, false);
+    httpServer.addInternalServlet("txstats", TransactionStatsServlet.PATH_SPEC,
+        TransactionStatsServlet.class, false);
   }
 
   public static NameNode getNameNodeFromContext(ServletContext context) {
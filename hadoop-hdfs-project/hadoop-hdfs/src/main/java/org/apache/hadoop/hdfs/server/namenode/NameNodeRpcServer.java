@@ -19,14 +19,14 @@ package org.apache.hadoop.hdfs.server.namenode;
 
 import static org.apache.hadoop.hdfs.protocol.HdfsConstants.MAX_PATH_DEPTH;
 import static org.apache.hadoop.hdfs.protocol.HdfsConstants.MAX_PATH_LENGTH;
+import static org.apache.hadoop.hdfs.server.common.Util.now;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-
-import java.util.Iterator;
+import java.util.List;
 import java.util.SortedMap;
 import org.apache.commons.logging.Log;
 import org.apache.hadoop.conf.Configuration;
@@ -81,6 +81,7 @@ import org.apache.hadoop.ipc.ProtocolSignature;
 import org.apache.hadoop.ipc.RPC;
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.net.Node;
+import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.Groups;
 import org.apache.hadoop.security.RefreshUserMappingsProtocol;
@@ -115,8 +116,8 @@ class NameNodeRpcServer implements NamenodeProtocols {
   protected final RPC.Server server;
   protected final InetSocketAddress rpcAddress;
   
-  /** Namenode counter that indicates the next namenode to send a block report to */
-  protected volatile int nnIndex = 0;
+  /** Chooses the next namenode to send a block report to */
+  private final BlockReportTargetSelector blockReportTargetSelector;
   
   public NameNodeRpcServer(Configuration conf, NameNode nn)
       throws IOException {
@@ -161,6 +162,24 @@ class NameNodeRpcServer implements NamenodeProtocols {
     // The rpc-server port can be ephemeral... ensure we have the correct info
     this.rpcAddress = this.server.getListenerAddress(); 
     nn.setRpcServerAddress(conf, rpcAddress);
+
+    // a report is in the published load of its namenode at the latest one
+    // datanode heartbeat and one leader round after it is assigned
+    this.blockReportTargetSelector = new BlockReportTargetSelector(
+        conf.getLong(DFS_BLOCK_REPORT_MAX_WAIT_KEY, DFS_BLOCK_REPORT_MAX_WAIT_DEFAULT),
+        conf.getLong(DFS_HEARTBEAT_INTERVAL_KEY, DFS_HEARTBEAT_INTERVAL_DEFAULT) * 1000L
+        + conf.getInt(DFS_LEADER_CHECK_INTERVAL_KEY, DFS_LEADER_CHECK_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * @return number of calls waiting in the rpc queues
+   */
+  int getCallQueueLength() {
+    int length = server.getCallQueueLen();
+    if (serviceRpcServer != null) {
+      length += serviceRpcServer.getCallQueueLen();
+    }
+    return length;
   }
   
   /**
@@ -746,6 +765,25 @@ class NameNodeRpcServer implements NamenodeProtocols {
     return null;
   }
 
+  @Override // DatanodeProtocol
+  public DatanodeCommand incrementalBlockReport(DatanodeRegistration nodeReg,
+      String poolId, long[] changedBlocks, long[] removedBlockIds)
+      throws IOException {
+    verifyRequest(nodeReg);
+    BlockListAsLongs blist = new BlockListAsLongs(changedBlocks);
+    if(stateChangeLog.isDebugEnabled()) {
+      stateChangeLog.debug("*BLOCK* NameNode.incrementalBlockReport: "
+           + "from " + nodeReg.getName() + " " + blist.getNumberOfBlocks()
+           + " changed blocks, " + removedBlockIds.length + " removed blocks");
+    }
+
+    if (!namesystem.getBlockManager().processIncrementalReport(nodeReg, poolId,
+        blist, removedBlockIds)) {
+      return DatanodeCommand.BLOCKREPORT;
+    }
+    return null;
+  }
+
   @Override // DatanodeProtocol
   public void blockReceivedAndDeleted(DatanodeRegistration nodeReg, String poolId,
       ReceivedDeletedBlockInfo[] receivedAndDeletedBlocks) throws IOException {
@@ -901,43 +939,39 @@ class NameNodeRpcServer implements NamenodeProtocols {
     return new ActiveNamenodeList((SortedMap<Long, InetSocketAddress>) selectAllNameNodesHandler.handle());
   }
 
+  private TransactionalRequestHandler selectActiveNamenodesHandler = new TransactionalRequestHandler(OperationType.SELECT_ALL_NAMENODES) {
+
+    @Override
+    public void acquireLock() throws PersistanceException, IOException {
+      TransactionLockManager tlm = new TransactionLockManager();
+      tlm.addLeaderLock(TransactionLockManager.LockType.READ_COMMITTED).
+              acquire();
+    }
+
+    @Override
+    public Object performTask() throws PersistanceException, IOException {
+      return nn.getLeaderAlgo().getActiveNamenodeRows();
+    }
+  };
+
   /**
    * The BPOfferService that corresponds to the leader Namenode asks it which 'namenode' to send the block reports to
    * This is a feature added to do load balancing of block reports among namenodes
    */
   @Override
-  public String getNextNamenodeToSendBlockReport() throws IOException {
-    // Use the modulo to roundrobin b/w namenodes
-    nnIndex++;
-    // TODO[Hooman]: What if totalNamenodes is null?
-    Collection<InetSocketAddress> totalNamenodes = ((SortedMap<Long, InetSocketAddress>) selectAllNameNodesHandler.handle()).values();
-    nnIndex = nnIndex % totalNamenodes.size();
-    Iterator<InetSocketAddress> iter = totalNamenodes.iterator();
-    int count = nnIndex;
-    while(iter.hasNext()) {
-      if(count == 0) {
-        break;
-      }
-      else {
-        // skip this namenode
-        iter.next();
-        count--;
-      }
+  public String getNextNamenodeToSendBlockReport(long numBlocks) throws IOException {
+    List<Leader> namenodes = (List<Leader>) selectActiveNamenodesHandler.handle();
+    if (namenodes.isEmpty()) {
+      throw new IOException("No active namenode to send the block report to");
     }
-    // Convert to string format to be passed over RPC
-    if(!iter.hasNext()) {
-      throw new IOException("Something went wrong [nnIndex: "+nnIndex+", size: "+totalNamenodes.size()+", count: "+count+"]. Expecting namenode entry");
+    Leader target = blockReportTargetSelector.select(namenodes, numBlocks, now());
+    if (target == null) {
+      // all namenodes are busy, the datanode asks again later
+      return "";
     }
-    InetSocketAddress ipAddr = iter.next();
-    String ip_port = ipAddr.getAddress().getHostAddress()+":"+ipAddr.getPort();
-
-    // TODO Jude - if i am the leader and I am in safe-mode, then send the block reports
-    // only to me - these are the initial block reports needed to leave safe mode.
-//    if (nn.isInSafeMode() && nn.isLeader()) {
-//        ip_port = // my ip-port
-//    }
-    
-    return ip_port;
+    // Convert to string format to be passed over RPC
+    InetSocketAddress ipAddr = NetUtils.createSocketAddr(target.getHostName());
+    return ipAddr.getAddress().getHostAddress()+":"+ipAddr.getPort();
   }
 
 }
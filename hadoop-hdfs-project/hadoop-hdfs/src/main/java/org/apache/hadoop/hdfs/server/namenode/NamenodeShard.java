@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The part of the work spread over the active namenodes which one namenode
+ * does. The active namenodes are sorted by id and namenode i of n owns the
+ * ids with id mod n == i and the keys whose hash is i mod n. Every namenode
+ * sees the same list in the leader table, so the shards cover the work
+ * without overlap, and they are reassigned as soon as the list changes.
+ *
+ * The replication monitor shards the blocks by id and the invalidations by
+ * storage id, the lease monitor the expired leases by holder.
+ */
+public class NamenodeShard {
+
+  /** the shard of a namenode which does all the work */
+  public static final NamenodeShard ALL = new NamenodeShard(0, 1);
+  private final int index;
+  private final int count;
+
+  public NamenodeShard(int index, int count) {
+    this.index = index;
+    this.count = count;
+  }
+
+  /**
+   * @return the shard of the given namenode, or null if it is not in the
+   * list of active namenodes
+   */
+  public static NamenodeShard forNamenode(long namenodeId, Collection<Long> activeNamenodes) {
+    SortedSet<Long> sorted = new TreeSet<Long>(activeNamenodes);
+    if (!sorted.contains(namenodeId)) {
+      return null;
+    }
+    return new NamenodeShard(sorted.headSet(namenodeId).size(), sorted.size());
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public boolean ownsId(long id) {
+    // ids can be negative, as block ids are
+    return (int) (((id % count) + count) % count) == index;
+  }
+
+  public boolean ownsKey(String key) {
+    return ownsHash(key.hashCode());
+  }
+
+  private boolean ownsHash(int hash) {
+    return (hash & Integer.MAX_VALUE) % count == index;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof NamenodeShard)) {
+      return false;
+    }
+    NamenodeShard other = (NamenodeShard) o;
+    return index == other.index && count == other.count;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * index + count;
+  }
+
+  @Override
+  public String toString() {
+    return "shard " + (index + 1) + " of " + count;
+  }
+}
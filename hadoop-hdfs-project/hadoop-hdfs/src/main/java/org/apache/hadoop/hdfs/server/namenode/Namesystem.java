@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.hdfs.server.namenode;
 
+import java.io.IOException;
+import java.util.Set;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.hdfs.util.RwLock;
 import org.apache.hadoop.security.AccessControlException;
@@ -38,4 +40,7 @@ public interface Namesystem extends RwLock, SafeMode {
   
   /** Returns the namenode id*/
   public long getNamenodeId();
+
+  /** Returns the ids of the namenodes which are alive */
+  public Set<Long> getActiveNamenodeIds() throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * This exception is thrown when a path is inside a subtree on which a delete
+ * or rename of a large directory is in progress. The operation can be retried
+ * once the subtree operation is done.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class SubtreeLockedException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  public SubtreeLockedException(String path, long owner) {
+    super("Cannot access " + path + " while namenode " + owner
+        + " runs a subtree operation on it or on one of its ancestors");
+  }
+}
@@ -0,0 +1,434 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.LightWeightRequestHandler;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.InodeDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageFactory;
+import org.apache.hadoop.util.Daemon;
+
+/**
+ * Delete of directories with many descendants, without locking the whole
+ * tree in one transaction. A rename does not need it, it locks only the two
+ * paths and the leases below src, see FSNamesystem#addRenameINodes.
+ *
+ * The tree is read and the permissions of its directories are checked
+ * first. The delete then sets the subtree lock of the directory, which is
+ * the id of the namenode running it, in a transaction that locks only the
+ * path. The lock layer refuses any path that goes through a subtree lock,
+ * and the operations which find a file by id check the subtree locks of its
+ * path, so nothing is created, changed or moved below the directory while
+ * the delete runs. The descendants are removed bottom-up, the children of a
+ * directory in batches of one transaction each and the directories of a
+ * level in parallel, and the emptied directory is removed in the end with
+ * the usual delete, which clears the lock.
+ *
+ * A subtree lock is only set once the delete is allowed, so a delete which
+ * failed or whose namenode crashed is finished by the monitor: every
+ * namenode finishes its own deletes which are not running anymore, and the
+ * leader the deletes of the namenodes which are not alive. The directory
+ * counters of the subtree are not updated by the batches, the usual delete
+ * of the root takes its counters off its ancestors.
+ */
+class SubtreeOperations {
+
+  static final Log LOG = LogFactory.getLog(SubtreeOperations.class);
+
+  /**
+   * A directory of the subtree with its path.
+   */
+  static class Dir {
+
+    final long id;
+    final String path;
+
+    Dir(long id, String path) {
+      this.id = id;
+      this.path = path;
+    }
+
+    String childPath(String name) {
+      return path.endsWith(Path.SEPARATOR) ? path + name : path + Path.SEPARATOR + name;
+    }
+  }
+
+  /**
+   * The directories of a subtree by depth, the subtree root is the only
+   * directory of depth 0.
+   */
+  static class Subtree {
+
+    final long rootId;
+    final List<List<Dir>> levels = new ArrayList<List<Dir>>();
+    long inodes = 1;
+
+    Subtree(long rootId) {
+      this.rootId = rootId;
+    }
+  }
+  private final FSNamesystem namesystem;
+  private final boolean enabled;
+  private final int batchSize;
+  private final long recoveryInterval;
+  private final ExecutorService executor;
+  // the roots of the deletes this namenode is running, the monitor leaves them alone
+  private final Set<Long> running = Collections.synchronizedSet(new HashSet<Long>());
+
+  SubtreeOperations(FSNamesystem namesystem, Configuration conf) {
+    this.namesystem = namesystem;
+    this.enabled = conf.getBoolean(DFSConfigKeys.DFS_SUBTREE_OPS_ENABLED_KEY,
+            DFSConfigKeys.DFS_SUBTREE_OPS_ENABLED_DEFAULT);
+    this.batchSize = Math.max(1, conf.getInt(DFSConfigKeys.DFS_SUBTREE_BATCH_SIZE_KEY,
+            DFSConfigKeys.DFS_SUBTREE_BATCH_SIZE_DEFAULT));
+    this.recoveryInterval = conf.getLong(DFSConfigKeys.DFS_SUBTREE_RECOVERY_INTERVAL_KEY,
+            DFSConfigKeys.DFS_SUBTREE_RECOVERY_INTERVAL_DEFAULT);
+    int threads = Math.max(1, conf.getInt(DFSConfigKeys.DFS_SUBTREE_EXECUTOR_THREADS_KEY,
+            DFSConfigKeys.DFS_SUBTREE_EXECUTOR_THREADS_DEFAULT));
+    this.executor = enabled ? Executors.newFixedThreadPool(threads) : null;
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the recovery monitor or null if the subtree operations are
+   * disabled
+   */
+  Daemon createMonitor() {
+    return enabled ? new Daemon(new Monitor()) : null;
+  }
+
+  void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Sets the subtree lock, the inode has to be write locked. The delete is
+   * running until {@link #done(long)} is called.
+   *
+   * @return the id of the subtree root
+   */
+  long lockSubtree(INode root) throws PersistanceException {
+    root.setSubtreeLockOwner(namesystem.getNamenodeId());
+    EntityManager.update(root);
+    running.add(root.getId());
+    return root.getId();
+  }
+
+  /**
+   * The delete of the subtree returned, if it failed its lock is left for
+   * the monitor which finishes it.
+   */
+  void done(long rootId) {
+    running.remove(rootId);
+  }
+
+  /**
+   * Reads the directories of the subtree level by level, without locks. The
+   * tree is read before it is locked, the inodes added in between are
+   * removed by the usual delete of the root.
+   *
+   * @param pc checks every directory for the given access, null for none
+   * @throws SubtreeLockedException if another subtree operation runs below
+   * the root
+   */
+  Subtree readSubtree(String path, long rootId, FSPermissionChecker pc, FsAction access)
+          throws IOException {
+    Subtree tree = new Subtree(rootId);
+    List<Dir> level = Collections.singletonList(new Dir(rootId, path));
+    while (!level.isEmpty()) {
+      tree.levels.add(level);
+      List<Dir> next = new ArrayList<Dir>();
+      for (Dir dir : level) {
+        String startAfter = "";
+        List<INode> page;
+        do {
+          page = listChildren(dir.id, startAfter);
+          for (INode child : page) {
+            tree.inodes++;
+            if (child.isSubtreeLocked()) {
+              throw new SubtreeLockedException(dir.childPath(child.getName()), child.getSubtreeLockOwner());
+            }
+            if (child.isDirectory()) {
+              if (pc != null) {
+                pc.checkINode(child, access);
+              }
+              next.add(new Dir(child.getId(), dir.childPath(child.getName())));
+            }
+          }
+          if (!page.isEmpty()) {
+            startAfter = page.get(page.size() - 1).getName();
+          }
+        } while (page.size() == batchSize);
+      }
+      level = next;
+    }
+    return tree;
+  }
+
+  /**
+   * Removes all the descendants of the subtree root, the deepest directories
+   * first. The directories of a level are emptied in parallel.
+   */
+  void deleteDescendants(Subtree tree) throws IOException {
+    long start = System.currentTimeMillis();
+    for (int depth = tree.levels.size() - 1; depth >= 0; depth--) {
+      List<Future<Object>> tasks = new ArrayList<Future<Object>>();
+      for (final Dir dir : tree.levels.get(depth)) {
+        tasks.add(executor.submit(new Callable<Object>() {
+
+          @Override
+          public Object call() throws Exception {
+            deleteChildren(dir);
+            return null;
+          }
+        }));
+      }
+      waitFor(tasks);
+    }
+    LOG.info("Deleted " + (tree.inodes - 1) + " inodes below " + tree.levels.get(0).get(0).path
+            + " in " + (System.currentTimeMillis() - start) + " msec");
+  }
+
+  private void waitFor(List<Future<Object>> tasks) throws IOException {
+    try {
+      for (Future<Object> task : tasks) {
+        task.get();
+      }
+    } catch (InterruptedException ex) {
+      throw (IOException) new InterruptedIOException("Interrupted while deleting a subtree").initCause(ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException(ex.getCause());
+    } finally {
+      for (Future<Object> task : tasks) {
+        task.cancel(true);
+      }
+    }
+  }
+
+  private void deleteChildren(Dir dir) throws IOException {
+    String startAfter = "";
+    List<INode> page;
+    do {
+      page = listChildren(dir.id, startAfter);
+      if (page.isEmpty()) {
+        return;
+      }
+      deleteBatch(dir, page);
+      startAfter = page.get(page.size() - 1).getName();
+    } while (page.size() == batchSize);
+  }
+
+  /**
+   * Removes a batch of children of a directory in one transaction, the
+   * sub-directories in the batch are already empty.
+   */
+  private void deleteBatch(final Dir dir, List<INode> children) throws IOException {
+    final List<Long> ids = new ArrayList<Long>(children.size());
+    for (INode child : children) {
+      ids.add(child.getId());
+    }
+    new TransactionalRequestHandler(OperationType.SUBTREE_DELETE_BATCH) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        List<Block> collectedBlocks = new ArrayList<Block>();
+        int removed = 0;
+        for (long id : ids) {
+          INode inode = EntityManager.find(INode.Finder.ByPKey, id);
+          if (inode == null || inode.getParentId() != dir.id) {
+            continue;
+          }
+          if (inode instanceof INodeFile) {
+            if (((INodeFile) inode).isUnderConstruction()) {
+              namesystem.leaseManager.removeLeaseWithPrefixPath(dir.childPath(inode.getName()));
+            }
+            inode.collectSubtreeBlocksAndClear(collectedBlocks);
+          } else {
+            EntityManager.remove(inode);
+          }
+          removed++;
+        }
+        namesystem.removeBlocks(collectedBlocks);
+        NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+        if (metrics != null) {
+          metrics.incrFilesDeleted(removed);
+        }
+        return null;
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager tla = new TransactionLockManager();
+        tla.addINodes(TransactionLockManager.INodeLockType.WRITE, ids).
+                addLease(TransactionLockManager.LockType.WRITE).
+                addLeasePath(TransactionLockManager.LockType.WRITE).
+                addBlock(TransactionLockManager.LockType.WRITE).
+                addReplica(TransactionLockManager.LockType.WRITE).
+                addCorrupt(TransactionLockManager.LockType.WRITE).
+                addReplicaUc(TransactionLockManager.LockType.WRITE).
+                addUnderReplicatedBlock(TransactionLockManager.LockType.WRITE).
+                acquire();
+      }
+    }.handleWithWriteLock(namesystem);
+  }
+
+  private List<INode> listChildren(final long parentId, final String startAfter) throws IOException {
+    return (List<INode>) new LightWeightRequestHandler(OperationType.SUBTREE_LIST_CHILDREN) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        InodeDataAccess da = (InodeDataAccess) StorageFactory.getDataAccess(InodeDataAccess.class);
+        return da.findInodesByParentIdAfterName(parentId, startAfter, batchSize);
+      }
+    }.handle();
+  }
+
+  /**
+   * Finishes the deletes which hold a subtree lock but are not running.
+   *
+   * @param deadNamenodes the deletes of the namenodes which are not alive as
+   * well, not only the ones of this namenode
+   */
+  void recover(boolean deadNamenodes) throws IOException {
+    List<INode> locked = (List<INode>) new LightWeightRequestHandler(OperationType.SUBTREE_RECOVERY) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        InodeDataAccess da = (InodeDataAccess) StorageFactory.getDataAccess(InodeDataAccess.class);
+        return da.findSubtreeLockedInodes();
+      }
+    }.handle();
+    if (locked.isEmpty()) {
+      return;
+    }
+    long self = namesystem.getNamenodeId();
+    Set<Long> alive = deadNamenodes ? namesystem.getActiveNamenodeIds() : null;
+    for (INode root : locked) {
+      long owner = root.getSubtreeLockOwner();
+      if (owner == self ? running.contains(root.getId()) : !deadNamenodes || alive.contains(owner)) {
+        continue;
+      }
+      LOG.warn("Finishing the delete of namenode " + owner + " on inode " + root.getId()
+              + " (" + root.getName() + ")");
+      try {
+        finishDelete(root.getId());
+      } catch (IOException ex) {
+        LOG.error("Could not finish the delete on inode " + root.getId()
+                + ", it is tried again in " + recoveryInterval + " msec", ex);
+      }
+    }
+  }
+
+  private void finishDelete(long rootId) throws IOException {
+    String path = getPath(rootId);
+    if (path == null) {
+      return; // removed since
+    }
+    running.add(rootId);
+    try {
+      namesystem.deleteLockedSubtree(path, readSubtree(path, rootId, null, null));
+    } finally {
+      running.remove(rootId);
+    }
+  }
+
+  /**
+   * @return the path of the inode or null if it does not exist anymore
+   */
+  private String getPath(final long inodeId) throws IOException {
+    return (String) new LightWeightRequestHandler(OperationType.SUBTREE_RECOVERY) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        InodeDataAccess da = (InodeDataAccess) StorageFactory.getDataAccess(InodeDataAccess.class);
+        LinkedList<String> names = new LinkedList<String>();
+        long id = inodeId;
+        while (id != FSDirectory.ROOT_ID) {
+          INode inode = da.findInodeById(id);
+          if (inode == null) {
+            return null;
+          }
+          names.addFirst(inode.getName());
+          id = inode.getParentId();
+        }
+        StringBuilder path = new StringBuilder();
+        for (String name : names) {
+          path.append(Path.SEPARATOR).append(name);
+        }
+        return path.length() == 0 ? Path.SEPARATOR : path.toString();
+      }
+    }.handle();
+  }
+
+  /**
+   * Finishes the deletes of this namenode which failed, and the deletes of
+   * the dead namenodes if it is the leader.
+   */
+  class Monitor implements Runnable {
+
+    @Override
+    public void run() {
+      while (namesystem.isRunning()) {
+        try {
+          recover(namesystem.isLeader());
+        } catch (IOException ex) {
+          LOG.error("Could not recover the subtree operations", ex);
+        }
+        try {
+          Thread.sleep(recoveryInterval);
+        } catch (InterruptedException ie) {
+          LOG.debug("Subtree operations monitor is interrupted", ie);
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics.Histogram;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics.OperationStats;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics.Phase;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+
+/**
+ * Prints the transaction latency breakdown of every operation type as plain
+ * text. The operations are sorted by their storage reads, or by their total
+ * transaction time with sort=time.
+ */
+@InterfaceAudience.Private
+public class TransactionStatsServlet extends HttpServlet {
+  /** for java.io.Serializable */
+  private static final long serialVersionUID = 1L;
+
+  public static final String PATH_SPEC = "/txstats";
+
+  /** Handle txstats request */
+  public void doGet(HttpServletRequest request, HttpServletResponse response
+      ) throws IOException {
+    response.setContentType("text/plain; charset=UTF-8");
+    final PrintWriter out = response.getWriter();
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics == null) {
+      out.println("Metrics are not initialized");
+      return;
+    }
+    final TransactionMetrics txMetrics = metrics.getTransactionMetrics();
+    final boolean byTime = "time".equals(request.getParameter("sort"));
+
+    List<OperationType> ops = txMetrics.getActiveOperations();
+    Collections.sort(ops, new Comparator<OperationType>() {
+
+      @Override
+      public int compare(OperationType o1, OperationType o2) {
+        OperationStats s1 = txMetrics.getStats(o1);
+        OperationStats s2 = txMetrics.getStats(o2);
+        long v1 = byTime ? s1.getTotalTime() : s1.getStorageReads();
+        long v2 = byTime ? s2.getTotalTime() : s2.getStorageReads();
+        return v1 < v2 ? 1 : (v1 == v2 ? 0 : -1);
+      }
+    });
+
+    out.printf("%-36s %10s %8s %9s %8s %12s %9s %12s",
+        "operation", "txs", "retries", "rollbacks", "failures", "reads", "reads/tx", "hits");
+    for (Phase phase : Phase.values()) {
+      out.printf(" | %-27s", phase + " avg/p50/p99/max ms");
+    }
+    out.println();
+    for (OperationType op : ops) {
+      OperationStats s = txMetrics.getStats(op);
+      out.printf("%-36s %10d %8d %9d %8d %12d %9.1f %12d",
+          op, s.getTransactions(), s.getRetries(), s.getRollbacks(), s.getFailures(),
+          s.getStorageReads(), (double) s.getStorageReads() / s.getTransactions(),
+          s.getCacheHits());
+      for (Phase phase : Phase.values()) {
+        Histogram h = s.getPhase(phase);
+        out.printf(" | %7.1f/%5d/%5d/%7d", h.getAverage(),
+            h.getPercentile(50), h.getPercentile(99), h.getMax());
+      }
+      out.println();
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package org.apache.hadoop.hdfs.server.namenode.lock;
+
+import java.util.Arrays;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+
+/**
+ * Namenode-local hints from block-id to the id of the inode of the block. A
+ * hint goes stale when its block is removed, or when a concat on any namenode
+ * moves the block to another inode. The block is still read under the lock,
+ * a hint of a removed block is dropped there and a transaction which locked
+ * the wrong inode corrects the hint and runs again.
+ *
+ * The hints are kept in two primitive arrays addressed by the hash of the
+ * block-id, a new hint replaces the one in its slot. The slots are guarded by
+ * striped locks so the id and the inode-id of a slot are always read together.
+ */
+public class BlockINodeIdCache {
+
+  private static class Table {
+
+    final long[] blockIds;
+    final long[] inodeIds;
+    final int mask;
+
+    /**
+     * Rounds the capacity up to a power of two, so a slot is a mask of the
+     * hash.
+     */
+    Table(int capacity) {
+      int size = Integer.highestOneBit(Math.max(capacity, STRIPES) - 1) << 1;
+      blockIds = new long[size];
+      inodeIds = new long[size];
+      Arrays.fill(inodeIds, INode.NON_EXISTING_ID);
+      mask = size - 1;
+    }
+
+    int slot(long blockId) {
+      // block-ids may be sequential, spread them over the table
+      long h = blockId * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & mask;
+    }
+  }
+  private static final int STRIPES = 64;
+  private static final Object[] locks = new Object[STRIPES];
+  private static boolean enabled = DFSConfigKeys.DFS_BLOCK_INODE_CACHE_ENABLED_DEFAULT;
+  private static volatile Table table = new Table(DFSConfigKeys.DFS_BLOCK_INODE_CACHE_SIZE_DEFAULT);
+
+  static {
+    for (int i = 0; i < STRIPES; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  private BlockINodeIdCache() {
+  }
+
+  public static void setConfiguration(Configuration conf) {
+    enabled = conf.getBoolean(DFSConfigKeys.DFS_BLOCK_INODE_CACHE_ENABLED_KEY,
+            DFSConfigKeys.DFS_BLOCK_INODE_CACHE_ENABLED_DEFAULT);
+    int capacity = conf.getInt(DFSConfigKeys.DFS_BLOCK_INODE_CACHE_SIZE_KEY,
+            DFSConfigKeys.DFS_BLOCK_INODE_CACHE_SIZE_DEFAULT);
+    if (capacity <= 0) {
+      enabled = false;
+      capacity = 1;
+    }
+    table = new Table(capacity);
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the hinted inode-id of the block or INode.NON_EXISTING_ID if there
+   * is no hint.
+   */
+  public static long get(long blockId) {
+    if (!enabled) {
+      return INode.NON_EXISTING_ID;
+    }
+    long inodeId = INode.NON_EXISTING_ID;
+    Table t = table;
+    int slot = t.slot(blockId);
+    synchronized (lock(slot)) {
+      if (t.inodeIds[slot] != INode.NON_EXISTING_ID && t.blockIds[slot] == blockId) {
+        inodeId = t.inodeIds[slot];
+      }
+    }
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      if (inodeId == INode.NON_EXISTING_ID) {
+        metrics.incrBlockINodeIdCacheMisses();
+      } else {
+        metrics.incrBlockINodeIdCacheHits();
+      }
+    }
+    return inodeId;
+  }
+
+  public static void put(long blockId, long inodeId) {
+    if (!enabled || inodeId == INode.NON_EXISTING_ID) {
+      return;
+    }
+    Table t = table;
+    int slot = t.slot(blockId);
+    synchronized (lock(slot)) {
+      t.blockIds[slot] = blockId;
+      t.inodeIds[slot] = inodeId;
+    }
+  }
+
+  public static void remove(long blockId) {
+    if (!enabled) {
+      return;
+    }
+    Table t = table;
+    int slot = t.slot(blockId);
+    synchronized (lock(slot)) {
+      if (t.blockIds[slot] == blockId) {
+        t.inodeIds[slot] = INode.NON_EXISTING_ID;
+      }
+    }
+  }
+
+  public static void clear() {
+    Table t = table;
+    for (int i = 0; i < STRIPES; i++) {
+      synchronized (locks[i]) {
+        for (int slot = i; slot < t.inodeIds.length; slot += STRIPES) {
+          t.inodeIds[slot] = INode.NON_EXISTING_ID;
+        }
+      }
+    }
+  }
+
+  private static Object lock(int slot) {
+    return locks[slot & (STRIPES - 1)];
+  }
+}
@@ -0,0 +1,204 @@
+package org.apache.hadoop.hdfs.server.namenode.lock;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.server.namenode.FSDirectory;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+
+/**
+ * Namenode-local hints from (parent-id, name) to inode-id. A hint is never
+ * trusted on its own, every inode found through it is verified against the
+ * row read inside the transaction. It replaces the name and parent-id index
+ * scans with primary-key reads without an external memcached.
+ *
+ * The cache is bounded and uses CLOCK eviction, so lookups do not need to take
+ * the lock which protects the clock.
+ */
+public class INodeHintCache {
+
+  private static class Hint {
+
+    final String key;
+    final long id;
+    final int slot;
+    volatile boolean referenced;
+
+    Hint(String key, long id, int slot) {
+      this.key = key;
+      this.id = id;
+      this.slot = slot;
+    }
+  }
+  private static boolean enabled = DFSConfigKeys.DFS_INODE_HINT_CACHE_ENABLED_DEFAULT;
+  private static boolean batchedResolution = DFSConfigKeys.DFS_BATCHED_PATH_RESOLUTION_ENABLED_DEFAULT;
+  private static final ConcurrentHashMap<String, Hint> hints = new ConcurrentHashMap<String, Hint>();
+  private static Hint[] clock = new Hint[DFSConfigKeys.DFS_INODE_HINT_CACHE_SIZE_DEFAULT];
+  private static int hand = 0;
+
+  private INodeHintCache() {
+  }
+
+  public static void setConfiguration(Configuration conf) {
+    enabled = conf.getBoolean(DFSConfigKeys.DFS_INODE_HINT_CACHE_ENABLED_KEY,
+            DFSConfigKeys.DFS_INODE_HINT_CACHE_ENABLED_DEFAULT);
+    batchedResolution = conf.getBoolean(DFSConfigKeys.DFS_BATCHED_PATH_RESOLUTION_ENABLED_KEY,
+            DFSConfigKeys.DFS_BATCHED_PATH_RESOLUTION_ENABLED_DEFAULT);
+    int capacity = conf.getInt(DFSConfigKeys.DFS_INODE_HINT_CACHE_SIZE_KEY,
+            DFSConfigKeys.DFS_INODE_HINT_CACHE_SIZE_DEFAULT);
+    if (capacity <= 0) {
+      enabled = false;
+      capacity = 1;
+    }
+    synchronized (INodeHintCache.class) {
+      hints.clear();
+      clock = new Hint[capacity];
+      hand = 0;
+    }
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static boolean isBatchedResolutionEnabled() {
+    return enabled && batchedResolution;
+  }
+
+  public static Long get(long parentId, String name) {
+    if (!enabled) {
+      return null;
+    }
+    Hint hint = hints.get(key(parentId, name));
+    if (hint == null) {
+      return null;
+    }
+    hint.referenced = true;
+    return hint.id;
+  }
+
+  public static void put(long parentId, String name, long id) {
+    if (!enabled) {
+      return;
+    }
+    String key = key(parentId, name);
+    Hint old = hints.get(key);
+    if (old != null && old.id == id) {
+      old.referenced = true;
+      return;
+    }
+    synchronized (INodeHintCache.class) {
+      old = hints.get(key);
+      int slot = old != null ? old.slot : nextFreeSlot();
+      Hint hint = new Hint(key, id, slot);
+      clock[slot] = hint;
+      hints.put(key, hint);
+    }
+  }
+
+  public static void remove(long parentId, String name) {
+    if (!enabled) {
+      return;
+    }
+    Hint hint = hints.remove(key(parentId, name));
+    if (hint != null) {
+      synchronized (INodeHintCache.class) {
+        if (clock[hint.slot] == hint) {
+          clock[hint.slot] = null;
+        }
+      }
+    }
+  }
+
+  public static void clear() {
+    synchronized (INodeHintCache.class) {
+      hints.clear();
+      Arrays.fill(clock, null);
+      hand = 0;
+    }
+  }
+
+  /**
+   * Builds the hinted inode-id chain for components[1..last] starting from the
+   * root. The chain stops at the first component which has no hint.
+   *
+   * @return inode-ids of the hinted prefix, chain[i] belongs to components[i +
+   * 1]
+   */
+  public static long[] getIdChain(byte[][] components, int last) {
+    long[] chain = new long[Math.max(last, 0)];
+    int size = 0;
+    long parentId = FSDirectory.ROOT_ID;
+    for (int i = 1; i <= last; i++) {
+      Long id = get(parentId, DFSUtil.bytes2String(components[i]));
+      if (id == null) {
+        break;
+      }
+      chain[size++] = id;
+      parentId = id;
+    }
+    return Arrays.copyOf(chain, size);
+  }
+
+  /**
+   * Checks an inode found through a hint. A mismatching hint is dropped.
+   *
+   * @return true if the inode is the child named name of parentId.
+   */
+  public static boolean verify(INode inode, long parentId, String name) {
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (inode != null && inode.getParentId() == parentId && inode.getName().equals(name)) {
+      if (metrics != null) {
+        metrics.incrINodeHintCacheHits();
+      }
+      return true;
+    }
+    remove(parentId, name);
+    if (metrics != null) {
+      metrics.incrINodeHintCacheStale();
+    }
+    return false;
+  }
+
+  public static void missed() {
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      metrics.incrINodeHintCacheMisses();
+    }
+  }
+
+  public static int size() {
+    return hints.size();
+  }
+
+  /**
+   * Finds an empty slot on the clock, evicting the first hint which has not
+   * been referenced since the hand passed it last time.
+   */
+  private static int nextFreeSlot() {
+    while (true) {
+      Hint hint = clock[hand];
+      int slot = hand;
+      hand = (hand + 1) % clock.length;
+      if (hint == null) {
+        return slot;
+      }
+      if (hint.referenced) {
+        hint.referenced = false;
+      } else {
+        hints.remove(hint.key, hint);
+        clock[slot] = null;
+        return slot;
+      }
+    }
+  }
+
+  private static String key(long parentId, String name) {
+    // '/' never appears in a path component, so the key is unambiguous.
+    return parentId + "/" + name;
+  }
+}
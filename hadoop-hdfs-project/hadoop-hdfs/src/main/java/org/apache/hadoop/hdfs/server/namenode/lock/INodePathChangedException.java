@@ -0,0 +1,16 @@
+package org.apache.hadoop.hdfs.server.namenode.lock;
+
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+
+/**
+ * The path of an inode found by id changed between the read which resolved
+ * it before the transaction and the locks taken on it, e.g. a rename moved
+ * one of its ancestors. The transaction is run again, so the path is read
+ * again.
+ */
+public class INodePathChangedException extends PersistanceException {
+
+  public INodePathChangedException(String message) {
+    super(message);
+  }
+}
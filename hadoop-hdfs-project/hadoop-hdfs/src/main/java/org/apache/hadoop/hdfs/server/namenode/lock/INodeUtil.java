@@ -1,7 +1,11 @@
 package org.apache.hadoop.hdfs.server.namenode.lock;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import org.apache.commons.logging.Log;
@@ -93,12 +97,46 @@ public class INodeUtil {
           throws PersistanceException {
     String nameString = DFSUtil.bytes2String(name);
     if (transactional) {
-      // TODO - Memcache success check - do primary key instead.
-      LOG.debug("about to acquire lock on " + DFSUtil.bytes2String(name));
-      return EntityManager.find(INode.Finder.ByNameAndParentId, nameString, parentId);
+      LOG.debug("about to acquire lock on " + nameString);
+      return findChildINode(nameString, parentId);
+    }
+
+    Long hint = INodeHintCache.get(parentId, nameString);
+    if (hint != null) {
+      INode inode = readById(hint);
+      if (INodeHintCache.verify(inode, parentId, nameString)) {
+        return inode;
+      }
     } else {
-      return findINodeWithNoTransaction(nameString, parentId);
+      INodeHintCache.missed();
     }
+    INode inode = findINodeWithNoTransaction(nameString, parentId);
+    if (inode != null) {
+      INodeHintCache.put(parentId, nameString, inode.getId());
+    }
+    return inode;
+  }
+
+  /**
+   * Finds the child inode within the transaction using the current lock mode.
+   * If the inode-hint cache has the inode-id of the child, the child is read by
+   * its primary key instead of scanning the name and parent-id index.
+   */
+  static INode findChildINode(String name, long parentId) throws PersistanceException {
+    Long hint = INodeHintCache.get(parentId, name);
+    if (hint != null) {
+      INode inode = EntityManager.find(INode.Finder.ByPKey, hint);
+      if (INodeHintCache.verify(inode, parentId, name)) {
+        return inode;
+      }
+    } else {
+      INodeHintCache.missed();
+    }
+    INode inode = EntityManager.find(INode.Finder.ByNameAndParentId, name, parentId);
+    if (inode != null) {
+      INodeHintCache.put(parentId, name, inode.getId());
+    }
+    return inode;
   }
 
   private static INode findINodeWithNoTransaction(
@@ -154,17 +192,52 @@ public class INodeUtil {
   }
 
   public static long findINodeIdByBlock(long blockId) throws StorageException {
-    LOG.info(String.format(
-            "Read block with no transaction by bid=%d",
-            blockId));
+    long inodeId = BlockINodeIdCache.get(blockId);
+    if (inodeId != INode.NON_EXISTING_ID) {
+      return inodeId;
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format(
+              "Read block with no transaction by bid=%d",
+              blockId));
+    }
     BlockInfoDataAccess bda = (BlockInfoDataAccess) StorageFactory.getDataAccess(BlockInfoDataAccess.class);
     BlockInfo bInfo = bda.findById(blockId);
     if (bInfo == null) {
       return INode.NON_EXISTING_ID;
     }
+    BlockINodeIdCache.put(blockId, bInfo.getInodeId());
     return bInfo.getInodeId();
   }
 
+  /**
+   * Maps a batch of block-ids to the ids of their inodes. Blocks without a hint
+   * in BlockINodeIdCache are read with one read. Blocks which do not exist are
+   * mapped to INode.NON_EXISTING_ID.
+   */
+  public static Map<Long, Long> findINodeIdsByBlocks(List<Long> blockIds) throws StorageException {
+    Map<Long, Long> inodeIds = new HashMap<Long, Long>(blockIds.size());
+    List<Long> missing = new ArrayList<Long>();
+    for (long blockId : blockIds) {
+      long inodeId = BlockINodeIdCache.get(blockId);
+      inodeIds.put(blockId, inodeId);
+      if (inodeId == INode.NON_EXISTING_ID) {
+        missing.add(blockId);
+      }
+    }
+    if (missing.isEmpty()) {
+      return inodeIds;
+    }
+    LOG.debug(String.format(
+            "Read %d blocks with no transaction", missing.size()));
+    BlockInfoDataAccess bda = (BlockInfoDataAccess) StorageFactory.getDataAccess(BlockInfoDataAccess.class);
+    for (BlockInfo bInfo : bda.findByIds(missing)) {
+      inodeIds.put(bInfo.getBlockId(), bInfo.getInodeId());
+      BlockINodeIdCache.put(bInfo.getBlockId(), bInfo.getInodeId());
+    }
+    return inodeIds;
+  }
+
   public static LinkedList<INode> findPathINodesById(long inodeId) throws PersistanceException {
     LinkedList<INode> pathInodes = new LinkedList<INode>();
     if (inodeId != INode.NON_EXISTING_ID) {
@@ -0,0 +1,16 @@
+package org.apache.hadoop.hdfs.server.namenode.lock;
+
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+
+/**
+ * A directory with a quota on the path of an operation changed between the
+ * read which resolved the path and the write lock taken on it to update its
+ * counters in place. The transaction is run again, so the directory is
+ * resolved and checked against the quota with its current counters.
+ */
+public class QuotaDirectoryChangedException extends PersistanceException {
+
+  public QuotaDirectoryChangedException(String message) {
+    super(message);
+  }
+}
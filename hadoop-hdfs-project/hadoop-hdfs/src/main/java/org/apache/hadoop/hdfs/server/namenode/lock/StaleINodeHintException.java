@@ -0,0 +1,16 @@
+package org.apache.hadoop.hdfs.server.namenode.lock;
+
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+
+/**
+ * A block was found under the lock to belong to another inode than the one
+ * its hint pointed to, so the transaction holds no lock on the inode of the
+ * block. The hint is corrected before this is thrown and the transaction is
+ * run again, taking its locks from the right inode.
+ */
+public class StaleINodeHintException extends PersistanceException {
+
+  public StaleINodeHintException(String message) {
+    super(message);
+  }
+}
@@ -1,15 +1,27 @@
 package org.apache.hadoop.hdfs.server.namenode.lock;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
+import org.apache.hadoop.hdfs.server.namenode.FSDirectory;
 import org.apache.hadoop.hdfs.server.namenode.FinderType;
 import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager.*;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
 import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
 
@@ -21,6 +33,68 @@ public class TransactionLockAcquirer {
 
   public static ConcurrentHashMap<String, ReentrantLock> datanodeLocks = new ConcurrentHashMap<String, ReentrantLock>();
   private final static Log LOG = LogFactory.getLog(TransactionLockAcquirer.class);
+  private static boolean quotaEnabled = DFSConfigKeys.DFS_QUOTA_ENABLED_KEY_DEFAULT;
+
+  /**
+   * With quota every directory keeps the counts of its tree. The directories
+   * with a quota are checked and updated in place by the operations which
+   * change their tree, so these operations write lock them. The other
+   * ancestors get their counts changed with deltas and are not write locked.
+   */
+  public static void setConfiguration(Configuration conf) {
+    quotaEnabled = conf.getBoolean(DFSConfigKeys.DFS_QUOTA_ENABLED_KEY,
+            DFSConfigKeys.DFS_QUOTA_ENABLED_KEY_DEFAULT);
+  }
+
+  static boolean isQuotaEnabled() {
+    return quotaEnabled;
+  }
+
+  /**
+   * @return true if the inode is a directory with a quota which an operation
+   * locking its path with the given lock updates in place.
+   */
+  static boolean isQuotaLimitedWrite(INodeLockType lock, INode inode) {
+    return quotaEnabled && inode != null && inode.isQuotaLimited()
+            && (lock == INodeLockType.WRITE || lock == INodeLockType.WRITE_ON_PARENT);
+  }
+
+  /**
+   * Write locks an ancestor with a quota which was read with a weaker lock.
+   * The row is read again under the write lock, if it changed in between the
+   * cached inode is stale and the transaction is retried.
+   *
+   * @param writeLocked true if the inode was already read with a write lock
+   */
+  static void writeLockIfQuotaLimited(INodeLockType lock, INode inode, boolean writeLocked)
+          throws PersistanceException {
+    if (writeLocked || !isQuotaLimitedWrite(lock, inode)) {
+      return;
+    }
+    EntityManager.writeLock();
+    INode current = EntityManager.find(INode.Finder.ByPKeyUncached, inode.getId());
+    if (!isSameDirectory(inode, current)) {
+      throw new QuotaDirectoryChangedException("Directory " + inode.getId() + " ("
+              + inode.getName() + ") with quota changed before it was write locked");
+    }
+    LOG.debug("Acquired WRITE on the directory with quota " + inode.getName());
+  }
+
+  private static boolean isSameDirectory(INode cached, INode current) {
+    if (!(cached instanceof INodeDirectory) || !(current instanceof INodeDirectory)) {
+      return false;
+    }
+    INodeDirectory c = (INodeDirectory) cached;
+    INodeDirectory s = (INodeDirectory) current;
+    return c.getParentId() == s.getParentId()
+            && c.getName().equals(s.getName())
+            && c.getNsQuota() == s.getNsQuota()
+            && c.getDsQuota() == s.getDsQuota()
+            && c.getNsCount() == s.getNsCount()
+            && c.getDsCount() == s.getDsCount()
+            && c.getFileCount() == s.getFileCount()
+            && c.getFilesLength() == s.getFilesLength();
+  }
 
   public static void addToDataNodeLockMap(String storageId) {
     datanodeLocks.put(storageId, new ReentrantLock(true));
@@ -102,14 +176,20 @@ public class TransactionLockAcquirer {
       curNode[0] = acquireLockOnRoot(lock);
     } else {
       curNode[0] = acquireLockOnRoot(INodeLockType.READ_COMMITED);
+      writeLockIfQuotaLimited(lock, curNode[0], false);
+    }
+
+    if (curNode[0] != null && INodeHintCache.isBatchedResolutionEnabled()) {
+      acquireLockOnHintedPrefix(lock, curNode, components, count, resolvedInodes);
     }
 
     while (count[0] < components.length && curNode[0] != null) {
 
-      // TODO - memcached - primary key lookup for the row.
+      boolean writeLocked = false;
       if (((lock == INodeLockType.WRITE || lock == INodeLockType.WRITE_ON_PARENT) && (count[0] + 1 == components.length - 1))
               || (lock == INodeLockType.WRITE_ON_PARENT && (count[0] + 1 == components.length - 2))) {
         EntityManager.writeLock(); // if the next p-component is the last one or is the parent (in case of write on parent), acquire the write lock
+        writeLocked = true;
       } else if (lock == INodeLockType.READ_COMMITED) {
         EntityManager.readCommited();
       } else {
@@ -126,27 +206,226 @@ public class TransactionLockAcquirer {
       if (lastComp) {
         break;
       }
+      writeLockIfQuotaLimited(lock, curNode[0], writeLocked);
     }
 
-    // TODO - put invalidated cache values in memcached.
-
     return resolvedInodes;
   }
 
-  // TODO - use this method when there's a hit in memcached
-  // Jude's verification function
+  /**
+   * Reads the path components which have a hint in the inode-hint cache with
+   * a single batched read instead of one name and parent-id lookup per
+   * component. Only the components which are locked with the same lock as the
+   * intermediate directories are read in the batch. The result is validated
+   * component by component and the walk continues from the last valid one.
+   */
+  private static void acquireLockOnHintedPrefix(INodeLockType lock, INode[] curNode,
+          byte[][] components, int[] count, LinkedList<INode> resolvedInodes) throws PersistanceException {
+    long[] chain = INodeHintCache.getIdChain(components, lastBatchableComponent(lock, components.length));
+    if (chain.length < 2) {
+      return; // one component costs a round trip anyway.
+    }
+
+    List<Long> ids = new ArrayList<Long>(chain.length);
+    for (long id : chain) {
+      ids.add(id);
+    }
+    if (lock == INodeLockType.READ_COMMITED) {
+      EntityManager.readCommited();
+    } else {
+      EntityManager.readLock();
+    }
+    Map<Long, INode> inodes = new HashMap<Long, INode>();
+    for (INode inode : EntityManager.findList(INode.Finder.ByIds, ids)) {
+      inodes.put(inode.getId(), inode);
+    }
+
+    INode parent = curNode[0];
+    int verified = 0;
+    for (int i = 0; i < chain.length; i++) {
+      String name = DFSUtil.bytes2String(components[i + 1]);
+      INode inode = inodes.get(chain[i]);
+      if (!parent.isDirectory() || !INodeHintCache.verify(inode, parent.getId(), name)) {
+        break;
+      }
+      parent = inode;
+      verified++;
+    }
+
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (verified < chain.length && metrics != null) {
+      metrics.incrBatchedPathResolutionFallbacks();
+    }
+    if (verified == 0) {
+      LOG.debug("stale inode hints, resolving path per component");
+      return;
+    }
+
+    for (int i = 0; i < verified; i++) {
+      resolvedInodes.add(inodes.get(chain[i]));
+      writeLockIfQuotaLimited(lock, inodes.get(chain[i]), false);
+    }
+    curNode[0] = parent;
+    count[0] = verified;
+    if (metrics != null) {
+      metrics.incrBatchedPathResolutions(verified - 1);
+    }
+    LOG.debug("resolved " + verified + " path components in one batch, saved "
+            + (verified - 1) + " round trips");
+  }
+
+  /**
+   * @return index of the last path component which is locked with the lock of
+   * the intermediate directories.
+   */
+  private static int lastBatchableComponent(INodeLockType lock, int componentsLength) {
+    switch (lock) {
+      case WRITE:
+        return componentsLength - 2;
+      case WRITE_ON_PARENT:
+        return componentsLength - 3;
+      default:
+        return componentsLength - 1;
+    }
+  }
+
+  /**
+   * An inode to lock before the paths of a multi-path operation are resolved.
+   * The targets are ordered by the depth of the inode and then by its id, a
+   * single path is locked from the root to the leaf which is the same order.
+   */
+  static class INodeLockTarget implements Comparable<INodeLockTarget> {
+
+    final int depth;
+    final long id;
+    INodeLockType lock;
+
+    INodeLockTarget(int depth, long id, INodeLockType lock) {
+      this.depth = depth;
+      this.id = id;
+      this.lock = lock;
+    }
+
+    @Override
+    public int compareTo(INodeLockTarget o) {
+      if (depth != o.depth) {
+        return depth < o.depth ? -1 : 1;
+      }
+      return id < o.id ? -1 : (id == o.id ? 0 : 1);
+    }
+  }
+
+  /**
+   * Locks the inodes of several paths in one global order, so two operations
+   * which lock the same paths in a different order, e.g. two renames in
+   * opposite directions, do not deadlock. The paths are resolved without a
+   * transaction first, the inodes found are locked by id in the order of
+   * {@link INodeLockTarget} with the lock acquireInodeLockByPath would take
+   * on them. The paths are then resolved as usual by the caller and find the
+   * locked inodes in the transaction context. A component which changed in
+   * between is locked in path order.
+   */
+  public static void acquireInodeLocksInOrder(INodeLockType lock, boolean resolveLink, String... paths)
+          throws PersistanceException {
+    Map<Long, INodeLockTarget> targets = new HashMap<Long, INodeLockTarget>();
+    for (String path : paths) {
+      if (path == null) {
+        continue;
+      }
+      LinkedList<INode> inodes;
+      try {
+        inodes = INodeUtil.resolvePathWithNoTransaction(path, resolveLink);
+      } catch (UnresolvedPathException ex) {
+        continue; // thrown again when the path is resolved in the transaction.
+      }
+      int length = INode.getPathComponents(path).length;
+      addLockTarget(targets, 0, FSDirectory.ROOT_ID, pathComponentLock(lock, 0, length));
+      // the root is only in the list if it is the whole path
+      int depth = length == 1 ? 0 : 1;
+      for (INode inode : inodes) {
+        INodeLockType componentLock = pathComponentLock(lock, depth, length);
+        if (isQuotaLimitedWrite(lock, inode)) {
+          // updated in place, see writeLockIfQuotaLimited
+          componentLock = INodeLockType.WRITE;
+        }
+        addLockTarget(targets, depth, inode.getId(), componentLock);
+        depth++;
+      }
+    }
+    for (INodeLockTarget target : sortLockTargets(targets.values())) {
+      lockINode(target.lock);
+      EntityManager.find(INode.Finder.ByPKey, target.id);
+    }
+  }
+
+  static List<INodeLockTarget> sortLockTargets(Collection<INodeLockTarget> targets) {
+    List<INodeLockTarget> sorted = new ArrayList<INodeLockTarget>();
+    for (INodeLockTarget target : targets) {
+      if (target.lock != INodeLockType.READ_COMMITED) {
+        sorted.add(target);
+      }
+    }
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  private static void addLockTarget(Map<Long, INodeLockTarget> targets, int depth, long id, INodeLockType lock) {
+    INodeLockTarget target = targets.get(id);
+    if (target == null) {
+      targets.put(id, new INodeLockTarget(depth, id, lock));
+    } else if (strength(lock) > strength(target.lock)) {
+      target.lock = lock;
+    }
+  }
+
+  private static int strength(INodeLockType lock) {
+    switch (lock) {
+      case WRITE:
+      case WRITE_ON_PARENT:
+        return 2;
+      case READ:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * @return the lock acquireInodeLockByPath takes on the component at the
+   * given depth of a path with the given number of components
+   */
+  static INodeLockType pathComponentLock(INodeLockType lock, int depth, int componentsLength) {
+    boolean write = lock == INodeLockType.WRITE || lock == INodeLockType.WRITE_ON_PARENT;
+    if (componentsLength == 1) {
+      return write ? INodeLockType.WRITE : lock;
+    }
+    if ((write && depth == componentsLength - 1)
+            || (lock == INodeLockType.WRITE_ON_PARENT && depth == componentsLength - 2)) {
+      return INodeLockType.WRITE;
+    }
+    if (depth == 0 || lock == INodeLockType.READ_COMMITED) {
+      return INodeLockType.READ_COMMITED;
+    }
+    return INodeLockType.READ;
+  }
+
   public static INode acquireINodeLockById(INodeLockType lock, long id) throws PersistanceException {
     lockINode(lock);
     return EntityManager.find(INode.Finder.ByPKey, id);
   }
 
+  public static Collection<INode> acquireINodeLockByIds(INodeLockType lock, List<Long> ids) throws PersistanceException {
+    lockINode(lock);
+    return EntityManager.findList(INode.Finder.ByIds, ids);
+  }
+
   public static INode acquireINodeLockByNameAndParentId(
           INodeLockType lock,
           String name,
           long parentId)
           throws PersistanceException {
     lockINode(lock);
-    return EntityManager.find(INode.Finder.ByNameAndParentId, name, parentId);
+    return INodeUtil.findChildINode(name, parentId);
   }
 
   private static void lockINode(INodeLockType lock) {
@@ -2,12 +2,15 @@ package org.apache.hadoop.hdfs.server.namenode.lock;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
@@ -22,6 +25,8 @@ import org.apache.hadoop.hdfs.server.blockmanagement.PendingBlockInfo;
 import org.apache.hadoop.hdfs.server.blockmanagement.ReplicaUnderConstruction;
 import org.apache.hadoop.hdfs.server.blockmanagement.UnderReplicatedBlock;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
+import org.apache.hadoop.hdfs.server.namenode.DirCountsDelta;
+import org.apache.hadoop.hdfs.server.namenode.FSDirectory;
 import org.apache.hadoop.hdfs.server.namenode.FinderType;
 import org.apache.hadoop.hdfs.server.namenode.INode;
 import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
@@ -29,6 +34,7 @@ import org.apache.hadoop.hdfs.server.namenode.INodeFile;
 import org.apache.hadoop.hdfs.server.namenode.Leader;
 import org.apache.hadoop.hdfs.server.namenode.Lease;
 import org.apache.hadoop.hdfs.server.namenode.LeasePath;
+import org.apache.hadoop.hdfs.server.namenode.SubtreeLockedException;
 import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
 import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
 
@@ -46,15 +52,23 @@ public class TransactionLockManager {
   private INode[] inodeResult = null;
   private boolean resolveLink = true; // the file is a symlink should it resolve it?
   protected LinkedList<INode> resolvedInodes = null; // For the operations requires to have inodes before starting transactions.
+  private String childrenStartAfter = null;
+  private int childrenLimit = 0;
+  private Collection<Long> inodeIdsParam = null;
+  private long subtreeRootId = INode.NON_EXISTING_ID; // the subtree lock owned by this operation
+  private boolean checkSubtreeLocksBelow = false; // refuse to move or lock a tree with a subtree operation inside
   //block
   private LockType blockLock = null;
   private Long blockParam = null;
+  private List<Long> blockParams = null;
   private Collection<BlockInfo> blockResults = null;
   // lease
   private LockType leaseLock = null;
   private String leaseParam = null;
+  private String leasePathPrefix = null; // the leases of the files below it are locked as well
   private Collection<Lease> leaseResults = null;
   private LockType nnLeaseLock = null; // acquire lease for Name-node
+  private String nnLeaseHolder = null;
   // lease paths
   private LockType lpLock = null;
   // replica
@@ -80,6 +94,9 @@ public class TransactionLockManager {
   // Leader
   private LockType leaderLock = null;
   private long[] leaderIds = null;
+  // dir counts deltas
+  private LockType dirCountsDeltaLock = null;
+  private List<INode> pathEnds = new ArrayList<INode>(); // the last inodes of the resolved paths
 
   public TransactionLockManager() {
   }
@@ -112,6 +129,23 @@ public class TransactionLockManager {
       }
     }
 
+    if (leasePathPrefix != null) {
+      SortedSet<Integer> holderIds = new TreeSet<Integer>();
+      for (LeasePath lp : TransactionLockAcquirer.acquireLockList(LockType.READ_COMMITTED,
+              LeasePath.Finder.ByPrefix, leasePathPrefix)) {
+        holderIds.add(lp.getHolderId());
+      }
+      for (Lease lease : leases) {
+        holderIds.remove(lease.getHolderID());
+      }
+      for (int holderId : holderIds) {
+        Lease lease = TransactionLockAcquirer.acquireLock(lock, Lease.Finder.ByHolderId, holderId);
+        if (lease != null) {
+          leases.add(lease);
+        }
+      }
+    }
+
     return leases;
   }
 
@@ -139,7 +173,7 @@ public class TransactionLockManager {
     if (leaseResults != null) {
       for (Lease l : leaseResults) {
         Collection<LeasePath> result = TransactionLockAcquirer.acquireLockList(lock, LeasePath.Finder.ByHolderId, l.getHolderID());
-        if (!l.getHolder().equals(HdfsServerConstants.NAMENODE_LEASE_HOLDER)) { // We don't need to keep the lps result for namenode-lease. 
+        if (!l.getHolder().equals(nnLeaseHolder)) { // We don't need to keep the lps result for namenode-lease. 
           lPaths.addAll(result);
         }
       }
@@ -181,6 +215,20 @@ public class TransactionLockManager {
     return children.toArray(inodes);
   }
 
+  private INode[] findChildrenPage(INode[] inodes) throws PersistanceException {
+    ArrayList<INode> children = new ArrayList<INode>();
+    if (inodes != null) {
+      for (INode dir : inodes) {
+        if (dir instanceof INodeDirectory) {
+          children.addAll(((INodeDirectory) dir).getChildrenPage(childrenStartAfter, childrenLimit));
+        } else if (dir != null) {
+          children.add(dir);
+        }
+      }
+    }
+    return children.toArray(new INode[children.size()]);
+  }
+
   private INode[] findChildrenRecursively(INode[] inodes) throws PersistanceException {
     ArrayList<INode> children = new ArrayList<INode>();
     LinkedList<INode> unCheckedDirs = new LinkedList<INode>();
@@ -225,7 +273,7 @@ public class TransactionLockManager {
 
   private Lease acquireNameNodeLease() throws PersistanceException {
     if (nnLeaseLock != null) {
-      return TransactionLockAcquirer.acquireLock(nnLeaseLock, Lease.Finder.ByPKey, HdfsServerConstants.NAMENODE_LEASE_HOLDER);
+      return TransactionLockAcquirer.acquireLock(nnLeaseLock, Lease.Finder.ByPKey, nnLeaseHolder);
     }
     return null;
   }
@@ -247,6 +295,7 @@ public class TransactionLockManager {
     ONLY_PATH // resolve only the given path
     , ONLY_PATH_WITH_UNKNOWN_HEAD // resolve a path which some of its path components might not exist
     , PATH_AND_IMMEDIATE_CHILDREN // resolve path and find the given directory's children
+    , PATH_AND_CHILDREN_PAGE // resolve path and find one page of the given directory's children, see addChildrenPage
     , PATH_AND_ALL_CHILDREN_RECURESIVELY // resolve the given path and find all the children recursively.
     , FROM_CHILD_TO_ROOT // resolves inode by having an inode as a child through the root
   }
@@ -274,12 +323,63 @@ public class TransactionLockManager {
     return addINode(resolveType, lock, true, null);
   }
 
+  /**
+   * The page of children to lock with PATH_AND_CHILDREN_PAGE, the rest of the
+   * directory is not read.
+   *
+   * @param startAfter the name to start after, empty for the first page
+   * @param limit the maximum number of children
+   */
+  public TransactionLockManager addChildrenPage(String startAfter, int limit) {
+    this.childrenStartAfter = startAfter;
+    this.childrenLimit = limit;
+    return this;
+  }
+
+  /**
+   * Locks a batch of inodes by id instead of by path, with one read. The
+   * subtree operations use it for the inodes below their subtree lock.
+   */
+  public TransactionLockManager addINodes(INodeLockType lock, Collection<Long> ids) {
+    this.inodeLock = lock;
+    this.inodeIdsParam = ids;
+    return this;
+  }
+
+  /**
+   * A move or subtree lock of a directory, which does not lock the tree below
+   * it, is refused if a subtree operation runs inside the tree. The directory
+   * is the first path, or src of a rename.
+   */
+  public TransactionLockManager setCheckSubtreeLocksBelow() {
+    this.checkSubtreeLocksBelow = true;
+    return this;
+  }
+
+  /**
+   * The operation runs on behalf of the subtree operation which holds the
+   * subtree lock of the given inode, so the lock does not block it.
+   */
+  public TransactionLockManager setSubtreeRoot(long inodeId) {
+    this.subtreeRootId = inodeId;
+    return this;
+  }
+
   public TransactionLockManager addBlock(LockType lock, Long param) {
     this.blockLock = lock;
     this.blockParam = param;
     return this;
   }
 
+  /**
+   * Lock on a batch of blocks, to be acquired by acquireByBlocks.
+   */
+  public TransactionLockManager addBlocks(LockType lock, List<Long> blockIds) {
+    this.blockLock = lock;
+    this.blockParams = blockIds;
+    return this;
+  }
+
   public TransactionLockManager addBlock(LockType lock) {
     addBlock(lock, null);
     return this;
@@ -316,8 +416,13 @@ public class TransactionLockManager {
     return this;
   }
 
-  public TransactionLockManager addNameNodeLease(LockType lock) {
+  /**
+   * Locks the lease of the namenode which takes over the files whose
+   * recovery it starts, see HdfsServerConstants#getNamenodeLeaseHolder.
+   */
+  public TransactionLockManager addNameNodeLease(LockType lock, String holder) {
     this.nnLeaseLock = lock;
+    this.nnLeaseHolder = holder;
     return this;
   }
 
@@ -326,6 +431,16 @@ public class TransactionLockManager {
     return this;
   }
 
+  /**
+   * Locks the leases of the files under construction below the given path
+   * as well, they are found by their lease paths instead of by reading the
+   * tree.
+   */
+  public TransactionLockManager addLeasesByPathPrefix(String prefix) {
+    this.leasePathPrefix = prefix;
+    return this;
+  }
+
   public TransactionLockManager addUnderReplicatedBlock(LockType lock) {
     this.urbLock = lock;
     return this;
@@ -377,10 +492,33 @@ public class TransactionLockManager {
     return this;
   }
 
-  public void acquire() throws PersistanceException, UnresolvedPathException {
+  /**
+   * Reads the deltas of the directories at the end of the paths and of the
+   * children locked with them, for the operations which need the counters of
+   * these directories.
+   */
+  public TransactionLockManager addDirCountsDelta(LockType lock) {
+    this.dirCountsDeltaLock = lock;
+    return this;
+  }
+
+  public void acquire() throws PersistanceException, UnresolvedPathException, SubtreeLockedException {
     // acuires lock in order
     if (inodeLock != null && inodeParam != null && inodeParam.length > 0) {
+      setPartitionKeyByPath(inodeParam[0]);
       inodeResult = acquireInodeLocks(inodeResolveType, inodeLock, inodeParam);
+      if (checkSubtreeLocksBelow) {
+        String path = inodeParam[0];
+        LinkedList<INode> pathINodes = TransactionLockAcquirer.acquireInodeLockByPath(inodeLock, path, resolveLink);
+        if (pathINodes.size() == INode.getPathComponents(path).length) {
+          checkSubtreeLocksBelow(path, pathINodes.getLast());
+        }
+      }
+    } else if (inodeLock != null && inodeIdsParam != null) {
+      // in id order, so two batches never wait for each other in a cycle
+      List<Long> ids = new ArrayList<Long>(new TreeSet<Long>(inodeIdsParam));
+      Collection<INode> inodes = TransactionLockAcquirer.acquireINodeLockByIds(inodeLock, ids);
+      inodeResult = inodes.toArray(new INode[inodes.size()]);
     }
 
     if (blockLock != null) {
@@ -394,18 +532,26 @@ public class TransactionLockManager {
     acquireLeaseAndLpathLockNormal();
     acquireBlockRelatedLocksNormal();
     acquireLeaderLock();
+    acquireDirCountsDeltaLock();
   }
 
-  public void acquireForRename() throws PersistanceException, UnresolvedPathException {
+  public void acquireForRename() throws PersistanceException, UnresolvedPathException, SubtreeLockedException {
     acquireForRename(false);
   }
 
-  public void acquireForRename(boolean allowExistingDir) throws PersistanceException, UnresolvedPathException {
-    // TODO[H]: Sort before taking locks.
+  public void acquireForRename(boolean allowExistingDir) throws PersistanceException, UnresolvedPathException, SubtreeLockedException {
     // acuires lock in order
     String src = inodeParam[0];
     String dst = inodeParam[1];
     if (inodeLock != null && inodeParam != null && inodeParam.length > 0) {
+      setPartitionKeyByPath(src);
+      if (allowExistingDir) {
+        // dst might be a directory, src then moves to dst/srcName which is locked as well
+        TransactionLockAcquirer.acquireInodeLocksInOrder(inodeLock, resolveLink, src, dst,
+                dst + Path.SEPARATOR + new Path(src).getName());
+      } else {
+        TransactionLockAcquirer.acquireInodeLocksInOrder(inodeLock, resolveLink, src, dst);
+      }
       INode[] inodeResult1 = acquireInodeLocks(inodeResolveType, inodeLock, src);
       INode[] inodeResult2 = acquireInodeLocks(inodeResolveType, inodeLock, dst);
       if (allowExistingDir) // In deprecated rename, it allows to move a dir to an existing destination.
@@ -419,6 +565,9 @@ public class TransactionLockManager {
                   inodeLock,
                   DFSUtil.bytes2String(srcComponents[srcComponents.length - 1]),
                   dstINodes.getLast().getId());
+          if (existingInode != null) {
+            pathEnds.add(existingInode);
+          }
 //        inodeResult = new INode[inodeResult1.length + inodeResult2.length + 1];
 //        if (existingInode != null & !existingInode.isDirectory()) {
 //          inodeResult[inodeResult.length - 1] = existingInode;
@@ -428,6 +577,12 @@ public class TransactionLockManager {
       inodeResult = new INode[inodeResult1.length + inodeResult2.length];
       System.arraycopy(inodeResult1, 0, inodeResult, 0, inodeResult1.length);
       System.arraycopy(inodeResult2, 0, inodeResult, inodeResult1.length, inodeResult2.length);
+      if (checkSubtreeLocksBelow) {
+        LinkedList<INode> srcINodes = TransactionLockAcquirer.acquireInodeLockByPath(inodeLock, src, resolveLink);
+        if (srcINodes.size() == INode.getPathComponents(src).length) {
+          checkSubtreeLocksBelow(src, srcINodes.getLast());
+        }
+      }
     }
 
     if (blockLock != null) {
@@ -441,6 +596,29 @@ public class TransactionLockManager {
     acquireLeaseAndLpathLockNormal();
     acquireBlockRelatedLocksNormal();
     acquireLeaderLock();
+    acquireDirCountsDeltaLock();
+  }
+
+  private void acquireDirCountsDeltaLock() throws PersistanceException {
+    if (dirCountsDeltaLock == null || !TransactionLockAcquirer.isQuotaEnabled()) {
+      return;
+    }
+    Set<Long> ids = new TreeSet<Long>();
+    for (INode inode : pathEnds) {
+      if (inode instanceof INodeDirectory) {
+        ids.add(inode.getId());
+      }
+    }
+    if (inodeResult != null && inodeResolveType == INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN) {
+      for (INode inode : inodeResult) {
+        if (inode instanceof INodeDirectory) {
+          ids.add(inode.getId());
+        }
+      }
+    }
+    if (!ids.isEmpty()) {
+      TransactionLockAcquirer.acquireLockList(dirCountsDeltaLock, DirCountsDelta.Finder.ByINodeIds, ids);
+    }
   }
 
   private void acquireLeaderLock() throws PersistanceException {
@@ -525,30 +703,37 @@ public class TransactionLockManager {
     }
   }
 
-  private INode[] acquireInodeLocks(INodeResolveType resType, INodeLockType lock, String... params) throws UnresolvedPathException, PersistanceException {
+  private INode[] acquireInodeLocks(INodeResolveType resType, INodeLockType lock, String... params)
+          throws UnresolvedPathException, PersistanceException, SubtreeLockedException {
     INode[] inodes = new INode[params.length];
     switch (resType) {
-      case ONLY_PATH: // Only use memcached for this case.
-      case PATH_AND_IMMEDIATE_CHILDREN: // Memcached not applicable for delete of a dir (and its children)
+      case ONLY_PATH:
+      case PATH_AND_IMMEDIATE_CHILDREN:
+      case PATH_AND_CHILDREN_PAGE:
       case PATH_AND_ALL_CHILDREN_RECURESIVELY:
+        if (params.length > 1) {
+          TransactionLockAcquirer.acquireInodeLocksInOrder(lock, resolveLink, params);
+        }
         for (int i = 0; i < params.length; i++) {
-          // TODO - MemcacheD Lookup of path
-          // On
           LinkedList<INode> resolvedInodes =
                   TransactionLockAcquirer.acquireInodeLockByPath(lock, params[i], resolveLink);
+          checkSubtreeLocks(params[i], resolvedInodes);
           if (resolvedInodes.size() > 0) {
             inodes[i] = resolvedInodes.peekLast();
+            pathEnds.add(inodes[i]);
           }
         }
         if (resType == INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN) {
           inodes = findImmediateChildren(inodes);
+        } else if (resType == INodeResolveType.PATH_AND_CHILDREN_PAGE) {
+          inodes = findChildrenPage(inodes);
         } else if (resType == INodeResolveType.PATH_AND_ALL_CHILDREN_RECURESIVELY) {
           inodes = findChildrenRecursively(inodes);
         }
         break;
       // e.g. mkdir -d /opt/long/path which creates subdirs.
       // That is, the HEAD and some ancestor inodes might not exist yet.
-      case ONLY_PATH_WITH_UNKNOWN_HEAD: // Can try and use memcached for this case.
+      case ONLY_PATH_WITH_UNKNOWN_HEAD:
         for (int i = 0; i < params.length; i++) {
           // TODO Test this in all different possible scenarios
           String fullPath = params[i];
@@ -562,7 +747,9 @@ public class TransactionLockManager {
             LinkedList<INode> rest = TransactionLockAcquirer.acquireLockOnRestOfPath(lock, baseDir,
                     fullPath, existingPath, resolveLink);
             resolvedInodes.addAll(rest);
+            checkSubtreeLocks(fullPath, resolvedInodes);
             inodes[i] = resolvedInodes.peekLast();
+            pathEnds.add(inodes[i]);
           }
         }
         break;
@@ -574,6 +761,55 @@ public class TransactionLockManager {
     return inodes;
   }
 
+  /**
+   * A path which goes through the root of a subtree operation is locked by
+   * the operation, the inodes below the root are changed in many
+   * transactions.
+   */
+  private void checkSubtreeLocks(String path, List<INode> pathInodes) throws SubtreeLockedException {
+    for (INode inode : pathInodes) {
+      if (inode != null && inode.isSubtreeLocked() && inode.getId() != subtreeRootId) {
+        throw new SubtreeLockedException(path, inode.getSubtreeLockOwner());
+      }
+    }
+  }
+
+  /**
+   * The subtree operations work on the paths they read when they started, so
+   * a directory with one of them running below it can not be moved or locked. The
+   * subtree locks are few and indexed, only their ancestors are read.
+   */
+  private void checkSubtreeLocksBelow(String path, INode dir) throws PersistanceException, SubtreeLockedException {
+    if (!(dir instanceof INodeDirectory)) {
+      return;
+    }
+    for (INode locked : TransactionLockAcquirer.acquireLockList(LockType.READ_COMMITTED, INode.Finder.SubtreeLocked)) {
+      INode inode = locked;
+      while (inode != null && inode.getId() != FSDirectory.ROOT_ID) {
+        if (inode.getId() == dir.getId()) {
+          throw new SubtreeLockedException(path, locked.getSubtreeLockOwner());
+        }
+        inode = TransactionLockAcquirer.acquireLock(LockType.READ_COMMITTED, INode.Finder.ByPKey, inode.getParentId());
+      }
+    }
+  }
+
+  /**
+   * Starts the transaction on the node which owns the parent of the path, if
+   * the parent id is known from the inode hints.
+   */
+  private void setPartitionKeyByPath(String path) {
+    byte[][] components = INode.getPathComponents(path);
+    int parent = components.length - 2;
+    if (parent < 0) {
+      return;
+    }
+    long[] chain = INodeHintCache.getIdChain(components, parent);
+    if (chain.length == parent) {
+      EntityManager.setPartitionKey(INode.class, parent == 0 ? FSDirectory.ROOT_ID : chain[parent - 1]);
+    }
+  }
+
   private void checkPathIsResolved() throws INodeResolveException {
     if (resolvedInodes == null) {
       throw new INodeResolveException(String.format(
@@ -611,11 +847,14 @@ public class TransactionLockManager {
    *
    * @throws PersistanceException
    */
-  public void acquireByBlock(long inodeId) throws PersistanceException, UnresolvedPathException {
+  public void acquireByBlock(long inodeId) throws PersistanceException, UnresolvedPathException, SubtreeLockedException {
     if (inodeLock == null || blockParam == null) // inodelock must be set before.
     {
       return;
     }
+    if (inodeId != INode.NON_EXISTING_ID) {
+      EntityManager.setPartitionKey(BlockInfo.class, inodeId);
+    }
     INode inode = TransactionLockAcquirer.acquireINodeLockById(inodeLock, inodeId);
     if (this.inodeResolveType == INodeResolveType.FROM_CHILD_TO_ROOT) {
       checkPathIsResolved();
@@ -637,25 +876,36 @@ public class TransactionLockManager {
             BlockInfo.Finder.ByInodeId,
             inodeId);
 
-    if (blockResults.isEmpty()) {
+    boolean found = false;
+    for (Block block : blockResults) {
+      if (block.getBlockId() == blockParam.longValue()) {
+        found = true;
+        break;
+      }
+    }
+
+    if (!found) {
+      // the inode-id may come from a hint of a block which is removed or
+      // moved to another inode by a concat since.
       BlockInfo block = TransactionLockAcquirer.acquireLock(
               blockLock,
               BlockInfo.Finder.ById,
               blockParam);
-      if (block != null) {
+      if (block == null) {
+        BlockINodeIdCache.remove(blockParam);
+      } else if (block.getInodeId() == inodeId) {
         blockResults.add(block);
+        found = true;
+      } else {
+        // the inode of the block is not locked
+        BlockINodeIdCache.put(blockParam, block.getInodeId());
+        throw new StaleINodeHintException("Block " + blockParam + " belongs to inode "
+                + block.getInodeId() + ", not to the locked inode " + inodeId);
       }
     }
 
     //TODO: it should abort the transaction and retry at this stage. Cause something is changed in the storage.
-    int i = 0;
-    for (Block block : blockResults) {
-      if (block.getBlockId() == blockParam.longValue()) {
-        break;
-      }
-      i++;
-    }
-    if (i == blockResults.size()) {
+    if (!found) {
       return; // The state of the inode->blocks is inconsistent, retry.
     }
 
@@ -665,10 +915,131 @@ public class TransactionLockManager {
 
   }
 
-  private void takeLocksFromRootToLeaf(LinkedList<INode> inodes, INodeLockType inodeLock) throws PersistanceException {
+  /**
+   * Acquires locks on a batch of blocks which may belong to different inodes.
+   * The inodes are locked in ascending id order and every other table is read
+   * with one multi-key read per table for the whole batch. Blocks which do not
+   * belong to any of the inodes are read by their ids; if they do not exist
+   * the transaction sees them as non-existing without going to the storage
+   * again, if they belong to an inode which is not locked the hints are
+   * corrected and the transaction fails to be run again.
+   *
+   * @param inodeIds the inode-ids of the blocks added by addBlocks
+   */
+  public void acquireByBlocks(Collection<Long> inodeIds) throws PersistanceException, UnresolvedPathException {
+    if (inodeLock == null || blockParams == null) // inodelock must be set before.
+    {
+      return;
+    }
+    List<Long> sortedIds = new ArrayList<Long>(new TreeSet<Long>(inodeIds));
+    sortedIds.remove(Long.valueOf(INode.NON_EXISTING_ID));
+
+    List<INode> files = new ArrayList<INode>();
+    if (!sortedIds.isEmpty()) {
+      EntityManager.setPartitionKey(BlockInfo.class, sortedIds.get(0));
+      for (INode inode : TransactionLockAcquirer.acquireINodeLockByIds(inodeLock, sortedIds)) {
+        if (inode instanceof INodeFile) {
+          files.add(inode);
+        }
+      }
+    }
+    inodeResult = files.toArray(new INode[files.size()]);
 
-    StringBuilder msg = new StringBuilder();
-    msg.append("Took Lock on the entire path ");
+    List<Long> fileIds = new ArrayList<Long>(files.size());
+    for (INode file : files) {
+      fileIds.add(file.getId());
+    }
+    blockResults = new ArrayList<BlockInfo>();
+    if (!fileIds.isEmpty()) {
+      blockResults.addAll(TransactionLockAcquirer.acquireLockList(blockLock, BlockInfo.Finder.ByInodeIds, fileIds));
+    }
+
+    List<Long> orphans = new ArrayList<Long>(blockParams);
+    for (Block block : blockResults) {
+      orphans.remove(Long.valueOf(block.getBlockId()));
+    }
+    if (!orphans.isEmpty()) {
+      // a block is an orphan if it is removed or its inode-id hint is stale,
+      // reading it by id puts the hint of its inode back
+      for (long orphan : orphans) {
+        BlockINodeIdCache.remove(orphan);
+      }
+      Collection<BlockInfo> unlocked = TransactionLockAcquirer.acquireLockList(
+              blockLock, BlockInfo.Finder.ByIds, orphans);
+      if (!unlocked.isEmpty()) {
+        BlockInfo block = unlocked.iterator().next();
+        throw new StaleINodeHintException("The inodes of " + unlocked.size()
+                + " block(s) are not locked, e.g. block " + block.getBlockId()
+                + " of inode " + block.getInodeId());
+      }
+    }
+
+    acquireLeaseAndLpathLockNormal();
+    acquireBlockRelatedLocksBatched();
+  }
+
+  /**
+   * Same as acquireBlockRelatedLocksNormal but reads the replicas, corrupt,
+   * excess, under-construction and under-replicated rows of all the blocks
+   * with one read per table.
+   */
+  private void acquireBlockRelatedLocksBatched() throws PersistanceException {
+    Set<Long> ids = new LinkedHashSet<Long>(blockParams);
+    for (Block b : blockResults) {
+      ids.add(b.getBlockId());
+    }
+    if (ids.isEmpty()) {
+      return;
+    }
+    List<Long> blockIds = new ArrayList<Long>(ids);
+
+    if (replicaLock != null) {
+      TransactionLockAcquirer.acquireLockList(replicaLock, IndexedReplica.Finder.ByBlockIds, blockIds);
+    }
+
+    if (crLock != null) {
+      TransactionLockAcquirer.acquireLockList(crLock, CorruptReplica.Finder.ByBlockIds, blockIds);
+    }
+
+    if (erLock != null) {
+      TransactionLockAcquirer.acquireLockList(erLock, ExcessReplica.Finder.ByBlockIds, blockIds);
+    }
+
+    if (rucLock != null) {
+      TransactionLockAcquirer.acquireLockList(rucLock, ReplicaUnderConstruction.Finder.ByBlockIds, blockIds);
+    }
+
+    if (urbLock != null) {
+      TransactionLockAcquirer.acquireLockList(urbLock, UnderReplicatedBlock.Finder.ByBlockIds, blockIds);
+    }
+
+    // invalidated blocks are only read, one row set per block.
+    if (invLocks != null) {
+      for (long bid : blockIds) {
+        TransactionLockAcquirer.acquireLockList(invLocks, InvalidatedBlock.Finder.ByBlockId, bid);
+      }
+    }
+
+    if (pbLock != null) {
+      TransactionLockAcquirer.acquireLockList(pbLock, PendingBlockInfo.Finder.ByBlockIds, blockIds);
+    }
+  }
+
+  /**
+   * Locks the path of an inode found by id, the path was read without locks
+   * before the transaction. With quota the ancestors get the counters of the
+   * operation, so they are read locked like the ancestors of a path resolved
+   * by name, and the path is checked to still be the one read before: a
+   * rename which moved the tree in between would otherwise leave the counts
+   * of the operation on the old ancestors.
+   */
+  private void takeLocksFromRootToLeaf(LinkedList<INode> inodes, INodeLockType inodeLock)
+          throws PersistanceException, SubtreeLockedException {
+
+    boolean lockAncestors = TransactionLockAcquirer.isQuotaEnabled()
+            && (inodeLock == INodeLockType.WRITE || inodeLock == INodeLockType.WRITE_ON_PARENT);
+    StringBuilder path = new StringBuilder();
+    List<INode> lockedINodes = new ArrayList<INode>(inodes.size());
     for (int i = 0; i < inodes.size(); i++) {
       INode lockedINode;
       if (i == (inodes.size() - 1)) // take specified lock
@@ -676,20 +1047,32 @@ public class TransactionLockManager {
         lockedINode = TransactionLockAcquirer.acquireINodeLockById(inodeLock, inodes.get(i).getId());
       } else // take read commited lock
       {
-        lockedINode = TransactionLockAcquirer.acquireINodeLockById(INodeLockType.READ_COMMITED, inodes.get(i).getId());
+        long id = inodes.get(i).getId();
+        // the root is never moved
+        INodeLockType ancestorLock = lockAncestors && id != FSDirectory.ROOT_ID
+                ? INodeLockType.READ : INodeLockType.READ_COMMITED;
+        lockedINode = TransactionLockAcquirer.acquireINodeLockById(ancestorLock, id);
+        TransactionLockAcquirer.writeLockIfQuotaLimited(inodeLock, lockedINode, false);
+      }
+      if (lockAncestors && (lockedINode == null
+              || (i > 0 && lockedINode.getParentId() != lockedINodes.get(i - 1).getId()))) {
+        throw new INodePathChangedException("The path of inode " + inodes.getLast().getId()
+                + " changed before it was locked, at " + inodes.get(i).getId());
       }
 
       if (!lockedINode.getName().equals("")) {
-        msg.append("/");
-        msg.append(lockedINode.getName());
+        path.append("/");
+        path.append(lockedINode.getName());
       }
-
-
+      lockedINodes.add(lockedINode);
     }
-    LOG.debug(msg.toString());
+    // the operation found the inode by id, it still must not change a tree
+    // which a subtree operation is working on
+    checkSubtreeLocks(path.toString(), lockedINodes);
+    LOG.debug("Took Lock on the entire path " + path);
   }
 
-  public void acquireByLease(SortedSet<String> sortedPaths) throws PersistanceException, UnresolvedPathException {
+  public void acquireByLease(SortedSet<String> sortedPaths) throws PersistanceException, UnresolvedPathException, SubtreeLockedException {
     if (leaseParam == null) {
       return;
     }
@@ -61,11 +61,64 @@ public class NameNodeMetrics {
   @Metric MutableCounterLong getLinkTargetOps;
   @Metric MutableCounterLong filesInGetListingOps;
 
+  @Metric("Path resolutions served by a single batched read")
+  MutableCounterLong batchedPathResolutions;
+  @Metric("Batched path resolutions that fell back to the per-component walk")
+  MutableCounterLong batchedPathResolutionFallbacks;
+  @Metric("Database round trips saved by batched path resolution")
+  MutableCounterLong pathResolutionRoundTripsSaved;
+  @Metric("Inode lookups served by a verified hint")
+  MutableCounterLong inodeHintCacheHits;
+  @Metric("Inode lookups without a hint")
+  MutableCounterLong inodeHintCacheMisses;
+  @Metric("Inode hints which did not match the database")
+  MutableCounterLong inodeHintCacheStale;
+  @Metric("Block to inode lookups served by a hint")
+  MutableCounterLong blockINodeIdCacheHits;
+  @Metric("Block to inode lookups without a hint")
+  MutableCounterLong blockINodeIdCacheMisses;
+  @Metric("Directories whose drifted counters were fixed")
+  MutableCounterLong dirCountsFixed;
+  @Metric("Content summaries which walked the tree for unfolded deltas")
+  MutableCounterLong contentSummaryWalks;
+  @Metric("getBlockLocations served by the read-committed fast path")
+  MutableCounterLong getBlockLocationsFastPathHits;
+  @Metric("getBlockLocations which fell back from the fast path to the locked path")
+  MutableCounterLong getBlockLocationsFastPathMisses;
+  @Metric("getBlockLocations fast path") MutableRate getBlockLocationsFastPath;
+  @Metric("getBlockLocations fast path attempts which missed")
+  MutableRate getBlockLocationsFastPathMiss;
+  @Metric("getBlockLocations locked path") MutableRate getBlockLocationsLocked;
+
   @Metric("Journal transactions") MutableRate transactions;
   @Metric("Journal syncs") MutableRate syncs;
   @Metric("Journal transactions batched in sync")
   MutableCounterLong transactionsBatchedInSync;
   @Metric("Block report") MutableRate blockReport;
+  @Metric("Block reports waiting for a worker")
+  MutableGaugeInt blockReportQueueDepth;
+  @Metric("Time a block report waited for a worker")
+  MutableRate blockReportQueueTime;
+  @Metric("Reported blocks processed per second")
+  MutableRate blockReportThroughput;
+  @Metric("Block reports rejected because the queue was full")
+  MutableCounterLong blockReportsRejected;
+  @Metric("Expired lease holders waiting for recovery")
+  MutableGaugeInt leaseRecoveryBacklog;
+  @Metric("Recovery of the expired lease of a holder") MutableRate leaseRecovery;
+  @Metric("Expired lease recoveries which failed")
+  MutableCounterLong leaseRecoveryFailures;
+  @Metric("Lease renewals of the clients")
+  MutableCounterLong leaseRenewals;
+  @Metric("Leases written back by the lease renewal buffer")
+  MutableCounterLong leaseRenewalWrites;
+
+  // <operation>PartitionHinted and <operation>PartitionUnhinted counters,
+  // registered on the first transaction of each operation type.
+  final ConcurrentHashMap<String, MutableCounterLong> partitionHintCounters =
+          new ConcurrentHashMap<String, MutableCounterLong>();
+
+  final TransactionMetrics txMetrics = new TransactionMetrics();
 
   @Metric("Duration in SafeMode at startup") MutableGaugeInt safeModeTime;
   @Metric("Time loading FS Image at startup") MutableGaugeInt fsImageLoadTime;
@@ -79,7 +132,14 @@ public class NameNodeMetrics {
     String processName = r.toString();
     MetricsSystem ms = DefaultMetricsSystem.instance();
     JvmMetrics.create(processName, sessionId, ms);
-    return ms.register(new NameNodeMetrics(processName, sessionId));
+    NameNodeMetrics metrics = ms.register(new NameNodeMetrics(processName, sessionId));
+    ms.register("TransactionActivity", "Transaction latency breakdown per operation",
+            metrics.txMetrics);
+    return metrics;
+  }
+
+  public TransactionMetrics getTransactionMetrics() {
+    return txMetrics;
   }
 
   public void shutdown() {
@@ -90,6 +150,20 @@ public class NameNodeMetrics {
     getBlockLocations.incr();
   }
 
+  public void addGetBlockLocationsFastPath(long latency) {
+    getBlockLocationsFastPathHits.incr();
+    getBlockLocationsFastPath.add(latency);
+  }
+
+  public void addGetBlockLocationsFastPathMiss(long latency) {
+    getBlockLocationsFastPathMisses.incr();
+    getBlockLocationsFastPathMiss.add(latency);
+  }
+
+  public void addGetBlockLocationsLocked(long latency) {
+    getBlockLocationsLocked.add(latency);
+  }
+
   public void incrFilesCreated() {
     filesCreated.incr();
   }
@@ -142,6 +216,43 @@ public class NameNodeMetrics {
     getLinkTargetOps.incr();
   }
 
+  public void incrBatchedPathResolutions(int roundTripsSaved) {
+    batchedPathResolutions.incr();
+    pathResolutionRoundTripsSaved.incr(roundTripsSaved);
+  }
+
+  public void incrBatchedPathResolutionFallbacks() {
+    batchedPathResolutionFallbacks.incr();
+  }
+
+  public void incrINodeHintCacheHits() {
+    inodeHintCacheHits.incr();
+  }
+
+  public void incrINodeHintCacheMisses() {
+    inodeHintCacheMisses.incr();
+  }
+
+  public void incrINodeHintCacheStale() {
+    inodeHintCacheStale.incr();
+  }
+
+  public void incrBlockINodeIdCacheHits() {
+    blockINodeIdCacheHits.incr();
+  }
+
+  public void incrBlockINodeIdCacheMisses() {
+    blockINodeIdCacheMisses.incr();
+  }
+
+  public void incrDirCountsFixed() {
+    dirCountsFixed.incr();
+  }
+
+  public void incrContentSummaryWalks() {
+    contentSummaryWalks.incr();
+  }
+
   public void addTransaction(long latency) {
     transactions.add(latency);
   }
@@ -162,6 +273,70 @@ public class NameNodeMetrics {
     blockReport.add(latency);
   }
 
+  public void incrBlockReportQueueDepth() {
+    blockReportQueueDepth.incr();
+  }
+
+  public void decrBlockReportQueueDepth() {
+    blockReportQueueDepth.decr();
+  }
+
+  public void addBlockReportQueueTime(long elapsed) {
+    blockReportQueueTime.add(elapsed);
+  }
+
+  public void addBlockReportThroughput(long blocksPerSecond) {
+    blockReportThroughput.add(blocksPerSecond);
+  }
+
+  public void incrBlockReportsRejected() {
+    blockReportsRejected.incr();
+  }
+
+  public void setLeaseRecoveryBacklog(int holders) {
+    leaseRecoveryBacklog.set(holders);
+  }
+
+  public void decrLeaseRecoveryBacklog() {
+    leaseRecoveryBacklog.decr();
+  }
+
+  public void addLeaseRecovery(long latency) {
+    leaseRecovery.add(latency);
+  }
+
+  public void incrLeaseRecoveryFailures() {
+    leaseRecoveryFailures.incr();
+  }
+
+  public void incrLeaseRenewals() {
+    leaseRenewals.incr();
+  }
+
+  public void incrLeaseRenewalWrites(int leases) {
+    leaseRenewalWrites.incr(leases);
+  }
+
+  /**
+   * Counts a transaction of the operation which did or did not start on the
+   * node owning its partition key.
+   */
+  public void incrPartitionHint(String operation, boolean hinted) {
+    String name = operation + (hinted ? "PartitionHinted" : "PartitionUnhinted");
+    MutableCounterLong counter = partitionHintCounters.get(name);
+    if (counter == null) {
+      synchronized (registry) {
+        counter = partitionHintCounters.get(name);
+        if (counter == null) {
+          counter = registry.newCounter(name, (hinted ? "Partition-hinted" : "Unhinted")
+                  + " transactions of " + operation, 0L);
+          partitionHintCounters.put(name, counter);
+        }
+      }
+    }
+    counter.incr();
+  }
+
   public void setSafeModeTime(long elapsed) {
     safeModeTime.set((int) elapsed);
   }
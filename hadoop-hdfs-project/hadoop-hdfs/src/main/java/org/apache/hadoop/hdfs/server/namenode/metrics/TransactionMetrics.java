@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+
+/**
+ * Latency breakdown of the transactions of every operation type: a histogram
+ * for each phase of TransactionalRequestHandler, retries, rollbacks and the
+ * number of storage reads and cache hits of the transaction contexts. A failure
+ * is an operation which gave up after its retries.
+ *
+ * The same numbers are published through metrics2 and the txstats servlet.
+ */
+public class TransactionMetrics implements MetricsSource {
+
+  public enum Phase {
+
+    SET_UP("SetUp"), ACQUIRE_LOCK("AcquireLock"), PERFORM_TASK("PerformTask"), COMMIT("Commit");
+    final String metricName;
+
+    Phase(String metricName) {
+      this.metricName = metricName;
+    }
+  }
+
+  /**
+   * Latencies in power-of-two millisecond buckets, bucket i holds the
+   * latencies below 2^i msec and the last bucket holds the rest.
+   */
+  public static class Histogram {
+
+    static final int BUCKETS = 20;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void add(long millis) {
+      millis = Math.max(0, millis);
+      int bucket = 64 - Long.numberOfLeadingZeros(millis);
+      buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+      count.incrementAndGet();
+      total.addAndGet(millis);
+      long m = max.get();
+      while (millis > m && !max.compareAndSet(m, millis)) {
+        m = max.get();
+      }
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getTotal() {
+      return total.get();
+    }
+
+    public long getMax() {
+      return max.get();
+    }
+
+    public double getAverage() {
+      long c = count.get();
+      return c == 0 ? 0 : (double) total.get() / c;
+    }
+
+    /**
+     * @return the upper bound of the bucket holding the given percentile, it
+     * is never more than the maximum seen.
+     */
+    public long getPercentile(double percentile) {
+      long c = count.get();
+      if (c == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(c * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets.get(i);
+        if (seen >= rank) {
+          return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+        }
+      }
+      return max.get();
+    }
+  }
+
+  public static class OperationStats {
+
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong rollbacks = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong storageReads = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    OperationStats() {
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new Histogram();
+      }
+    }
+
+    public Histogram getPhase(Phase phase) {
+      return phases[phase.ordinal()];
+    }
+
+    public long getTransactions() {
+      return transactions.get();
+    }
+
+    public long getRetries() {
+      return retries.get();
+    }
+
+    public long getRollbacks() {
+      return rollbacks.get();
+    }
+
+    public long getFailures() {
+      return failures.get();
+    }
+
+    public long getStorageReads() {
+      return storageReads.get();
+    }
+
+    public long getCacheHits() {
+      return cacheHits.get();
+    }
+
+    public long getTotalTime() {
+      long time = 0;
+      for (Histogram phase : phases) {
+        time += phase.getTotal();
+      }
+      return time;
+    }
+  }
+  private final OperationStats[] stats = new OperationStats[OperationType.values().length];
+
+  TransactionMetrics() {
+    for (int i = 0; i < stats.length; i++) {
+      stats[i] = new OperationStats();
+    }
+  }
+
+  public void addPhase(OperationType op, Phase phase, long millis) {
+    stats[op.ordinal()].phases[phase.ordinal()].add(millis);
+  }
+
+  public void incrTransactions(OperationType op) {
+    stats[op.ordinal()].transactions.incrementAndGet();
+  }
+
+  public void incrRetries(OperationType op) {
+    stats[op.ordinal()].retries.incrementAndGet();
+  }
+
+  public void incrRollbacks(OperationType op) {
+    stats[op.ordinal()].rollbacks.incrementAndGet();
+  }
+
+  public void incrFailures(OperationType op) {
+    stats[op.ordinal()].failures.incrementAndGet();
+  }
+
+  public void addStorageAccesses(OperationType op, long reads, long hits) {
+    OperationStats s = stats[op.ordinal()];
+    s.storageReads.addAndGet(reads);
+    s.cacheHits.addAndGet(hits);
+  }
+
+  public OperationStats getStats(OperationType op) {
+    return stats[op.ordinal()];
+  }
+
+  /**
+   * @return the operation types which have run at least one transaction.
+   */
+  public List<OperationType> getActiveOperations() {
+    List<OperationType> ops = new ArrayList<OperationType>();
+    for (OperationType op : OperationType.values()) {
+      if (stats[op.ordinal()].getTransactions() > 0) {
+        ops.add(op);
+      }
+    }
+    return ops;
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    MetricsRecordBuilder rb = collector.addRecord("TransactionActivity").setContext("dfs");
+    for (OperationType op : getActiveOperations()) {
+      OperationStats s = stats[op.ordinal()];
+      String name = metricName(op);
+      rb.addCounter(info(name + "Transactions", "Transactions of " + op), s.getTransactions());
+      rb.addCounter(info(name + "Retries", "Retried transactions of " + op), s.getRetries());
+      rb.addCounter(info(name + "Rollbacks", "Rolled back transactions of " + op), s.getRollbacks());
+      rb.addCounter(info(name + "Failures", "Failed operations of " + op), s.getFailures());
+      rb.addCounter(info(name + "StorageReads", "Storage reads of " + op), s.getStorageReads());
+      rb.addCounter(info(name + "CacheHits", "Transaction cache hits of " + op), s.getCacheHits());
+      for (Phase phase : Phase.values()) {
+        Histogram h = s.getPhase(phase);
+        String prefix = name + phase.metricName;
+        rb.addCounter(info(prefix + "NumOps", "Number of " + phase + " of " + op), h.getCount());
+        rb.addGauge(info(prefix + "AvgTime", "Average " + phase + " time of " + op), h.getAverage());
+        rb.addGauge(info(prefix + "P99Time", "99th percentile " + phase + " time of " + op), h.getPercentile(99));
+        rb.addGauge(info(prefix + "MaxTime", "Maximum " + phase + " time of " + op), h.getMax());
+      }
+    }
+  }
+
+  /**
+   * GET_BLOCK_LOCATIONS becomes GetBlockLocations.
+   */
+  static String metricName(OperationType op) {
+    StringBuilder name = new StringBuilder();
+    for (String word : op.name().split("_")) {
+      if (word.length() > 0) {
+        name.append(word.charAt(0)).append(word.substring(1).toLowerCase());
+      }
+    }
+    return name.toString();
+  }
+}
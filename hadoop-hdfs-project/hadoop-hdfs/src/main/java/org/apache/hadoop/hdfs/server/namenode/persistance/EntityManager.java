@@ -92,7 +92,19 @@ public class EntityManager {
   }
   
   public static void setPartitionKey(Class name, Object key) {
-    connector.setPartitionKey(name, key);
+    context().setPartitionKey(name, key);
+  }
+
+  public static boolean isPartitionKeySet() {
+    return context().isPartitionKeySet();
+  }
+
+  public static int getStorageReads() {
+    return context().getStorageReads();
+  }
+
+  public static int getCacheHits() {
+    return context().getCacheHits();
   }
 
   /**
@@ -16,7 +16,7 @@ public abstract class RequestHandler {
     // NameNodeRpcServer
 
     INITIALIZE, ACTIVATE, META_SAVE, SET_PERMISSION, SET_OWNER,
-    GET_BLOCK_LOCATIONS, GET_STATS, CONCAT, SET_TIMES, CREATE_SYM_LINK, GET_PREFERRED_BLOCK_SIZE,
+    GET_BLOCK_LOCATIONS, GET_BLOCK_LOCATIONS_FAST_PATH, GET_STATS, CONCAT, SET_TIMES, CREATE_SYM_LINK, GET_PREFERRED_BLOCK_SIZE,
     SET_REPLICATION, START_FILE, RECOVER_LEASE, APPEND_FILE, GET_ADDITIONAL_BLOCK,
     GET_ADDITIONAL_DATANODE, ABANDON_BLOCK, COMPLETE_FILE, RENAME_TO, RENAME_TO2,
     DELETE, GET_FILE_INFO, MKDIRS, GET_CONTENT_SUMMARY, SET_QUOTA,
@@ -29,6 +29,7 @@ public abstract class RequestHandler {
     GET_ROOT,
     //BlockManager
     FIND_AND_MARK_BLOCKS_AS_CORRUPT, PREPARE_PROCESS_REPORT, PROCESS_FIRST_BLOCK_REPORT, PROCESS_REPORT, AFTER_PROCESS_REPORT,
+    PROCESS_INCREMENTAL_REPORT,
     BLOCK_RECEIVED_AND_DELETED,
     REPLICATION_MONITOR,
     // DatanodeManager
@@ -39,12 +40,18 @@ public abstract class RequestHandler {
     HEARTBEAT_MONITOR,
     //LeaseManager
     PREPARE_LEASE_MANAGER_MONITOR, LEASE_MANAGER_MONITOR,
+    //DirCountsVerifier
+    GET_SUBDIRECTORIES, VERIFY_DIR_COUNTS,
+    //DirCountsAggregator
+    GET_DIR_COUNTS_DELTA_INODES, AGGREGATE_DIR_COUNTS,
+    //SubtreeOperations
+    SUBTREE_FIND_ROOT, SUBTREE_LOCK, SUBTREE_LIST_CHILDREN, SUBTREE_DELETE_BATCH, SUBTREE_RECOVERY,
     // LeaderElection
     SELECT_ALL_NAMENODES, LEADER_EXIT, GET_ALL_NAME_NODES, GET_LEADER, LEADER_ELECTION, UPDATE_LEADER_COUNTER, REMOVE_PREV_LEADERS,
     // BlockTokenSecretManagerNN
     ADD_BLOCK_TOKENS, GET_ALL_BLOCK_TOKENS, GET_BLOCK_TOKENS, REMOVE_ALL, GET_KEY_BY_TYPE,REMOVE_BLOCK_KEY, UPDATE_BLOCK_KEYS, GET_KEY_BY_ID,
     // Block Generationstamp
-    GET_GENERATION_STAMP, SET_GENERATION_STAMP,
+    GET_GENERATION_STAMP, SET_GENERATION_STAMP, LEASE_COUNTER_RANGE,
     //FSNamesystem
     TOTAL_FILES,GET_STORAGE_INFO,
     //ClusterInfos
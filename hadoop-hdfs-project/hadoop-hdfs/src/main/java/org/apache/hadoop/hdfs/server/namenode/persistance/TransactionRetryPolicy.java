@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance;
+
+import java.util.Random;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.lock.INodePathChangedException;
+import org.apache.hadoop.hdfs.server.namenode.lock.QuotaDirectoryChangedException;
+import org.apache.hadoop.hdfs.server.namenode.lock.StaleINodeHintException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.context.TransactionContextException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageConnector;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageFactory;
+
+/**
+ * Decides whether a failed transaction is run again and how long to wait
+ * before the next attempt. Only the failures which the storage connector
+ * classifies as transient (deadlocks, lock wait time-outs, node restarts) are
+ * retried; the wait grows exponentially with a random jitter so the
+ * conflicting transactions do not collide again, and the total wait of an
+ * operation is bounded by the retry budget.
+ */
+public class TransactionRetryPolicy {
+
+  private static int maxRetries = DFSConfigKeys.DFS_TX_RETRY_COUNT_DEFAULT;
+  private static long baseBackoff = DFSConfigKeys.DFS_TX_RETRY_BACKOFF_BASE_MS_DEFAULT;
+  private static long maxBackoff = DFSConfigKeys.DFS_TX_RETRY_BACKOFF_MAX_MS_DEFAULT;
+  private static long budget = DFSConfigKeys.DFS_TX_RETRY_BUDGET_MS_DEFAULT;
+  private static final Random random = new Random();
+
+  private TransactionRetryPolicy() {
+  }
+
+  public static void setConfiguration(Configuration conf) {
+    maxRetries = Math.max(0, conf.getInt(DFSConfigKeys.DFS_TX_RETRY_COUNT_KEY,
+            DFSConfigKeys.DFS_TX_RETRY_COUNT_DEFAULT));
+    baseBackoff = Math.max(1, conf.getLong(DFSConfigKeys.DFS_TX_RETRY_BACKOFF_BASE_MS_KEY,
+            DFSConfigKeys.DFS_TX_RETRY_BACKOFF_BASE_MS_DEFAULT));
+    maxBackoff = Math.max(baseBackoff, conf.getLong(DFSConfigKeys.DFS_TX_RETRY_BACKOFF_MAX_MS_KEY,
+            DFSConfigKeys.DFS_TX_RETRY_BACKOFF_MAX_MS_DEFAULT));
+    budget = Math.max(0, conf.getLong(DFSConfigKeys.DFS_TX_RETRY_BUDGET_MS_KEY,
+            DFSConfigKeys.DFS_TX_RETRY_BUDGET_MS_DEFAULT));
+  }
+
+  public static int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public static long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Errors of the transaction context are bugs of the operation and are never
+   * retried, storage errors are retried if the connector says so. A
+   * transaction which locked the wrong inode of a block is always retried,
+   * the hint is corrected by then, and so is one which found a directory with
+   * a quota, or the path of an inode found by id, changed when it locked it.
+   */
+  public static boolean isTransient(Throwable error) {
+    if (error instanceof TransactionContextException) {
+      return false;
+    }
+    if (error instanceof StaleINodeHintException
+            || error instanceof QuotaDirectoryChangedException
+            || error instanceof INodePathChangedException) {
+      return true;
+    }
+    StorageConnector connector = StorageFactory.getConnector();
+    return connector != null && connector.isTransientError(error);
+  }
+
+  /**
+   * @param retry the number of the retry, starting from 1
+   * @return msec to wait before the retry, a random value between half and
+   * all of base * 2^(retry - 1), but not more than the maximum backoff.
+   */
+  public static long backoff(int retry) {
+    int shift = Math.min(Math.max(retry - 1, 0), 30);
+    long ceiling = Math.min(maxBackoff, baseBackoff << shift);
+    long half = ceiling / 2;
+    return half + (long) (random.nextDouble() * (ceiling - half + 1));
+  }
+}
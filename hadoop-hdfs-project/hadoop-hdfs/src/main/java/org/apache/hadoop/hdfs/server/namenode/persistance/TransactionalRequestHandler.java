@@ -1,10 +1,15 @@
 package org.apache.hadoop.hdfs.server.namenode.persistance;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.LinkedList;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
 import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
 import org.apache.hadoop.hdfs.server.namenode.Namesystem;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics.Phase;
 import org.apache.hadoop.hdfs.server.namenode.persistance.context.TransactionContextException;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
 import org.apache.log4j.NDC;
@@ -23,29 +28,39 @@ public abstract class TransactionalRequestHandler extends RequestHandler {
     protected Object run(boolean writeLock, boolean readLock, Namesystem namesystem) throws IOException {
         boolean systemLevelLock = FSNamesystem.systemLevelLock();
         boolean rowLevelLock = FSNamesystem.rowLevelLock();
+        boolean systemLocked = false;
         if (systemLevelLock) {
-            if (writeLock) {
-                namesystem.writeLock();
-            }
-            if (readLock) {
-                namesystem.readLock();
-            }
+            lockNamesystem(writeLock, readLock, namesystem);
+            systemLocked = true;
         }
         boolean retry = true;
         boolean rollback = false;
         int tryCount = 0;
+        int maxTries = 1 + TransactionRetryPolicy.getMaxRetries();
+        long backoffTime = 0;
         IOException exception = null;
+        PersistanceException failure = null;
         long txStartTime = 0;
+        NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+        TransactionMetrics txMetrics = metrics == null ? null : metrics.getTransactionMetrics();
 
 
         try {
-            while (retry && tryCount < RETRY_COUNT) {
-                retry = true;
+            while (retry && tryCount < maxTries) {
+                retry = false;
                 rollback = false;
                 tryCount++;
                 exception = null;
+                failure = null;
+                Object obj = null;
 
                 long oldTime = 0;
+                if (txMetrics != null) {
+                    txMetrics.incrTransactions(opType);
+                    if (tryCount > 1) {
+                        txMetrics.incrRetries(opType);
+                    }
+                }
                 try {
                     // Defines a context for every operation to track them in the logs easily.
                     if (namesystem != null) {
@@ -53,82 +68,150 @@ public abstract class TransactionalRequestHandler extends RequestHandler {
                     } else {
                         NDC.push(opType.name());
                     }
+                    oldTime = System.currentTimeMillis();
                     setUp();
                     txStartTime = System.currentTimeMillis();
-                    oldTime = 0;
+                    addPhase(txMetrics, Phase.SET_UP, oldTime);
                     EntityManager.begin();
                     log.debug("tx started");
                     oldTime = System.currentTimeMillis();
                     if (rowLevelLock) {
                         acquireLock();
                         log.debug("all locks acquired  in " + (System.currentTimeMillis() - oldTime) + " msec");
+                        addPhase(txMetrics, Phase.ACQUIRE_LOCK, oldTime);
+                        if (metrics != null) {
+                            metrics.incrPartitionHint(opType.name(), EntityManager.isPartitionKeySet());
+                        }
                         oldTime = System.currentTimeMillis();
                         EntityManager.preventStorageCall();
                     }
                     log.debug("starting in memory processing");
-                    Object obj = performTask();
+                    obj = performTask();
                     log.debug("in memory processig finished  in " + (System.currentTimeMillis() - oldTime) + " msec");
+                    addPhase(txMetrics, Phase.PERFORM_TASK, oldTime);
                     oldTime = System.currentTimeMillis();
-                    return obj;
                 } catch (TransactionContextException ex) {
                     log.error("Could not perfortm task", ex);
                     rollback = true;
-                    retry = false;
                 } catch (PersistanceException ex) {
                     log.error("Tx FAILED. total tx time "+
                             (System.currentTimeMillis() - txStartTime)+
-                            " msec. Retry("+
-                            retry+") TotalRetryCount("+
-                            RETRY_COUNT+") RemainingRetries("+
-                            (RETRY_COUNT-tryCount)+")", ex);
+                            " msec. TotalTryCount("+
+                            maxTries+") RemainingRetries("+
+                            (maxTries-tryCount)+")", ex);
                     rollback = true;
-                    retry = true;
+                    failure = ex;
                 } catch (IOException ex) {
                     exception = ex;
                 } finally {
+                    if (txMetrics != null) {
+                        txMetrics.addStorageAccesses(opType, EntityManager.getStorageReads(),
+                                EntityManager.getCacheHits());
+                    }
                     try {
                         if (!rollback) {
+                            oldTime = System.currentTimeMillis();
                             EntityManager.commit();
+                            addPhase(txMetrics, Phase.COMMIT, oldTime);
                             log.debug("tx committed. commit took " + (System.currentTimeMillis() - oldTime) + " msec");
                             log.debug("Total time for tx is " + (System.currentTimeMillis() - txStartTime) + " msec");
                         }
                     } catch (StorageException ex) {
                         log.error("Could not commit transaction", ex);
                         rollback = true;
-                        retry = true;
+                        failure = ex;
                     } finally {
                         try {
                             if (rollback) {
+                                if (txMetrics != null) {
+                                    txMetrics.incrRollbacks(opType);
+                                }
                                 try {
                                     EntityManager.rollback();
                                 } catch (StorageException ex) {
                                     log.error("Could not rollback transaction", ex);
                                 }
                             }
-                            if (tryCount == RETRY_COUNT && exception != null) {
-                                throw exception;
-                            }
                         } finally {
                             NDC.pop();
                         }
                     }
                 }
-            }
-        } finally {
-            if (systemLevelLock) {
-                if (writeLock) {
-                    namesystem.writeUnlock();
+
+                if (failure == null) {
+                    if (exception != null) {
+                        throw exception;
+                    }
+                    return rollback ? null : obj;
                 }
-                if (readLock) {
-                    namesystem.readUnlock();
+                if (tryCount < maxTries && TransactionRetryPolicy.isTransient(failure)) {
+                    long wait = TransactionRetryPolicy.backoff(tryCount);
+                    if (backoffTime + wait <= TransactionRetryPolicy.getBudget()) {
+                        // the namesystem lock is not held during the back off,
+                        // it would stall the whole namenode
+                        if (systemLocked) {
+                            unlockNamesystem(writeLock, readLock, namesystem);
+                            systemLocked = false;
+                        }
+                        if (namesystem != null && systemLevelLock && namesystem.hasReadOrWriteLock()) {
+                            // a caller holds it too, the retry does not wait
+                            log.debug("retrying " + opType + " without back off under the namesystem lock");
+                        } else {
+                            log.debug("retrying " + opType + " in " + wait + " msec");
+                            backoffTime += wait;
+                            try {
+                                Thread.sleep(wait);
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                                throw new InterruptedIOException("Interrupted while retrying " + opType);
+                            }
+                        }
+                        if (systemLevelLock) {
+                            lockNamesystem(writeLock, readLock, namesystem);
+                            systemLocked = true;
+                        }
+                        retry = true;
+                    }
                 }
             }
+        } finally {
+            if (systemLocked) {
+                unlockNamesystem(writeLock, readLock, namesystem);
+            }
         }
-        return null;
+        if (txMetrics != null) {
+            txMetrics.incrFailures(opType);
+        }
+        throw new IOException("Transaction " + opType + " failed after " + tryCount
+                + " attempt(s)", failure);
     }
 
     public abstract void acquireLock() throws PersistanceException, IOException;
 
+    private static void lockNamesystem(boolean writeLock, boolean readLock, Namesystem namesystem) {
+        if (writeLock) {
+            namesystem.writeLock();
+        }
+        if (readLock) {
+            namesystem.readLock();
+        }
+    }
+
+    private static void unlockNamesystem(boolean writeLock, boolean readLock, Namesystem namesystem) {
+        if (writeLock) {
+            namesystem.writeUnlock();
+        }
+        if (readLock) {
+            namesystem.readUnlock();
+        }
+    }
+
+    private void addPhase(TransactionMetrics txMetrics, Phase phase, long startTime) {
+        if (txMetrics != null) {
+            txMetrics.addPhase(opType, phase, System.currentTimeMillis() - startTime);
+        }
+    }
+
     @Override
     public TransactionalRequestHandler setParams(Object... params) {
         this.params = params;
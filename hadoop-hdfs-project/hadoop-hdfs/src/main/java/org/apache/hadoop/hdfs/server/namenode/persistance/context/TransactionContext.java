@@ -25,6 +25,7 @@ public class TransactionContext {
   private Map<Class, EntityContext> typeContextMap;
   private Set<EntityContext> contexts = new HashSet<EntityContext>();
   private StorageConnector connector;
+  private boolean partitionKeySet = false;
 
   public TransactionContext(StorageConnector connector, Map<Class, EntityContext> entityContext) {
     this.typeContextMap = entityContext;
@@ -38,7 +39,9 @@ public class TransactionContext {
 
   private void resetContext() {
     activeTxExpected = false;
+    partitionKeySet = false;
     clearContext();
+    resetStats();
     EntityContext.setLockMode(null); // null won't be logged
   }
 
@@ -50,10 +53,52 @@ public class TransactionContext {
 
   public void begin() throws StorageException {
     activeTxExpected = true;
+    partitionKeySet = false;
+    resetStats();
     connector.beginTransaction();
     logger.debug("begin");
   }
 
+  /**
+   * Sets the partition key of the transaction once, the first lock target
+   * decides where the transaction starts.
+   */
+  public void setPartitionKey(Class className, Object key) {
+    if (activeTxExpected && !partitionKeySet) {
+      partitionKeySet = connector.setPartitionKey(className, key);
+    }
+  }
+
+  public boolean isPartitionKeySet() {
+    return partitionKeySet;
+  }
+
+  /**
+   * @return number of reads the entity contexts sent to the storage in this
+   * transaction.
+   */
+  public int getStorageReads() {
+    int reads = 0;
+    for (EntityContext context : contexts) {
+      reads += context.getStorageReads();
+    }
+    return reads;
+  }
+
+  public int getCacheHits() {
+    int hits = 0;
+    for (EntityContext context : contexts) {
+      hits += context.getCacheHits();
+    }
+    return hits;
+  }
+
+  private void resetStats() {
+    for (EntityContext context : contexts) {
+      context.resetStats();
+    }
+  }
+
   public void preventStorageCall() {
     for (EntityContext context : contexts) {
       context.preventStorageCall();
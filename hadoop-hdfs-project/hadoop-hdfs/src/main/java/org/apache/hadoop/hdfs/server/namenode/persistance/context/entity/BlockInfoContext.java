@@ -4,6 +4,7 @@ import java.util.*;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
 import org.apache.hadoop.hdfs.server.namenode.CounterType;
 import org.apache.hadoop.hdfs.server.namenode.FinderType;
+import org.apache.hadoop.hdfs.server.namenode.lock.BlockINodeIdCache;
 import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
 import org.apache.hadoop.hdfs.server.namenode.persistance.context.TransactionContext;
 import org.apache.hadoop.hdfs.server.namenode.persistance.context.TransactionContextException;
@@ -42,6 +43,7 @@ public class BlockInfoContext extends EntityContext<BlockInfo> {
     }
     blocks.put(block.getBlockId(), block);
     newBlocks.put(block.getBlockId(), block);
+    BlockINodeIdCache.put(block.getBlockId(), block.getInodeId());
     log("added-blockinfo", CacheHitState.NA, new String[]{"bid", Long.toString(block.getBlockId()),
               "inodeid", Long.toString(block.getInodeId())});
   }
@@ -93,6 +95,8 @@ public class BlockInfoContext extends EntityContext<BlockInfo> {
           result = dataAccess.findById(id);
           if (result == null) {
             nullCount++;
+          } else {
+            BlockINodeIdCache.put(id, result.getInodeId());
           }
           blocks.put(id, result);
         } else {
@@ -121,6 +125,59 @@ public class BlockInfoContext extends EntityContext<BlockInfo> {
           inodeBlocks.put(inodeId, syncBlockInfoInstances(result));
           return result;
         }
+      case ByIds:
+        List<Long> blockIds = (List<Long>) params[0];
+        List<Long> missing = new ArrayList<Long>();
+        for (long id : blockIds) {
+          if (!blocks.containsKey(id)) {
+            missing.add(id);
+          }
+        }
+        if (missing.isEmpty()) {
+          log("find-blocks-by-bids", CacheHitState.HIT, new String[]{"bids", blockIds.toString()});
+        } else {
+          log("find-blocks-by-bids", CacheHitState.LOSS, new String[]{"bids", missing.toString()});
+          aboutToAccessStorage();
+          syncBlockInfoInstances(dataAccess.findByIds(missing));
+          for (long id : missing) {
+            if (!blocks.containsKey(id)) {
+              blocks.put(id, null);
+              nullCount++;
+            }
+          }
+        }
+        result = new ArrayList<BlockInfo>();
+        for (long id : blockIds) {
+          if (blocks.get(id) != null) {
+            result.add(blocks.get(id));
+          }
+        }
+        return result;
+      case ByInodeIds:
+        List<Long> inodeIds = (List<Long>) params[0];
+        List<Long> toRead = new ArrayList<Long>();
+        for (long id : inodeIds) {
+          if (!inodeBlocks.containsKey(id)) {
+            toRead.add(id);
+          }
+        }
+        if (toRead.isEmpty()) {
+          log("find-blocks-by-inodeids", CacheHitState.HIT, new String[]{"inodeids", inodeIds.toString()});
+        } else {
+          log("find-blocks-by-inodeids", CacheHitState.LOSS, new String[]{"inodeids", toRead.toString()});
+          aboutToAccessStorage();
+          for (long id : toRead) {
+            inodeBlocks.put(id, new ArrayList<BlockInfo>());
+          }
+          for (BlockInfo block : syncBlockInfoInstances(dataAccess.findByInodeIds(toRead))) {
+            inodeBlocks.get(block.getInodeId()).add(block);
+          }
+        }
+        result = new ArrayList<BlockInfo>();
+        for (long id : inodeIds) {
+          result.addAll(inodeBlocks.get(id));
+        }
+        return result;
       case ByStorageId:
         String storageId = (String) params[0];
         log("find-blocks-by-storageid", CacheHitState.NA, new String[]{"storageid", storageId});
@@ -168,6 +225,7 @@ public class BlockInfoContext extends EntityContext<BlockInfo> {
 
     blocks.remove(block.getBlockId());
     newBlocks.remove(block.getBlockId());
+    BlockINodeIdCache.remove(block.getBlockId());
     modifiedBlocks.remove(block.getBlockId());
     removedBlocks.put(block.getBlockId(), attachedBlock);
     log("removed-blockinfo", CacheHitState.NA, new String[]{"bid", Long.toString(block.getBlockId())});
@@ -185,6 +243,8 @@ public class BlockInfoContext extends EntityContext<BlockInfo> {
     }
     blocks.put(block.getBlockId(), block);
     modifiedBlocks.put(block.getBlockId(), block);
+    // a concat moves the block to another inode
+    BlockINodeIdCache.put(block.getBlockId(), block.getInodeId());
     log("updated-blockinfo", CacheHitState.NA, new String[]{"bid", Long.toString(block.getBlockId())});
   }
 
@@ -202,6 +262,7 @@ public class BlockInfoContext extends EntityContext<BlockInfo> {
         blocks.put(blockInfo.getBlockId(), blockInfo);
         finalList.add(blockInfo);
       }
+      BlockINodeIdCache.put(blockInfo.getBlockId(), blockInfo.getInodeId());
     }
 
     return finalList;
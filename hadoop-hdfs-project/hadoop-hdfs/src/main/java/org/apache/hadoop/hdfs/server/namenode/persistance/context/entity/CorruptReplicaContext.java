@@ -136,7 +136,31 @@ public class CorruptReplicaContext extends EntityContext<CorruptReplica> {
         List<CorruptReplica> syncList = syncCorruptReplicaInstances(dataAccess.findByBlockId(blockId));
         blockCorruptReplicas.put(blockId, syncList);
         return new ArrayList(blockCorruptReplicas.get(blockId)); // Shallow copy
-
+      case ByBlockIds:
+        List<Long> blockIds = (List<Long>) params[0];
+        List<Long> toRead = new ArrayList<Long>();
+        for (long bid : blockIds) {
+          if (!blockCorruptReplicas.containsKey(bid)) {
+            toRead.add(bid);
+          }
+        }
+        if (toRead.isEmpty()) {
+          log("find-corrupts-by-bids", CacheHitState.HIT, new String[]{"bids", blockIds.toString()});
+        } else {
+          log("find-corrupts-by-bids", CacheHitState.LOSS, new String[]{"bids", toRead.toString()});
+          aboutToAccessStorage();
+          for (long bid : toRead) {
+            blockCorruptReplicas.put(bid, new ArrayList<CorruptReplica>());
+          }
+          for (CorruptReplica cr : syncCorruptReplicaInstances(dataAccess.findByBlockIds(toRead))) {
+            blockCorruptReplicas.get(cr.getBlockId()).add(cr);
+          }
+        }
+        List<CorruptReplica> crs = new ArrayList<CorruptReplica>();
+        for (long bid : blockIds) {
+          crs.addAll(blockCorruptReplicas.get(bid));
+        }
+        return crs;
     }
 
     throw new RuntimeException(UNSUPPORTED_FINDER);
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.context.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hdfs.server.namenode.CounterType;
+import org.apache.hadoop.hdfs.server.namenode.DirCountsDelta;
+import org.apache.hadoop.hdfs.server.namenode.FinderType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.context.StorageCallPreventedException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.context.TransactionContextException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.DirCountsDeltaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+/**
+ * The deltas a transaction adds to a directory are merged into a single new
+ * delta, so a transaction writes at most one row per directory.
+ */
+public class DirCountsDeltaContext extends EntityContext<DirCountsDelta> {
+
+  private Map<Long, List<DirCountsDelta>> inodeDeltas = new HashMap<Long, List<DirCountsDelta>>();
+  private Map<Long, DirCountsDelta> newDeltas = new HashMap<Long, DirCountsDelta>();
+  private Map<DirCountsDelta, DirCountsDelta> removedDeltas = new HashMap<DirCountsDelta, DirCountsDelta>();
+  private DirCountsDeltaDataAccess dataAccess;
+
+  public DirCountsDeltaContext(DirCountsDeltaDataAccess dataAccess) {
+    this.dataAccess = dataAccess;
+  }
+
+  @Override
+  public void add(DirCountsDelta delta) throws PersistanceException {
+    DirCountsDelta merged = newDeltas.get(delta.getInodeId());
+    if (merged == null) {
+      newDeltas.put(delta.getInodeId(), delta);
+    } else {
+      merged.merge(delta);
+    }
+    log("added-dir-counts-delta", CacheHitState.NA,
+            new String[]{"inodeid", Long.toString(delta.getInodeId()), "ns", Long.toString(delta.getNsDelta())});
+  }
+
+  @Override
+  public void clear() {
+    storageCallPrevented = false;
+    inodeDeltas.clear();
+    newDeltas.clear();
+    removedDeltas.clear();
+  }
+
+  @Override
+  public int count(CounterType<DirCountsDelta> counter, Object... params) throws PersistanceException {
+    throw new UnsupportedOperationException(NOT_SUPPORTED_YET);
+  }
+
+  @Override
+  public DirCountsDelta find(FinderType<DirCountsDelta> finder, Object... params) throws PersistanceException {
+    throw new UnsupportedOperationException(NOT_SUPPORTED_YET);
+  }
+
+  @Override
+  public Collection<DirCountsDelta> findList(FinderType<DirCountsDelta> finder, Object... params) throws PersistanceException {
+    DirCountsDelta.Finder dFinder = (DirCountsDelta.Finder) finder;
+    switch (dFinder) {
+      case ByINodeIds:
+        Collection<Long> ids = (Collection<Long>) params[0];
+        List<Long> missing = new ArrayList<Long>();
+        for (long id : ids) {
+          if (!inodeDeltas.containsKey(id)) {
+            missing.add(id);
+          }
+        }
+        if (missing.isEmpty()) {
+          log("find-dir-counts-deltas-by-inodeids", CacheHitState.HIT,
+                  new String[]{"inodeids", ids.toString()});
+        } else {
+          try {
+            aboutToAccessStorage();
+            log("find-dir-counts-deltas-by-inodeids", CacheHitState.LOSS,
+                    new String[]{"inodeids", missing.toString()});
+            for (long id : missing) {
+              inodeDeltas.put(id, new ArrayList<DirCountsDelta>());
+            }
+            for (DirCountsDelta delta : dataAccess.findByINodeIds(missing)) {
+              if (!removedDeltas.containsKey(delta)) {
+                inodeDeltas.get(delta.getInodeId()).add(delta);
+              }
+            }
+          } catch (StorageCallPreventedException ex) {
+            // The deltas of the directories the operation works on are read
+            // while the locks are taken, for the others only the ones of this
+            // transaction are known.
+            log("find-dir-counts-deltas-by-inodeids", CacheHitState.HIT,
+                    new String[]{"inodeids", missing.toString(), "prevented", "true"});
+          }
+        }
+        List<DirCountsDelta> result = new ArrayList<DirCountsDelta>();
+        for (long id : ids) {
+          List<DirCountsDelta> stored = inodeDeltas.get(id);
+          if (stored != null) {
+            result.addAll(stored);
+          }
+          DirCountsDelta added = newDeltas.get(id);
+          if (added != null) {
+            result.add(added);
+          }
+        }
+        return result;
+    }
+    throw new RuntimeException(UNSUPPORTED_FINDER);
+  }
+
+  @Override
+  public void prepare() throws StorageException {
+    dataAccess.prepare(removedDeltas.values(), newDeltas.values());
+  }
+
+  @Override
+  public void remove(DirCountsDelta delta) throws PersistanceException {
+    if (newDeltas.get(delta.getInodeId()) == delta) {
+      newDeltas.remove(delta.getInodeId());
+    } else {
+      List<DirCountsDelta> stored = inodeDeltas.get(delta.getInodeId());
+      if (stored == null || !stored.remove(delta)) {
+        throw new TransactionContextException("Unattached dir-counts-delta passed to be removed");
+      }
+      removedDeltas.put(delta, delta);
+    }
+    log("removed-dir-counts-delta", CacheHitState.NA,
+            new String[]{"inodeid", Long.toString(delta.getInodeId()), "id", Long.toString(delta.getId())});
+  }
+
+  @Override
+  public void removeAll() throws PersistanceException {
+    throw new UnsupportedOperationException(NOT_SUPPORTED_YET);
+  }
+
+  @Override
+  public void update(DirCountsDelta delta) throws PersistanceException {
+    throw new UnsupportedOperationException(NOT_SUPPORTED_YET);
+  }
+}
@@ -29,6 +29,9 @@ public abstract class EntityContext<T> {
   public static final String ANSI_CYAN = "\u001B[36m";
   public static final String ANSI_WHITE = "\u001B[37m";
   protected boolean storageCallPrevented = false;
+  // HIT and LOSS events of the current transaction, see TransactionMetrics.
+  private int cacheHits = 0;
+  private int storageReads = 0;
 
   public enum LockMode {
 
@@ -37,8 +40,8 @@ public abstract class EntityContext<T> {
   public static ThreadLocal<LockMode> currentLockMode = new ThreadLocal<LockMode>();
 
   /**
-   * Defines the cache state of the request. This enum is only used for logging
-   * purpose.
+   * Defines the cache state of the request. This enum is used for logging and
+   * for counting the storage reads of a transaction.
    */
   public enum CacheHitState {
 
@@ -65,6 +68,14 @@ public abstract class EntityContext<T> {
 
 
   public void log(String opName, CacheHitState state, String... params) {
+    if (state == CacheHitState.HIT) {
+      cacheHits++;
+    } else if (state == CacheHitState.LOSS) {
+      storageReads++;
+    }
+    if (!LOG.isDebugEnabled()) {
+      return;
+    }
     StringBuilder message = new StringBuilder();
     if (state == CacheHitState.HIT) {
       message.append(ANSI_GREEN).append(opName).append(" ").append("hit").append(ANSI_RESET);
@@ -108,6 +119,19 @@ public abstract class EntityContext<T> {
     storageCallPrevented = true;
   }
 
+  public int getCacheHits() {
+    return cacheHits;
+  }
+
+  public int getStorageReads() {
+    return storageReads;
+  }
+
+  public void resetStats() {
+    cacheHits = 0;
+    storageReads = 0;
+  }
+
   public static void setLockMode(LockMode lock) {
     currentLockMode.set(lock);
   }
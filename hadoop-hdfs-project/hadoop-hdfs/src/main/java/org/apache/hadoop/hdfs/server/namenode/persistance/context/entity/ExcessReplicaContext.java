@@ -135,6 +135,31 @@ public class ExcessReplicaContext extends EntityContext<ExcessReplica> {
         }
         result = blockIdToExReplica.get(bId);
         return result;
+      case ByBlockIds:
+        List<Long> bIds = (List<Long>) params[0];
+        List<Long> toRead = new ArrayList<Long>();
+        for (long id : bIds) {
+          if (!blockIdToExReplica.containsKey(id)) {
+            toRead.add(id);
+          }
+        }
+        if (toRead.isEmpty()) {
+          log("find-excess-by-blockIds", CacheHitState.HIT, new String[]{"bids", bIds.toString()});
+        } else {
+          log("find-excess-by-blockIds", CacheHitState.LOSS, new String[]{"bids", toRead.toString()});
+          aboutToAccessStorage();
+          for (long id : toRead) {
+            blockIdToExReplica.put(id, new TreeSet<ExcessReplica>());
+          }
+          for (ExcessReplica er : syncExcessReplicaInstances(dataAccess.findExcessReplicaByBlockIds(toRead))) {
+            blockIdToExReplica.get(er.getBlockId()).add(er);
+          }
+        }
+        result = new TreeSet<ExcessReplica>();
+        for (long id : bIds) {
+          result.addAll(blockIdToExReplica.get(id));
+        }
+        return result;
     }
     throw new RuntimeException(UNSUPPORTED_FINDER);
   }
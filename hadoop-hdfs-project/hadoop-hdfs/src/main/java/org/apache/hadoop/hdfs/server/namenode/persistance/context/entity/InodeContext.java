@@ -1,9 +1,11 @@
 package org.apache.hadoop.hdfs.server.namenode.persistance.context.entity;
 
 import java.util.*;
+import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.server.namenode.CounterType;
 import org.apache.hadoop.hdfs.server.namenode.FinderType;
 import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.lock.INodeHintCache;
 import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
 import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler;
 import org.apache.hadoop.hdfs.server.namenode.persistance.context.TransactionContextException;
@@ -23,11 +25,38 @@ public class InodeContext extends EntityContext<INode> {
   protected Map<Long, INode> inodesIdIndex = new HashMap<Long, INode>();
   protected Map<String, INode> inodesNameParentIndex = new HashMap<String, INode>();
   protected Map<Long, List<INode>> inodesParentIndex = new HashMap<Long, List<INode>>();
+  protected Map<Long, Map<String, ChildrenPage>> inodesParentPageIndex = new HashMap<Long, Map<String, ChildrenPage>>();
   protected Map<Long, INode> newInodes = new HashMap<Long, INode>();
   protected Map<Long, INode> modifiedInodes = new HashMap<Long, INode>();
   protected Map<Long, INode> removedInodes = new HashMap<Long, INode>();
   InodeDataAccess dataAccess;
 
+  /**
+   * A page of the children of a directory, the children with a name after
+   * startAfter and at most limit of them. The inodes the transaction adds to
+   * or removes from the directory are applied to its cached pages.
+   */
+  protected static class ChildrenPage {
+
+    final byte[] after;
+    final int limit;
+    final List<INode> children;
+
+    ChildrenPage(String startAfter, int limit, List<INode> children) {
+      this.after = DFSUtil.string2Bytes(startAfter);
+      this.limit = limit;
+      this.children = children;
+    }
+
+    boolean covers(INode inode) {
+      return after.length == 0 || inode.compareTo(after) > 0;
+    }
+
+    boolean isFull() {
+      return children.size() >= limit;
+    }
+  }
+
   public InodeContext(InodeDataAccess dataAccess) {
     this.dataAccess = dataAccess;
   }
@@ -40,10 +69,12 @@ public class InodeContext extends EntityContext<INode> {
         "pid", Long.toString(inode.getParentId())});
       removedInodes.remove(inode.getId());
       update(inode);
+      addToPages(inode);
     } else {
       inodesIdIndex.put(inode.getId(), inode);
       inodesNameParentIndex.put(inode.nameParentKey(), inode);
       newInodes.put(inode.getId(), inode);
+      addToPages(inode);
       log("added-inode", CacheHitState.NA,
               new String[]{"id", Long.toString(inode.getId()), "name", inode.getName(),
         "pid", Long.toString(inode.getParentId())});
@@ -62,6 +93,7 @@ public class InodeContext extends EntityContext<INode> {
     inodesIdIndex.clear();
     inodesNameParentIndex.clear();
     inodesParentIndex.clear();
+    inodesParentPageIndex.clear();
     removedInodes.clear();
     newInodes.clear();
     modifiedInodes.clear();
@@ -92,6 +124,14 @@ public class InodeContext extends EntityContext<INode> {
           }
         }
         break;
+      case ByPKeyUncached:
+        // re-reads a row which is already in the context with a stronger
+        // lock, the cached inode stays the one the operation works on.
+        inodeId = (Long) params[0];
+        log("find-inode-by-pk-uncached", CacheHitState.LOSS, new String[]{"id", Long.toString(inodeId)});
+        aboutToAccessStorage();
+        result = dataAccess.findInodeById(inodeId);
+        break;
       case ByNameAndParentId:
         String name = (String) params[0];
         long parentId = (Long) params[1];
@@ -144,12 +184,46 @@ public class InodeContext extends EntityContext<INode> {
           inodesParentIndex.put(parentId, result);
         }
         break;
+      case ByParentIdAfterName:
+        parentId = (Long) params[0];
+        String startAfter = (String) params[1];
+        int limit = (Integer) params[2];
+        String pageKey = limit + "/" + startAfter;
+        Map<String, ChildrenPage> pages = inodesParentPageIndex.get(parentId);
+        if (inodesParentIndex.containsKey(parentId)) {
+          log("find-inodes-by-parentid-after-name", CacheHitState.HIT,
+                  new String[]{"pid", Long.toString(parentId), "after", startAfter});
+          result = findPage(inodesParentIndex.get(parentId), startAfter, limit);
+        } else if (pages != null && pages.containsKey(pageKey)) {
+          log("find-inodes-by-parentid-after-name", CacheHitState.HIT,
+                  new String[]{"pid", Long.toString(parentId), "after", startAfter});
+          result = new ArrayList<INode>(pages.get(pageKey).children);
+        } else {
+          log("find-inodes-by-parentid-after-name", CacheHitState.LOSS,
+                  new String[]{"pid", Long.toString(parentId), "after", startAfter});
+          aboutToAccessStorage();
+          ChildrenPage page = readPage(parentId, startAfter, limit);
+          if (pages == null) {
+            pages = new HashMap<String, ChildrenPage>();
+            inodesParentPageIndex.put(parentId, pages);
+          }
+          pages.put(pageKey, page);
+          result = new ArrayList<INode>(page.children);
+        }
+        break;
       case ByIds:
         List<Long> ids = (List<Long>) params[0];
         log("find-inodes-by-ids", CacheHitState.NA, new String[]{"ids", ids.toString()});
         aboutToAccessStorage();
         result = syncInodeInstances(dataAccess.findInodesByIds(ids));
         break;
+      case SubtreeLocked:
+        // the roots of the subtree operations in progress, they are not
+        // cached as the operation only checks where they are.
+        log("find-subtree-locked-inodes", CacheHitState.LOSS, new String[]{});
+        aboutToAccessStorage();
+        result = dataAccess.findSubtreeLockedInodes();
+        break;
     }
 
     return result;
@@ -162,6 +236,9 @@ public class InodeContext extends EntityContext<INode> {
 
   @Override
   public void remove(INode inode) throws PersistanceException {
+    // rename and delete both remove the inode under its old name first.
+    INodeHintCache.remove(inode.getParentId(), inode.getName());
+    removeFromPages(inode);
     inodesIdIndex.remove(inode.getId());
     inodesNameParentIndex.remove(inode.nameParentKey());
     newInodes.remove(inode.getId());
@@ -219,6 +296,110 @@ public class InodeContext extends EntityContext<INode> {
     return finalList;
   }
 
+  /**
+   * Reads a page of the children from the storage. The rows the transaction
+   * removed or moved to another directory are dropped, so more rows are read
+   * to fill the page, and the children it added are merged in.
+   */
+  private ChildrenPage readPage(long parentId, String startAfter, int limit) throws StorageException {
+    int removed = 0;
+    for (INode inode : removedInodes.values()) {
+      if (inode.getParentId() == parentId) {
+        removed++;
+      }
+    }
+    ChildrenPage page = new ChildrenPage(startAfter, limit, new ArrayList<INode>());
+    Set<Long> ids = new HashSet<Long>();
+    for (INode inode : syncInodeInstances(dataAccess.findInodesByParentIdAfterName(parentId, startAfter, limit + removed))) {
+      // the cached instance may be renamed by the transaction
+      if (inode.getParentId() == parentId && page.covers(inode) && ids.add(inode.getId())) {
+        page.children.add(inode);
+      }
+    }
+    for (Map<Long, INode> changed : Arrays.asList(newInodes, modifiedInodes)) {
+      for (INode inode : changed.values()) {
+        if (inode.getParentId() == parentId && page.covers(inode) && ids.add(inode.getId())) {
+          page.children.add(inode);
+        }
+      }
+    }
+    Collections.sort(page.children, INode.Order.ByName);
+    while (page.children.size() > limit) {
+      page.children.remove(page.children.size() - 1);
+    }
+    return page;
+  }
+
+  /**
+   * Inserts an added child in the cached pages of its directory which cover
+   * its name. A full page keeps its first limit children.
+   */
+  private void addToPages(INode inode) {
+    Map<String, ChildrenPage> pages = inodesParentPageIndex.get(inode.getParentId());
+    if (pages == null) {
+      return;
+    }
+    for (ChildrenPage page : pages.values()) {
+      if (!page.covers(inode) || indexOf(page.children, inode.getId()) >= 0) {
+        continue;
+      }
+      int pos = Collections.binarySearch(page.children, inode, INode.Order.ByName);
+      page.children.add(pos < 0 ? -pos - 1 : pos, inode);
+      if (page.children.size() > page.limit) {
+        page.children.remove(page.children.size() - 1);
+      }
+    }
+  }
+
+  /**
+   * Removes a child from the cached pages of its directory. A full page does
+   * not know the child after its last one, so it is dropped and read again.
+   */
+  private void removeFromPages(INode inode) {
+    Map<String, ChildrenPage> pages = inodesParentPageIndex.get(inode.getParentId());
+    if (pages == null) {
+      return;
+    }
+    for (Iterator<ChildrenPage> it = pages.values().iterator(); it.hasNext();) {
+      ChildrenPage page = it.next();
+      int pos = indexOf(page.children, inode.getId());
+      if (pos < 0) {
+        continue;
+      }
+      if (page.isFull()) {
+        it.remove();
+      } else {
+        page.children.remove(pos);
+      }
+    }
+  }
+
+  private static int indexOf(List<INode> children, long id) {
+    for (int i = 0; i < children.size(); i++) {
+      if (children.get(i).getId() == id) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param children sorted by name
+   */
+  private List<INode> findPage(List<INode> children, String startAfter, int limit) {
+    byte[] after = DFSUtil.string2Bytes(startAfter);
+    List<INode> page = new ArrayList<INode>();
+    for (INode child : children) {
+      if (page.size() == limit) {
+        break;
+      }
+      if (after.length == 0 || child.compareTo(after) > 0) {
+        page.add(child);
+      }
+    }
+    return page;
+  }
+
   private boolean isRemoved(final long parent_id, final String name) {
     for (INode inode : removedInodes.values()) {
       if (inode.getParentId() == parent_id
@@ -137,6 +137,35 @@ public class LeaseContext extends EntityContext<Lease> {
         aboutToAccessStorage();
         result = syncLeaseInstances(dataAccess.findByTimeLimit(timeLimit));
         return result;
+      case ByHolders:
+        Collection<String> holders = (Collection<String>) params[0];
+        List<String> missing = new ArrayList<String>();
+        for (String h : holders) {
+          if (!leases.containsKey(h)) {
+            missing.add(h);
+          }
+        }
+        if (missing.isEmpty()) {
+          log("find-leases-by-holders", CacheHitState.HIT, new String[]{"holders", holders.toString()});
+        } else {
+          log("find-leases-by-holders", CacheHitState.LOSS, new String[]{"holders", missing.toString()});
+          aboutToAccessStorage();
+          syncLeaseInstances(dataAccess.findByHolders(missing));
+          for (String h : missing) {
+            if (!leases.containsKey(h)) {
+              leases.put(h, null);
+              byHoldernullCount++;
+            }
+          }
+        }
+        result = new TreeSet<Lease>();
+        for (String h : holders) {
+          Lease l = leases.get(h);
+          if (l != null) {
+            result.add(l);
+          }
+        }
+        return result;
       case All:
         if (allLeasesRead) {
           log("find-all-leases", CacheHitState.HIT);
@@ -80,6 +80,33 @@ public class PendingBlockContext extends EntityContext<PendingBlockInfo> {
           }
         }
         return result;
+      case ByBlockIds:
+        List<Long> blockIds = (List<Long>) params[0];
+        List<Long> toRead = new ArrayList<Long>();
+        for (long bid : blockIds) {
+          if (!pendings.containsKey(bid) && !removedPendings.containsKey(bid)) {
+            toRead.add(bid);
+          }
+        }
+        if (toRead.isEmpty()) {
+          log("find-pendings-by-bids", CacheHitState.HIT, new String[]{"bids", blockIds.toString()});
+        } else {
+          log("find-pendings-by-bids", CacheHitState.LOSS, new String[]{"bids", toRead.toString()});
+          aboutToAccessStorage();
+          syncInstances(dataAccess.findByBlockIds(toRead));
+          for (long bid : toRead) {
+            if (!pendings.containsKey(bid)) {
+              pendings.put(bid, null);
+            }
+          }
+        }
+        result = new ArrayList<PendingBlockInfo>();
+        for (long bid : blockIds) {
+          if (pendings.get(bid) != null) {
+            result.add(pendings.get(bid));
+          }
+        }
+        return result;
     }
 
     throw new RuntimeException(UNSUPPORTED_FINDER);
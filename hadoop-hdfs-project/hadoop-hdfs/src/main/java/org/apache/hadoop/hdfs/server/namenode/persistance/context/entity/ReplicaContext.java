@@ -99,6 +99,31 @@ public class ReplicaContext extends EntityContext<IndexedReplica> {
           blockReplicas.put(id, result);
         }
         return new ArrayList<IndexedReplica>(result); // Shallow copy
+      case ByBlockIds:
+        List<Long> ids = (List<Long>) params[0];
+        List<Long> toRead = new ArrayList<Long>();
+        for (long bid : ids) {
+          if (!blockReplicas.containsKey(bid)) {
+            toRead.add(bid);
+          }
+        }
+        if (toRead.isEmpty()) {
+          log("find-replicas-by-bids", CacheHitState.HIT, new String[]{"bids", ids.toString()});
+        } else {
+          log("find-replicas-by-bids", CacheHitState.LOSS, new String[]{"bids", toRead.toString()});
+          aboutToAccessStorage();
+          for (long bid : toRead) {
+            blockReplicas.put(bid, new ArrayList<IndexedReplica>());
+          }
+          for (IndexedReplica replica : dataAccess.findReplicasByIds(toRead)) {
+            blockReplicas.get(replica.getBlockId()).add(replica);
+          }
+        }
+        result = new ArrayList<IndexedReplica>();
+        for (long bid : ids) {
+          result.addAll(blockReplicas.get(bid));
+        }
+        return result;
     }
 
     throw new RuntimeException(UNSUPPORTED_FINDER);
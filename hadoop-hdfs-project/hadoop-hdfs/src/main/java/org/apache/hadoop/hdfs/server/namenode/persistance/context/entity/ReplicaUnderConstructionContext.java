@@ -1,6 +1,7 @@
 package org.apache.hadoop.hdfs.server.namenode.persistance.context.entity;
 
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.ReplicaUnderConstruntionDataAccess;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -72,6 +73,31 @@ public class ReplicaUnderConstructionContext extends EntityContext<ReplicaUnderC
           blockReplicasUc.put(blockId, result);
         }
         break;
+      case ByBlockIds:
+        List<Long> blockIds = (List<Long>) params[0];
+        List<Long> toRead = new ArrayList<Long>();
+        for (long bid : blockIds) {
+          if (!blockReplicasUc.containsKey(bid)) {
+            toRead.add(bid);
+          }
+        }
+        if (toRead.isEmpty()) {
+          log("find-replicaucs-by-bids", CacheHitState.HIT, new String[]{"bids", blockIds.toString()});
+        } else {
+          log("find-replicaucs-by-bids", CacheHitState.LOSS, new String[]{"bids", toRead.toString()});
+          aboutToAccessStorage();
+          for (long bid : toRead) {
+            blockReplicasUc.put(bid, new ArrayList<ReplicaUnderConstruction>());
+          }
+          for (ReplicaUnderConstruction ruc : dataAccess.findReplicaUnderConstructionByBlockIds(toRead)) {
+            blockReplicasUc.get(ruc.getBlockId()).add(ruc);
+          }
+        }
+        result = new ArrayList<ReplicaUnderConstruction>();
+        for (long bid : blockIds) {
+          result.addAll(blockReplicasUc.get(bid));
+        }
+        break;
     }
 
     return result;
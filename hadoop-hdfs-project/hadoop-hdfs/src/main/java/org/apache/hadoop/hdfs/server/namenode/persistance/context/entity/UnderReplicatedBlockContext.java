@@ -109,6 +109,33 @@ public class UnderReplicatedBlockContext extends EntityContext<UnderReplicatedBl
         } else {
           return new ArrayList<UnderReplicatedBlock>();
         }
+      case ByBlockIds:
+        List<Long> blockIds = (List<Long>) params[0];
+        List<Long> toRead = new ArrayList<Long>();
+        for (long bid : blockIds) {
+          if (!urBlocks.containsKey(bid)) {
+            toRead.add(bid);
+          }
+        }
+        if (toRead.isEmpty()) {
+          log("find-urblocks-by-bids", CacheHitState.HIT, new String[]{"bids", blockIds.toString()});
+        } else {
+          log("find-urblocks-by-bids", CacheHitState.LOSS, new String[]{"bids", toRead.toString()});
+          aboutToAccessStorage();
+          syncUnderReplicatedBlockInstances(dataAccess.findByBlockIds(toRead));
+          for (long bid : toRead) {
+            if (!urBlocks.containsKey(bid)) {
+              urBlocks.put(bid, null);
+            }
+          }
+        }
+        List<UnderReplicatedBlock> urbs = new ArrayList<UnderReplicatedBlock>();
+        for (long bid : blockIds) {
+          if (urBlocks.get(bid) != null) {
+            urbs.add(urBlocks.get(bid));
+          }
+        }
+        return urbs;
     }
 
     throw new RuntimeException(UNSUPPORTED_FINDER);
@@ -31,6 +31,10 @@ public abstract class BlockInfoDataAccess extends EntityDataAccess {
 
   public abstract List<BlockInfo> findByInodeId(long id) throws StorageException;
 
+  public abstract List<BlockInfo> findByIds(List<Long> blockIds) throws StorageException;
+
+  public abstract List<BlockInfo> findByInodeIds(List<Long> inodeIds) throws StorageException;
+
   public abstract List<BlockInfo> findAllBlocks() throws StorageException;
 
   public abstract List<BlockInfo> findByStorageId(String storageId) throws StorageException;
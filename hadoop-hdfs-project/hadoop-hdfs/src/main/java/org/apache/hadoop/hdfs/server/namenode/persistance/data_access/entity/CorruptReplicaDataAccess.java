@@ -23,5 +23,7 @@ public abstract class CorruptReplicaDataAccess extends EntityDataAccess {
 
   public abstract List<CorruptReplica> findByBlockId(long blockId) throws StorageException;
 
+  public abstract List<CorruptReplica> findByBlockIds(List<Long> blockIds) throws StorageException;
+
   public abstract void prepare(Collection<CorruptReplica> removed, Collection<CorruptReplica> newed, Collection<CorruptReplica> modified) throws StorageException;
 }
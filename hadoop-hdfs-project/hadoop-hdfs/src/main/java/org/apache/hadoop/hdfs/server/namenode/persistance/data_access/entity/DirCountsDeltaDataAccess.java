@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity;
+
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.namenode.DirCountsDelta;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public abstract class DirCountsDeltaDataAccess extends EntityDataAccess {
+
+  public static final String TABLE_NAME = "dir_counts_deltas";
+  public static final String INODE_ID = "inode_id";
+  public static final String ID = "id";
+  public static final String NS_DELTA = "ns_delta";
+  public static final String DS_DELTA = "ds_delta";
+  public static final String FILE_DELTA = "file_delta";
+  public static final String LENGTH_DELTA = "length_delta";
+
+  public abstract List<DirCountsDelta> findByINodeIds(Collection<Long> inodeIds) throws StorageException;
+
+  /**
+   * Reads the ids of the directories which have deltas to fold.
+   *
+   * @param limit the maximum number of deltas to read, the number of ids
+   * returned can be smaller
+   */
+  public abstract Collection<Long> findINodeIds(int limit) throws StorageException;
+
+  public abstract void prepare(Collection<DirCountsDelta> removed, Collection<DirCountsDelta> newed) throws StorageException;
+}
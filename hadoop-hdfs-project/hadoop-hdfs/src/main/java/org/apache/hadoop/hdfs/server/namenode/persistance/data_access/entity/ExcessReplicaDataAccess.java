@@ -20,6 +20,8 @@ public abstract class ExcessReplicaDataAccess extends EntityDataAccess {
   public abstract List<ExcessReplica> findExcessReplicaByStorageId(String sId) throws StorageException;
   public abstract List<ExcessReplica> findExcessReplicaByBlockId(long bId) throws StorageException;
 
+  public abstract List<ExcessReplica> findExcessReplicaByBlockIds(List<Long> blockIds) throws StorageException;
+
   public abstract ExcessReplica findByPkey(Object[] params) throws StorageException;
   
   public abstract void prepare(Collection<ExcessReplica> removed, Collection<ExcessReplica> newed, Collection<ExcessReplica> modified) throws StorageException;
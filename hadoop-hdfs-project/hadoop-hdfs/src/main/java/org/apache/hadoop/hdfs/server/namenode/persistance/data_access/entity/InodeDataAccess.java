@@ -30,6 +30,9 @@ public abstract class InodeDataAccess extends EntityDataAccess {
   public static final String IS_DIR_WITH_QUOTA = "is_dir_with_quota";
   public static final String NSCOUNT = "nscount";
   public static final String DSCOUNT = "dscount";
+  public static final String FILECOUNT = "filecount";
+  public static final String LENGTHCOUNT = "lengthcount";
+  public static final String SUBTREE_LOCK_OWNER = "subtree_lock_owner";
   public static final String SYMLINK = "symlink";
   /**
    * Number of bits for Block size
@@ -45,10 +48,27 @@ public abstract class InodeDataAccess extends EntityDataAccess {
 
   public abstract List<INode> findInodesByParentIdSortedByName(long parentId) throws StorageException;
 
+  /**
+   * Range-scans the children of a directory on the (parent_id, name) ordered
+   * index.
+   *
+   * @param startAfter only the children with a greater name are returned, all
+   * the children if it is empty
+   * @param limit the maximum number of children to return
+   * @return at most limit children sorted by name
+   */
+  public abstract List<INode> findInodesByParentIdAfterName(long parentId, String startAfter, int limit) throws StorageException;
+
   public abstract INode findInodeByNameAndParentId(String name, long parentId) throws StorageException;
 
   public abstract List<INode> findInodesByIds(List<Long> ids) throws StorageException;
 
+  /**
+   * Scans for the roots of the subtree operations in progress, only used to
+   * recover the operations of crashed namenodes.
+   */
+  public abstract List<INode> findSubtreeLockedInodes() throws StorageException;
+
   public abstract void prepare(Collection<INode> removed, Collection<INode> newed, Collection<INode> modified) throws StorageException;
   
   /**
@@ -17,6 +17,9 @@ public abstract class LeaderDataAccess extends EntityDataAccess {
   public static final String HOSTNAME = "hostname";
   public static final String AVG_REQUEST_PROCESSING_LATENCY = "avg_request_processing_latency";
   public static final String PARTITION_VAL = "partition_val";
+  public static final String REPORT_BACKLOG = "report_backlog";
+  public static final String REPORT_RATE = "report_rate";
+  public static final String RPC_QUEUE_LENGTH = "rpc_queue_length";
 
 
   public abstract int countAll() throws StorageException;
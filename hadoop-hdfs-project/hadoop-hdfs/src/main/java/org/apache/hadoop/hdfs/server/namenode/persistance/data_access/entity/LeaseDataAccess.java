@@ -25,5 +25,7 @@ public abstract class LeaseDataAccess extends EntityDataAccess{
 
   public abstract Lease findByHolderId(int holderId) throws StorageException;
 
+  public abstract Collection<Lease> findByHolders(Collection<String> holders) throws StorageException;
+
   public abstract void prepare(Collection<Lease> removed, Collection<Lease> newLeases, Collection<Lease> modified) throws StorageException;
 }
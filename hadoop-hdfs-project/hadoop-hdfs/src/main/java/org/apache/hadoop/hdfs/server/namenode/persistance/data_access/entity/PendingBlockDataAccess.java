@@ -18,9 +18,21 @@ public abstract class PendingBlockDataAccess extends EntityDataAccess {
 
   public abstract List<PendingBlockInfo> findByTimeLimit(long timeLimit) throws StorageException;
 
+  /**
+   * Reads one page of the pending blocks which are older than timeLimit,
+   * sorted by time stamp and block id.
+   *
+   * @param afterTime the page starts after the pending block of the
+   * previous page with this time stamp and afterBlockId
+   * @param limit the maximum number of pending blocks to return
+   */
+  public abstract List<PendingBlockInfo> findByTimeRange(long afterTime, long afterBlockId, long timeLimit, int limit) throws StorageException;
+
   public abstract List<PendingBlockInfo> findAll() throws StorageException;
 
   public abstract PendingBlockInfo findByPKey(long blockId) throws StorageException;
+
+  public abstract List<PendingBlockInfo> findByBlockIds(List<Long> blockIds) throws StorageException;
   
   /**
    * Counts number of pending blocks which are not expired.
@@ -18,5 +18,7 @@ public abstract class ReplicaDataAccess extends EntityDataAccess {
 
   public abstract List<IndexedReplica> findReplicasById(long id) throws StorageException;
 
+  public abstract List<IndexedReplica> findReplicasByIds(List<Long> blockIds) throws StorageException;
+
   public abstract void prepare(Collection<IndexedReplica> removed, Collection<IndexedReplica> newed, Collection<IndexedReplica> modified) throws StorageException;
 }
\ No newline at end of file
@@ -19,5 +19,7 @@ public abstract class ReplicaUnderConstruntionDataAccess extends EntityDataAcces
 
   public abstract List<ReplicaUnderConstruction> findReplicaUnderConstructionByBlockId(long blockId) throws StorageException;
 
+  public abstract List<ReplicaUnderConstruction> findReplicaUnderConstructionByBlockIds(List<Long> blockIds) throws StorageException;
+
   public abstract void prepare(Collection<ReplicaUnderConstruction> removed, Collection<ReplicaUnderConstruction> newed, Collection<ReplicaUnderConstruction> modified) throws StorageException;
 }
@@ -17,10 +17,20 @@ public abstract class UnderReplicatedBlockDataAccess extends EntityDataAccess {
 
   public abstract UnderReplicatedBlock findByBlockId(long blockId) throws StorageException;
 
+  public abstract List<UnderReplicatedBlock> findByBlockIds(List<Long> blockIds) throws StorageException;
+
   public abstract List<UnderReplicatedBlock> findAll() throws StorageException;
 
   public abstract List<UnderReplicatedBlock> findByLevel(int level) throws StorageException;
 
+  /**
+   * Reads one page of a level, the blocks are sorted by id.
+   *
+   * @param fromBlockId the smallest block id to return
+   * @param limit the maximum number of blocks to return
+   */
+  public abstract List<UnderReplicatedBlock> findByLevelFromBlockId(int level, long fromBlockId, int limit) throws StorageException;
+
   public abstract List<UnderReplicatedBlock> findAllLessThanLevel(int level) throws StorageException;
 
   public abstract void prepare(Collection<UnderReplicatedBlock> removed, Collection<UnderReplicatedBlock> newed, Collection<UnderReplicatedBlock> modified) throws StorageException;
@@ -31,5 +31,21 @@ public interface StorageConnector<T> {
   
   public void readCommitted();
   
-  public void setPartitionKey(Class className, Object key);
+  /**
+   * Starts the next transaction on the node which owns the given partition
+   * key. It must be called before the first read of the transaction.
+   *
+   * @param className the entity class whose table is partitioned by the key
+   * @return false if the storage does not support partition hints or the hint
+   * could not be set.
+   */
+  public boolean setPartitionKey(Class className, Object key);
+
+  /**
+   * Tells whether a failed transaction may succeed if it is run again, e.g.
+   * after a deadlock, a lock wait timeout or a temporary storage error.
+   *
+   * @param error the failure or one of its causes
+   */
+  public boolean isTransientError(Throwable error);
 }
@@ -11,6 +11,7 @@ import org.apache.hadoop.hdfs.server.namenode.persistance.context.entity.*;
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.*;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.clusterj.*;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.derby.*;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory.*;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.mysqlserver.MysqlServerConnector;
 
 /**
@@ -35,6 +36,7 @@ public class StorageFactory {
   private static BlockTokenKeyDataAccess blockTokenKeyDataAccess;
   private static GenerationStampDataAccess generationStampDataAccess;
   private static StorageInfoDataAccess storageInfoDataAccess;
+  private static DirCountsDeltaDataAccess dirCountsDeltaDataAccess;
   private static Map<Class, EntityDataAccess> dataAccessMap = new HashMap<Class, EntityDataAccess>();
 
   private static void initDataAccessMap() {
@@ -53,6 +55,7 @@ public class StorageFactory {
     dataAccessMap.put(blockTokenKeyDataAccess.getClass().getSuperclass(), blockTokenKeyDataAccess);
     dataAccessMap.put(generationStampDataAccess.getClass().getSuperclass(), generationStampDataAccess);
     dataAccessMap.put(storageInfoDataAccess.getClass().getSuperclass(), storageInfoDataAccess);
+    dataAccessMap.put(dirCountsDeltaDataAccess.getClass().getSuperclass(), dirCountsDeltaDataAccess);
   }
 
   public static StorageConnector getConnector() {
@@ -77,6 +80,7 @@ public class StorageFactory {
       replicaUnderConstruntionDataAccess = new ReplicaUnderConstructionDerby();
       underReplicatedBlockDataAccess = new UnderReplicatedBlockDerby();
       leaderDataAccess = new LeaderDerby();
+      dirCountsDeltaDataAccess = new DirCountsDeltaDerby();
       // TODO[Hooman]: Add derby data access for block token key.
       // TODO[Hooman]: Add derby data access for block generation stamp.
     } else if (storageType.equals("clusterj")) {
@@ -98,6 +102,26 @@ public class StorageFactory {
       generationStampDataAccess = new GenerationStampClusterj();
       blockTokenKeyDataAccess = new BlockTokenKeyClusterj();
       storageInfoDataAccess = new StorageInfoClusterj();
+      dirCountsDeltaDataAccess = new DirCountsDeltaClusterj();
+    } else if (storageType.equals(MemoryConnector.MEMORY)) {
+      defaultStorage = MemoryConnector.INSTANCE;
+      defaultStorage.setConfiguration(conf);
+      blockInfoDataAccess = new BlockInfoMemory();
+      corruptReplicaDataAccess = new CorruptReplicaMemory();
+      excessReplicaDataAccess = new ExcessReplicaMemory();
+      inodeDataAccess = new InodeMemory();
+      invalidateBlockDataAccess = new InvalidatedBlockMemory();
+      leaseDataAccess = new LeaseMemory();
+      leasePathDataAccess = new LeasePathMemory();
+      pendingBlockDataAccess = new PendingBlockMemory();
+      replicaDataAccess = new ReplicaMemory();
+      replicaUnderConstruntionDataAccess = new ReplicaUnderConstructionMemory();
+      underReplicatedBlockDataAccess = new UnderReplicatedBlockMemory();
+      leaderDataAccess = new LeaderMemory();
+      generationStampDataAccess = new GenerationStampMemory();
+      blockTokenKeyDataAccess = new BlockTokenKeyMemory();
+      storageInfoDataAccess = new StorageInfoMemory();
+      dirCountsDeltaDataAccess = new DirCountsDeltaMemory();
     }
 
     initDataAccessMap();
@@ -126,6 +150,7 @@ public class StorageFactory {
     entityContexts.put(Leader.class, new LeaderContext(leaderDataAccess));
     entityContexts.put(BlockKey.class, new BlockTokenKeyContext(blockTokenKeyDataAccess));
     entityContexts.put(GenerationStamp.class, new GenerationStampContext(generationStampDataAccess));
+    entityContexts.put(DirCountsDelta.class, new DirCountsDeltaContext(dirCountsDeltaDataAccess));
     return entityContexts;
   }
 
@@ -136,6 +136,36 @@ public class BlockInfoClusterj extends BlockInfoDataAccess {
     }
   }
 
+  @Override
+  public List<BlockInfo> findByIds(List<Long> blockIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<BlockInfoDTO> dobj = qb.createQueryDefinition(BlockInfoDTO.class);
+      dobj.where(dobj.get("blockId").in(dobj.param("param")));
+      Query<BlockInfoDTO> query = session.createQuery(dobj);
+      query.setParameter("param", blockIds.toArray());
+      return createBlockInfoList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public List<BlockInfo> findByInodeIds(List<Long> inodeIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<BlockInfoDTO> dobj = qb.createQueryDefinition(BlockInfoDTO.class);
+      dobj.where(dobj.get("iNodeId").in(dobj.param("param")));
+      Query<BlockInfoDTO> query = session.createQuery(dobj);
+      query.setParameter("param", inodeIds.toArray());
+      return createBlockInfoList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public List<BlockInfo> findAllBlocks() throws StorageException {     
       try {
@@ -1,5 +1,6 @@
 package org.apache.hadoop.hdfs.server.namenode.persistance.storage.clusterj;
 
+import com.mysql.clusterj.ClusterJDatastoreException;
 import com.mysql.clusterj.ClusterJException;
 import com.mysql.clusterj.ClusterJHelper;
 import com.mysql.clusterj.Constants;
@@ -7,10 +8,15 @@ import com.mysql.clusterj.LockMode;
 import com.mysql.clusterj.Session;
 import com.mysql.clusterj.SessionFactory;
 import com.mysql.clusterj.Transaction;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
+import org.apache.hadoop.hdfs.server.namenode.INode;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DB_CONNECTOR_STRING_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DB_CONNECTOR_STRING_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DB_DATABASE_DEFAULT;
@@ -26,6 +32,13 @@ public enum ClusterjConnector implements StorageConnector<Session> {
   static SessionFactory sessionFactory;
   static ThreadLocal<Session> sessionPool = new ThreadLocal<Session>();
   static final Log LOG = LogFactory.getLog(ClusterjConnector.class);
+  /**
+   * NDB errors of the temporary classes: time-outs and deadlocks (237, 266,
+   * 274, 4012), node failure and restart (4010, 4025, 4027, 4028, 4029) and
+   * overload (245, 410, 489, 1220).
+   */
+  static final Set<Integer> TRANSIENT_NDB_ERRORS = new HashSet<Integer>(Arrays.asList(
+          237, 266, 274, 4012, 4010, 4025, 4027, 4028, 4029, 245, 410, 489, 1220));
 
   @Override
   public void setConfiguration(Configuration conf) {
@@ -81,8 +94,12 @@ public enum ClusterjConnector implements StorageConnector<Session> {
       throw new StorageException("The transaction is not began!");
     }
 
-    tx.commit();
-    session.flush();
+    try {
+      tx.commit();
+      session.flush();
+    } catch (ClusterJException ex) {
+      throw new StorageException(ex);
+    }
   }
 
   /**
@@ -108,6 +125,7 @@ public enum ClusterjConnector implements StorageConnector<Session> {
     try {
       tx.begin();
       session.deletePersistentAll(InodeClusterj.InodeDTO.class);
+      session.deletePersistentAll(DirCountsDeltaClusterj.DirCountsDeltaDTO.class);
       session.deletePersistentAll(BlockInfoClusterj.BlockInfoDTO.class);
       session.deletePersistentAll(LeaseClusterj.LeaseDTO.class);
       session.deletePersistentAll(LeasePathClusterj.LeasePathsDTO.class);
@@ -165,8 +183,35 @@ public enum ClusterjConnector implements StorageConnector<Session> {
   }
   
   @Override
-  public void setPartitionKey(Class className, Object key) {
-    Session session = obtainSession();
-    session.setPartitionKey(className, key);
+  public boolean isTransientError(Throwable error) {
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof ClusterJDatastoreException
+              && TRANSIENT_NDB_ERRORS.contains(((ClusterJDatastoreException) t).getCode())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean setPartitionKey(Class className, Object key) {
+    Class dtoClass = className;
+    Object partitionKey = key;
+    if (className == BlockInfo.class) {
+      // primary key is (block_id, inode_id), only the partition column is used.
+      dtoClass = BlockInfoClusterj.BlockInfoDTO.class;
+      partitionKey = new Object[]{null, key};
+    } else if (className == INode.class) {
+      dtoClass = InodeClusterj.InodeDTO.class;
+    }
+    try {
+      Session session = obtainSession();
+      session.setPartitionKey(dtoClass, partitionKey);
+      return true;
+    } catch (ClusterJException ex) {
+      // e.g. the transaction has already started on another node.
+      LOG.debug("Could not set the partition key of " + className.getSimpleName(), ex);
+      return false;
+    }
   }
 }
@@ -110,6 +110,21 @@ public class CorruptReplicaClusterj extends CorruptReplicaDataAccess {
     }
   }
 
+  @Override
+  public List<CorruptReplica> findByBlockIds(List<Long> blockIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<CorruptReplicaDTO> dobj = qb.createQueryDefinition(CorruptReplicaDTO.class);
+      dobj.where(dobj.get("blockId").in(dobj.param("param")));
+      Query<CorruptReplicaDTO> query = session.createQuery(dobj);
+      query.setParameter("param", blockIds.toArray());
+      return createCorruptReplicaList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   private CorruptReplica createReplica(CorruptReplicaDTO corruptReplicaTable) {
     return new CorruptReplica(corruptReplicaTable.getBlockId(), corruptReplicaTable.getStorageId());
   }
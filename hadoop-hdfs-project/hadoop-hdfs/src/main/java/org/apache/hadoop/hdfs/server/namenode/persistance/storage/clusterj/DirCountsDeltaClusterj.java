@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.clusterj;
+
+import com.mysql.clusterj.Query;
+import com.mysql.clusterj.Session;
+import com.mysql.clusterj.annotation.Column;
+import com.mysql.clusterj.annotation.PersistenceCapable;
+import com.mysql.clusterj.annotation.PrimaryKey;
+import com.mysql.clusterj.query.QueryBuilder;
+import com.mysql.clusterj.query.QueryDomainType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import org.apache.hadoop.hdfs.server.namenode.DirCountsDelta;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.DirCountsDeltaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class DirCountsDeltaClusterj extends DirCountsDeltaDataAccess {
+
+  @PersistenceCapable(table = TABLE_NAME)
+  public interface DirCountsDeltaDTO {
+
+    @PrimaryKey
+    @Column(name = INODE_ID)
+    long getInodeId();
+
+    void setInodeId(long inodeId);
+
+    @PrimaryKey
+    @Column(name = ID)
+    long getId();
+
+    void setId(long id);
+
+    @Column(name = NS_DELTA)
+    long getNsDelta();
+
+    void setNsDelta(long nsDelta);
+
+    @Column(name = DS_DELTA)
+    long getDsDelta();
+
+    void setDsDelta(long dsDelta);
+
+    @Column(name = FILE_DELTA)
+    long getFileDelta();
+
+    void setFileDelta(long fileDelta);
+
+    @Column(name = LENGTH_DELTA)
+    long getLengthDelta();
+
+    void setLengthDelta(long lengthDelta);
+  }
+  private ClusterjConnector connector = ClusterjConnector.INSTANCE;
+
+  @Override
+  public List<DirCountsDelta> findByINodeIds(Collection<Long> inodeIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<DirCountsDeltaDTO> qdt = qb.createQueryDefinition(DirCountsDeltaDTO.class);
+      qdt.where(qdt.get("inodeId").in(qdt.param("param")));
+      Query<DirCountsDeltaDTO> query = session.createQuery(qdt);
+      query.setParameter("param", inodeIds.toArray());
+      return createList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public Collection<Long> findINodeIds(int limit) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      Query<DirCountsDeltaDTO> query =
+              session.createQuery(qb.createQueryDefinition(DirCountsDeltaDTO.class));
+      query.setLimits(0, limit);
+      Collection<Long> ids = new TreeSet<Long>();
+      for (DirCountsDeltaDTO dto : query.getResultList()) {
+        ids.add(dto.getInodeId());
+      }
+      return ids;
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public void prepare(Collection<DirCountsDelta> removed, Collection<DirCountsDelta> newed) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      for (DirCountsDelta delta : newed) {
+        DirCountsDeltaDTO dto = session.newInstance(DirCountsDeltaDTO.class);
+        createPersistable(delta, dto);
+        session.savePersistent(dto);
+      }
+
+      for (DirCountsDelta delta : removed) {
+        Object[] pk = new Object[2];
+        pk[0] = delta.getInodeId();
+        pk[1] = delta.getId();
+        session.deletePersistent(DirCountsDeltaDTO.class, pk);
+      }
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
+  private List<DirCountsDelta> createList(Collection<DirCountsDeltaDTO> dtos) {
+    List<DirCountsDelta> list = new ArrayList<DirCountsDelta>();
+    for (DirCountsDeltaDTO dto : dtos) {
+      list.add(new DirCountsDelta(dto.getInodeId(), dto.getId(), dto.getNsDelta(),
+              dto.getDsDelta(), dto.getFileDelta(), dto.getLengthDelta()));
+    }
+    return list;
+  }
+
+  private void createPersistable(DirCountsDelta delta, DirCountsDeltaDTO dto) {
+    dto.setInodeId(delta.getInodeId());
+    dto.setId(delta.getId());
+    dto.setNsDelta(delta.getNsDelta());
+    dto.setDsDelta(delta.getDsDelta());
+    dto.setFileDelta(delta.getFileDelta());
+    dto.setLengthDelta(delta.getLengthDelta());
+  }
+}
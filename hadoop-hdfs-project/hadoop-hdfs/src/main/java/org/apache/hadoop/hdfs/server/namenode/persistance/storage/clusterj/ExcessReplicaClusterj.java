@@ -94,6 +94,21 @@ public class ExcessReplicaClusterj extends ExcessReplicaDataAccess {
     }
   }
 
+  @Override
+  public List<ExcessReplica> findExcessReplicaByBlockIds(List<Long> blockIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<ExcessReplicaDTO> dobj = qb.createQueryDefinition(ExcessReplicaDTO.class);
+      dobj.where(dobj.get("blockId").in(dobj.param("param")));
+      Query<ExcessReplicaDTO> query = session.createQuery(dobj);
+      query.setParameter("param", blockIds.toArray());
+      return createList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public ExcessReplica findByPkey(Object[] params) throws StorageException {
     try {
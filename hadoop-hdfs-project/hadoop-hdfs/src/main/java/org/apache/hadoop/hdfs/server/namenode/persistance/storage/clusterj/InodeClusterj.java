@@ -101,6 +101,24 @@ public class InodeClusterj extends InodeDataAccess {
 
     void setDSCount(long dsCount);
 
+    // InodeDirectory
+    @Column(name = FILECOUNT)
+    long getFileCount();
+
+    void setFileCount(long fileCount);
+
+    // InodeDirectory
+    @Column(name = LENGTHCOUNT)
+    long getLengthCount();
+
+    void setLengthCount(long lengthCount);
+
+    @Column(name = SUBTREE_LOCK_OWNER)
+    @Index(name = "subtree_lock_idx")
+    long getSubtreeLockOwner();
+
+    void setSubtreeLockOwner(long subtreeLockOwner);
+
     // InodeDirectoryWithQuota
     @Column(name = NSQUOTA)
     long getNSQuota();
@@ -219,6 +237,51 @@ public class InodeClusterj extends InodeDataAccess {
     }
   }
 
+  @Override
+  public List<INode> findInodesByParentIdAfterName(long parentId, String startAfter, int limit) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+
+      QueryDomainType<InodeDTO> dobj = qb.createQueryDefinition(InodeDTO.class);
+      Predicate pred = dobj.get("parentId").equal(dobj.param("parentID"));
+      if (startAfter.length() > 0) {
+        pred = pred.and(dobj.get("name").greaterThan(dobj.param("startAfter")));
+      }
+      dobj.where(pred);
+      Query<InodeDTO> query = session.createQuery(dobj);
+      query.setParameter("parentID", parentId);
+      if (startAfter.length() > 0) {
+        query.setParameter("startAfter", startAfter);
+      }
+      query.setOrdering(Query.Ordering.ASCENDING, "name");
+      query.setLimits(0, limit);
+
+      List<InodeDTO> results = query.getResultList();
+      return createInodeList(results);
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public List<INode> findSubtreeLockedInodes() throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+
+      QueryDomainType<InodeDTO> dobj = qb.createQueryDefinition(InodeDTO.class);
+      dobj.where(dobj.get("subtreeLockOwner").greaterThan(dobj.param("owner")));
+      Query<InodeDTO> query = session.createQuery(dobj);
+      query.setParameter("owner", 0L);
+
+      List<InodeDTO> results = query.getResultList();
+      return createInodeList(results);
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public INode findInodeByNameAndParentId(String name, long parentId) throws StorageException {
     try {
@@ -298,6 +361,7 @@ public class InodeClusterj extends InodeDataAccess {
       inode.setAccessTime(persistable.getATime());
       inode.setModificationTime(persistable.getModificationTime());
       ((INodeDirectory) (inode)).setSpaceConsumed(persistable.getNSCount(), persistable.getDSCount());
+      ((INodeDirectory) (inode)).setContentCounts(persistable.getFileCount(), persistable.getLengthCount());
     } else if (persistable.getSymlink() != null) {
       inode = new INodeSymlink(persistable.getSymlink(), persistable.getModificationTime(),
               persistable.getATime(), ps);
@@ -317,6 +381,7 @@ public class InodeClusterj extends InodeDataAccess {
     inode.setId(persistable.getId());
     inode.setName(persistable.getName());
     inode.setParentId(persistable.getParentId());
+    inode.setSubtreeLockOwner(persistable.getSubtreeLockOwner());
 
     return inode;
   }
@@ -338,6 +403,7 @@ public class InodeClusterj extends InodeDataAccess {
     persistable.setId(inode.getId());
     persistable.setNSQuota(inode.getNsQuota());
     persistable.setDSQuota(inode.getDsQuota());
+    persistable.setSubtreeLockOwner(inode.getSubtreeLockOwner());
 
     if (inode instanceof INodeDirectory) {
       persistable.setIsUnderConstruction(false);
@@ -345,6 +411,8 @@ public class InodeClusterj extends InodeDataAccess {
       persistable.setIsDir(true);
       persistable.setNSCount(((INodeDirectory) inode).getNsCount());
       persistable.setDSCount(((INodeDirectory) inode).getDsCount());
+      persistable.setFileCount(((INodeDirectory) inode).getFileCount());
+      persistable.setLengthCount(((INodeDirectory) inode).getFilesLength());
     }
     if (inode instanceof INodeDirectoryWithQuota) {
       persistable.setIsDir(true); //why was it false earlier?	    	
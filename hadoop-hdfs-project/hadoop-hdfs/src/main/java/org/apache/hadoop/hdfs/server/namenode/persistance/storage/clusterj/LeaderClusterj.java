@@ -59,6 +59,21 @@ public class LeaderClusterj extends LeaderDataAccess
         int getAvgRequestProcessingLatency();
 
         void setAvgRequestProcessingLatency(int avgRequestProcessingLatency);
+
+        @Column(name = REPORT_BACKLOG)
+        long getReportBacklog();
+
+        void setReportBacklog(long reportBacklog);
+
+        @Column(name = REPORT_RATE)
+        int getReportRate();
+
+        void setReportRate(int reportRate);
+
+        @Column(name = RPC_QUEUE_LENGTH)
+        int getRpcQueueLength();
+
+        void setRpcQueueLength(int rpcQueueLength);
     }
     private ClusterjConnector connector = ClusterjConnector.INSTANCE;
 
@@ -256,12 +271,16 @@ public class LeaderClusterj extends LeaderDataAccess
 
     private Leader createLeader(LeaderDTO lTable)
     {
-        return new Leader(lTable.getId(),
+        Leader leader = new Leader(lTable.getId(),
                 lTable.getCounter(),
                 lTable.getTimestamp(),
                 lTable.getHostname(),
                 lTable.getAvgRequestProcessingLatency(),
                 lTable.getPartitionVal());
+        leader.setReportBacklog(lTable.getReportBacklog());
+        leader.setReportRate(lTable.getReportRate());
+        leader.setRpcQueueLength(lTable.getRpcQueueLength());
+        return leader;
     }
 
     private void createPersistableLeaderInstance(Leader leader, LeaderDTO lTable)
@@ -272,5 +291,8 @@ public class LeaderClusterj extends LeaderDataAccess
         lTable.setTimestamp(leader.getTimeStamp());
         lTable.setAvgRequestProcessingLatency(leader.getAvgRequestProcessingLatency());
         lTable.setPartitionVal(leader.getPartitionVal());
+        lTable.setReportBacklog(leader.getReportBacklog());
+        lTable.setReportRate(leader.getReportRate());
+        lTable.setRpcQueueLength(leader.getRpcQueueLength());
     }
 }
@@ -94,6 +94,21 @@ public class LeaseClusterj extends LeaseDataAccess {
     }
   }
 
+  @Override
+  public Collection<Lease> findByHolders(Collection<String> holders) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<LeaseDTO> dobj = qb.createQueryDefinition(LeaseDTO.class);
+      dobj.where(dobj.get("holder").in(dobj.param("param")));
+      Query<LeaseDTO> query = session.createQuery(dobj);
+      query.setParameter("param", holders.toArray());
+      return createList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public Collection<Lease> findAll() throws StorageException {
     try {
@@ -85,6 +85,21 @@ public class PendingBlockClusterj extends PendingBlockDataAccess {
     }
   }
 
+  @Override
+  public List<PendingBlockInfo> findByBlockIds(List<Long> blockIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<PendingBlockDTO> qdt = qb.createQueryDefinition(PendingBlockDTO.class);
+      qdt.where(qdt.get("blockId").in(qdt.param("param")));
+      Query<PendingBlockDTO> query = session.createQuery(qdt);
+      query.setParameter("param", blockIds.toArray());
+      return createList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public List<PendingBlockInfo> findAll() throws StorageException {
     try {
@@ -117,6 +132,29 @@ public class PendingBlockClusterj extends PendingBlockDataAccess {
     }
   }
 
+  @Override
+  public List<PendingBlockInfo> findByTimeRange(long afterTime, long afterBlockId, long timeLimit, int limit) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<PendingBlockDTO> qdt = qb.createQueryDefinition(PendingBlockDTO.class);
+      Predicate sameTime = qdt.get("timestamp").equal(qdt.param("afterTime")).
+              and(qdt.get("blockId").greaterThan(qdt.param("afterBlockId")));
+      Predicate pred = qdt.get("timestamp").greaterThan(qdt.param("afterTime")).or(sameTime);
+      pred = pred.and(qdt.get("timestamp").lessThan(qdt.param("timelimit")));
+      qdt.where(pred);
+      Query<PendingBlockDTO> query = session.createQuery(qdt);
+      query.setParameter("afterTime", afterTime);
+      query.setParameter("afterBlockId", afterBlockId);
+      query.setParameter("timelimit", timeLimit);
+      query.setOrdering(Query.Ordering.ASCENDING, "timestamp", "blockId");
+      query.setLimits(0, limit);
+      return createList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   private List<PendingBlockInfo> createList(Collection<PendingBlockDTO> dtos) {
     List<PendingBlockInfo> list = new ArrayList<PendingBlockInfo>();
     for (PendingBlockDTO dto : dtos) {
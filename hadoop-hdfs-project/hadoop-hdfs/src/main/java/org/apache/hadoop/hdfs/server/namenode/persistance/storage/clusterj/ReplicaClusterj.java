@@ -59,6 +59,21 @@ public class ReplicaClusterj extends ReplicaDataAccess {
     }
   }
 
+  @Override
+  public List<IndexedReplica> findReplicasByIds(List<Long> blockIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<ReplicaDTO> dobj = qb.createQueryDefinition(ReplicaDTO.class);
+      dobj.where(dobj.get("blockId").in(dobj.param("param")));
+      Query<ReplicaDTO> query = session.createQuery(dobj);
+      query.setParameter("param", blockIds.toArray());
+      return createReplicaList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public void prepare(Collection<IndexedReplica> removed, Collection<IndexedReplica> newed, Collection<IndexedReplica> modified) throws StorageException {
     try {
@@ -82,6 +82,21 @@ public class ReplicaUnderConstructionClusterj extends ReplicaUnderConstruntionDa
     }
   }
 
+  @Override
+  public List<ReplicaUnderConstruction> findReplicaUnderConstructionByBlockIds(List<Long> blockIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<ReplicaUcDTO> dobj = qb.createQueryDefinition(ReplicaUcDTO.class);
+      dobj.where(dobj.get("blockId").in(dobj.param("param")));
+      Query<ReplicaUcDTO> query = session.createQuery(dobj);
+      query.setParameter("param", blockIds.toArray());
+      return createReplicaList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   private List<ReplicaUnderConstruction> createReplicaList(List<ReplicaUcDTO> replicaUc) {
     Session session = connector.obtainSession();
     List<ReplicaUnderConstruction> replicas = new ArrayList<ReplicaUnderConstruction>(replicaUc.size());
@@ -66,6 +66,21 @@ public class UnderReplicatedBlockClusterj extends UnderReplicatedBlockDataAccess
     }
   }
 
+  @Override
+  public List<UnderReplicatedBlock> findByBlockIds(List<Long> blockIds) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<UnderReplicatedBlocksDTO> dobj = qb.createQueryDefinition(UnderReplicatedBlocksDTO.class);
+      dobj.where(dobj.get("blockId").in(dobj.param("param")));
+      Query<UnderReplicatedBlocksDTO> query = session.createQuery(dobj);
+      query.setParameter("param", blockIds.toArray());
+      return createUrBlockList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public void prepare(Collection<UnderReplicatedBlock> removed, Collection<UnderReplicatedBlock> newed, Collection<UnderReplicatedBlock> modified) throws StorageException {
     Session session = connector.obtainSession();
@@ -140,6 +155,26 @@ public class UnderReplicatedBlockClusterj extends UnderReplicatedBlockDataAccess
     }
   }
 
+  @Override
+  public List<UnderReplicatedBlock> findByLevelFromBlockId(int level, long fromBlockId, int limit) throws StorageException {
+    try {
+      Session session = connector.obtainSession();
+      QueryBuilder qb = session.getQueryBuilder();
+      QueryDomainType<UnderReplicatedBlocksDTO> dobj = qb.createQueryDefinition(UnderReplicatedBlocksDTO.class);
+      Predicate pred = dobj.get("level").equal(dobj.param("level"));
+      pred = pred.and(dobj.get("blockId").greaterEqual(dobj.param("fromBlockId")));
+      dobj.where(pred);
+      Query<UnderReplicatedBlocksDTO> query = session.createQuery(dobj);
+      query.setParameter("level", level);
+      query.setParameter("fromBlockId", fromBlockId);
+      query.setOrdering(Query.Ordering.ASCENDING, "blockId");
+      query.setLimits(0, limit);
+      return createUrBlockList(query.getResultList());
+    } catch (Exception e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public List<UnderReplicatedBlock> findAllLessThanLevel(int level) throws StorageException {
     try {
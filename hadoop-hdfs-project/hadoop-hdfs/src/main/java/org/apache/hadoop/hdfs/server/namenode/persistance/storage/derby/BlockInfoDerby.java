@@ -16,6 +16,7 @@ import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.Blo
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.ReplicaDataAccess;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
 import org.hsqldb.Types;
+import org.apache.hadoop.util.StringUtils;
 
 /**
  *
@@ -130,6 +131,40 @@ public class BlockInfoDerby extends BlockInfoDataAccess {
     }
   }
 
+  @Override
+  public List<BlockInfo> findByIds(List<Long> blockIds) throws StorageException {
+    if (blockIds.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    try {
+      String query = String.format("select * from %s where %s in (%s)",
+              TABLE_NAME, BLOCK_ID, StringUtils.join(",", blockIds));
+      Connection conn = connector.obtainSession();
+      ResultSet rSet = conn.prepareStatement(query).executeQuery();
+      return createList(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
+  @Override
+  public List<BlockInfo> findByInodeIds(List<Long> inodeIds) throws StorageException {
+    if (inodeIds.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    try {
+      String query = String.format("select * from %s where %s in (%s)",
+              TABLE_NAME, INODE_ID, StringUtils.join(",", inodeIds));
+      Connection conn = connector.obtainSession();
+      ResultSet rSet = conn.prepareStatement(query).executeQuery();
+      return createList(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public List<BlockInfo> findByStorageId(String storageId) throws StorageException {
     try {
@@ -13,6 +13,7 @@ import java.util.List;
 import org.apache.hadoop.hdfs.server.blockmanagement.CorruptReplica;
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.CorruptReplicaDataAccess;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.util.StringUtils;
 
 /**
  *
@@ -91,6 +92,23 @@ public class CorruptReplicaDerby extends CorruptReplicaDataAccess {
     }
   }
 
+  @Override
+  public List<CorruptReplica> findByBlockIds(List<Long> blockIds) throws StorageException {
+    if (blockIds.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    try {
+      String query = String.format("select * from %s where %s in (%s)",
+              TABLE_NAME, BLOCK_ID, StringUtils.join(",", blockIds));
+      Connection conn = connector.obtainSession();
+      ResultSet rSet = conn.prepareStatement(query).executeQuery();
+      return createCorruptReplicaList(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public void prepare(Collection<CorruptReplica> removed, Collection<CorruptReplica> newed,
           Collection<CorruptReplica> modified) throws StorageException {
@@ -128,6 +128,7 @@ public enum DerbyConnector implements StorageConnector<Connection> {
       s = conn.createStatement();
       s.execute(String.format("delete from %s", BlockInfoDataAccess.TABLE_NAME));
       s.execute(String.format("delete from %s", CorruptReplicaDataAccess.TABLE_NAME));
+      s.execute(String.format("delete from %s", DirCountsDeltaDataAccess.TABLE_NAME));
       s.execute(String.format("delete from %s", InodeDataAccess.TABLE_NAME));
       s.execute(String.format("delete from %s", LeaseDataAccess.TABLE_NAME));
       s.execute(String.format("delete from %s", LeasePathDataAccess.TABLE_NAME));
@@ -356,6 +357,9 @@ public enum DerbyConnector implements StorageConnector<Connection> {
             + "%s BIGINT DEFAULT NULL,   "
             + "%s BIGINT DEFAULT NULL,   "
             + "%s varchar(8000) DEFAULT NULL,  "
+            + "%s BIGINT DEFAULT NULL,   "
+            + "%s BIGINT DEFAULT NULL,   "
+            + "%s BIGINT DEFAULT 0,   "
             + "PRIMARY KEY (%s) )", InodeDataAccess.TABLE_NAME,
             InodeDataAccess.ID, InodeDataAccess.NAME, InodeDataAccess.PARENT_ID,
             InodeDataAccess.IS_DIR, InodeDataAccess.MODIFICATION_TIME,
@@ -365,7 +369,12 @@ public enum DerbyConnector implements StorageConnector<Connection> {
             InodeDataAccess.CLIENT_NODE, InodeDataAccess.IS_CLOSED_FILE,
             InodeDataAccess.HEADER, InodeDataAccess.IS_DIR_WITH_QUOTA,
             InodeDataAccess.NSCOUNT, InodeDataAccess.DSCOUNT, InodeDataAccess.SYMLINK,
-            InodeDataAccess.ID));
+            InodeDataAccess.FILECOUNT, InodeDataAccess.LENGTHCOUNT,
+            InodeDataAccess.SUBTREE_LOCK_OWNER, InodeDataAccess.ID));
+    s.execute(String.format("CREATE INDEX parent_name_idx ON %s (%s, %s)",
+            InodeDataAccess.TABLE_NAME, InodeDataAccess.PARENT_ID, InodeDataAccess.NAME));
+    s.execute(String.format("CREATE INDEX subtree_lock_idx ON %s (%s)",
+            InodeDataAccess.TABLE_NAME, InodeDataAccess.SUBTREE_LOCK_OWNER));
     log.info(String.format("Table %s is created.", InodeDataAccess.TABLE_NAME));
 
     s.execute(String.format("CREATE TABLE %s ("
@@ -395,12 +404,26 @@ public enum DerbyConnector implements StorageConnector<Connection> {
             LeasePathDataAccess.HOLDER_ID, LeasePathDataAccess.PATH, LeasePathDataAccess.PATH));
     log.info(String.format("Table %s is created.", LeasePathDataAccess.TABLE_NAME));
 
+    s.execute(String.format("CREATE TABLE %s (   "
+            + "%s BIGINT NOT NULL, %s BIGINT NOT NULL,"
+            + "%s BIGINT NOT NULL, %s BIGINT NOT NULL,"
+            + "%s BIGINT NOT NULL, %s BIGINT NOT NULL,"
+            + "PRIMARY KEY (%s,%s) )", DirCountsDeltaDataAccess.TABLE_NAME,
+            DirCountsDeltaDataAccess.INODE_ID, DirCountsDeltaDataAccess.ID,
+            DirCountsDeltaDataAccess.NS_DELTA, DirCountsDeltaDataAccess.DS_DELTA,
+            DirCountsDeltaDataAccess.FILE_DELTA, DirCountsDeltaDataAccess.LENGTH_DELTA,
+            DirCountsDeltaDataAccess.INODE_ID, DirCountsDeltaDataAccess.ID));
+    log.info(String.format("Table %s is created.", DirCountsDeltaDataAccess.TABLE_NAME));
+
     s.execute(String.format("CREATE TABLE %s (   "
             + "%s BIGINT NOT NULL, %s BIGINT NOT NULL,"
             + "%s INTEGER NOT NULL,   "
             + "PRIMARY KEY (%s) )", PendingBlockDataAccess.TABLE_NAME,
             PendingBlockDataAccess.BLOCK_ID, PendingBlockDataAccess.TIME_STAMP,
             PendingBlockDataAccess.NUM_REPLICAS_IN_PROGRESS, PendingBlockDataAccess.BLOCK_ID));
+    s.execute(String.format("CREATE INDEX time_stamp_idx ON %s (%s, %s)",
+            PendingBlockDataAccess.TABLE_NAME, PendingBlockDataAccess.TIME_STAMP,
+            PendingBlockDataAccess.BLOCK_ID));
     log.info(String.format("Table %s is created.", PendingBlockDataAccess.TABLE_NAME));
 
     s.execute(String.format("CREATE TABLE %s (   "
@@ -430,6 +453,9 @@ public enum DerbyConnector implements StorageConnector<Connection> {
             + "PRIMARY KEY (%s))", UnderReplicatedBlockDataAccess.TABLE_NAME,
             UnderReplicatedBlockDataAccess.BLOCK_ID, UnderReplicatedBlockDataAccess.LEVEL,
             UnderReplicatedBlockDataAccess.BLOCK_ID));
+    s.execute(String.format("CREATE INDEX level_idx ON %s (%s, %s)",
+            UnderReplicatedBlockDataAccess.TABLE_NAME, UnderReplicatedBlockDataAccess.LEVEL,
+            UnderReplicatedBlockDataAccess.BLOCK_ID));
     log.info(String.format("Table %s is created.", UnderReplicatedBlockDataAccess.TABLE_NAME));
     
     
@@ -439,11 +465,16 @@ public enum DerbyConnector implements StorageConnector<Connection> {
             + "%s BIGINT NOT NULL,"
             + "%s varchar(50) NOT NULL,"
             + "%s INTEGER NOT NULL,"
-            + "%s INTEGER NOT NULL DEFAULT 0"
+            + "%s INTEGER NOT NULL DEFAULT 0,"
+            + "%s BIGINT NOT NULL DEFAULT 0,"
+            + "%s INTEGER NOT NULL DEFAULT 0,"
+            + "%s INTEGER NOT NULL DEFAULT 0,"
             + "PRIMARY KEY (%s,%S))", LeaderDataAccess.TABLE_NAME,
             LeaderDataAccess.ID, LeaderDataAccess.COUNTER, LeaderDataAccess.TIMESTAMP,
             LeaderDataAccess.HOSTNAME, LeaderDataAccess.AVG_REQUEST_PROCESSING_LATENCY,
-            LeaderDataAccess.PARTITION_VAL, LeaderDataAccess.ID, LeaderDataAccess.PARTITION_VAL));
+            LeaderDataAccess.PARTITION_VAL, LeaderDataAccess.REPORT_BACKLOG,
+            LeaderDataAccess.REPORT_RATE, LeaderDataAccess.RPC_QUEUE_LENGTH,
+            LeaderDataAccess.ID, LeaderDataAccess.PARTITION_VAL));
     
     log.info(String.format("Table %s is created.", UnderReplicatedBlockDataAccess.TABLE_NAME));
 
@@ -458,6 +489,7 @@ public enum DerbyConnector implements StorageConnector<Connection> {
       s = conn.createStatement();
       s.execute(String.format("drop table %s", BlockInfoDataAccess.TABLE_NAME));
       s.execute(String.format("drop table %s", CorruptReplicaDataAccess.TABLE_NAME));
+      s.execute(String.format("drop table %s", DirCountsDeltaDataAccess.TABLE_NAME));
       s.execute(String.format("drop table %s", InodeDataAccess.TABLE_NAME));
       s.execute(String.format("drop table %s", LeaseDataAccess.TABLE_NAME));
       s.execute(String.format("drop table %s", LeasePathDataAccess.TABLE_NAME));
@@ -505,7 +537,22 @@ public enum DerbyConnector implements StorageConnector<Connection> {
   }
 
     @Override
-    public void setPartitionKey(Class className, Object key) {
-        throw new UnsupportedOperationException("Not supported yet.");
+    public boolean isTransientError(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                // deadlock and lock wait timeout
+                if ("40001".equals(state) || "40XL1".equals(state) || "40XL2".equals(state)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean setPartitionKey(Class className, Object key) {
+        // derby has a single node, there is nothing to hint.
+        return false;
     }
 }
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.derby;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import org.apache.hadoop.hdfs.server.namenode.DirCountsDelta;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.DirCountsDeltaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.util.StringUtils;
+
+public class DirCountsDeltaDerby extends DirCountsDeltaDataAccess {
+
+  private DerbyConnector connector = DerbyConnector.INSTANCE;
+
+  @Override
+  public List<DirCountsDelta> findByINodeIds(Collection<Long> inodeIds) throws StorageException {
+    if (inodeIds.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    try {
+      String query = String.format("select * from %s where %s in (%s)",
+              TABLE_NAME, INODE_ID, StringUtils.join(",", inodeIds));
+      Connection conn = connector.obtainSession();
+      ResultSet rSet = conn.prepareStatement(query).executeQuery();
+      return createList(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
+  @Override
+  public Collection<Long> findINodeIds(int limit) throws StorageException {
+    Collection<Long> ids = new TreeSet<Long>();
+    try {
+      String query = String.format("select %s from %s", INODE_ID, TABLE_NAME);
+      Connection conn = connector.obtainSession();
+      PreparedStatement s = conn.prepareStatement(query);
+      s.setMaxRows(limit);
+      ResultSet rSet = s.executeQuery();
+      while (rSet.next()) {
+        ids.add(rSet.getLong(INODE_ID));
+      }
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+    }
+    return ids;
+  }
+
+  @Override
+  public void prepare(Collection<DirCountsDelta> removed, Collection<DirCountsDelta> newed) throws StorageException {
+    try {
+      String insert = String.format("insert into %s values(?,?,?,?,?,?)", TABLE_NAME);
+      String delete = String.format("delete from %s where %s=? and %s=?", TABLE_NAME, INODE_ID, ID);
+      Connection conn = connector.obtainSession();
+      PreparedStatement insrt = conn.prepareStatement(insert);
+      for (DirCountsDelta delta : newed) {
+        insrt.setLong(1, delta.getInodeId());
+        insrt.setLong(2, delta.getId());
+        insrt.setLong(3, delta.getNsDelta());
+        insrt.setLong(4, delta.getDsDelta());
+        insrt.setLong(5, delta.getFileDelta());
+        insrt.setLong(6, delta.getLengthDelta());
+        insrt.addBatch();
+      }
+      insrt.executeBatch();
+
+      PreparedStatement dlt = conn.prepareStatement(delete);
+      for (DirCountsDelta delta : removed) {
+        dlt.setLong(1, delta.getInodeId());
+        dlt.setLong(2, delta.getId());
+        dlt.addBatch();
+      }
+      dlt.executeBatch();
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+    }
+  }
+
+  private List<DirCountsDelta> createList(ResultSet rSet) throws SQLException {
+    List<DirCountsDelta> deltas = new ArrayList<DirCountsDelta>();
+    while (rSet.next()) {
+      deltas.add(new DirCountsDelta(rSet.getLong(INODE_ID), rSet.getLong(ID),
+              rSet.getLong(NS_DELTA), rSet.getLong(DS_DELTA),
+              rSet.getLong(FILE_DELTA), rSet.getLong(LENGTH_DELTA)));
+    }
+    return deltas;
+  }
+}
@@ -11,6 +11,7 @@ import java.util.List;
 import org.apache.hadoop.hdfs.server.blockmanagement.ExcessReplica;
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.ExcessReplicaDataAccess;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.util.StringUtils;
 
 /**
  *
@@ -67,6 +68,23 @@ public class ExcessReplicaDerby extends ExcessReplicaDataAccess {
     }
   }
 
+  @Override
+  public List<ExcessReplica> findExcessReplicaByBlockIds(List<Long> blockIds) throws StorageException {
+    if (blockIds.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    try {
+      String query = String.format("select * from %s where %s in (%s)",
+              TABLE_NAME, BLOCK_ID, StringUtils.join(",", blockIds));
+      Connection conn = connector.obtainSession();
+      ResultSet rSet = conn.prepareStatement(query).executeQuery();
+      return createList(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public ExcessReplica findByPkey(Object[] params) throws StorageException {
     String query = String.format("select * from %s where %s=? and %s=?",
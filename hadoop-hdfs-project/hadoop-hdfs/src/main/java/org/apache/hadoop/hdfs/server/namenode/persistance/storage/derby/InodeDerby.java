@@ -64,6 +64,42 @@ public class InodeDerby extends InodeDataAccess {
     }
   }
 
+  @Override
+  public List<INode> findInodesByParentIdAfterName(long parentId, String startAfter, int limit) throws StorageException {
+    try {
+      Connection conn = connector.obtainSession();
+      String query = String.format("select * from %s where %s=? and %s>? order by %s",
+              TABLE_NAME, PARENT_ID, NAME, NAME);
+      PreparedStatement s = conn.prepareStatement(query);
+      s.setLong(1, parentId);
+      s.setString(2, startAfter);
+      s.setMaxRows(limit);
+      ResultSet rSet = s.executeQuery();
+      return createInodeList(rSet);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
+  @Override
+  public List<INode> findSubtreeLockedInodes() throws StorageException {
+    try {
+      Connection conn = connector.obtainSession();
+      String query = String.format("select * from %s where %s>0", TABLE_NAME, SUBTREE_LOCK_OWNER);
+      PreparedStatement s = conn.prepareStatement(query);
+      ResultSet rSet = s.executeQuery();
+      return createInodeList(rSet);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public INode findInodeByNameAndParentId(String name, long parentId) throws StorageException {
     try {
@@ -113,16 +149,16 @@ public class InodeDerby extends InodeDataAccess {
       String delete = String.format("delete from %s where %s=?", TABLE_NAME, ID);
       String insert = String.format("insert into %s(%s,%s,%s,%s,"
               + "%s, %s, %s, %s, %s, %s, %s, %s, %s, %s,"
-              + "%s, %s, %s, %s) values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)", TABLE_NAME, IS_DIR_WITH_QUOTA,
+              + "%s, %s, %s, %s, %s, %s, %s) values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)", TABLE_NAME, IS_DIR_WITH_QUOTA,
               IS_DIR, IS_UNDER_CONSTRUCTION, MODIFICATION_TIME, ACCESS_TIME, NAME, PERMISSION,
               PARENT_ID, NSQUOTA, DSQUOTA, NSCOUNT, DSCOUNT, HEADER, CLIENT_NAME, CLIENT_MACHINE,
-              CLIENT_NODE, SYMLINK, ID);
+              CLIENT_NODE, SYMLINK, FILECOUNT, LENGTHCOUNT, SUBTREE_LOCK_OWNER, ID);
       String update = String.format("update %s set %s=?, %s=?, %s=?,"
               + "%s=?, %s=?, %s=?, %s=?, %s=?, %s=?, %s=?, %s=?, %s=?, %s=?,"
-              + "%s=?, %s=?, %s=?, %s=? where %s=?", TABLE_NAME, IS_DIR_WITH_QUOTA,
+              + "%s=?, %s=?, %s=?, %s=?, %s=?, %s=?, %s=? where %s=?", TABLE_NAME, IS_DIR_WITH_QUOTA,
               IS_DIR, IS_UNDER_CONSTRUCTION, MODIFICATION_TIME, ACCESS_TIME, NAME, PERMISSION,
               PARENT_ID, NSQUOTA, DSQUOTA, NSCOUNT, DSCOUNT, HEADER, CLIENT_NAME, CLIENT_MACHINE,
-              CLIENT_NODE, SYMLINK, ID);
+              CLIENT_NODE, SYMLINK, FILECOUNT, LENGTHCOUNT, SUBTREE_LOCK_OWNER, ID);
       Connection conn = connector.obtainSession();
 
       PreparedStatement insrt = conn.prepareStatement(insert);
@@ -224,7 +260,16 @@ public class InodeDerby extends InodeDataAccess {
       s.setNull(17, Types.VARCHAR);
     }
 
-    s.setLong(18, inode.getId());
+    if (inode instanceof INodeDirectory) {
+      s.setLong(18, ((INodeDirectory) inode).getFileCount());
+      s.setLong(19, ((INodeDirectory) inode).getFilesLength());
+    } else {
+      s.setNull(18, Types.BIGINT);
+      s.setNull(19, Types.BIGINT);
+    }
+
+    s.setLong(20, inode.getSubtreeLockOwner());
+    s.setLong(21, inode.getId());
   }
 
   private INode createInode(ResultSet rSet) throws IOException, SQLException {
@@ -246,6 +291,7 @@ public class InodeDerby extends InodeDataAccess {
       inode.setAccessTime(rSet.getLong(ACCESS_TIME));
       inode.setModificationTime(rSet.getLong(MODIFICATION_TIME));
       ((INodeDirectory) (inode)).setSpaceConsumed(rSet.getLong(NSCOUNT), rSet.getLong(DSCOUNT));
+      ((INodeDirectory) (inode)).setContentCounts(rSet.getLong(FILECOUNT), rSet.getLong(LENGTHCOUNT));
     } else if (rSet.getString(SYMLINK) != null) {
       inode = new INodeSymlink(rSet.getString(SYMLINK), rSet.getLong(MODIFICATION_TIME),
               rSet.getLong(ACCESS_TIME), ps);
@@ -267,6 +313,7 @@ public class InodeDerby extends InodeDataAccess {
     inode.setId(rSet.getLong(ID));
     inode.setName(rSet.getString(NAME));
     inode.setParentId(rSet.getLong(PARENT_ID));
+    inode.setSubtreeLockOwner(rSet.getLong(SUBTREE_LOCK_OWNER));
 
     return inode;
   }
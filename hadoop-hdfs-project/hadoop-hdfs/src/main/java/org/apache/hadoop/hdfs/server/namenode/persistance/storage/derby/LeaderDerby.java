@@ -124,22 +124,27 @@ public class LeaderDerby extends LeaderDataAccess {
 
     @Override
     public void prepare(Collection<Leader> removed, Collection<Leader> newed, Collection<Leader> modified) throws StorageException {
-        String insert = String.format("insert into %s (%s,%s,%s,%s,%s,%s) values(?,?,?,?,?,?)",
-                TABLE_NAME, ID, COUNTER, TIMESTAMP, HOSTNAME, AVG_REQUEST_PROCESSING_LATENCY, PARTITION_VAL);
-        String update = String.format("update %s set %s=?, set %s=?, set %s=?, set %s=?, set %s=?, %s=? where %s=?",
-                TABLE_NAME, ID, COUNTER, TIMESTAMP, HOSTNAME, AVG_REQUEST_PROCESSING_LATENCY, PARTITION_VAL);
+        String insert = String.format("insert into %s (%s,%s,%s,%s,%s,%s,%s,%s,%s) values(?,?,?,?,?,?,?,?,?)",
+                TABLE_NAME, ID, COUNTER, TIMESTAMP, HOSTNAME, AVG_REQUEST_PROCESSING_LATENCY, PARTITION_VAL,
+                REPORT_BACKLOG, REPORT_RATE, RPC_QUEUE_LENGTH);
+        String update = String.format("update %s set %s=?, %s=?, %s=?, %s=?, %s=?, %s=?, %s=?, %s=? where %s=?",
+                TABLE_NAME, COUNTER, TIMESTAMP, HOSTNAME, AVG_REQUEST_PROCESSING_LATENCY, PARTITION_VAL,
+                REPORT_BACKLOG, REPORT_RATE, RPC_QUEUE_LENGTH, ID);
         String delete = String.format("delete from %s where %s=?",
                 TABLE_NAME, ID);
         Connection conn = connector.obtainSession();
         try {
             PreparedStatement updt = conn.prepareStatement(update);
             for (Leader l : modified) {
-                updt.setLong(1, l.getId());
-                updt.setLong(2, l.getCounter());
-                updt.setLong(3, l.getTimeStamp());
-                updt.setString(4, l.getHostName());
-                updt.setInt(5, l.getAvgRequestProcessingLatency());
-                updt.setInt(6, l.getPartitionVal());
+                updt.setLong(1, l.getCounter());
+                updt.setLong(2, l.getTimeStamp());
+                updt.setString(3, l.getHostName());
+                updt.setInt(4, l.getAvgRequestProcessingLatency());
+                updt.setInt(5, l.getPartitionVal());
+                updt.setLong(6, l.getReportBacklog());
+                updt.setInt(7, l.getReportRate());
+                updt.setInt(8, l.getRpcQueueLength());
+                updt.setLong(9, l.getId());
 
                 updt.addBatch();
             }
@@ -153,6 +158,9 @@ public class LeaderDerby extends LeaderDataAccess {
                 insrt.setString(4, l.getHostName());
                 insrt.setInt(5, l.getAvgRequestProcessingLatency());
                 insrt.setInt(6, l.getPartitionVal());
+                insrt.setLong(7, l.getReportBacklog());
+                insrt.setInt(8, l.getReportRate());
+                insrt.setInt(9, l.getRpcQueueLength());
                 insrt.addBatch();
             }
             insrt.executeBatch();
@@ -189,6 +197,9 @@ public class LeaderDerby extends LeaderDataAccess {
         while (rSet.next()) {
             Leader leader = new Leader(rSet.getLong(ID), rSet.getLong(COUNTER),
                     rSet.getLong(TIMESTAMP), rSet.getString(HOSTNAME));
+            leader.setReportBacklog(rSet.getLong(REPORT_BACKLOG));
+            leader.setReportRate(rSet.getInt(REPORT_RATE));
+            leader.setRpcQueueLength(rSet.getInt(RPC_QUEUE_LENGTH));
             lSet.add(leader);
         }
         return lSet;
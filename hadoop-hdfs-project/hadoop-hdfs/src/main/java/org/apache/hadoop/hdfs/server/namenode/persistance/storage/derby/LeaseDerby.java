@@ -108,6 +108,27 @@ public class LeaseDerby extends LeaseDataAccess {
     }
   }
 
+  @Override
+  public Collection<Lease> findByHolders(Collection<String> holders) throws StorageException {
+    try {
+      StringBuilder query = new StringBuilder("select * from ").append(TABLE_NAME).
+              append(" where ").append(HOLDER).append("=?");
+      for (int i = 1; i < holders.size(); i++) {
+        query.append(" or ").append(HOLDER).append("=?");
+      }
+      Connection conn = connector.obtainSession();
+      PreparedStatement s = conn.prepareStatement(query.toString());
+      int i = 1;
+      for (String holder : holders) {
+        s.setString(i++, holder);
+      }
+      return convert(s.executeQuery());
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public void prepare(Collection<Lease> removed, Collection<Lease> newed, Collection<Lease> modified) throws StorageException {
     String insert = String.format("insert into %s values(?,?,?)", TABLE_NAME);
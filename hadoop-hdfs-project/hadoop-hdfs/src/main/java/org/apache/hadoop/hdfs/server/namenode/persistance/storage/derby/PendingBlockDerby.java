@@ -11,6 +11,7 @@ import java.util.List;
 import org.apache.hadoop.hdfs.server.blockmanagement.PendingBlockInfo;
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.PendingBlockDataAccess;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.util.StringUtils;
 
 /**
  *
@@ -68,6 +69,23 @@ public class PendingBlockDerby extends PendingBlockDataAccess {
     }
   }
 
+  @Override
+  public List<PendingBlockInfo> findByBlockIds(List<Long> blockIds) throws StorageException {
+    if (blockIds.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    try {
+      String query = String.format("select * from %s where %s in (%s)",
+              TABLE_NAME, BLOCK_ID, StringUtils.join(",", blockIds));
+      Connection conn = connector.obtainSession();
+      ResultSet rSet = conn.prepareStatement(query).executeQuery();
+      return createList(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public void prepare(Collection<PendingBlockInfo> removed, Collection<PendingBlockInfo> newed, Collection<PendingBlockInfo> modified) throws StorageException {
     try {
@@ -105,6 +123,26 @@ public class PendingBlockDerby extends PendingBlockDataAccess {
     }
   }
 
+  @Override
+  public List<PendingBlockInfo> findByTimeRange(long afterTime, long afterBlockId, long timeLimit, int limit) throws StorageException {
+    try {
+      String query = String.format("select * from %s where (%s>? or (%s=? and %s>?)) and %s<? order by %s, %s",
+              TABLE_NAME, TIME_STAMP, TIME_STAMP, BLOCK_ID, TIME_STAMP, TIME_STAMP, BLOCK_ID);
+      Connection conn = connector.obtainSession();
+      PreparedStatement s = conn.prepareStatement(query);
+      s.setLong(1, afterTime);
+      s.setLong(2, afterTime);
+      s.setLong(3, afterBlockId);
+      s.setLong(4, timeLimit);
+      s.setMaxRows(limit);
+      ResultSet rSet = s.executeQuery();
+      return createList(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   private List<PendingBlockInfo> createList(ResultSet rSet) throws SQLException {
     List<PendingBlockInfo> newPBlocks = new ArrayList<PendingBlockInfo>();
     while (rSet.next()) {
@@ -11,6 +11,7 @@ import java.util.List;
 import org.apache.hadoop.hdfs.server.blockmanagement.IndexedReplica;
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.ReplicaDataAccess;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.util.StringUtils;
 
 /**
  *
@@ -35,6 +36,23 @@ public class ReplicaDerby extends ReplicaDataAccess {
     }
   }
 
+  @Override
+  public List<IndexedReplica> findReplicasByIds(List<Long> blockIds) throws StorageException {
+    if (blockIds.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    try {
+      String query = String.format("select * from %s where %s in (%s)",
+              TABLE_NAME, BLOCK_ID, StringUtils.join(",", blockIds));
+      Connection conn = connector.obtainSession();
+      ResultSet rSet = conn.prepareStatement(query).executeQuery();
+      return createReplicaList(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public void prepare(Collection<IndexedReplica> removed, Collection<IndexedReplica> newed, Collection<IndexedReplica> modified) throws StorageException {
     try {
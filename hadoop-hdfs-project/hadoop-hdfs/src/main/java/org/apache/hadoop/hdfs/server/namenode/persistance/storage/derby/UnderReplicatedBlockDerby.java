@@ -11,6 +11,7 @@ import java.util.List;
 import org.apache.hadoop.hdfs.server.blockmanagement.UnderReplicatedBlock;
 import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.UnderReplicatedBlockDataAccess;
 import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.util.StringUtils;
 
 /**
  *
@@ -40,6 +41,23 @@ public class UnderReplicatedBlockDerby extends UnderReplicatedBlockDataAccess {
     }
   }
 
+  @Override
+  public List<UnderReplicatedBlock> findByBlockIds(List<Long> blockIds) throws StorageException {
+    if (blockIds.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    try {
+      String query = String.format("select * from %s where %s in (%s)",
+              TABLE_NAME, BLOCK_ID, StringUtils.join(",", blockIds));
+      Connection conn = connector.obtainSession();
+      ResultSet rSet = conn.prepareStatement(query).executeQuery();
+      return createBlocks(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public List<UnderReplicatedBlock> findAll() throws StorageException {
     try {
@@ -66,6 +84,24 @@ public class UnderReplicatedBlockDerby extends UnderReplicatedBlockDataAccess {
     }
   }
 
+  @Override
+  public List<UnderReplicatedBlock> findByLevelFromBlockId(int level, long fromBlockId, int limit) throws StorageException {
+    try {
+      String query = String.format("select * from %s where %s=? and %s>=? order by %s",
+              TABLE_NAME, LEVEL, BLOCK_ID, BLOCK_ID);
+      Connection conn = connector.obtainSession();
+      PreparedStatement s = conn.prepareStatement(query);
+      s.setInt(1, level);
+      s.setLong(2, fromBlockId);
+      s.setMaxRows(limit);
+      ResultSet rSet = s.executeQuery();
+      return createBlocks(rSet);
+    } catch (SQLException ex) {
+      handleSQLException(ex);
+      return Collections.EMPTY_LIST;
+    }
+  }
+
   @Override
   public List<UnderReplicatedBlock> findAllLessThanLevel(int level) throws StorageException {
     try {
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfoUnderConstruction;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.BlockInfoDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class BlockInfoMemory extends BlockInfoDataAccess {
+
+  static class BlockInfoRow {
+
+    long blockId;
+    int blockIndex;
+    long iNodeId;
+    long numBytes;
+    long generationStamp;
+    int blockUCState;
+    long timestamp;
+    int primaryNodeIndex;
+    long blockRecoveryId;
+  }
+  private static final MemoryTable.Column<BlockInfoRow> PK = new MemoryTable.Column<BlockInfoRow>() {
+
+    @Override
+    public Object get(BlockInfoRow row) {
+      return row.blockId;
+    }
+  };
+  private static final MemoryTable.Column<BlockInfoRow> INODE_ID_IDX = new MemoryTable.Column<BlockInfoRow>() {
+
+    @Override
+    public Object get(BlockInfoRow row) {
+      return row.iNodeId;
+    }
+  };
+  private final MemoryTable<BlockInfoRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK, INODE_ID_IDX);
+  private final ReplicaMemory replicas = new ReplicaMemory();
+
+  @Override
+  public int countAll() throws StorageException {
+    return table.count();
+  }
+
+  @Override
+  public void prepare(Collection<BlockInfo> removed, Collection<BlockInfo> news, Collection<BlockInfo> modified) throws StorageException {
+    for (BlockInfo block : removed) {
+      table.delete(block.getBlockId());
+    }
+    for (BlockInfo block : news) {
+      table.save(createPersistable(block));
+    }
+    for (BlockInfo block : modified) {
+      table.save(createPersistable(block));
+    }
+  }
+
+  @Override
+  public BlockInfo findById(long blockId) throws StorageException {
+    BlockInfoRow row = table.find(blockId);
+    return row == null ? null : createBlockInfo(row);
+  }
+
+  @Override
+  public List<BlockInfo> findByInodeId(long id) throws StorageException {
+    return createBlockInfoList(table.scan(0, id));
+  }
+
+  @Override
+  public List<BlockInfo> findByIds(List<Long> blockIds) throws StorageException {
+    return createBlockInfoList(table.findAll(blockIds));
+  }
+
+  @Override
+  public List<BlockInfo> findByInodeIds(List<Long> inodeIds) throws StorageException {
+    return createBlockInfoList(table.scanAll(0, inodeIds));
+  }
+
+  @Override
+  public List<BlockInfo> findAllBlocks() throws StorageException {
+    return createBlockInfoList(table.scan(null));
+  }
+
+  @Override
+  public List<BlockInfo> findByStorageId(String storageId) throws StorageException {
+    return createBlockInfoList(table.findAll(replicas.findBlockIdsByStorageId(storageId)));
+  }
+
+  private List<BlockInfo> createBlockInfoList(List<BlockInfoRow> rows) {
+    List<BlockInfo> list = new ArrayList<BlockInfo>();
+    for (BlockInfoRow row : rows) {
+      list.add(createBlockInfo(row));
+    }
+    return list;
+  }
+
+  private BlockInfo createBlockInfo(BlockInfoRow row) {
+    Block b = new Block(row.blockId, row.numBytes, row.generationStamp);
+    BlockInfo blockInfo = null;
+
+    if (row.blockUCState > 0) { //UNDER_CONSTRUCTION, UNDER_RECOVERY, COMMITED
+      blockInfo = new BlockInfoUnderConstruction(b);
+      ((BlockInfoUnderConstruction) blockInfo).setBlockUCState(HdfsServerConstants.BlockUCState.values()[row.blockUCState]);
+      ((BlockInfoUnderConstruction) blockInfo).setPrimaryNodeIndex(row.primaryNodeIndex);
+      ((BlockInfoUnderConstruction) blockInfo).setBlockRecoveryId(row.blockRecoveryId);
+    } else if (row.blockUCState == HdfsServerConstants.BlockUCState.COMPLETE.ordinal()) {
+      blockInfo = new BlockInfo(b);
+    }
+
+    blockInfo.setINodeId(row.iNodeId);
+    blockInfo.setTimestamp(row.timestamp);
+    blockInfo.setBlockIndex(row.blockIndex);
+
+    return blockInfo;
+  }
+
+  private BlockInfoRow createPersistable(BlockInfo block) {
+    BlockInfoRow row = new BlockInfoRow();
+    row.blockId = block.getBlockId();
+    row.numBytes = block.getNumBytes();
+    row.generationStamp = block.getGenerationStamp();
+    row.iNodeId = block.getInodeId();
+    row.timestamp = block.getTimestamp();
+    row.blockIndex = block.getBlockIndex();
+    row.blockUCState = block.getBlockUCState().ordinal();
+    if (block instanceof BlockInfoUnderConstruction) {
+      BlockInfoUnderConstruction ucBlock = (BlockInfoUnderConstruction) block;
+      row.primaryNodeIndex = ucBlock.getPrimaryNodeIndex();
+      row.blockRecoveryId = ucBlock.getBlockRecoveryId();
+    }
+    return row;
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.security.token.block.BlockKey;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.BlockTokenKeyDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+public class BlockTokenKeyMemory extends BlockTokenKeyDataAccess {
+
+  static class BlockKeyRow {
+
+    int keyId;
+    long expiryDate;
+    byte[] keyBytes;
+    short keyType;
+  }
+  private static final MemoryTable.Column<BlockKeyRow> PK = new MemoryTable.Column<BlockKeyRow>() {
+
+    @Override
+    public Object get(BlockKeyRow row) {
+      return row.keyId;
+    }
+  };
+  private final MemoryTable<BlockKeyRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK);
+
+  @Override
+  public BlockKey findByKeyId(int keyId) throws StorageException {
+    BlockKeyRow row = table.find(keyId);
+    return row == null ? null : createBlockKey(row);
+  }
+
+  @Override
+  public BlockKey findByKeyType(final short keyType) throws StorageException {
+    List<BlockKeyRow> rows = table.scan(new MemoryTable.Filter<BlockKeyRow>() {
+
+      @Override
+      public boolean matches(BlockKeyRow row) {
+        return row.keyType == keyType;
+      }
+    });
+    if (rows.isEmpty()) {
+      return null;
+    } else if (rows.size() > 1) {
+      throw new StorageException("More than 1 keys found for KeyType "
+              + keyType + " - This should never happen or the world will end");
+    }
+    return createBlockKey(rows.get(0));
+  }
+
+  @Override
+  public List<BlockKey> findAll() throws StorageException {
+    List<BlockKey> blockKeys = new ArrayList<BlockKey>();
+    for (BlockKeyRow row : table.scan(null)) {
+      blockKeys.add(createBlockKey(row));
+    }
+    return blockKeys;
+  }
+
+  @Override
+  public void prepare(Collection<BlockKey> removed, Collection<BlockKey> newed, Collection<BlockKey> modified) throws StorageException {
+    for (BlockKey key : removed) {
+      table.delete(key.getKeyId());
+    }
+    for (BlockKey key : newed) {
+      table.save(createPersistable(key));
+    }
+    for (BlockKey key : modified) {
+      table.save(createPersistable(key));
+    }
+  }
+
+  @Override
+  public void removeAll() throws StorageException {
+    table.deleteAll();
+  }
+
+  private BlockKey createBlockKey(BlockKeyRow row) throws StorageException {
+    try {
+      DataInputStream dis = new DataInputStream(new ByteArrayInputStream(row.keyBytes));
+      BlockKey bKey = new BlockKey();
+      bKey.readFields(dis);
+      return bKey;
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  private BlockKeyRow createPersistable(BlockKey key) throws StorageException {
+    BlockKeyRow row = new BlockKeyRow();
+    row.expiryDate = key.getExpiryDate();
+    row.keyId = key.getKeyId();
+    row.keyType = key.getKeyType();
+    try {
+      DataOutputBuffer keyBytes = new DataOutputBuffer();
+      key.write(keyBytes);
+      row.keyBytes = Arrays.copyOf(keyBytes.getData(), keyBytes.getLength());
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
+    return row;
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.blockmanagement.CorruptReplica;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.CorruptReplicaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class CorruptReplicaMemory extends CorruptReplicaDataAccess {
+
+  static class CorruptReplicaRow {
+
+    long blockId;
+    String storageId;
+  }
+  private static final MemoryTable.Column<CorruptReplicaRow> PK = new MemoryTable.Column<CorruptReplicaRow>() {
+
+    @Override
+    public Object get(CorruptReplicaRow row) {
+      return MemoryTable.key(row.blockId, row.storageId);
+    }
+  };
+  private static final MemoryTable.Column<CorruptReplicaRow> BLOCK_ID_IDX = new MemoryTable.Column<CorruptReplicaRow>() {
+
+    @Override
+    public Object get(CorruptReplicaRow row) {
+      return row.blockId;
+    }
+  };
+  private final MemoryTable<CorruptReplicaRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK, BLOCK_ID_IDX);
+
+  @Override
+  public int countAll() throws StorageException {
+    return table.count();
+  }
+
+  @Override
+  public void prepare(Collection<CorruptReplica> removed, Collection<CorruptReplica> newed, Collection<CorruptReplica> modified) throws StorageException {
+    for (CorruptReplica corruptReplica : removed) {
+      table.delete(MemoryTable.key(corruptReplica.getBlockId(), corruptReplica.getStorageId()));
+    }
+    for (CorruptReplica corruptReplica : newed) {
+      table.save(createPersistable(corruptReplica));
+    }
+  }
+
+  @Override
+  public CorruptReplica findByPk(long blockId, String storageId) throws StorageException {
+    CorruptReplicaRow row = table.find(MemoryTable.key(blockId, storageId));
+    return row == null ? null : createReplica(row);
+  }
+
+  @Override
+  public List<CorruptReplica> findAll() throws StorageException {
+    return createCorruptReplicaList(table.scan(null));
+  }
+
+  @Override
+  public List<CorruptReplica> findByBlockId(long blockId) throws StorageException {
+    return createCorruptReplicaList(table.scan(0, blockId));
+  }
+
+  @Override
+  public List<CorruptReplica> findByBlockIds(List<Long> blockIds) throws StorageException {
+    return createCorruptReplicaList(table.scanAll(0, blockIds));
+  }
+
+  private CorruptReplica createReplica(CorruptReplicaRow row) {
+    return new CorruptReplica(row.blockId, row.storageId);
+  }
+
+  private List<CorruptReplica> createCorruptReplicaList(List<CorruptReplicaRow> rows) {
+    List<CorruptReplica> replicas = new ArrayList<CorruptReplica>();
+    for (CorruptReplicaRow row : rows) {
+      replicas.add(createReplica(row));
+    }
+    return replicas;
+  }
+
+  private CorruptReplicaRow createPersistable(CorruptReplica corruptReplica) {
+    CorruptReplicaRow row = new CorruptReplicaRow();
+    row.blockId = corruptReplica.getBlockId();
+    row.storageId = corruptReplica.getStorageId();
+    return row;
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import org.apache.hadoop.hdfs.server.namenode.DirCountsDelta;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.DirCountsDeltaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class DirCountsDeltaMemory extends DirCountsDeltaDataAccess {
+
+  static class DirCountsDeltaRow {
+
+    long inodeId;
+    long id;
+    long nsDelta;
+    long dsDelta;
+    long fileDelta;
+    long lengthDelta;
+  }
+  private static final MemoryTable.Column<DirCountsDeltaRow> PK = new MemoryTable.Column<DirCountsDeltaRow>() {
+
+    @Override
+    public Object get(DirCountsDeltaRow row) {
+      return MemoryTable.key(row.inodeId, row.id);
+    }
+  };
+  private static final MemoryTable.Column<DirCountsDeltaRow> INODE_ID_IDX = new MemoryTable.Column<DirCountsDeltaRow>() {
+
+    @Override
+    public Object get(DirCountsDeltaRow row) {
+      return row.inodeId;
+    }
+  };
+  private final MemoryTable<DirCountsDeltaRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK,
+          INODE_ID_IDX);
+
+  @Override
+  public List<DirCountsDelta> findByINodeIds(Collection<Long> inodeIds) throws StorageException {
+    return createList(table.scanAll(0, inodeIds));
+  }
+
+  @Override
+  public Collection<Long> findINodeIds(int limit) throws StorageException {
+    Collection<Long> ids = new TreeSet<Long>();
+    for (DirCountsDeltaRow row : table.select(-1, null, null, null, limit)) {
+      ids.add(row.inodeId);
+    }
+    return ids;
+  }
+
+  @Override
+  public void prepare(Collection<DirCountsDelta> removed, Collection<DirCountsDelta> newed) throws StorageException {
+    for (DirCountsDelta delta : newed) {
+      table.save(createPersistable(delta));
+    }
+    for (DirCountsDelta delta : removed) {
+      table.delete(MemoryTable.key(delta.getInodeId(), delta.getId()));
+    }
+  }
+
+  private List<DirCountsDelta> createList(Collection<DirCountsDeltaRow> rows) {
+    List<DirCountsDelta> list = new ArrayList<DirCountsDelta>();
+    for (DirCountsDeltaRow row : rows) {
+      list.add(new DirCountsDelta(row.inodeId, row.id, row.nsDelta, row.dsDelta,
+              row.fileDelta, row.lengthDelta));
+    }
+    return list;
+  }
+
+  private DirCountsDeltaRow createPersistable(DirCountsDelta delta) {
+    DirCountsDeltaRow row = new DirCountsDeltaRow();
+    row.inodeId = delta.getInodeId();
+    row.id = delta.getId();
+    row.nsDelta = delta.getNsDelta();
+    row.dsDelta = delta.getDsDelta();
+    row.fileDelta = delta.getFileDelta();
+    row.lengthDelta = delta.getLengthDelta();
+    return row;
+  }
+}
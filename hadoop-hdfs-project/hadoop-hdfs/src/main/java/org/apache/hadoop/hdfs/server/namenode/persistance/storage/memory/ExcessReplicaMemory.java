@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.blockmanagement.ExcessReplica;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.ExcessReplicaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class ExcessReplicaMemory extends ExcessReplicaDataAccess {
+
+  static class ExcessReplicaRow {
+
+    long blockId;
+    String storageId;
+  }
+  private static final MemoryTable.Column<ExcessReplicaRow> PK = new MemoryTable.Column<ExcessReplicaRow>() {
+
+    @Override
+    public Object get(ExcessReplicaRow row) {
+      return MemoryTable.key(row.blockId, row.storageId);
+    }
+  };
+  private static final MemoryTable.Column<ExcessReplicaRow> BLOCK_ID_IDX = new MemoryTable.Column<ExcessReplicaRow>() {
+
+    @Override
+    public Object get(ExcessReplicaRow row) {
+      return row.blockId;
+    }
+  };
+  private static final MemoryTable.Column<ExcessReplicaRow> STORAGE_ID_IDX = new MemoryTable.Column<ExcessReplicaRow>() {
+
+    @Override
+    public Object get(ExcessReplicaRow row) {
+      return row.storageId;
+    }
+  };
+  private final MemoryTable<ExcessReplicaRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK,
+          BLOCK_ID_IDX, STORAGE_ID_IDX);
+
+  @Override
+  public int countAll() throws StorageException {
+    return table.count();
+  }
+
+  @Override
+  public void prepare(Collection<ExcessReplica> removed, Collection<ExcessReplica> newed, Collection<ExcessReplica> modified) throws StorageException {
+    for (ExcessReplica exReplica : newed) {
+      table.save(createPersistable(exReplica));
+    }
+    for (ExcessReplica exReplica : removed) {
+      table.delete(MemoryTable.key(exReplica.getBlockId(), exReplica.getStorageId()));
+    }
+  }
+
+  @Override
+  public List<ExcessReplica> findExcessReplicaByStorageId(String storageId) throws StorageException {
+    return createList(table.scan(1, storageId));
+  }
+
+  @Override
+  public List<ExcessReplica> findExcessReplicaByBlockId(long bId) throws StorageException {
+    return createList(table.scan(0, bId));
+  }
+
+  @Override
+  public List<ExcessReplica> findExcessReplicaByBlockIds(List<Long> blockIds) throws StorageException {
+    return createList(table.scanAll(0, blockIds));
+  }
+
+  @Override
+  public ExcessReplica findByPkey(Object[] params) throws StorageException {
+    ExcessReplicaRow row = table.find(Arrays.asList(params));
+    return row == null ? null : createReplica(row);
+  }
+
+  private List<ExcessReplica> createList(List<ExcessReplicaRow> list) {
+    List<ExcessReplica> result = new ArrayList<ExcessReplica>();
+    for (ExcessReplicaRow item : list) {
+      result.add(createReplica(item));
+    }
+    return result;
+  }
+
+  private ExcessReplica createReplica(ExcessReplicaRow row) {
+    return new ExcessReplica(row.storageId, row.blockId);
+  }
+
+  private ExcessReplicaRow createPersistable(ExcessReplica exReplica) {
+    ExcessReplicaRow row = new ExcessReplicaRow();
+    row.blockId = exReplica.getBlockId();
+    row.storageId = exReplica.getStorageId();
+    return row;
+  }
+}
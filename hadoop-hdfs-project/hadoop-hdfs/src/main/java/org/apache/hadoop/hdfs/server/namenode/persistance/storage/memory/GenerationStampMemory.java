@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.GenerationStampDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class GenerationStampMemory extends GenerationStampDataAccess {
+
+  // Generation stamp should have only a single row which stores the generation stamp number (counter),
+  public static final int COUNTER_ID = 1;
+
+  static class GenerationStampRow {
+
+    int id;
+    long counter;
+  }
+  private static final MemoryTable.Column<GenerationStampRow> PK = new MemoryTable.Column<GenerationStampRow>() {
+
+    @Override
+    public Object get(GenerationStampRow row) {
+      return row.id;
+    }
+  };
+  private final MemoryTable<GenerationStampRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK);
+
+  @Override
+  public Long findCounter() throws StorageException {
+    GenerationStampRow row = table.find(COUNTER_ID);
+    if (row == null) {
+      throw new StorageException("There is no generation stamp entry with id " + COUNTER_ID);
+    }
+    return row.counter;
+  }
+
+  @Override
+  public void prepare(long counter) throws StorageException {
+    GenerationStampRow row = new GenerationStampRow();
+    row.id = COUNTER_ID;
+    row.counter = counter;
+    table.save(row);
+  }
+}
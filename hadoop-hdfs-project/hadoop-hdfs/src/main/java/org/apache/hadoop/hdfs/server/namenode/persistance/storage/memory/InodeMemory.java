@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.server.namenode.*;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.InodeDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+public class InodeMemory extends InodeDataAccess {
+
+  static class InodeRow {
+
+    long id;
+    String name;
+    long parentId;
+    boolean isDir;
+    boolean isDirWithQuota;
+    long modificationTime;
+    long aTime;
+    byte[] permission;
+    long nsCount;
+    long dsCount;
+    long fileCount;
+    long lengthCount;
+    long subtreeLockOwner;
+    long nsQuota;
+    long dsQuota;
+    boolean isUnderConstruction;
+    String clientName;
+    String clientMachine;
+    String clientNode;
+    long header;
+    String symlink;
+  }
+  private static final MemoryTable.Column<InodeRow> PK = new MemoryTable.Column<InodeRow>() {
+
+    @Override
+    public Object get(InodeRow row) {
+      return row.id;
+    }
+  };
+  private static final MemoryTable.Column<InodeRow> PARENT_IDX = new MemoryTable.Column<InodeRow>() {
+
+    @Override
+    public Object get(InodeRow row) {
+      return row.parentId;
+    }
+  };
+  private static final MemoryTable.Column<InodeRow> PATH_LOOKUP_IDX = new MemoryTable.Column<InodeRow>() {
+
+    @Override
+    public Object get(InodeRow row) {
+      return MemoryTable.key(row.parentId, row.name);
+    }
+  };
+  private static final Comparator<InodeRow> BY_NAME = new Comparator<InodeRow>() {
+
+    @Override
+    public int compare(InodeRow o1, InodeRow o2) {
+      return nameOf(o1).compareTo(nameOf(o2));
+    }
+  };
+  private final MemoryTable<InodeRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK,
+          PARENT_IDX, PATH_LOOKUP_IDX);
+
+  private static String nameOf(InodeRow row) {
+    return row.name == null ? "" : row.name;
+  }
+
+  @Override
+  public int countAll() throws StorageException {
+    return table.count();
+  }
+
+  @Override
+  public void prepare(Collection<INode> removed, Collection<INode> newEntries, Collection<INode> modified) throws StorageException {
+    for (INode inode : removed) {
+      table.delete(inode.getId());
+    }
+    for (INode inode : newEntries) {
+      table.save(createPersistable(inode));
+    }
+    for (INode inode : modified) {
+      table.save(createPersistable(inode));
+    }
+  }
+
+  @Override
+  public INode findInodeById(long inodeId) throws StorageException {
+    InodeRow row = table.find(inodeId);
+    return row == null ? null : createInode(row);
+  }
+
+  @Override
+  public List<INode> findInodesByParentIdSortedByName(long parentId) throws StorageException {
+    return createInodeList(table.select(0, Collections.singleton(parentId), null, BY_NAME, -1));
+  }
+
+  @Override
+  public List<INode> findInodesByParentIdAfterName(long parentId, final String startAfter, int limit) throws StorageException {
+    MemoryTable.Filter<InodeRow> filter = null;
+    if (startAfter.length() > 0) {
+      filter = new MemoryTable.Filter<InodeRow>() {
+
+        @Override
+        public boolean matches(InodeRow row) {
+          return nameOf(row).compareTo(startAfter) > 0;
+        }
+      };
+    }
+    return createInodeList(table.select(0, Collections.singleton(parentId), filter, BY_NAME, limit));
+  }
+
+  @Override
+  public List<INode> findSubtreeLockedInodes() throws StorageException {
+    return createInodeList(table.scan(new MemoryTable.Filter<InodeRow>() {
+
+      @Override
+      public boolean matches(InodeRow row) {
+        return row.subtreeLockOwner > 0;
+      }
+    }));
+  }
+
+  @Override
+  public INode findInodeByNameAndParentId(String name, long parentId) throws StorageException {
+    List<InodeRow> rows = table.scan(1, MemoryTable.key(parentId, name));
+    if (rows.size() > 1) {
+      throw new StorageException("This parent has two chidlren with the same name");
+    } else if (rows.isEmpty()) {
+      return null;
+    }
+    return createInode(rows.get(0));
+  }
+
+  @Override
+  public List<INode> findInodesByIds(List<Long> ids) throws StorageException {
+    return createInodeList(table.findAll(ids));
+  }
+
+  private List<INode> createInodeList(List<InodeRow> rows) throws StorageException {
+    List<INode> inodes = new ArrayList<INode>();
+    for (InodeRow row : rows) {
+      inodes.add(createInode(row));
+    }
+    return inodes;
+  }
+
+  private INode createInode(InodeRow row) throws StorageException {
+    DataInputBuffer buffer = new DataInputBuffer();
+    buffer.reset(row.permission, row.permission.length);
+    PermissionStatus ps;
+    try {
+      ps = PermissionStatus.read(buffer);
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
+
+    INode inode = null;
+
+    if (row.isDir) {
+      if (row.isDirWithQuota) {
+        inode = new INodeDirectoryWithQuota(row.name, ps, row.nsQuota, row.dsQuota);
+      } else {
+        String iname = (row.name.length() == 0) ? INodeDirectory.ROOT_NAME : row.name;
+        inode = new INodeDirectory(iname, ps);
+      }
+
+      inode.setAccessTime(row.aTime);
+      inode.setModificationTime(row.modificationTime);
+      ((INodeDirectory) (inode)).setSpaceConsumed(row.nsCount, row.dsCount);
+      ((INodeDirectory) (inode)).setContentCounts(row.fileCount, row.lengthCount);
+    } else if (row.symlink != null) {
+      inode = new INodeSymlink(row.symlink, row.modificationTime, row.aTime, ps);
+    } else {
+      inode = new INodeFile(row.isUnderConstruction, row.name.getBytes(),
+              getReplication(row.header),
+              row.modificationTime,
+              getPreferredBlockSize(row.header),
+              ps,
+              row.clientName,
+              row.clientMachine,
+              (row.clientNode == null || row.clientNode.isEmpty()) ? null : new DatanodeID(row.clientNode));
+      inode.setAccessTime(row.aTime);
+    }
+
+    inode.setId(row.id);
+    inode.setName(row.name);
+    inode.setParentId(row.parentId);
+    inode.setSubtreeLockOwner(row.subtreeLockOwner);
+
+    return inode;
+  }
+
+  private InodeRow createPersistable(INode inode) throws StorageException {
+    InodeRow row = new InodeRow();
+    row.modificationTime = inode.getModificationTime();
+    row.aTime = inode.getAccessTime();
+    row.name = inode.getName();
+
+    DataOutputBuffer permissionString = new DataOutputBuffer();
+    try {
+      inode.getPermissionStatus().write(permissionString);
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
+
+    row.permission = Arrays.copyOf(permissionString.getData(), permissionString.getLength());
+    row.parentId = inode.getParentId();
+    row.id = inode.getId();
+    row.nsQuota = inode.getNsQuota();
+    row.dsQuota = inode.getDsQuota();
+    row.subtreeLockOwner = inode.getSubtreeLockOwner();
+
+    if (inode instanceof INodeDirectory) {
+      row.isDir = true;
+      row.nsCount = ((INodeDirectory) inode).getNsCount();
+      row.dsCount = ((INodeDirectory) inode).getDsCount();
+      row.fileCount = ((INodeDirectory) inode).getFileCount();
+      row.lengthCount = ((INodeDirectory) inode).getFilesLength();
+    }
+    if (inode instanceof INodeDirectoryWithQuota) {
+      row.isDirWithQuota = true;
+    }
+    if (inode instanceof INodeFile) {
+      row.isUnderConstruction = inode.isUnderConstruction();
+      row.header = getHeader(((INodeFile) inode).getReplication(), ((INodeFile) inode).getPreferredBlockSize());
+      row.clientName = ((INodeFile) inode).getClientName();
+      row.clientMachine = ((INodeFile) inode).getClientMachine();
+      row.clientNode = ((INodeFile) inode).getClientNode() == null ? null : ((INodeFile) inode).getClientNode().getName();
+    }
+    if (inode instanceof INodeSymlink) {
+      row.symlink = DFSUtil.bytes2String(((INodeSymlink) inode).getSymlink());
+    }
+    return row;
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.blockmanagement.InvalidatedBlock;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.InvalidateBlockDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class InvalidatedBlockMemory extends InvalidateBlockDataAccess {
+
+  static class InvalidatedBlockRow {
+
+    long blockId;
+    String storageId;
+    long generationStamp;
+    long numBytes;
+  }
+  private static final MemoryTable.Column<InvalidatedBlockRow> PK = new MemoryTable.Column<InvalidatedBlockRow>() {
+
+    @Override
+    public Object get(InvalidatedBlockRow row) {
+      return MemoryTable.key(row.blockId, row.storageId);
+    }
+  };
+  private static final MemoryTable.Column<InvalidatedBlockRow> BLOCK_ID_IDX = new MemoryTable.Column<InvalidatedBlockRow>() {
+
+    @Override
+    public Object get(InvalidatedBlockRow row) {
+      return row.blockId;
+    }
+  };
+  private static final MemoryTable.Column<InvalidatedBlockRow> STORAGE_ID_IDX = new MemoryTable.Column<InvalidatedBlockRow>() {
+
+    @Override
+    public Object get(InvalidatedBlockRow row) {
+      return row.storageId;
+    }
+  };
+  private final MemoryTable<InvalidatedBlockRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK,
+          BLOCK_ID_IDX, STORAGE_ID_IDX);
+
+  @Override
+  public int countAll() throws StorageException {
+    return table.count();
+  }
+
+  @Override
+  public List<InvalidatedBlock> findAllInvalidatedBlocks() throws StorageException {
+    return createList(table.scan(null));
+  }
+
+  @Override
+  public List<InvalidatedBlock> findInvalidatedBlockByStorageId(String storageId) throws StorageException {
+    return createList(table.scan(1, storageId));
+  }
+
+  @Override
+  public Collection<InvalidatedBlock> findInvalidatedBlocksByBlockId(long bid) throws StorageException {
+    return createList(table.scan(0, bid));
+  }
+
+  @Override
+  public InvalidatedBlock findInvBlockByPkey(Object[] params) throws StorageException {
+    InvalidatedBlockRow row = table.find(Arrays.asList(params));
+    return row == null ? null : createReplica(row);
+  }
+
+  @Override
+  public void prepare(Collection<InvalidatedBlock> removed, Collection<InvalidatedBlock> newed, Collection<InvalidatedBlock> modified) throws StorageException {
+    for (InvalidatedBlock invBlock : newed) {
+      table.save(createPersistable(invBlock));
+    }
+    for (InvalidatedBlock invBlock : removed) {
+      table.delete(MemoryTable.key(invBlock.getBlockId(), invBlock.getStorageId()));
+    }
+  }
+
+  private List<InvalidatedBlock> createList(List<InvalidatedBlockRow> rows) {
+    List<InvalidatedBlock> list = new ArrayList<InvalidatedBlock>();
+    for (InvalidatedBlockRow row : rows) {
+      list.add(createReplica(row));
+    }
+    return list;
+  }
+
+  private InvalidatedBlock createReplica(InvalidatedBlockRow row) {
+    return new InvalidatedBlock(row.storageId, row.blockId, row.generationStamp, row.numBytes);
+  }
+
+  private InvalidatedBlockRow createPersistable(InvalidatedBlock invBlock) {
+    InvalidatedBlockRow row = new InvalidatedBlockRow();
+    row.blockId = invBlock.getBlockId();
+    row.storageId = invBlock.getStorageId();
+    row.generationStamp = invBlock.getGenerationStamp();
+    row.numBytes = invBlock.getNumBytes();
+    return row;
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.hadoop.hdfs.server.namenode.Leader;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.LeaderDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class LeaderMemory extends LeaderDataAccess {
+
+  static class LeaderRow {
+
+    long id;
+    int partitionVal;
+    long counter;
+    long timestamp;
+    String hostname;
+    int avgRequestProcessingLatency;
+    long reportBacklog;
+    int reportRate;
+    int rpcQueueLength;
+  }
+  private static final MemoryTable.Column<LeaderRow> PK = new MemoryTable.Column<LeaderRow>() {
+
+    @Override
+    public Object get(LeaderRow row) {
+      return MemoryTable.key(row.id, row.partitionVal);
+    }
+  };
+  private final MemoryTable<LeaderRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK);
+
+  @Override
+  public int countAll() throws StorageException {
+    return findAll().size();
+  }
+
+  @Override
+  public int countAllPredecessors(long id) throws StorageException {
+    return findAllByIDLT(id).size();
+  }
+
+  @Override
+  public int countAllSuccessors(final long id) throws StorageException {
+    return table.scan(new MemoryTable.Filter<LeaderRow>() {
+
+      @Override
+      public boolean matches(LeaderRow row) {
+        return row.id > id;
+      }
+    }).size();
+  }
+
+  @Override
+  public Leader findByPkey(long id, int partitionKey) throws StorageException {
+    LeaderRow row = table.find(MemoryTable.key(id, partitionKey));
+    return row == null ? null : createLeader(row);
+  }
+
+  @Override
+  public Collection<Leader> findAllByCounterGT(final long counter) throws StorageException {
+    return createList(table.scan(new MemoryTable.Filter<LeaderRow>() {
+
+      @Override
+      public boolean matches(LeaderRow row) {
+        return row.counter > counter;
+      }
+    }));
+  }
+
+  @Override
+  public Collection<Leader> findAllByIDLT(final long id) throws StorageException {
+    return createList(table.scan(new MemoryTable.Filter<LeaderRow>() {
+
+      @Override
+      public boolean matches(LeaderRow row) {
+        return row.id < id;
+      }
+    }));
+  }
+
+  @Override
+  public Collection<Leader> findAll() throws StorageException {
+    return createList(table.scan(null));
+  }
+
+  @Override
+  public void prepare(Collection<Leader> removed, Collection<Leader> newed, Collection<Leader> modified) throws StorageException {
+    for (Leader l : newed) {
+      table.save(createPersistableLeaderInstance(l));
+    }
+    for (Leader l : modified) {
+      table.save(createPersistableLeaderInstance(l));
+    }
+    for (Leader l : removed) {
+      table.delete(MemoryTable.key(l.getId(), l.getPartitionVal()));
+    }
+  }
+
+  private SortedSet<Leader> createList(List<LeaderRow> rows) {
+    SortedSet<Leader> finalSet = new TreeSet<Leader>();
+    for (LeaderRow row : rows) {
+      finalSet.add(createLeader(row));
+    }
+    return finalSet;
+  }
+
+  private Leader createLeader(LeaderRow row) {
+    Leader leader = new Leader(row.id,
+            row.counter,
+            row.timestamp,
+            row.hostname,
+            row.avgRequestProcessingLatency,
+            row.partitionVal);
+    leader.setReportBacklog(row.reportBacklog);
+    leader.setReportRate(row.reportRate);
+    leader.setRpcQueueLength(row.rpcQueueLength);
+    return leader;
+  }
+
+  private LeaderRow createPersistableLeaderInstance(Leader leader) {
+    LeaderRow row = new LeaderRow();
+    row.id = leader.getId();
+    row.counter = leader.getCounter();
+    row.hostname = leader.getHostName();
+    row.timestamp = leader.getTimeStamp();
+    row.avgRequestProcessingLatency = leader.getAvgRequestProcessingLatency();
+    row.partitionVal = leader.getPartitionVal();
+    row.reportBacklog = leader.getReportBacklog();
+    row.reportRate = leader.getReportRate();
+    row.rpcQueueLength = leader.getRpcQueueLength();
+    return row;
+  }
+}
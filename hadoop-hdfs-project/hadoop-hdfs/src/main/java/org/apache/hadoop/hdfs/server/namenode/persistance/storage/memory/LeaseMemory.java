@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.hadoop.hdfs.server.namenode.Lease;
+import org.apache.hadoop.hdfs.server.namenode.LeaseManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.LeaseDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class LeaseMemory extends LeaseDataAccess {
+
+  static class LeaseRow {
+
+    String holder;
+    long lastUpdate;
+    int holderId;
+  }
+  private static final MemoryTable.Column<LeaseRow> PK = new MemoryTable.Column<LeaseRow>() {
+
+    @Override
+    public Object get(LeaseRow row) {
+      return row.holder;
+    }
+  };
+  private static final MemoryTable.Column<LeaseRow> HOLDER_ID_IDX = new MemoryTable.Column<LeaseRow>() {
+
+    @Override
+    public Object get(LeaseRow row) {
+      return row.holderId;
+    }
+  };
+  private final MemoryTable<LeaseRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK, HOLDER_ID_IDX);
+
+  @Override
+  public int countAll() throws StorageException {
+    return table.count();
+  }
+
+  @Override
+  public Lease findByPKey(String holder) throws StorageException {
+    LeaseRow row = table.find(holder);
+    return row == null ? null : createLease(row);
+  }
+
+  @Override
+  public Lease findByHolderId(int holderId) throws StorageException {
+    List<LeaseRow> rows = table.scan(0, holderId);
+    if (rows.size() > 1) {
+      LeaseManager.LOG.error("Error in selectLeaseTableInternal: Multiple rows with same holderID");
+      return null;
+    } else if (rows.size() == 1) {
+      return createLease(rows.get(0));
+    } else {
+      LeaseManager.LOG.info("No rows found for holderID:" + holderId + " in Lease table");
+      return null;
+    }
+  }
+
+  @Override
+  public Collection<Lease> findByHolders(Collection<String> holders) throws StorageException {
+    return createList(table.findAll(holders));
+  }
+
+  @Override
+  public Collection<Lease> findAll() throws StorageException {
+    return createList(table.scan(null));
+  }
+
+  @Override
+  public Collection<Lease> findByTimeLimit(final long timeLimit) throws StorageException {
+    return createList(table.scan(new MemoryTable.Filter<LeaseRow>() {
+
+      @Override
+      public boolean matches(LeaseRow row) {
+        return row.lastUpdate < timeLimit;
+      }
+    }));
+  }
+
+  @Override
+  public void prepare(Collection<Lease> removed, Collection<Lease> newed, Collection<Lease> modified) throws StorageException {
+    for (Lease l : newed) {
+      table.save(createPersistableLeaseInstance(l));
+    }
+    for (Lease l : modified) {
+      table.save(createPersistableLeaseInstance(l));
+    }
+    for (Lease l : removed) {
+      table.delete(l.getHolder());
+    }
+  }
+
+  private SortedSet<Lease> createList(List<LeaseRow> rows) {
+    SortedSet<Lease> finalSet = new TreeSet<Lease>();
+    for (LeaseRow row : rows) {
+      finalSet.add(createLease(row));
+    }
+    return finalSet;
+  }
+
+  private Lease createLease(LeaseRow row) {
+    return new Lease(row.holder, row.holderId, row.lastUpdate);
+  }
+
+  private LeaseRow createPersistableLeaseInstance(Lease lease) {
+    LeaseRow row = new LeaseRow();
+    row.holder = lease.getHolder();
+    row.holderId = lease.getHolderID();
+    row.lastUpdate = lease.getLastUpdated();
+    return row;
+  }
+}
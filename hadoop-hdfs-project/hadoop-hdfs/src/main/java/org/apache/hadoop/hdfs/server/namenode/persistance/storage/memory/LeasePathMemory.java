@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.namenode.LeasePath;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.LeasePathDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class LeasePathMemory extends LeasePathDataAccess {
+
+  static class LeasePathRow {
+
+    int holderId;
+    String path;
+  }
+  private static final MemoryTable.Column<LeasePathRow> PK = new MemoryTable.Column<LeasePathRow>() {
+
+    @Override
+    public Object get(LeasePathRow row) {
+      return row.path;
+    }
+  };
+  private static final MemoryTable.Column<LeasePathRow> HOLDER_ID_IDX = new MemoryTable.Column<LeasePathRow>() {
+
+    @Override
+    public Object get(LeasePathRow row) {
+      return row.holderId;
+    }
+  };
+  private final MemoryTable<LeasePathRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK, HOLDER_ID_IDX);
+
+  @Override
+  public void prepare(Collection<LeasePath> removed, Collection<LeasePath> newed, Collection<LeasePath> modified) throws StorageException {
+    for (LeasePath lp : newed) {
+      table.save(createPersistableLeasePathInstance(lp));
+    }
+    for (LeasePath lp : modified) {
+      table.save(createPersistableLeasePathInstance(lp));
+    }
+    for (LeasePath lp : removed) {
+      table.delete(lp.getPath());
+    }
+  }
+
+  @Override
+  public Collection<LeasePath> findByHolderId(int holderId) throws StorageException {
+    return createList(table.scan(0, holderId));
+  }
+
+  @Override
+  public LeasePath findByPKey(String path) throws StorageException {
+    LeasePathRow row = table.find(path);
+    return row == null ? null : createLeasePath(row);
+  }
+
+  @Override
+  public Collection<LeasePath> findByPrefix(final String prefix) throws StorageException {
+    return createList(table.scan(new MemoryTable.Filter<LeasePathRow>() {
+
+      @Override
+      public boolean matches(LeasePathRow row) {
+        return row.path.startsWith(prefix);
+      }
+    }));
+  }
+
+  @Override
+  public Collection<LeasePath> findAll() throws StorageException {
+    return createList(table.scan(null));
+  }
+
+  private List<LeasePath> createList(Collection<LeasePathRow> rows) {
+    List<LeasePath> list = new ArrayList<LeasePath>();
+    for (LeasePathRow row : rows) {
+      list.add(createLeasePath(row));
+    }
+    return list;
+  }
+
+  private LeasePath createLeasePath(LeasePathRow row) {
+    return new LeasePath(row.path, row.holderId);
+  }
+
+  private LeasePathRow createPersistableLeasePathInstance(LeasePath lp) {
+    LeasePathRow row = new LeasePathRow();
+    row.holderId = lp.getHolderId();
+    row.path = lp.getPath();
+    return row;
+  }
+}
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageConnector;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory.MemorySession.LockMode;
+
+/**
+ * A storage which keeps the tables in the memory of the process, to run the
+ * namenode and the benchmarks on the row level lock code path without NDB.
+ * It has the row locks and the lock modes of NDB and can wait for a given
+ * latency on every round trip to emulate the network distance to the data
+ * nodes, so the transaction layer can be measured on a single machine.
+ *
+ * The tables live as long as the process, formatting the storage empties them.
+ */
+public enum MemoryConnector implements StorageConnector<MemorySession> {
+
+  INSTANCE;
+  public static final String MEMORY = "memory";
+  static final Log LOG = LogFactory.getLog(MemoryConnector.class);
+  private final ConcurrentMap<String, MemoryTable<?>> tables = new ConcurrentHashMap<String, MemoryTable<?>>();
+  private final ThreadLocal<MemorySession> sessionPool = new ThreadLocal<MemorySession>();
+  private volatile long latencyNanos = DFSConfigKeys.DFS_STORAGE_MEMORY_LATENCY_US_DEFAULT * 1000;
+  private volatile long lockWaitTimeout = DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_TIMEOUT_MS_DEFAULT;
+
+  @Override
+  public void setConfiguration(Configuration conf) {
+    latencyNanos = Math.max(0, conf.getLong(DFSConfigKeys.DFS_STORAGE_MEMORY_LATENCY_US_KEY,
+            DFSConfigKeys.DFS_STORAGE_MEMORY_LATENCY_US_DEFAULT)) * 1000;
+    lockWaitTimeout = Math.max(0, conf.getLong(DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_TIMEOUT_MS_KEY,
+            DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_TIMEOUT_MS_DEFAULT));
+    LOG.info("In-memory storage, round trip latency " + latencyNanos / 1000 + " us, lock wait timeout "
+            + lockWaitTimeout + " ms");
+  }
+
+  /**
+   * Returns the table with the given name, it is created with the given
+   * columns by the first data access which asks for it.
+   */
+  @SuppressWarnings("unchecked")
+  <R> MemoryTable<R> getTable(String name, MemoryTable.Column<R> primaryKey, MemoryTable.Column<R>... indexColumns) {
+    MemoryTable<?> table = tables.get(name);
+    if (table == null) {
+      MemoryTable<R> newTable = new MemoryTable<R>(name, this, primaryKey, indexColumns);
+      table = tables.putIfAbsent(name, newTable);
+      if (table == null) {
+        table = newTable;
+      }
+    }
+    return (MemoryTable<R>) table;
+  }
+
+  @Override
+  public MemorySession obtainSession() {
+    MemorySession session = sessionPool.get();
+    if (session == null) {
+      session = new MemorySession();
+      sessionPool.set(session);
+    }
+    return session;
+  }
+
+  @Override
+  public void beginTransaction() throws StorageException {
+    obtainSession().begin();
+  }
+
+  @Override
+  public void commit() throws StorageException {
+    MemorySession session = obtainSession();
+    if (session.currentTransaction() == null) {
+      throw new StorageException("The transaction is not began!");
+    }
+    roundTrip();
+    session.commit();
+  }
+
+  /**
+   * It rolls back only when the transaction is active.
+   */
+  @Override
+  public void rollback() {
+    MemorySession session = obtainSession();
+    if (session.currentTransaction() != null) {
+      roundTrip();
+      session.rollback();
+    }
+  }
+
+  /**
+   * Empties all the tables, the transactions in progress must have ended.
+   */
+  @Override
+  public boolean formatStorage() throws StorageException {
+    for (MemoryTable<?> table : tables.values()) {
+      table.clear();
+    }
+    // the generation stamp has a single row, it starts at zero
+    new GenerationStampMemory().prepare(0L);
+    return true;
+  }
+
+  @Override
+  public boolean isTransactionActive() {
+    return obtainSession().currentTransaction() != null;
+  }
+
+  @Override
+  public void stopStorage() {
+  }
+
+  @Override
+  public void readLock() {
+    obtainSession().setLockMode(LockMode.SHARED);
+  }
+
+  @Override
+  public void writeLock() {
+    obtainSession().setLockMode(LockMode.EXCLUSIVE);
+  }
+
+  @Override
+  public void readCommitted() {
+    obtainSession().setLockMode(LockMode.READ_COMMITTED);
+  }
+
+  /**
+   * The tables are not partitioned, there is no node to start on.
+   */
+  @Override
+  public boolean setPartitionKey(Class className, Object key) {
+    return false;
+  }
+
+  @Override
+  public boolean isTransientError(Throwable error) {
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof LockWaitTimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  long getLockWaitTimeout() {
+    return lockWaitTimeout;
+  }
+
+  /**
+   * Waits for the latency of a round trip to the storage.
+   */
+  void roundTrip() {
+    obtainSession().roundTrips++;
+    long latency = latencyNanos;
+    if (latency <= 0) {
+      return;
+    }
+    long deadline = System.nanoTime() + latency;
+    for (long left = latency; left > 0; left = deadline - System.nanoTime()) {
+      LockSupport.parkNanos(left);
+    }
+  }
+}
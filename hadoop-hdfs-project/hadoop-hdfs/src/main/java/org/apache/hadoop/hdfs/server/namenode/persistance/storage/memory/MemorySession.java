@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+/**
+ * The session of a thread with the in-memory storage. Like a ClusterJ session
+ * it keeps its lock mode across transactions and runs one transaction at a
+ * time. It counts the round trips and the lock waits of its thread, so a
+ * benchmark can charge them to the operations it runs.
+ */
+public class MemorySession {
+
+  public enum LockMode {
+
+    SHARED, EXCLUSIVE, READ_COMMITTED
+  }
+  private LockMode lockMode = LockMode.SHARED;
+  private MemoryTransaction transaction;
+  // statistics of the thread, they are never reset
+  long roundTrips;
+  long lockWaits;
+  long lockTimeouts;
+
+  public LockMode getLockMode() {
+    return lockMode;
+  }
+
+  public void setLockMode(LockMode lockMode) {
+    this.lockMode = lockMode;
+  }
+
+  /**
+   * @return the number of round trips the session made to the storage
+   */
+  public long getRoundTrips() {
+    return roundTrips;
+  }
+
+  /**
+   * @return the number of row locks the session had to wait for, including
+   * the ones which timed out
+   */
+  public long getLockWaits() {
+    return lockWaits;
+  }
+
+  public long getLockTimeouts() {
+    return lockTimeouts;
+  }
+
+  /**
+   * @return the active transaction, null if there is none
+   */
+  MemoryTransaction currentTransaction() {
+    return transaction;
+  }
+
+  void begin() throws StorageException {
+    if (transaction != null) {
+      throw new StorageException("The transaction is already active!");
+    }
+    transaction = new MemoryTransaction();
+  }
+
+  void commit() throws StorageException {
+    if (transaction == null) {
+      throw new StorageException("The transaction is not began!");
+    }
+    try {
+      transaction.commit();
+    } finally {
+      transaction = null;
+    }
+  }
+
+  void rollback() {
+    if (transaction != null) {
+      try {
+        transaction.rollback();
+      } finally {
+        transaction = null;
+      }
+    }
+  }
+}
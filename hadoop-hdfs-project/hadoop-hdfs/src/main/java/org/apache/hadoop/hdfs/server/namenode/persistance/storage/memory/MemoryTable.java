@@ -0,0 +1,447 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory.MemorySession.LockMode;
+
+/**
+ * A table of the in-memory storage. The committed rows are kept in a
+ * concurrent map by primary key and every secondary index maps an index key
+ * to the primary keys of its rows. A row is never changed after it is saved,
+ * an update saves a new row.
+ *
+ * Reads lock the rows in the lock mode of the session as NDB does: shared and
+ * exclusive locks are held until the transaction ends, read committed reads
+ * take none and reads outside a transaction take none either. Writes take an
+ * exclusive lock and are buffered by the transaction, the other transactions
+ * see them after the commit. A lock which is not granted within the lock wait
+ * timeout fails with a {@link LockWaitTimeoutException}, which also breaks the
+ * deadlocks. Unlike NDB, reading a primary key which has no row locks the
+ * key.
+ *
+ * Every read is one round trip to the storage, the writes are sent with the
+ * commit.
+ */
+public class MemoryTable<R> {
+
+  /**
+   * A column, or a list of columns, of the rows.
+   */
+  public interface Column<R> {
+
+    Object get(R row);
+  }
+
+  public interface Filter<R> {
+
+    boolean matches(R row);
+  }
+
+  /**
+   * The lock of a row, it is in the lock table of its table while it has
+   * owners. A lock which lost its last owner is removed, the transactions
+   * waiting for it look it up again.
+   */
+  static class RowLock {
+
+    private final ConcurrentMap<Object, RowLock> lockTable;
+    private final Object key;
+    private MemoryTransaction exclusiveOwner;
+    private final Set<MemoryTransaction> sharedOwners = new HashSet<MemoryTransaction>(2);
+    private boolean removed = false;
+
+    RowLock(ConcurrentMap<Object, RowLock> lockTable, Object key) {
+      this.lockTable = lockTable;
+      this.key = key;
+    }
+
+    private boolean isGrantable(MemoryTransaction tx, boolean exclusive) {
+      if (exclusiveOwner != null && exclusiveOwner != tx) {
+        return false;
+      }
+      if (!exclusive) {
+        return true;
+      }
+      return sharedOwners.isEmpty() || (sharedOwners.size() == 1 && sharedOwners.contains(tx));
+    }
+
+    private void grant(MemoryTransaction tx, boolean exclusive) {
+      if (exclusive) {
+        exclusiveOwner = tx;
+        sharedOwners.remove(tx);
+      } else if (exclusiveOwner != tx) {
+        sharedOwners.add(tx);
+      }
+    }
+
+    synchronized void release(MemoryTransaction tx) {
+      if (exclusiveOwner == tx) {
+        exclusiveOwner = null;
+      }
+      sharedOwners.remove(tx);
+      if (exclusiveOwner == null && sharedOwners.isEmpty()) {
+        removed = true;
+        lockTable.remove(key, this);
+      }
+      notifyAll();
+    }
+  }
+  private final String name;
+  private final MemoryConnector connector;
+  private final Column<R> primaryKey;
+  private final List<Column<R>> indexColumns;
+  private final List<ConcurrentMap<Object, Set<Object>>> indexes = new ArrayList<ConcurrentMap<Object, Set<Object>>>();
+  private final ConcurrentMap<Object, R> rows = new ConcurrentHashMap<Object, R>();
+  private final ConcurrentMap<Object, RowLock> locks = new ConcurrentHashMap<Object, RowLock>();
+
+  /**
+   * @param indexColumns the columns of the secondary indexes, the rows with
+   * a null index key are not indexed
+   */
+  MemoryTable(String name, MemoryConnector connector, Column<R> primaryKey, Column<R>... indexColumns) {
+    this.name = name;
+    this.connector = connector;
+    this.primaryKey = primaryKey;
+    this.indexColumns = Arrays.asList(indexColumns);
+    for (int i = 0; i < indexColumns.length; i++) {
+      indexes.add(new ConcurrentHashMap<Object, Set<Object>>());
+    }
+  }
+
+  /**
+   * @return the key of a primary key or index with several columns
+   */
+  public static List<Object> key(Object... values) {
+    return Arrays.asList(values);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public R find(Object key) throws StorageException {
+    connector.roundTrip();
+    return read(connector.obtainSession(), key);
+  }
+
+  /**
+   * Reads the rows of the primary keys in one round trip, the keys without a
+   * row are skipped.
+   */
+  public List<R> findAll(Collection<?> keys) throws StorageException {
+    connector.roundTrip();
+    MemorySession session = connector.obtainSession();
+    List<R> result = new ArrayList<R>(keys.size());
+    for (Object key : keys) {
+      R row = read(session, key);
+      if (row != null) {
+        result.add(row);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Scans the whole table.
+   *
+   * @param filter the rows to return, null for all the rows
+   */
+  public List<R> scan(Filter<R> filter) throws StorageException {
+    return select(-1, null, filter, null, -1);
+  }
+
+  /**
+   * Scans the rows of an index key.
+   *
+   * @param index the position of the index in the index columns
+   */
+  public List<R> scan(int index, Object indexKey) throws StorageException {
+    return select(index, Collections.singleton(indexKey), null, null, -1);
+  }
+
+  /**
+   * Scans the rows of several keys of an index in one round trip.
+   *
+   * @param index the position of the index in the index columns
+   */
+  public List<R> scanAll(int index, Collection<?> indexKeys) throws StorageException {
+    return select(index, new HashSet<Object>(indexKeys), null, null, -1);
+  }
+
+  /**
+   * Scans the rows of some keys of an index, or the whole table, and locks
+   * the rows it returns.
+   *
+   * @param index the position of the index in the index columns, -1 to scan
+   * the whole table
+   * @param indexKeys the keys of the index to scan
+   * @param filter the rows to return, null for all the rows
+   * @param order the order of the rows, null if the order does not matter
+   * @param limit the maximum number of rows to return, -1 for all the rows
+   */
+  public List<R> select(int index, Set<?> indexKeys, Filter<R> filter, Comparator<? super R> order, int limit)
+          throws StorageException {
+    connector.roundTrip();
+    MemorySession session = connector.obtainSession();
+    MemoryTransaction tx = session.currentTransaction();
+    Map<Object, Object> written = tx == null ? null : tx.getWrites(this);
+
+    List<Object> keys = new ArrayList<Object>();
+    if (index < 0) {
+      keys.addAll(rows.keySet());
+    } else {
+      for (Object indexKey : indexKeys) {
+        Set<Object> indexed = indexKey == null ? null : indexes.get(index).get(indexKey);
+        if (indexed != null) {
+          keys.addAll(indexed);
+        }
+      }
+    }
+    List<R> candidates = new ArrayList<R>();
+    for (Object key : keys) {
+      if (written != null && written.containsKey(key)) {
+        continue;
+      }
+      R row = rows.get(key);
+      if (row != null && matches(row, index, indexKeys, filter)) {
+        candidates.add(row);
+      }
+    }
+    if (written != null) {
+      for (Object value : written.values()) {
+        R row = cast(value);
+        if (row != null && matches(row, index, indexKeys, filter)) {
+          candidates.add(row);
+        }
+      }
+    }
+    if (order != null) {
+      Collections.sort(candidates, order);
+    }
+
+    List<R> result = new ArrayList<R>();
+    for (R candidate : candidates) {
+      if (limit >= 0 && result.size() >= limit) {
+        break;
+      }
+      Object key = primaryKey.get(candidate);
+      R row = candidate;
+      if (tx != null && session.getLockMode() != LockMode.READ_COMMITTED
+              && (written == null || !written.containsKey(key))) {
+        lock(tx, key, session.getLockMode() == LockMode.EXCLUSIVE);
+        // the row may have changed while the transaction waited for the lock
+        row = rows.get(key);
+        if (row == null || !matches(row, index, indexKeys, filter)) {
+          continue;
+        }
+      }
+      result.add(row);
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of committed rows
+   */
+  public int count() throws StorageException {
+    connector.roundTrip();
+    return rows.size();
+  }
+
+  /**
+   * Counts the committed rows without locking them, as the counts through the
+   * MySQL server do.
+   */
+  public int count(Filter<R> filter) throws StorageException {
+    connector.roundTrip();
+    int count = 0;
+    for (R row : rows.values()) {
+      if (filter.matches(row)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public void save(R row) throws StorageException {
+    write(primaryKey.get(row), row);
+  }
+
+  public void delete(Object key) throws StorageException {
+    write(key, null);
+  }
+
+  /**
+   * Deletes all the rows the transaction can see.
+   */
+  public void deleteAll() throws StorageException {
+    MemoryTransaction tx = connector.obtainSession().currentTransaction();
+    Set<Object> keys = new HashSet<Object>(rows.keySet());
+    Map<Object, Object> written = tx == null ? null : tx.getWrites(this);
+    if (written != null) {
+      keys.addAll(written.keySet());
+    }
+    for (Object key : keys) {
+      delete(key);
+    }
+  }
+
+  /**
+   * Deletes all the rows without locking them, only used to format the
+   * storage.
+   */
+  void clear() {
+    rows.clear();
+    for (ConcurrentMap<Object, Set<Object>> index : indexes) {
+      index.clear();
+    }
+  }
+
+  /**
+   * Applies the writes of a committing transaction, it holds the exclusive
+   * locks of the rows.
+   */
+  void apply(Map<Object, Object> writes) {
+    for (Map.Entry<Object, Object> write : writes.entrySet()) {
+      apply(write.getKey(), cast(write.getValue()));
+    }
+  }
+
+  private void apply(Object key, R row) {
+    R old = row == null ? rows.remove(key) : rows.put(key, row);
+    for (int i = 0; i < indexColumns.size(); i++) {
+      Column<R> column = indexColumns.get(i);
+      Object oldIndexKey = old == null ? null : column.get(old);
+      Object newIndexKey = row == null ? null : column.get(row);
+      if (oldIndexKey != null && oldIndexKey.equals(newIndexKey)) {
+        continue;
+      }
+      if (oldIndexKey != null) {
+        Set<Object> keys = indexes.get(i).get(oldIndexKey);
+        if (keys != null) {
+          keys.remove(key);
+        }
+      }
+      if (newIndexKey != null) {
+        Set<Object> keys = indexes.get(i).get(newIndexKey);
+        if (keys == null) {
+          // the empty key sets are not removed, a concurrent commit may be adding to it
+          Set<Object> newKeys = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+          keys = indexes.get(i).putIfAbsent(newIndexKey, newKeys);
+          if (keys == null) {
+            keys = newKeys;
+          }
+        }
+        keys.add(key);
+      }
+    }
+  }
+
+  private R read(MemorySession session, Object key) throws StorageException {
+    MemoryTransaction tx = session.currentTransaction();
+    if (tx != null) {
+      Map<Object, Object> written = tx.getWrites(this);
+      if (written != null && written.containsKey(key)) {
+        return cast(written.get(key));
+      }
+      if (session.getLockMode() != LockMode.READ_COMMITTED) {
+        lock(tx, key, session.getLockMode() == LockMode.EXCLUSIVE);
+      }
+    }
+    return rows.get(key);
+  }
+
+  private void write(Object key, R row) throws StorageException {
+    MemoryTransaction tx = connector.obtainSession().currentTransaction();
+    if (tx != null) {
+      lock(tx, key, true);
+      tx.write(this, key, row);
+      return;
+    }
+    // a write outside a transaction commits at once
+    connector.roundTrip();
+    MemoryTransaction autoCommit = new MemoryTransaction();
+    lock(autoCommit, key, true);
+    autoCommit.write(this, key, row);
+    autoCommit.commit();
+  }
+
+  private boolean matches(R row, int index, Set<?> indexKeys, Filter<R> filter) {
+    if (index >= 0 && !indexKeys.contains(indexColumns.get(index).get(row))) {
+      return false;
+    }
+    return filter == null || filter.matches(row);
+  }
+
+  private void lock(MemoryTransaction tx, Object key, boolean exclusive) throws StorageException {
+    long deadline = System.currentTimeMillis() + connector.getLockWaitTimeout();
+    boolean waited = false;
+    while (true) {
+      RowLock lock = locks.get(key);
+      if (lock == null) {
+        RowLock newLock = new RowLock(locks, key);
+        lock = locks.putIfAbsent(key, newLock);
+        if (lock == null) {
+          lock = newLock;
+        }
+      }
+      synchronized (lock) {
+        while (!lock.removed && !lock.isGrantable(tx, exclusive)) {
+          if (!waited) {
+            waited = true;
+            connector.obtainSession().lockWaits++;
+          }
+          long wait = deadline - System.currentTimeMillis();
+          if (wait <= 0) {
+            connector.obtainSession().lockTimeouts++;
+            throw new LockWaitTimeoutException(String.format("Lock wait timeout on %s row %s (%s)",
+                    name, key, exclusive ? "exclusive" : "shared"));
+          }
+          try {
+            lock.wait(wait);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(ex);
+          }
+        }
+        if (!lock.removed) {
+          lock.grant(tx, exclusive);
+          tx.addLock(lock);
+          return;
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private R cast(Object row) {
+    return (R) row;
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A transaction of the in-memory storage. It holds the row locks it took and
+ * buffers its writes, a row is saved or deleted (null) by primary key. The
+ * writes are applied to the tables at commit, before the locks are released.
+ * A transaction is used by the thread of its session only.
+ */
+class MemoryTransaction {
+
+  private final Map<MemoryTable<?>, Map<Object, Object>> writes = new LinkedHashMap<MemoryTable<?>, Map<Object, Object>>();
+  private final Set<MemoryTable.RowLock> locks = new HashSet<MemoryTable.RowLock>();
+
+  /**
+   * @return the rows the transaction wrote to the table by primary key, null
+   * if it wrote none
+   */
+  Map<Object, Object> getWrites(MemoryTable<?> table) {
+    return writes.get(table);
+  }
+
+  void write(MemoryTable<?> table, Object key, Object row) {
+    Map<Object, Object> tableWrites = writes.get(table);
+    if (tableWrites == null) {
+      tableWrites = new LinkedHashMap<Object, Object>();
+      writes.put(table, tableWrites);
+    }
+    tableWrites.put(key, row);
+  }
+
+  void addLock(MemoryTable.RowLock lock) {
+    locks.add(lock);
+  }
+
+  void commit() {
+    try {
+      for (Map.Entry<MemoryTable<?>, Map<Object, Object>> entry : writes.entrySet()) {
+        entry.getKey().apply(entry.getValue());
+      }
+    } finally {
+      release();
+    }
+  }
+
+  void rollback() {
+    release();
+  }
+
+  private void release() {
+    writes.clear();
+    for (MemoryTable.RowLock lock : locks) {
+      lock.release(this);
+    }
+    locks.clear();
+  }
+}
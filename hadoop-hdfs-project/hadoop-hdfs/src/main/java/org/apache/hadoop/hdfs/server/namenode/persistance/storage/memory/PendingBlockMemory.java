@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.blockmanagement.PendingBlockInfo;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.PendingBlockDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class PendingBlockMemory extends PendingBlockDataAccess {
+
+  static class PendingBlockRow {
+
+    long blockId;
+    long timestamp;
+    int numReplicasInProgress;
+  }
+  private static final MemoryTable.Column<PendingBlockRow> PK = new MemoryTable.Column<PendingBlockRow>() {
+
+    @Override
+    public Object get(PendingBlockRow row) {
+      return row.blockId;
+    }
+  };
+  private static final Comparator<PendingBlockRow> BY_TIME_STAMP = new Comparator<PendingBlockRow>() {
+
+    @Override
+    public int compare(PendingBlockRow o1, PendingBlockRow o2) {
+      if (o1.timestamp != o2.timestamp) {
+        return o1.timestamp < o2.timestamp ? -1 : 1;
+      }
+      return o1.blockId < o2.blockId ? -1 : (o1.blockId == o2.blockId ? 0 : 1);
+    }
+  };
+  private final MemoryTable<PendingBlockRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK);
+
+  @Override
+  public int countValidPendingBlocks(final long timeLimit) throws StorageException {
+    return table.count(new MemoryTable.Filter<PendingBlockRow>() {
+
+      @Override
+      public boolean matches(PendingBlockRow row) {
+        return row.timestamp > timeLimit;
+      }
+    });
+  }
+
+  @Override
+  public void prepare(Collection<PendingBlockInfo> removed, Collection<PendingBlockInfo> newed, Collection<PendingBlockInfo> modified) throws StorageException {
+    for (PendingBlockInfo p : newed) {
+      table.save(createPersistablePendingBlockInfo(p));
+    }
+    for (PendingBlockInfo p : modified) {
+      table.save(createPersistablePendingBlockInfo(p));
+    }
+    for (PendingBlockInfo p : removed) {
+      table.delete(p.getBlockId());
+    }
+  }
+
+  @Override
+  public PendingBlockInfo findByPKey(long blockId) throws StorageException {
+    PendingBlockRow row = table.find(blockId);
+    return row == null ? null : createPendingBlockInfo(row);
+  }
+
+  @Override
+  public List<PendingBlockInfo> findByBlockIds(List<Long> blockIds) throws StorageException {
+    return createList(table.findAll(blockIds));
+  }
+
+  @Override
+  public List<PendingBlockInfo> findAll() throws StorageException {
+    return createList(table.scan(null));
+  }
+
+  @Override
+  public List<PendingBlockInfo> findByTimeLimit(final long timeLimit) throws StorageException {
+    return createList(table.scan(new MemoryTable.Filter<PendingBlockRow>() {
+
+      @Override
+      public boolean matches(PendingBlockRow row) {
+        return row.timestamp < timeLimit;
+      }
+    }));
+  }
+
+  @Override
+  public List<PendingBlockInfo> findByTimeRange(final long afterTime, final long afterBlockId, final long timeLimit, int limit) throws StorageException {
+    return createList(table.select(-1, null, new MemoryTable.Filter<PendingBlockRow>() {
+
+      @Override
+      public boolean matches(PendingBlockRow row) {
+        boolean after = row.timestamp > afterTime
+                || (row.timestamp == afterTime && row.blockId > afterBlockId);
+        return after && row.timestamp < timeLimit;
+      }
+    }, BY_TIME_STAMP, limit));
+  }
+
+  private List<PendingBlockInfo> createList(Collection<PendingBlockRow> rows) {
+    List<PendingBlockInfo> list = new ArrayList<PendingBlockInfo>();
+    for (PendingBlockRow row : rows) {
+      list.add(createPendingBlockInfo(row));
+    }
+    return list;
+  }
+
+  private PendingBlockInfo createPendingBlockInfo(PendingBlockRow row) {
+    return new PendingBlockInfo(row.blockId, row.timestamp, row.numReplicasInProgress);
+  }
+
+  private PendingBlockRow createPersistablePendingBlockInfo(PendingBlockInfo pendingBlock) {
+    PendingBlockRow row = new PendingBlockRow();
+    row.blockId = pendingBlock.getBlockId();
+    row.numReplicasInProgress = pendingBlock.getNumReplicas();
+    row.timestamp = pendingBlock.getTimeStamp();
+    return row;
+  }
+}
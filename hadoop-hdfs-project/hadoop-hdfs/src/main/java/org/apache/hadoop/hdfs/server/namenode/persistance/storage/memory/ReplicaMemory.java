@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.blockmanagement.IndexedReplica;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.ReplicaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class ReplicaMemory extends ReplicaDataAccess {
+
+  static class ReplicaRow {
+
+    long blockId;
+    String storageId;
+    int index;
+  }
+  private static final MemoryTable.Column<ReplicaRow> PK = new MemoryTable.Column<ReplicaRow>() {
+
+    @Override
+    public Object get(ReplicaRow row) {
+      return MemoryTable.key(row.blockId, row.storageId);
+    }
+  };
+  private static final MemoryTable.Column<ReplicaRow> BLOCK_ID_IDX = new MemoryTable.Column<ReplicaRow>() {
+
+    @Override
+    public Object get(ReplicaRow row) {
+      return row.blockId;
+    }
+  };
+  private static final MemoryTable.Column<ReplicaRow> STORAGE_ID_IDX = new MemoryTable.Column<ReplicaRow>() {
+
+    @Override
+    public Object get(ReplicaRow row) {
+      return row.storageId;
+    }
+  };
+  private final MemoryTable<ReplicaRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK,
+          BLOCK_ID_IDX, STORAGE_ID_IDX);
+
+  @Override
+  public List<IndexedReplica> findReplicasById(long id) throws StorageException {
+    return createReplicaList(table.scan(0, id));
+  }
+
+  @Override
+  public List<IndexedReplica> findReplicasByIds(List<Long> blockIds) throws StorageException {
+    return createReplicaList(table.scanAll(0, blockIds));
+  }
+
+  /**
+   * @return the ids of the blocks which have a replica on the storage
+   */
+  List<Long> findBlockIdsByStorageId(String storageId) throws StorageException {
+    List<Long> blockIds = new ArrayList<Long>();
+    for (ReplicaRow row : table.scan(1, storageId)) {
+      blockIds.add(row.blockId);
+    }
+    return blockIds;
+  }
+
+  @Override
+  public void prepare(Collection<IndexedReplica> removed, Collection<IndexedReplica> newed, Collection<IndexedReplica> modified) throws StorageException {
+    for (IndexedReplica replica : removed) {
+      table.delete(MemoryTable.key(replica.getBlockId(), replica.getStorageId()));
+    }
+    for (IndexedReplica replica : newed) {
+      table.save(createPersistable(replica));
+    }
+    for (IndexedReplica replica : modified) {
+      table.save(createPersistable(replica));
+    }
+  }
+
+  private List<IndexedReplica> createReplicaList(List<ReplicaRow> rows) {
+    List<IndexedReplica> replicas = new ArrayList<IndexedReplica>(rows.size());
+    for (ReplicaRow row : rows) {
+      replicas.add(new IndexedReplica(row.blockId, row.storageId, row.index));
+    }
+    return replicas;
+  }
+
+  private ReplicaRow createPersistable(IndexedReplica replica) {
+    ReplicaRow row = new ReplicaRow();
+    row.blockId = replica.getBlockId();
+    row.index = replica.getIndex();
+    row.storageId = replica.getStorageId();
+    return row;
+  }
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.blockmanagement.ReplicaUnderConstruction;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.ReplicaUnderConstruntionDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class ReplicaUnderConstructionMemory extends ReplicaUnderConstruntionDataAccess {
+
+  static class ReplicaUcRow {
+
+    long blockId;
+    String storageId;
+    int index;
+    int state;
+  }
+  private static final MemoryTable.Column<ReplicaUcRow> PK = new MemoryTable.Column<ReplicaUcRow>() {
+
+    @Override
+    public Object get(ReplicaUcRow row) {
+      return MemoryTable.key(row.blockId, row.storageId);
+    }
+  };
+  private static final MemoryTable.Column<ReplicaUcRow> BLOCK_ID_IDX = new MemoryTable.Column<ReplicaUcRow>() {
+
+    @Override
+    public Object get(ReplicaUcRow row) {
+      return row.blockId;
+    }
+  };
+  private final MemoryTable<ReplicaUcRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK, BLOCK_ID_IDX);
+
+  @Override
+  public void prepare(Collection<ReplicaUnderConstruction> removed, Collection<ReplicaUnderConstruction> newed, Collection<ReplicaUnderConstruction> modified) throws StorageException {
+    for (ReplicaUnderConstruction replica : removed) {
+      table.delete(MemoryTable.key(replica.getBlockId(), replica.getStorageId()));
+    }
+    for (ReplicaUnderConstruction replica : newed) {
+      table.save(createPersistable(replica));
+    }
+  }
+
+  @Override
+  public List<ReplicaUnderConstruction> findReplicaUnderConstructionByBlockId(long blockId) throws StorageException {
+    return createReplicaList(table.scan(0, blockId));
+  }
+
+  @Override
+  public List<ReplicaUnderConstruction> findReplicaUnderConstructionByBlockIds(List<Long> blockIds) throws StorageException {
+    return createReplicaList(table.scanAll(0, blockIds));
+  }
+
+  private List<ReplicaUnderConstruction> createReplicaList(List<ReplicaUcRow> rows) {
+    List<ReplicaUnderConstruction> replicas = new ArrayList<ReplicaUnderConstruction>(rows.size());
+    for (ReplicaUcRow row : rows) {
+      replicas.add(new ReplicaUnderConstruction(HdfsServerConstants.ReplicaState.values()[row.state],
+              row.storageId, row.blockId, row.index));
+    }
+    return replicas;
+  }
+
+  private ReplicaUcRow createPersistable(ReplicaUnderConstruction replica) {
+    ReplicaUcRow row = new ReplicaUcRow();
+    row.blockId = replica.getBlockId();
+    row.index = replica.getIndex();
+    row.storageId = replica.getStorageId();
+    row.state = replica.getState().ordinal();
+    return row;
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import org.apache.hadoop.hdfs.server.common.StorageInfo;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.StorageInfoDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class StorageInfoMemory extends StorageInfoDataAccess {
+
+  static class StorageInfoRow {
+
+    int id;
+    int layoutVersion;
+    int namespaceId;
+    String clusterId;
+    long creationTime;
+  }
+  private static final MemoryTable.Column<StorageInfoRow> PK = new MemoryTable.Column<StorageInfoRow>() {
+
+    @Override
+    public Object get(StorageInfoRow row) {
+      return row.id;
+    }
+  };
+  private final MemoryTable<StorageInfoRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK);
+
+  @Override
+  public StorageInfo findByPk(int infoType) throws StorageException {
+    StorageInfoRow row = table.find(infoType);
+    if (row == null) {
+      return null;
+    }
+    return new StorageInfo(row.layoutVersion, row.namespaceId, row.clusterId, row.creationTime);
+  }
+
+  @Override
+  public void prepare(StorageInfo storageInfo) throws StorageException {
+    StorageInfoRow row = new StorageInfoRow();
+    row.id = StorageInfo.DEFAULT_ROW_ID;
+    row.clusterId = storageInfo.getClusterID();
+    row.layoutVersion = storageInfo.layoutVersion;
+    row.namespaceId = storageInfo.getNamespaceID();
+    row.creationTime = storageInfo.getCTime();
+    table.save(row);
+  }
+}
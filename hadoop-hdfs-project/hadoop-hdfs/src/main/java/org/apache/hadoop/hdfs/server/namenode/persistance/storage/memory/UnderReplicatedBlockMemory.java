@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.blockmanagement.UnderReplicatedBlock;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.UnderReplicatedBlockDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+
+public class UnderReplicatedBlockMemory extends UnderReplicatedBlockDataAccess {
+
+  static class UnderReplicatedBlockRow {
+
+    long blockId;
+    int level;
+  }
+  private static final MemoryTable.Column<UnderReplicatedBlockRow> PK = new MemoryTable.Column<UnderReplicatedBlockRow>() {
+
+    @Override
+    public Object get(UnderReplicatedBlockRow row) {
+      return row.blockId;
+    }
+  };
+  private static final MemoryTable.Column<UnderReplicatedBlockRow> LEVEL_IDX = new MemoryTable.Column<UnderReplicatedBlockRow>() {
+
+    @Override
+    public Object get(UnderReplicatedBlockRow row) {
+      return row.level;
+    }
+  };
+  private static final Comparator<UnderReplicatedBlockRow> BY_BLOCK_ID = new Comparator<UnderReplicatedBlockRow>() {
+
+    @Override
+    public int compare(UnderReplicatedBlockRow o1, UnderReplicatedBlockRow o2) {
+      return o1.blockId < o2.blockId ? -1 : (o1.blockId == o2.blockId ? 0 : 1);
+    }
+  };
+  private final MemoryTable<UnderReplicatedBlockRow> table = MemoryConnector.INSTANCE.getTable(TABLE_NAME, PK, LEVEL_IDX);
+
+  @Override
+  public int countByLevel(final int level) throws StorageException {
+    return table.count(new MemoryTable.Filter<UnderReplicatedBlockRow>() {
+
+      @Override
+      public boolean matches(UnderReplicatedBlockRow row) {
+        return row.level == level;
+      }
+    });
+  }
+
+  @Override
+  public int countLessThanALevel(final int level) throws StorageException {
+    return table.count(new MemoryTable.Filter<UnderReplicatedBlockRow>() {
+
+      @Override
+      public boolean matches(UnderReplicatedBlockRow row) {
+        return row.level < level;
+      }
+    });
+  }
+
+  @Override
+  public UnderReplicatedBlock findByBlockId(long blockId) throws StorageException {
+    UnderReplicatedBlockRow row = table.find(blockId);
+    return row == null ? null : createUrBlock(row);
+  }
+
+  @Override
+  public List<UnderReplicatedBlock> findByBlockIds(List<Long> blockIds) throws StorageException {
+    return createUrBlockList(table.findAll(blockIds));
+  }
+
+  @Override
+  public void prepare(Collection<UnderReplicatedBlock> removed, Collection<UnderReplicatedBlock> newed, Collection<UnderReplicatedBlock> modified) throws StorageException {
+    for (UnderReplicatedBlock urBlock : removed) {
+      table.delete(urBlock.getBlockId());
+    }
+    for (UnderReplicatedBlock urBlock : newed) {
+      table.save(createPersistable(urBlock));
+    }
+    for (UnderReplicatedBlock urBlock : modified) {
+      table.save(createPersistable(urBlock));
+    }
+  }
+
+  @Override
+  public int countAll() throws StorageException {
+    return table.count();
+  }
+
+  @Override
+  public List<UnderReplicatedBlock> findAll() throws StorageException {
+    return createUrBlockList(table.scan(null));
+  }
+
+  @Override
+  public List<UnderReplicatedBlock> findByLevel(int level) throws StorageException {
+    return createUrBlockList(table.scan(0, level));
+  }
+
+  @Override
+  public List<UnderReplicatedBlock> findByLevelFromBlockId(int level, final long fromBlockId, int limit) throws StorageException {
+    return createUrBlockList(table.select(0, Collections.singleton(level),
+            new MemoryTable.Filter<UnderReplicatedBlockRow>() {
+
+              @Override
+              public boolean matches(UnderReplicatedBlockRow row) {
+                return row.blockId >= fromBlockId;
+              }
+            }, BY_BLOCK_ID, limit));
+  }
+
+  @Override
+  public List<UnderReplicatedBlock> findAllLessThanLevel(final int level) throws StorageException {
+    return createUrBlockList(table.scan(new MemoryTable.Filter<UnderReplicatedBlockRow>() {
+
+      @Override
+      public boolean matches(UnderReplicatedBlockRow row) {
+        return row.level < level;
+      }
+    }));
+  }
+
+  @Override
+  public void removeAll() throws StorageException {
+    table.deleteAll();
+  }
+
+  private UnderReplicatedBlockRow createPersistable(UnderReplicatedBlock block) {
+    UnderReplicatedBlockRow row = new UnderReplicatedBlockRow();
+    row.blockId = block.getBlockId();
+    row.level = block.getLevel();
+    return row;
+  }
+
+  private UnderReplicatedBlock createUrBlock(UnderReplicatedBlockRow row) {
+    return new UnderReplicatedBlock(row.level, row.blockId);
+  }
+
+  private List<UnderReplicatedBlock> createUrBlockList(List<UnderReplicatedBlockRow> rows) {
+    List<UnderReplicatedBlock> blocks = new ArrayList<UnderReplicatedBlock>();
+    for (UnderReplicatedBlockRow row : rows) {
+      blocks.add(createUrBlock(row));
+    }
+    return blocks;
+  }
+}
@@ -126,7 +126,21 @@ public enum MysqlServerConnector implements StorageConnector<Connection> {
   }
 
   @Override
-  public void setPartitionKey(Class className, Object key) {
-    throw new UnsupportedOperationException("Not supported yet.");
+  public boolean isTransientError(Throwable error) {
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof SQLException) {
+        int code = ((SQLException) t).getErrorCode();
+        // ER_LOCK_WAIT_TIMEOUT and ER_LOCK_DEADLOCK
+        if (code == 1205 || code == 1213 || "40001".equals(((SQLException) t).getSQLState())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean setPartitionKey(Class className, Object key) {
+    return false;
   }
 }
@@ -37,6 +37,7 @@ import org.apache.avro.reflect.Union;
 // Declare subclasses for Avro's denormalized representation
 @Union({Void.class,
       DatanodeCommand.Register.class, DatanodeCommand.Finalize.class,
+      DatanodeCommand.BlockReport.class,
       BlockCommand.class, UpgradeCommand.class,
       BlockRecoveryCommand.class, KeyUpdateCommand.class})
 
@@ -49,6 +50,12 @@ public abstract class DatanodeCommand extends ServerCommand {
     public void write(DataOutput out) {}
   }
 
+  static class BlockReport extends DatanodeCommand {
+    private BlockReport() {super(DatanodeProtocol.DNA_BLOCKREPORT);}
+    public void readFields(DataInput in) {}
+    public void write(DataOutput out) {}
+  }
+
   public static class Finalize extends DatanodeCommand {
     String blockPoolId;
     private Finalize() {
@@ -77,6 +84,10 @@ public abstract class DatanodeCommand extends ServerCommand {
         new WritableFactory() {
           public Writable newInstance() {return new Register();}
         });
+    WritableFactories.setFactory(BlockReport.class,
+        new WritableFactory() {
+          public Writable newInstance() {return new BlockReport();}
+        });
     WritableFactories.setFactory(Finalize.class,
         new WritableFactory() {
           public Writable newInstance() {return new Finalize();}
@@ -84,6 +95,7 @@ public abstract class DatanodeCommand extends ServerCommand {
   }
 
   public static final DatanodeCommand REGISTER = new Register();
+  public static final DatanodeCommand BLOCKREPORT = new BlockReport();
   
   public DatanodeCommand() {
     super();
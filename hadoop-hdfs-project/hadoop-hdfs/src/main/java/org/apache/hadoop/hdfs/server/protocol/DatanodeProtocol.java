@@ -46,9 +46,9 @@ import org.apache.avro.reflect.Nullable;
 @InterfaceAudience.Private
 public interface DatanodeProtocol extends VersionedProtocol {
   /**
-   * 28: Add Balancer Bandwidth Command protocol.
+   * 30: Send the report size with the request for the block report target.
    */
-  public static final long versionID = 28L;
+  public static final long versionID = 30L;
   
   // error code
   final static int NOTIFY = 0;
@@ -69,6 +69,7 @@ public interface DatanodeProtocol extends VersionedProtocol {
   final static int DNA_RECOVERBLOCK = 6;  // request a block recovery
   final static int DNA_ACCESSKEYUPDATE = 7;  // update access key
   final static int DNA_BALANCERBANDWIDTHUPDATE = 8; // update balancer bandwidth
+  final static int DNA_BLOCKREPORT = 9; // send a full block report
 
   /** 
    * Register Datanode.
@@ -125,6 +126,27 @@ public interface DatanodeProtocol extends VersionedProtocol {
   public DatanodeCommand blockReport(DatanodeRegistration registration,
                                      String poolId,
                                      long[] blocks) throws IOException;
+
+  /**
+   * incrementalBlockReport() tells the NameNode about the locally-stored
+   * blocks which were added, changed or removed since the previous block
+   * report. It's sent instead of the periodic full report between the full
+   * reports.
+   * @param registration
+   * @param poolId - the block pool ID for the blocks
+   * @param changedBlocks - the changed blocks in their current state, in
+   *     the same encoding as the blocks of a full report
+   * @param removedBlockIds - the ids of the removed blocks
+   *
+   * @return - the next command for DN to process,
+   *     {@link DatanodeCommand#BLOCKREPORT} if the NameNode needs a full
+   *     block report instead.
+   * @throws IOException
+   */
+  public DatanodeCommand incrementalBlockReport(DatanodeRegistration registration,
+                                                String poolId,
+                                                long[] changedBlocks,
+                                                long[] removedBlockIds) throws IOException;
     
   /**
    * blockReceivedAndDeleted() allows the DataNode to tell the NameNode about
@@ -185,7 +207,10 @@ public ActiveNamenodeList sendActiveNamenodes() throws IOException;
   /**
    * The BPOfferService that corresponds to the leader Namenode asks it which 'namenode' to send the block reports to
    * This is a feature added to do load balancing of block reports among namenodes
+   * @param numBlocks - the number of blocks in the report
+   * @return - the address of the namenode, empty if all namenodes are busy
+   *     and the datanode should ask again later
    */
-public String getNextNamenodeToSendBlockReport() throws IOException;
+public String getNextNamenodeToSendBlockReport(long numBlocks) throws IOException;
 
 }
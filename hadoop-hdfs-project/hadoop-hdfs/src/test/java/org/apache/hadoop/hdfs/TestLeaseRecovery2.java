@@ -432,7 +432,7 @@ public class TestLeaseRecovery2 {
         cluster.getNameNode(), fileStr);
     
     assertFalse("original lease holder should not be the NN",
-        originalLeaseHolder.equals(HdfsServerConstants.NAMENODE_LEASE_HOLDER));
+        originalLeaseHolder.startsWith(HdfsServerConstants.NAMENODE_LEASE_HOLDER));
 
     // hflush file
     AppendTestUtil.LOG.info("hflush");
@@ -463,15 +463,17 @@ public class TestLeaseRecovery2 {
     Thread.sleep(HdfsServerConstants.NAMENODE_LEASE_RECHECK_INTERVAL * 10);
     //Thread.sleep(HdfsServerConstants.NAMENODE_LEASE_RECHECK_INTERVAL * 2);
     
-    assertEquals("lease holder should now be the NN", HdfsServerConstants.NAMENODE_LEASE_HOLDER,
-        NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), fileStr));
+    // every namenode takes over the leases it recovers with its own holder
+    assertTrue("lease holder should now be the NN",
+        NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), fileStr)
+        .startsWith(HdfsServerConstants.NAMENODE_LEASE_HOLDER));
     
     // In case of multiple namenodes, we kill the leader and a new namenode will be elected the leader and it will start the lease monitor
     cluster.restartNameNode(false);
     
-    assertEquals("lease holder should still be the NN after restart",
-        HdfsServerConstants.NAMENODE_LEASE_HOLDER,
-        NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), fileStr));
+    assertTrue("lease holder should still be the NN after restart",
+        NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), fileStr)
+        .startsWith(HdfsServerConstants.NAMENODE_LEASE_HOLDER));
     
     // Let the DNs send heartbeats again.
     // [J] By setting the heartbeats on, the namenode is able to send BlockLeaseRecoveryCommands to the datanodes.
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.net.NetUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test for {@link LoadAwareNameNodeSelector} class, with namenodes whose
+ * load is faked.
+ */
+public class TestLoadAwareNameNodeSelector {
+
+  private static final int NUM_NAMENODES = 3;
+  private Configuration conf;
+  private List<DFSClient> namenodes;
+  private NamenodeLoad[] loads;
+  private AtomicBoolean[] alive;
+  private NameNodeSelector selector;
+
+  @Before
+  public void setUp() {
+    conf = new HdfsConfiguration();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_SELECTOR_POLICY_KEY,
+            LoadAwareNameNodeSelector.class.getName());
+    // the prober stays out of the way unless a test wants it
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_SELECTOR_PROBE_INTERVAL_KEY, 60 * 60 * 1000L);
+    namenodes = new ArrayList<DFSClient>();
+    loads = new NamenodeLoad[NUM_NAMENODES];
+    alive = new AtomicBoolean[NUM_NAMENODES];
+    for (int i = 0; i < NUM_NAMENODES; i++) {
+      loads[i] = new NamenodeLoad();
+      alive[i] = new AtomicBoolean(true);
+      namenodes.add(newNamenode(i, loads[i], alive[i]));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    if (selector != null) {
+      selector.close();
+    }
+  }
+
+  private static String getAddress(int i) {
+    return "127.0.0.1:" + (9000 + i);
+  }
+
+  private static DFSClient newNamenode(int i, NamenodeLoad load, final AtomicBoolean alive) {
+    DFSClient client = mock(DFSClient.class);
+    when(client.getId()).thenReturn(i);
+    when(client.getNamenodeLoad()).thenReturn(load);
+    when(client.getNamenodeAddress()).thenReturn(NetUtils.createSocketAddr(getAddress(i)));
+    when(client.pingNamenode()).thenAnswer(new Answer<Boolean>() {
+
+      @Override
+      public Boolean answer(InvocationOnMock invocation) {
+        return alive.get();
+      }
+    });
+    return client;
+  }
+
+  /**
+   * Fakes a namenode with the given average latency and calls in flight.
+   */
+  private static void setLoad(NamenodeLoad load, long latency, int outstanding) {
+    load.begin();
+    load.end(latency, false);
+    for (int i = 0; i < outstanding; i++) {
+      load.begin();
+    }
+  }
+
+  private NameNodeSelector createSelector() {
+    selector = NameNodeSelector.createInstance(conf, namenodes);
+    assertTrue(selector instanceof LoadAwareNameNodeSelector);
+    return selector;
+  }
+
+  @Test
+  public void testSelectsLowestExpectedWait() throws Exception {
+    setLoad(loads[0], 10, 0);
+    setLoad(loads[1], 4, 2);
+    setLoad(loads[2], 100, 0);
+    createSelector();
+    // (outstanding + 1) * avgLatency: 10, 12 and 100
+    assertSame(namenodes.get(0), selector.getNextNamenode());
+
+    loads[0].begin();
+    // 20, 12 and 100
+    assertSame(namenodes.get(1), selector.getNextNamenode());
+
+    // an inactive namenode is skipped whatever its load
+    loads[1].setActive(false);
+    assertSame(namenodes.get(0), selector.getNextNamenode());
+    verify(namenodes.get(1), never()).pingNamenode();
+  }
+
+  @Test
+  public void testPinnedReadersAndWriters() throws Exception {
+    conf.set(DFSConfigKeys.DFS_NAMENODE_SELECTOR_READERS_KEY, getAddress(0));
+    conf.set(DFSConfigKeys.DFS_NAMENODE_SELECTOR_WRITERS_KEY, getAddress(1));
+    setLoad(loads[0], 50, 0);
+    setLoad(loads[1], 100, 0);
+    setLoad(loads[2], 10, 0);
+    createSelector();
+    assertSame(namenodes.get(0), selector.getNextReaderNamenode());
+    assertSame(namenodes.get(1), selector.getNextWriterNamenode());
+    // the other operations go to the least loaded namenode
+    assertSame(namenodes.get(2), selector.getNextNamenode());
+
+    // a pinned namenode which goes down is replaced by any namenode
+    loads[0].setActive(false);
+    assertSame(namenodes.get(2), selector.getNextReaderNamenode());
+    assertSame(namenodes.get(1), selector.getNextWriterNamenode());
+    loads[0].setActive(true);
+    assertSame(namenodes.get(0), selector.getNextReaderNamenode());
+  }
+
+  @Test
+  public void testAllInactiveAreProbedOnce() throws Exception {
+    createSelector();
+    for (int i = 0; i < NUM_NAMENODES; i++) {
+      loads[i].setActive(false);
+      alive[i].set(i == 2);
+    }
+    assertSame(namenodes.get(2), selector.getNextNamenode());
+    assertTrue(loads[2].isActive());
+    assertFalse(loads[0].isActive());
+
+    loads[2].setActive(false);
+    alive[2].set(false);
+    try {
+      selector.getNextNamenode();
+      fail("all namenodes are down");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testProberBringsNamenodeBack() throws Exception {
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_SELECTOR_PROBE_INTERVAL_KEY, 50);
+    setLoad(loads[0], 10, 0);
+    setLoad(loads[1], 100, 0);
+    setLoad(loads[2], 200, 0);
+    loads[0].setActive(false);
+    alive[0].set(false);
+    // an idle namenode which went down is found by the prober as well
+    alive[2].set(false);
+    createSelector();
+    assertSame(namenodes.get(1), selector.getNextNamenode());
+
+    alive[0].set(true);
+    long deadline = System.currentTimeMillis() + 10000;
+    while ((!loads[0].isActive() || loads[2].isActive())
+            && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(loads[0].isActive());
+    assertFalse(loads[2].isActive());
+    assertSame(namenodes.get(0), selector.getNextNamenode());
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ConnectException;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.junit.Test;
+
+/**
+ * Test for {@link NamenodeLoad} class
+ */
+public class TestNamenodeLoad {
+
+  @Test
+  public void testScore() {
+    NamenodeLoad fast = new NamenodeLoad();
+    NamenodeLoad slow = new NamenodeLoad();
+    assertEquals(0, fast.getScore(), 0);
+
+    fast.begin();
+    fast.end(10, false);
+    slow.begin();
+    slow.end(100, false);
+    assertEquals(10, fast.getAverageLatency(), 0);
+    assertTrue(fast.getScore() < slow.getScore());
+
+    // calls in flight make a fast namenode look busy
+    for (int i = 0; i < 10; i++) {
+      fast.begin();
+    }
+    assertEquals(10, fast.getOutstanding());
+    assertTrue(fast.getScore() > slow.getScore());
+  }
+
+  @Test
+  public void testMovingAverage() {
+    NamenodeLoad load = new NamenodeLoad();
+    load.begin();
+    load.end(100, false);
+    load.begin();
+    load.end(200, false);
+    assertEquals(100 + NamenodeLoad.ALPHA * 100, load.getAverageLatency(), 0.001);
+  }
+
+  @Test
+  public void testTrackUnreachable() throws Exception {
+    ClientProtocol down = (ClientProtocol) Proxy.newProxyInstance(ClientProtocol.class.getClassLoader(),
+            new Class[]{ClientProtocol.class}, new InvocationHandler() {
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        throw new ConnectException("connection refused");
+      }
+    });
+    NamenodeLoad load = new NamenodeLoad();
+    ClientProtocol tracked = NamenodeLoad.track(down, load);
+    try {
+      tracked.ping();
+      fail("ping should fail");
+    } catch (ConnectException ex) {
+      // expected, the cause is thrown and not the reflection wrapper
+    }
+    assertFalse(load.isActive());
+    assertEquals(0, load.getOutstanding());
+  }
+}
@@ -0,0 +1,313 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+
+/**
+ * This class tests the ordering and the backpressure of
+ * BlockReportProcessor.java
+ */
+public class TestBlockReportProcessor extends TestCase {
+
+  private static Configuration newConf(int workers, int queueSize, long timeout) {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_BLOCK_REPORT_WORKERS_KEY, workers);
+    conf.setInt(DFSConfigKeys.DFS_BLOCK_REPORT_QUEUE_SIZE_KEY, queueSize);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_REPORT_QUEUE_TIMEOUT_KEY, timeout);
+    return conf;
+  }
+
+  private static DatanodeID newNode(String storageID) {
+    return new DatanodeID(storageID + ":50010", storageID, -1, -1);
+  }
+
+  /**
+   * Sends a report from a new thread. If the worker is busy it waits until
+   * the report is queued behind the reports sent before.
+   */
+  private static Thread send(final BlockReportProcessor processor, final DatanodeID node,
+          final String poolId, final List<String> failures, boolean workerBusy)
+          throws InterruptedException {
+    int depth = processor.getQueueDepth();
+    Thread sender = new Thread() {
+
+      @Override
+      public void run() {
+        try {
+          processor.process(node, poolId, new BlockListAsLongs());
+        } catch (IOException e) {
+          failures.add(poolId + ": " + e.getMessage());
+        }
+      }
+    };
+    sender.start();
+    if (!workerBusy) {
+      return sender;
+    }
+    long deadline = System.currentTimeMillis() + 10000;
+    while (processor.getQueueDepth() == depth && sender.isAlive()
+            && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    return sender;
+  }
+
+  /**
+   * The reports queued on a worker are applied in the order they arrive,
+   * with the reports of other datanodes served by the worker in between.
+   */
+  public void testPerDatanodeOrdering() throws Exception {
+    final List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+    final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final BlockReportProcessor processor = new BlockReportProcessor(
+            new BlockReportProcessor.ReportHandler() {
+
+              @Override
+              public void processReport(DatanodeID nodeID, String poolId,
+                      BlockListAsLongs report) throws IOException {
+                if (poolId.equals("A0")) {
+                  started.countDown();
+                  try {
+                    release.await();
+                  } catch (InterruptedException e) {
+                    throw new IOException(e);
+                  }
+                }
+                applied.add(poolId);
+              }
+            }, newConf(1, 100, 1000));
+    processor.start();
+    List<Thread> senders = new ArrayList<Thread>();
+    try {
+      DatanodeID a = newNode("DS-a");
+      DatanodeID b = newNode("DS-b");
+      // the first report holds the worker while the others queue up
+      senders.add(send(processor, a, "A0", failures, false));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      String[] order = {"A1", "B1", "A2", "B2", "B3", "A3", "A4", "B4"};
+      for (String poolId : order) {
+        senders.add(send(processor, poolId.startsWith("A") ? a : b, poolId, failures, true));
+      }
+      assertEquals(order.length, processor.getQueueDepth());
+      release.countDown();
+      for (Thread sender : senders) {
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(sender.isAlive());
+      }
+      assertTrue(failures.toString(), failures.isEmpty());
+      List<String> expected = new ArrayList<String>();
+      expected.add("A0");
+      Collections.addAll(expected, order);
+      assertEquals(expected, applied);
+    } finally {
+      release.countDown();
+      processor.stop();
+    }
+  }
+
+  /**
+   * The reports waiting when the processor stops fail, and the reports
+   * offered after the stop are rejected instead of waiting forever.
+   */
+  public void testStop() throws Exception {
+    final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final BlockReportProcessor processor = new BlockReportProcessor(
+            new BlockReportProcessor.ReportHandler() {
+
+              @Override
+              public void processReport(DatanodeID nodeID, String poolId,
+                      BlockListAsLongs report) throws IOException {
+                started.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  throw new IOException(e);
+                }
+              }
+            }, newConf(1, 10, 1000));
+    processor.start();
+    DatanodeID node = newNode("DS-1");
+    Thread first = send(processor, node, "first", failures, false);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    Thread waiting = send(processor, node, "waiting", failures, true);
+    assertEquals(1, processor.getQueueDepth());
+
+    processor.stop();
+    first.join(TimeUnit.SECONDS.toMillis(10));
+    waiting.join(TimeUnit.SECONDS.toMillis(10));
+    assertFalse(first.isAlive());
+    assertFalse(waiting.isAlive());
+    assertEquals(0, processor.getQueueDepth());
+    assertEquals(0, processor.getBacklog());
+    assertTrue(failures.toString(), failures.contains("waiting: Block report processor is stopped"));
+
+    try {
+      processor.process(node, "late", new BlockListAsLongs());
+      fail("the report is expected to be rejected");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("stopped"));
+    }
+  }
+
+  /**
+   * A slow report of one datanode does not hold back the other datanodes, and
+   * a failure is returned to the caller of the failed report.
+   */
+  public void testDatanodesInParallel() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final BlockReportProcessor processor = new BlockReportProcessor(
+            new BlockReportProcessor.ReportHandler() {
+
+              @Override
+              public void processReport(DatanodeID nodeID, String poolId,
+                      BlockListAsLongs report) throws IOException {
+                if (poolId.equals("slow")) {
+                  try {
+                    release.await();
+                  } catch (InterruptedException e) {
+                    throw new IOException(e);
+                  }
+                } else if (poolId.equals("fail")) {
+                  throw new IOException("failed report");
+                }
+              }
+            }, newConf(64, 4, 1000));
+    processor.start();
+    try {
+      final DatanodeID slowNode = newNode("DS-slow");
+      // a failure in the thread is asserted in the test thread
+      final AtomicReference<Throwable> slowFailure = new AtomicReference<Throwable>();
+      Thread slow = new Thread() {
+
+        @Override
+        public void run() {
+          try {
+            processor.process(slowNode, "slow", new BlockListAsLongs());
+          } catch (Throwable t) {
+            slowFailure.set(t);
+          }
+        }
+      };
+      slow.start();
+
+      // pick a datanode which is served by another worker
+      DatanodeID other = null;
+      for (int i = 0; other == null; i++) {
+        DatanodeID node = newNode("DS-" + i);
+        if ((node.getStorageID().hashCode() & Integer.MAX_VALUE) % 64
+                != (slowNode.getStorageID().hashCode() & Integer.MAX_VALUE) % 64) {
+          other = node;
+        }
+      }
+      processor.process(other, "fast", new BlockListAsLongs());
+      try {
+        processor.process(other, "fail", new BlockListAsLongs());
+        fail("the failure of the report is expected");
+      } catch (IOException e) {
+        assertEquals("failed report", e.getMessage());
+      }
+
+      release.countDown();
+      slow.join(TimeUnit.SECONDS.toMillis(10));
+      assertFalse(slow.isAlive());
+      assertNull("the slow report failed: " + slowFailure.get(), slowFailure.get());
+    } finally {
+      processor.stop();
+    }
+  }
+
+  /**
+   * Reports are rejected when the queue of the worker stays full.
+   */
+  public void testBackpressure() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final BlockReportProcessor processor = new BlockReportProcessor(
+            new BlockReportProcessor.ReportHandler() {
+
+              @Override
+              public void processReport(DatanodeID nodeID, String poolId,
+                      BlockListAsLongs report) throws IOException {
+                started.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  throw new IOException(e);
+                }
+              }
+            }, newConf(1, 1, 100));
+    processor.start();
+    final DatanodeID node = newNode("DS-1");
+    List<Thread> callers = new ArrayList<Thread>();
+    try {
+      // the first report occupies the worker, the second fills the queue
+      for (int i = 0; i < 2; i++) {
+        Thread caller = new Thread() {
+
+          @Override
+          public void run() {
+            try {
+              processor.process(node, "pool", new BlockListAsLongs());
+            } catch (IOException e) {
+            }
+          }
+        };
+        caller.start();
+        callers.add(caller);
+        if (i == 0) {
+          assertTrue(started.await(10, TimeUnit.SECONDS));
+        }
+      }
+      long deadline = System.currentTimeMillis() + 10000;
+      while (processor.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, processor.getQueueDepth());
+
+      try {
+        processor.process(node, "pool", new BlockListAsLongs());
+        fail("the report is expected to be rejected");
+      } catch (IOException e) {
+        assertTrue(e.getMessage().contains("rejected"));
+      }
+    } finally {
+      release.countDown();
+      for (Thread caller : callers) {
+        caller.join(TimeUnit.SECONDS.toMillis(10));
+      }
+      processor.stop();
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.namenode.NamenodeShard;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.UnderReplicatedBlockDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageFactory;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory.MemoryConnector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the level cursors of {@link UnderReplicatedBlocks#chooseBlocks},
+ * on the in-memory storage.
+ */
+public class TestChooseUnderReplicatedBlocks {
+
+  private final MemoryConnector connector = MemoryConnector.INSTANCE;
+
+  @Before
+  public void setUp() throws Exception {
+    HdfsConfiguration conf = new HdfsConfiguration();
+    conf.set(DFSConfigKeys.DFS_STORAGE_TYPE_KEY, MemoryConnector.MEMORY);
+    StorageFactory.setConfiguration(conf);
+    connector.formatStorage();
+  }
+
+  @After
+  public void tearDown() {
+    connector.rollback();
+  }
+
+  @Test
+  public void testCursorMovesForwardAndWraps() throws Exception {
+    addBlocks(0, 1, 2, 3, 4, 5);
+    addBlocks(2, 10, 11, 12);
+    UnderReplicatedBlocks queues = new UnderReplicatedBlocks();
+
+    assertChosen(queues.chooseBlocks(2, NamenodeShard.ALL, OperationType.REPLICATION_MONITOR),
+            new long[]{1, 2}, new long[]{});
+    assertChosen(queues.chooseBlocks(2, NamenodeShard.ALL, OperationType.REPLICATION_MONITOR),
+            new long[]{3, 4}, new long[]{});
+    // level 0 comes to its end, the rest is taken from level 2
+    assertChosen(queues.chooseBlocks(3, NamenodeShard.ALL, OperationType.REPLICATION_MONITOR),
+            new long[]{5}, new long[]{10, 11});
+    // level 0 starts again from its first block
+    assertChosen(queues.chooseBlocks(3, NamenodeShard.ALL, OperationType.REPLICATION_MONITOR),
+            new long[]{1, 2, 3}, new long[]{});
+    // both levels come to their end and wrap
+    assertChosen(queues.chooseBlocks(10, NamenodeShard.ALL, OperationType.REPLICATION_MONITOR),
+            new long[]{4, 5}, new long[]{12});
+    assertChosen(queues.chooseBlocks(10, NamenodeShard.ALL, OperationType.REPLICATION_MONITOR),
+            new long[]{1, 2, 3, 4, 5}, new long[]{10, 11, 12});
+  }
+
+  @Test
+  public void testRemovedBlockDoesNotMoveTheCursor() throws Exception {
+    addBlocks(0, 1, 2, 3, 4);
+    UnderReplicatedBlocks queues = new UnderReplicatedBlocks();
+    assertChosen(queues.chooseBlocks(2, NamenodeShard.ALL, OperationType.REPLICATION_MONITOR),
+            new long[]{1, 2}, new long[]{});
+    removeBlocks(0, 2, 3);
+    assertChosen(queues.chooseBlocks(2, NamenodeShard.ALL, OperationType.REPLICATION_MONITOR),
+            new long[]{4}, new long[]{});
+  }
+
+  @Test
+  public void testShardsDoNotOverlap() throws Exception {
+    Set<Long> all = new HashSet<Long>();
+    for (long id = -5; id < 20; id++) {
+      addBlocks(0, id);
+      all.add(id);
+    }
+    int shards = 3;
+    List<Set<Long>> chosen = new ArrayList<Set<Long>>();
+    for (int i = 0; i < shards; i++) {
+      NamenodeShard shard = new NamenodeShard(i, shards);
+      UnderReplicatedBlocks queues = new UnderReplicatedBlocks();
+      Set<Long> ids = new HashSet<Long>();
+      // small batches, a pass over the level takes several calls
+      for (int call = 0; call < 5; call++) {
+        for (Block block : queues.chooseBlocks(2, shard, OperationType.REPLICATION_MONITOR).get(0)) {
+          assertTrue(shard.ownsId(block.getBlockId()));
+          ids.add(block.getBlockId());
+        }
+      }
+      chosen.add(ids);
+    }
+    Set<Long> union = new HashSet<Long>();
+    for (Set<Long> ids : chosen) {
+      for (long id : ids) {
+        assertTrue("block " + id + " is in two shards", union.add(id));
+      }
+    }
+    assertEquals(all, union);
+  }
+
+  private void assertChosen(List<List<Block>> chosen, long[] level0, long[] level2) {
+    assertEquals(UnderReplicatedBlocks.LEVEL, chosen.size());
+    assertEquals(toList(level0), ids(chosen.get(0)));
+    assertTrue(chosen.get(1).isEmpty());
+    assertEquals(toList(level2), ids(chosen.get(2)));
+  }
+
+  private List<Long> ids(List<Block> blocks) {
+    List<Long> ids = new ArrayList<Long>();
+    for (Block block : blocks) {
+      ids.add(block.getBlockId());
+    }
+    return ids;
+  }
+
+  private List<Long> toList(long[] ids) {
+    List<Long> list = new ArrayList<Long>();
+    for (long id : ids) {
+      list.add(id);
+    }
+    return list;
+  }
+
+  private void addBlocks(int level, long... ids) throws Exception {
+    List<UnderReplicatedBlock> added = new ArrayList<UnderReplicatedBlock>();
+    for (long id : ids) {
+      added.add(new UnderReplicatedBlock(level, id));
+    }
+    prepare(Collections.<UnderReplicatedBlock>emptyList(), added);
+  }
+
+  private void removeBlocks(int level, long... ids) throws Exception {
+    List<UnderReplicatedBlock> removed = new ArrayList<UnderReplicatedBlock>();
+    for (long id : ids) {
+      removed.add(new UnderReplicatedBlock(level, id));
+    }
+    prepare(removed, Collections.<UnderReplicatedBlock>emptyList());
+  }
+
+  private void prepare(List<UnderReplicatedBlock> removed, List<UnderReplicatedBlock> added) throws Exception {
+    UnderReplicatedBlockDataAccess da = (UnderReplicatedBlockDataAccess) StorageFactory.getDataAccess(UnderReplicatedBlockDataAccess.class);
+    connector.beginTransaction();
+    da.prepare(removed, added, Collections.<UnderReplicatedBlock>emptyList());
+    connector.commit();
+  }
+}
@@ -18,6 +18,8 @@
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -29,6 +31,7 @@ import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer;
 import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
 import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
 import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
 import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
@@ -195,4 +198,55 @@ public class TestPendingReplication extends TestCase {
       Logger.getLogger(TestPendingReplication.class.getName()).log(Level.SEVERE, null, ex);
     }
   }
+
+  /**
+   * Reads the timed out blocks in pages smaller than the number of blocks
+   * which share a time stamp, as the replication monitor does.
+   */
+  public void testTimedOutBlocksPages() throws Exception {
+    final PendingReplicationBlocks pendingReplications = new PendingReplicationBlocks(TIMEOUT * 1000);
+    StorageFactory.setConfiguration(new HdfsConfiguration());
+    StorageFactory.getConnector().formatStorage();
+    TransactionalRequestHandler addPendingHandler = new TransactionalRequestHandler(OperationType.TEST_PENDING_REPLICATION) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        EntityManager.add(new PendingBlockInfo((Long) getParams()[0], (Long) getParams()[1], 1));
+        return null;
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockAcquirer.acquireLock(TransactionLockManager.LockType.WRITE, PendingBlockInfo.Finder.ByPKey, (Long) getParams()[0]);
+      }
+    };
+    // timed out long ago, seven blocks share the time stamp 2000
+    long[][] rows = {{20, 1000}, {7, 2000}, {3, 2000}, {11, 2000}, {5, 2000}, {9, 2000},
+      {1, 2000}, {13, 2000}, {2, 3000}, {4, 3000}};
+    for (long[] row : rows) {
+      addPendingHandler.setParams(row[0], row[1]).handle();
+    }
+    // not timed out
+    addPendingHandler.setParams(30L, System.currentTimeMillis()).handle();
+
+    List<Long> read = new ArrayList<Long>();
+    long afterTime = Long.MIN_VALUE;
+    long afterBlockId = Long.MIN_VALUE;
+    List<PendingBlockInfo> page;
+    while ((page = pendingReplications.getTimedOutBlocks(afterTime, afterBlockId, 3,
+            OperationType.TEST_PENDING_REPLICATION4)) != null) {
+      assertTrue(page.size() <= 3);
+      for (PendingBlockInfo p : page) {
+        read.add(p.getBlockId());
+      }
+      if (page.size() < 3) {
+        break;
+      }
+      PendingBlockInfo last = page.get(page.size() - 1);
+      afterTime = last.getTimeStamp();
+      afterBlockId = last.getBlockId();
+    }
+    // every timed out block once, by time stamp and block id
+    assertEquals(Arrays.asList(20L, 1L, 3L, 5L, 7L, 9L, 11L, 13L, 2L, 4L), read);
+  }
 }
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.DatanodeReportType;
+import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeDescriptor.BlockTargetPair;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeAdapter;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.context.TransactionContextException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the replication work scheduled a batch of blocks per
+ * transaction.
+ */
+public class TestReplicationWorkBatches {
+
+  private static final int FILES = 5;
+  private MiniDFSCluster cluster;
+  private FileSystem fs;
+  private BlockManager bm;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_REPLICATION_WORK_BATCH_SIZE_KEY, 2);
+    // the test computes the replication work itself
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_REPLICATION_INTERVAL_KEY, 1000);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    bm = cluster.getNamesystem().getBlockManager();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Creates files of one block with one replica and asks for two.
+   *
+   * @return the blocks, which are all under-replicated
+   */
+  private List<Block> createUnderReplicatedBlocks() throws Exception {
+    List<Block> blocks = new ArrayList<Block>();
+    for (int i = 0; i < FILES; i++) {
+      Path file = new Path("/file" + i);
+      DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+      blocks.add(DFSTestUtil.getFirstBlock(fs, file).getLocalBlock());
+    }
+    for (int i = 0; i < FILES; i++) {
+      fs.setReplication(new Path("/file" + i), (short) 2);
+    }
+    return blocks;
+  }
+
+  @Test
+  public void testAllBatchesScheduled() throws Exception {
+    createUnderReplicatedBlocks();
+    // three batches, the last one of a single block
+    assertEquals(FILES, bm.computeReplicationWork(2 * FILES, OperationType.REPLICATION_MONITOR));
+    assertEquals(0, bm.computeReplicationWork(2 * FILES, OperationType.REPLICATION_MONITOR));
+  }
+
+  @Test
+  public void testFailingBlockIsIsolated() throws Exception {
+    List<Block> blocks = createUnderReplicatedBlocks();
+    Block failing = blocks.get(2);
+    BlockManager failingBm = spy(bm);
+    // rolls back the transaction of every batch with the block
+    doThrow(new TransactionContextException("injected")).when(failingBm).
+            computeReplicationWorkForBlock(eq(failing), anyInt(), anyList());
+
+    assertEquals(FILES - 1, failingBm.computeReplicationWork(2 * FILES, OperationType.REPLICATION_MONITOR));
+    // the block is still queued and scheduled in the next iteration
+    assertEquals(1, bm.computeReplicationWork(2 * FILES, OperationType.REPLICATION_MONITOR));
+  }
+
+  @Test
+  public void testRolledBackBlocksAreQueuedOnce() throws Exception {
+    List<Block> blocks = createUnderReplicatedBlocks();
+    // the second block of the batch {2, 3}, block 2 is computed by the
+    // rolled back transaction and again by its half
+    Block failing = blocks.get(3);
+    BlockManager failingBm = spy(bm);
+    doThrow(new TransactionContextException("injected")).when(failingBm).
+            computeReplicationWorkForBlock(eq(failing), anyInt(), anyList());
+    assertQueuedOnce(failingBm, blocks, failing);
+  }
+
+  @Test
+  public void testBlocksAfterAFailedBlockAreQueuedOnce() throws Exception {
+    List<Block> blocks = createUnderReplicatedBlocks();
+    // the batch {2, 3} commits block 2, block 3 is skipped
+    Block failing = blocks.get(3);
+    BlockManager failingBm = spy(bm);
+    doThrow(new IOException("injected")).when(failingBm).
+            computeReplicationWorkForBlock(eq(failing), anyInt(), anyList());
+    assertQueuedOnce(failingBm, blocks, failing);
+  }
+
+  /**
+   * Computes the replication work and checks that every block but the
+   * failing one gets exactly one replication command and one scheduled
+   * block at its target.
+   */
+  private void assertQueuedOnce(BlockManager failingBm, List<Block> blocks, Block failing) throws Exception {
+    // the datanodes do not take the commands before they are counted
+    for (DataNode dn : cluster.getDataNodes()) {
+      DataNodeAdapter.setHeartbeatsDisabledForTests(dn, true);
+    }
+    List<DatanodeDescriptor> nodes = bm.getDatanodeManager().getDatanodeListForReport(DatanodeReportType.ALL);
+    int scheduledBefore = 0;
+    for (DatanodeDescriptor dn : nodes) {
+      scheduledBefore += dn.getBlocksScheduled();
+    }
+
+    assertEquals(FILES - 1, failingBm.computeReplicationWork(2 * FILES, OperationType.REPLICATION_MONITOR));
+
+    Map<Long, Integer> commands = new HashMap<Long, Integer>();
+    int scheduledAfter = 0;
+    for (DatanodeDescriptor dn : nodes) {
+      scheduledAfter += dn.getBlocksScheduled();
+      List<BlockTargetPair> pairs = dn.getReplicationCommand(Integer.MAX_VALUE);
+      if (pairs == null) {
+        continue;
+      }
+      for (BlockTargetPair pair : pairs) {
+        assertEquals(1, pair.targets.length);
+        Integer count = commands.get(pair.block.getBlockId());
+        commands.put(pair.block.getBlockId(), count == null ? 1 : count + 1);
+      }
+    }
+    for (Block block : blocks) {
+      Integer expected = block.getBlockId() == failing.getBlockId() ? null : 1;
+      assertEquals("commands for " + block, expected, commands.get(block.getBlockId()));
+    }
+    assertEquals(FILES - 1, scheduledAfter - scheduledBefore);
+  }
+}
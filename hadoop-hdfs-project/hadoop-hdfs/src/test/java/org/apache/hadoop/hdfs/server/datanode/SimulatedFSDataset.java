@@ -461,6 +461,18 @@ public class SimulatedFSDataset  implements FSDatasetInterface, Configurable{
         new ArrayList<Block>(Arrays.asList(blockTable)), null);
   }
 
+  @Override // FSDatasetInterface
+  public BlockReportDelta getBlockReportDelta(String bpid) {
+    // the changes are not tracked, the datanode sends full reports
+    return null;
+  }
+
+  @Override // FSDatasetInterface
+  public synchronized int getNumReplicas(String bpid) {
+    final Map<Block, BInfo> map = blockMap.get(bpid);
+    return map == null ? 0 : map.size();
+  }
+
   @Override // FSDatasetMBean
   public long getCapacity() throws IOException {
     return storage.getCapacity();
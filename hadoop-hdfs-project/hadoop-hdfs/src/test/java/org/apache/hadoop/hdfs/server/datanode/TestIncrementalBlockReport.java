@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the incremental block reports sent between the full reports when
+ * dfs.blockreport.full.every is more than 1. The datanodes of the tests only
+ * send the reports of the tests, the report interval is a day.
+ */
+public class TestIncrementalBlockReport {
+
+  private MiniDFSCluster cluster;
+
+  private static Configuration newConf(int fullEvery) {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_BLOCKREPORT_FULL_EVERY_KEY, fullEvery);
+    conf.setLong(DFSConfigKeys.DFS_BLOCKREPORT_INTERVAL_MSEC_KEY, 24 * 60 * 60 * 1000L);
+    conf.setInt(CommonConfigurationKeysPublic.IPC_CLIENT_CONNECT_MAX_RETRIES_KEY, 0);
+    return conf;
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Waits for the full report which the datanode sends at the registration.
+   */
+  private static DataNode.NamenodeService waitForFullReport(DataNode dn)
+          throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30000;
+    while (dn.isFullBlockReportDue() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100);
+    }
+    assertFalse("no full report at the registration", dn.isFullBlockReportDue());
+    assertEquals(1, dn.getAllBpOs().length);
+    return dn.getAllBpOs()[0];
+  }
+
+  private int getLocations(Path file) throws IOException {
+    return cluster.getNameNodeRpc().getBlockLocations(file.toString(), 0, Long.MAX_VALUE).
+            get(0).getLocations().length;
+  }
+
+  /**
+   * Replicas removed and added behind the back of the namenode, as the
+   * directory scanner does, reach the namenode with the incremental reports,
+   * and a full report is sent every dfs.blockreport.full.every reports and
+   * after a failed report.
+   */
+  @Test
+  public void testChangedAndRemovedReplicasAreApplied() throws Exception {
+    cluster = new MiniDFSCluster.Builder(newConf(3)).numDataNodes(1).build();
+    cluster.waitActive();
+    FileSystem fs = cluster.getFileSystem();
+    DataNode dn = cluster.getDataNodes().get(0);
+    DataNode.NamenodeService bpos = waitForFullReport(dn);
+    String bpid = cluster.getNamesystem().getBlockPoolId();
+    FSDataset data = (FSDataset) dn.data;
+
+    Path file = new Path("/file");
+    DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+    DFSTestUtil.waitReplication(fs, file, (short) 1);
+    ExtendedBlock block = DFSTestUtil.getFirstBlock(fs, file);
+    ReplicaInfo replica = DataNodeAdapter.fetchReplicaInfo(dn, bpid, block.getBlockId());
+    File blockFile = replica.getBlockFile();
+    File metaFile = replica.getMetaFile();
+    File movedBlockFile = new File(blockFile.getParentFile(), "moved-" + blockFile.getName());
+    File movedMetaFile = new File(metaFile.getParentFile(), "moved-" + metaFile.getName());
+
+    // the replica is gone from the disk
+    assertTrue(blockFile.renameTo(movedBlockFile));
+    assertTrue(metaFile.renameTo(movedMetaFile));
+    data.checkAndUpdate(bpid, block.getBlockId(), null, null, replica.getVolume());
+    assertNull(data.fetchReplicaInfo(bpid, block.getBlockId()));
+    assertEquals(1, getLocations(file));
+    assertFalse(dn.isFullBlockReportDue());
+    assertNull(bpos.blockReport());
+    assertEquals(0, getLocations(file));
+
+    // and found on the disk again
+    assertTrue(movedBlockFile.renameTo(blockFile));
+    assertTrue(movedMetaFile.renameTo(metaFile));
+    data.checkAndUpdate(bpid, block.getBlockId(), blockFile, metaFile, replica.getVolume());
+    assertNotNull(data.fetchReplicaInfo(bpid, block.getBlockId()));
+    assertFalse(dn.isFullBlockReportDue());
+    assertNull(bpos.blockReport());
+    assertEquals(1, getLocations(file));
+
+    // every third report is a full one
+    assertTrue(dn.isFullBlockReportDue());
+    assertNull(bpos.blockReport());
+    assertFalse(dn.isFullBlockReportDue());
+    assertEquals(1, getLocations(file));
+
+    // the changes of a failed report are lost, the next report is a full one
+    cluster.shutdownNameNode(0);
+    try {
+      bpos.blockReport();
+      fail("the namenode is down");
+    } catch (IOException expected) {
+    }
+    assertTrue(dn.isFullBlockReportDue());
+  }
+
+  /**
+   * The namenode in startup safe mode counts the blocks of the full reports,
+   * it answers an incremental report with a block report command and the
+   * datanode sends a full report for it.
+   */
+  @Test
+  public void testFullReportIsRequestedInStartupSafeMode() throws Exception {
+    Configuration conf = newConf(2);
+    // never leave the safe mode with a single datanode
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_SAFEMODE_MIN_DATANODES_KEY, 2);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).waitSafeMode(false).build();
+    cluster.waitActive();
+    assertTrue(cluster.getNamesystem().isInStartupSafeMode());
+    DataNode dn = cluster.getDataNodes().get(0);
+    DataNode.NamenodeService bpos = waitForFullReport(dn);
+
+    DatanodeCommand cmd = bpos.blockReport();
+    assertNotNull(cmd);
+    assertEquals(DatanodeProtocol.DNA_BLOCKREPORT, cmd.getAction());
+    // with every second report a full one, only a full report sent for the
+    // command makes the next report incremental again
+    assertTrue(dn.isFullBlockReportDue());
+    assertTrue(bpos.processCommand(cmd));
+    assertFalse(dn.isFullBlockReportDue());
+  }
+}
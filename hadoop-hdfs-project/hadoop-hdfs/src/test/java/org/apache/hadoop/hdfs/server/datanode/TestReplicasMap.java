@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.hdfs.server.datanode;
 
+import java.util.Set;
+
 import org.apache.hadoop.hdfs.protocol.Block;
 import static org.junit.Assert.*;
 import org.junit.Before;
@@ -106,4 +108,24 @@ public class TestReplicasMap {
     map.add(bpid, new FinalizedReplica(block, null, null));
     assertNotNull(map.remove(bpid, block.getBlockId()));
   }
+
+  @Test
+  public void testTrackChanges() {
+    // Test 1: changes are not tracked by default
+    assertNull(map.takeChanged(bpid));
+    
+    // Test 2: added, changed and removed replicas are collected
+    map.trackChanges();
+    assertTrue(map.takeChanged(bpid).isEmpty());
+    map.add(bpid, new FinalizedReplica(new Block(1, 1, 1), null, null));
+    map.markChanged(bpid, block.getBlockId());
+    map.remove(bpid, 1);
+    Set<Long> changed = map.takeChanged(bpid);
+    assertEquals(2, changed.size());
+    assertTrue(changed.contains(1L));
+    assertTrue(changed.contains(block.getBlockId()));
+    
+    // Test 3: the changes are collected again after they are taken
+    assertTrue(map.takeChanged(bpid).isEmpty());
+  }
 }
@@ -0,0 +1,544 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageFactory;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory.MemoryConnector;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory.MemorySession;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
+import org.apache.hadoop.io.EnumSetWritable;
+import org.apache.log4j.Level;
+
+/**
+ * Aggregate throughput of several namenodes which share one storage.
+ *
+ * The benchmark starts a {@link MiniDFSCluster} with the given number of
+ * namenodes and datanodes and runs a mix of create, mkdirs, open
+ * (getBlockLocations), rename, delete and addBlock calls from many threads.
+ * Like {@link NNThroughputBenchmark} a thread calls the namenode methods
+ * directly, so the transactions of an operation run on the thread which
+ * measures it. The threads are spread round robin over the namenodes.
+ *
+ * The files live in the leaf directories of a tree with the given fan-out and
+ * depth. A hot-spot fraction of the operations goes to the first leaf
+ * directory, to measure the contention on its row locks.
+ *
+ * For every operation it reports the throughput and the latency percentiles.
+ * For every {@link OperationType} which ran a transaction it reports the
+ * retries, rollbacks, failures, storage reads and lock acquisition time of
+ * {@link TransactionMetrics}. On the in-memory storage it also reports the
+ * round trips and the lock waits of every operation.
+ *
+ * Command line arguments:
+ * <ol>
+ * <li>-namenodes N number of namenodes, 2 by default,</li>
+ * <li>-datanodes D number of datanodes, 3 by default,</li>
+ * <li>-threads T number of threads, 16 by default,</li>
+ * <li>-ops O total number of operations, 10000 by default,</li>
+ * <li>-fanout F and -depth L shape of the directory tree, 4 and 2 by
+ * default,</li>
+ * <li>-hotspot H fraction of the operations on the hot directory, 0 by
+ * default,</li>
+ * <li>-mix create:W,mkdirs:W,... relative weights of the operations,</li>
+ * <li>-storage S storage type, e.g. memory, the configured one by default,</li>
+ * <li>-latencyUs U round trip latency of the in-memory storage,</li>
+ * <li>-logLevel L logging level of the namenodes, ERROR by default,</li>
+ * <li>-keepResults do not clean up the name-space after execution.</li>
+ * </ol>
+ */
+public class MultiNNThroughputBenchmark {
+
+  private static final Log LOG = LogFactory.getLog(MultiNNThroughputBenchmark.class);
+  static final String USAGE = "Usage: MultiNNThroughputBenchmark"
+          + " [-namenodes N] [-datanodes D] [-threads T] [-ops O]"
+          + " [-fanout F] [-depth L] [-hotspot H]"
+          + " [-mix create:W,mkdirs:W,open:W,rename:W,delete:W,addBlock:W]"
+          + " [-storage S] [-latencyUs U] [-logLevel L] [-keepResults]";
+  private static final String BASE_DIR_NAME = "/multiNNThroughputBenchmark";
+  private static final int BLOCK_SIZE = 16;
+  private static final short REPLICATION = 1;
+
+  enum Op {
+
+    CREATE("create", OperationType.START_FILE, 30),
+    MKDIRS("mkdirs", OperationType.MKDIRS, 10),
+    OPEN("open", OperationType.GET_BLOCK_LOCATIONS, 40),
+    RENAME("rename", OperationType.RENAME_TO, 10),
+    DELETE("delete", OperationType.DELETE, 5),
+    ADD_BLOCK("addBlock", OperationType.GET_ADDITIONAL_BLOCK, 5);
+    final String opName;
+    final OperationType opType;
+    final int defaultWeight;
+
+    Op(String opName, OperationType opType, int defaultWeight) {
+      this.opName = opName;
+      this.opType = opType;
+      this.defaultWeight = defaultWeight;
+    }
+
+    static Op forName(String name) {
+      for (Op op : values()) {
+        if (op.opName.equals(name)) {
+          return op;
+        }
+      }
+      throw new IllegalArgumentException("Unknown operation " + name + "\n" + USAGE);
+    }
+  }
+  int numNameNodes = 2;
+  int numDataNodes = 3;
+  int numThreads = 16;
+  int numOps = 10000;
+  int fanout = 4;
+  int depth = 2;
+  double hotspot = 0;
+  final int[] weights = new int[Op.values().length];
+  Level logLevel = Level.ERROR;
+  boolean keepResults = false;
+  private final Configuration conf;
+  private MiniDFSCluster cluster;
+  private final List<String> leafDirs = new ArrayList<String>();
+  private Worker[] workers;
+  private long elapsedTime;
+
+  MultiNNThroughputBenchmark(Configuration conf, List<String> args) {
+    this.conf = conf;
+    for (Op op : Op.values()) {
+      weights[op.ordinal()] = op.defaultWeight;
+    }
+    parseArguments(args);
+  }
+
+  private void parseArguments(List<String> args) {
+    for (int i = 0; i < args.size(); i++) {
+      String arg = args.get(i);
+      if (arg.equals("-keepResults")) {
+        keepResults = true;
+        continue;
+      }
+      if (i + 1 == args.size()) {
+        throw new IllegalArgumentException(USAGE);
+      }
+      String value = args.get(++i);
+      if (arg.equals("-namenodes")) {
+        numNameNodes = Integer.parseInt(value);
+      } else if (arg.equals("-datanodes")) {
+        numDataNodes = Integer.parseInt(value);
+      } else if (arg.equals("-threads")) {
+        numThreads = Integer.parseInt(value);
+      } else if (arg.equals("-ops")) {
+        numOps = Integer.parseInt(value);
+      } else if (arg.equals("-fanout")) {
+        fanout = Integer.parseInt(value);
+      } else if (arg.equals("-depth")) {
+        depth = Integer.parseInt(value);
+      } else if (arg.equals("-hotspot")) {
+        hotspot = Double.parseDouble(value);
+      } else if (arg.equals("-mix")) {
+        Arrays.fill(weights, 0);
+        for (String entry : value.split(",")) {
+          String[] pair = entry.split(":");
+          if (pair.length != 2) {
+            throw new IllegalArgumentException(USAGE);
+          }
+          weights[Op.forName(pair[0]).ordinal()] = Integer.parseInt(pair[1]);
+        }
+      } else if (arg.equals("-storage")) {
+        conf.set(DFSConfigKeys.DFS_STORAGE_TYPE_KEY, value);
+      } else if (arg.equals("-latencyUs")) {
+        conf.setLong(DFSConfigKeys.DFS_STORAGE_MEMORY_LATENCY_US_KEY, Long.parseLong(value));
+      } else if (arg.equals("-logLevel")) {
+        logLevel = Level.toLevel(value);
+      } else {
+        throw new IllegalArgumentException(USAGE);
+      }
+    }
+    if (numNameNodes < 1 || numThreads < 1 || numOps < numThreads || fanout < 1 || depth < 0
+            || hotspot < 0 || hotspot > 1) {
+      throw new IllegalArgumentException(USAGE);
+    }
+    int totalWeight = 0;
+    for (int weight : weights) {
+      if (weight < 0) {
+        throw new IllegalArgumentException(USAGE);
+      }
+      totalWeight += weight;
+    }
+    if (totalWeight == 0) {
+      throw new IllegalArgumentException(USAGE);
+    }
+  }
+
+  void run() throws Exception {
+    NNThroughputBenchmark.setNameNodeLoggingLevel(logLevel);
+    // each thread simulates a handler by calling the namenode methods directly
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_HANDLER_COUNT_KEY, 1);
+    cluster = new MiniDFSCluster.Builder(conf).numNameNodes(numNameNodes).numDataNodes(numDataNodes).build();
+    try {
+      cluster.waitActive();
+      NamenodeProtocols[] namenodes = new NamenodeProtocols[numNameNodes];
+      for (int i = 0; i < numNameNodes; i++) {
+        namenodes[i] = cluster.getNameNode(i).getRpcServer();
+        namenodes[i].setSafeMode(HdfsConstants.SafeModeAction.SAFEMODE_LEAVE);
+      }
+      createDirectories(namenodes[0], BASE_DIR_NAME, 0);
+
+      // the metrics are shared by the namenodes of the process
+      NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      TransactionMetrics txMetrics = metrics == null ? null : metrics.getTransactionMetrics();
+      long[][] txBefore = snapshot(txMetrics);
+
+      CountDownLatch start = new CountDownLatch(1);
+      workers = new Worker[numThreads];
+      for (int i = 0; i < numThreads; i++) {
+        int ops = numOps / numThreads + (i < numOps % numThreads ? 1 : 0);
+        workers[i] = new Worker(i, namenodes[i % numNameNodes], ops, start);
+        workers[i].start();
+      }
+      long startTime = System.currentTimeMillis();
+      start.countDown();
+      for (Worker worker : workers) {
+        worker.join();
+      }
+      elapsedTime = System.currentTimeMillis() - startTime;
+
+      printResults(txMetrics, txBefore);
+      if (!keepResults) {
+        namenodes[0].delete(BASE_DIR_NAME, true);
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  private void createDirectories(NamenodeProtocols namenode, String dir, int level) throws IOException {
+    if (level == depth) {
+      namenode.mkdirs(dir, FsPermission.getDefault(), true);
+      leafDirs.add(dir);
+      return;
+    }
+    for (int i = 0; i < fanout; i++) {
+      createDirectories(namenode, dir + "/d" + i, level + 1);
+    }
+  }
+
+  /**
+   * The operations of a thread on its namenode. A thread reads, renames and
+   * deletes only the files it created, so an operation fails only on an
+   * error of the namenode.
+   */
+  private class Worker extends Thread {
+
+    final int id;
+    final NamenodeProtocols namenode;
+    final String clientName;
+    final CountDownLatch start;
+    final Random rand;
+    final List<String> files = new ArrayList<String>();
+    // the operation and its latency in microseconds, for every operation run
+    final Op[] ops;
+    final long[] latencies;
+    final long[] lockWaits = new long[Op.values().length];
+    final long[] roundTrips = new long[Op.values().length];
+    final long[] errors = new long[Op.values().length];
+    int nextName = 0;
+
+    Worker(int id, NamenodeProtocols namenode, int numOps, CountDownLatch start) {
+      super("MultiNNThroughputBenchmark-" + id);
+      this.id = id;
+      this.namenode = namenode;
+      this.clientName = "MultiNNThroughputBenchmark-client-" + id;
+      this.start = start;
+      this.rand = new Random(id);
+      this.ops = new Op[numOps];
+      this.latencies = new long[numOps];
+    }
+
+    @Override
+    public void run() {
+      try {
+        start.await();
+      } catch (InterruptedException ex) {
+        return;
+      }
+      MemorySession session = StorageFactory.getConnector() instanceof MemoryConnector
+              ? MemoryConnector.INSTANCE.obtainSession() : null;
+      for (int i = 0; i < ops.length; i++) {
+        Op op = nextOp();
+        ops[i] = op;
+        long waits = session == null ? 0 : session.getLockWaits();
+        long trips = session == null ? 0 : session.getRoundTrips();
+        try {
+          latencies[i] = execute(op);
+        } catch (IOException ex) {
+          errors[op.ordinal()]++;
+          latencies[i] = -1;
+          LOG.debug(op.opName + " failed on " + getName(), ex);
+        }
+        if (session != null) {
+          lockWaits[op.ordinal()] += session.getLockWaits() - waits;
+          roundTrips[op.ordinal()] += session.getRoundTrips() - trips;
+        }
+      }
+    }
+
+    /**
+     * Picks an operation by its weight, an operation on a file creates one
+     * if the thread has none.
+     */
+    private Op nextOp() {
+      int totalWeight = 0;
+      for (int weight : weights) {
+        totalWeight += weight;
+      }
+      int r = rand.nextInt(totalWeight);
+      Op op = null;
+      for (Op candidate : Op.values()) {
+        r -= weights[candidate.ordinal()];
+        if (r < 0) {
+          op = candidate;
+          break;
+        }
+      }
+      if (files.isEmpty() && (op == Op.OPEN || op == Op.RENAME || op == Op.DELETE)) {
+        op = Op.CREATE;
+      }
+      return op;
+    }
+
+    private String pickDir() {
+      if (rand.nextDouble() < hotspot) {
+        return leafDirs.get(0);
+      }
+      return leafDirs.get(rand.nextInt(leafDirs.size()));
+    }
+
+    private String newName(String prefix) {
+      return pickDir() + "/" + prefix + id + "_" + (nextName++);
+    }
+
+    /**
+     * @return the latency in microseconds of the namenode call of the
+     * operation, the calls which only prepare or finish it are not counted
+     */
+    private long execute(Op op) throws IOException {
+      long startTime;
+      long latency;
+      String file;
+      switch (op) {
+        case CREATE:
+          file = newName("f");
+          startTime = System.nanoTime();
+          create(file);
+          latency = System.nanoTime() - startTime;
+          complete(file);
+          files.add(file);
+          break;
+        case MKDIRS:
+          String dir = newName("m");
+          startTime = System.nanoTime();
+          namenode.mkdirs(dir, FsPermission.getDefault(), true);
+          latency = System.nanoTime() - startTime;
+          break;
+        case OPEN:
+          file = files.get(rand.nextInt(files.size()));
+          startTime = System.nanoTime();
+          namenode.getBlockLocations(file, 0L, BLOCK_SIZE);
+          latency = System.nanoTime() - startTime;
+          break;
+        case RENAME:
+          int index = rand.nextInt(files.size());
+          file = files.get(index);
+          String dst = newName("r");
+          startTime = System.nanoTime();
+          boolean renamed = namenode.rename(file, dst);
+          latency = System.nanoTime() - startTime;
+          if (!renamed) {
+            throw new IOException("Could not rename " + file + " to " + dst);
+          }
+          files.set(index, dst);
+          break;
+        case DELETE:
+          file = files.remove(rand.nextInt(files.size()));
+          startTime = System.nanoTime();
+          namenode.delete(file, false);
+          latency = System.nanoTime() - startTime;
+          break;
+        case ADD_BLOCK:
+          file = newName("b");
+          create(file);
+          startTime = System.nanoTime();
+          LocatedBlock block = namenode.addBlock(file, clientName, null, null);
+          latency = System.nanoTime() - startTime;
+          // no datanode writes the block, give it up to close the file
+          namenode.abandonBlock(block.getBlock(), file, clientName);
+          complete(file);
+          files.add(file);
+          break;
+        default:
+          throw new IllegalStateException("Unknown operation " + op);
+      }
+      return latency / 1000;
+    }
+
+    private void create(String file) throws IOException {
+      namenode.create(file, FsPermission.getDefault(), clientName,
+              new EnumSetWritable<CreateFlag>(EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE)),
+              true, REPLICATION, BLOCK_SIZE);
+    }
+
+    private void complete(String file) throws IOException {
+      while (!namenode.complete(file, clientName, null)) {
+      }
+    }
+  }
+
+  private static final int TRANSACTIONS = 0, RETRIES = 1, ROLLBACKS = 2, FAILURES = 3,
+          STORAGE_READS = 4, LOCK_TIME = 5, NUM_COUNTERS = 6;
+
+  private static long[][] snapshot(TransactionMetrics txMetrics) {
+    long[][] counters = new long[OperationType.values().length][NUM_COUNTERS];
+    if (txMetrics == null) {
+      return counters;
+    }
+    for (OperationType opType : OperationType.values()) {
+      TransactionMetrics.OperationStats stats = txMetrics.getStats(opType);
+      long[] c = counters[opType.ordinal()];
+      c[TRANSACTIONS] = stats.getTransactions();
+      c[RETRIES] = stats.getRetries();
+      c[ROLLBACKS] = stats.getRollbacks();
+      c[FAILURES] = stats.getFailures();
+      c[STORAGE_READS] = stats.getStorageReads();
+      c[LOCK_TIME] = stats.getPhase(TransactionMetrics.Phase.ACQUIRE_LOCK).getTotal();
+    }
+    return counters;
+  }
+
+  private void printResults(TransactionMetrics txMetrics, long[][] txBefore) {
+    boolean memory = StorageFactory.getConnector() instanceof MemoryConnector;
+    long totalOps = 0;
+    long totalErrors = 0;
+    LOG.info("--- MultiNNThroughputBenchmark inputs ---");
+    LOG.info("nrNN = " + numNameNodes);
+    LOG.info("nrDN = " + numDataNodes);
+    LOG.info("nrThreads = " + numThreads);
+    LOG.info("nrOps = " + numOps);
+    LOG.info("nrLeafDirs = " + leafDirs.size() + " (fanout " + fanout + ", depth " + depth + ")");
+    LOG.info("hotspot = " + hotspot);
+    LOG.info("storage = " + conf.get(DFSConfigKeys.DFS_STORAGE_TYPE_KEY));
+    LOG.info("--- Operations ---");
+    for (Op op : Op.values()) {
+      List<Long> samples = new ArrayList<Long>();
+      long errors = 0;
+      long lockWaits = 0;
+      long roundTrips = 0;
+      for (Worker worker : workers) {
+        for (int i = 0; i < worker.ops.length; i++) {
+          if (worker.ops[i] == op && worker.latencies[i] >= 0) {
+            samples.add(worker.latencies[i]);
+          }
+        }
+        errors += worker.errors[op.ordinal()];
+        lockWaits += worker.lockWaits[op.ordinal()];
+        roundTrips += worker.roundTrips[op.ordinal()];
+      }
+      long count = samples.size() + errors;
+      if (count == 0) {
+        continue;
+      }
+      totalOps += count;
+      totalErrors += errors;
+      long[] sorted = new long[samples.size()];
+      long total = 0;
+      for (int i = 0; i < sorted.length; i++) {
+        sorted[i] = samples.get(i);
+        total += sorted[i];
+      }
+      Arrays.sort(sorted);
+      StringBuilder line = new StringBuilder();
+      line.append(String.format("%-9s %-21s ops %7d errors %5d ops/sec %9.1f", op.opName,
+              "(" + op.opType + ")", count, errors, elapsedTime == 0 ? 0 : count * 1000.0 / elapsedTime));
+      line.append(String.format(" avg %8.2f p50 %8.2f p90 %8.2f p99 %8.2f max %8.2f msec",
+              sorted.length == 0 ? 0 : total / 1000.0 / sorted.length, percentile(sorted, 50),
+              percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100)));
+      if (memory) {
+        line.append(String.format(" roundTrips/op %6.1f lockWaits/op %6.2f",
+                (double) roundTrips / count, (double) lockWaits / count));
+      }
+      LOG.info(line.toString());
+    }
+    LOG.info(String.format("Total ops %d errors %d in %d msec, %.1f ops/sec", totalOps, totalErrors,
+            elapsedTime, elapsedTime == 0 ? 0 : totalOps * 1000.0 / elapsedTime));
+
+    LOG.info("--- Transactions ---");
+    long[][] txAfter = snapshot(txMetrics);
+    for (OperationType opType : OperationType.values()) {
+      long[] before = txBefore[opType.ordinal()];
+      long[] after = txAfter[opType.ordinal()];
+      long transactions = after[TRANSACTIONS] - before[TRANSACTIONS];
+      if (transactions == 0) {
+        continue;
+      }
+      LOG.info(String.format("%-30s transactions %7d retries %5d rollbacks %5d failures %5d"
+              + " storageReads/tx %6.1f lockTime/tx %7.2f msec", opType, transactions,
+              after[RETRIES] - before[RETRIES], after[ROLLBACKS] - before[ROLLBACKS],
+              after[FAILURES] - before[FAILURES],
+              (double) (after[STORAGE_READS] - before[STORAGE_READS]) / transactions,
+              (double) (after[LOCK_TIME] - before[LOCK_TIME]) / transactions));
+    }
+  }
+
+  /**
+   * @return the percentile of the sorted latencies in msec
+   */
+  private static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(sorted.length * percentile / 100);
+    return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))] / 1000.0;
+  }
+
+  public static void runBenchmark(Configuration conf, List<String> args) throws Exception {
+    new MultiNNThroughputBenchmark(conf, args).run();
+  }
+
+  public static void main(String[] args) throws Exception {
+    runBenchmark(new HdfsConfiguration(), Arrays.asList(args));
+  }
+}
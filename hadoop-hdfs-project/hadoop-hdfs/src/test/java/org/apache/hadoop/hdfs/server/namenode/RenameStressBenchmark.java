@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics.OperationStats;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+
+/**
+ * Renames files back and forth between a few shared directories from many
+ * threads, so that renames in opposite directions lock the same directories.
+ * Prints the rename throughput and the retries, rollbacks and failures of
+ * the rename transactions, which are the deadlocks and lock timeouts seen by
+ * the storage.
+ *
+ * Usage: RenameStressBenchmark [-t threads] [-d directories] [-o renames per thread]
+ */
+public class RenameStressBenchmark {
+
+  static final Log LOG = LogFactory.getLog(RenameStressBenchmark.class);
+  static final String BASE_DIR = "/renameStress";
+  static final int DEFAULT_NUM_THREADS = 32;
+  static final int DEFAULT_NUM_DIRS = 4;
+  static final int DEFAULT_OPS_PER_THREAD = 500;
+  final int numThreads;
+  final int numDirs;
+  final int opsPerThread;
+  final AtomicLong failedRenames = new AtomicLong();
+
+  public RenameStressBenchmark(int numThreads, int numDirs, int opsPerThread) {
+    this.numThreads = numThreads;
+    this.numDirs = numDirs;
+    this.opsPerThread = opsPerThread;
+  }
+
+  static Path dir(int i) {
+    return new Path(BASE_DIR, "dir" + i);
+  }
+
+  static String fileName(int thread) {
+    return "file" + thread;
+  }
+
+  public void run(Configuration conf) throws IOException, InterruptedException {
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+    try {
+      cluster.waitActive();
+      final DistributedFileSystem fs = (DistributedFileSystem) cluster.getFileSystem();
+      for (int i = 0; i < numDirs; i++) {
+        fs.mkdirs(dir(i));
+      }
+      // every thread moves its own file, the threads only share the directories
+      for (int t = 0; t < numThreads; t++) {
+        fs.create(new Path(dir(t % numDirs), fileName(t))).close();
+      }
+
+      final CyclicBarrier barrier = new CyclicBarrier(numThreads);
+      final CountDownLatch latch = new CountDownLatch(numThreads);
+      for (int t = 0; t < numThreads; t++) {
+        final int thread = t;
+        new Thread(new Runnable() {
+
+          @Override
+          public void run() {
+            Random rand = new Random(thread);
+            int current = thread % numDirs;
+            try {
+              barrier.await();
+              for (int i = 0; i < opsPerThread; i++) {
+                int next = (current + 1 + rand.nextInt(numDirs - 1)) % numDirs;
+                try {
+                  fs.rename(new Path(dir(current), fileName(thread)),
+                          new Path(dir(next), fileName(thread)), Options.Rename.NONE);
+                  current = next;
+                } catch (IOException ex) {
+                  failedRenames.incrementAndGet();
+                  LOG.warn("rename failed", ex);
+                }
+              }
+            } catch (Exception ex) {
+              LOG.error("rename thread " + thread + " stopped", ex);
+            } finally {
+              latch.countDown();
+            }
+          }
+        }).start();
+      }
+
+      long start = System.currentTimeMillis();
+      latch.await();
+      long time = System.currentTimeMillis() - start;
+
+      long renames = (long) numThreads * opsPerThread;
+      TransactionMetrics txMetrics = NameNode.getNameNodeMetrics().getTransactionMetrics();
+      OperationStats stats = txMetrics.getStats(OperationType.RENAME_TO2);
+      System.out.println(String.format("threads=%d dirs=%d renames=%d time=%d msec throughput=%.1f ops/sec",
+              numThreads, numDirs, renames, time, renames * 1000.0 / Math.max(1, time)));
+      System.out.println(String.format("transactions=%d retries=%d rollbacks=%d failed transactions=%d failed renames=%d",
+              stats.getTransactions(), stats.getRetries(), stats.getRollbacks(), stats.getFailures(),
+              failedRenames.get()));
+      System.out.println(String.format("retry rate=%.4f failure rate=%.4f",
+              (double) stats.getRetries() / Math.max(1, stats.getTransactions()),
+              (double) failedRenames.get() / renames));
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int numThreads = DEFAULT_NUM_THREADS;
+    int numDirs = DEFAULT_NUM_DIRS;
+    int opsPerThread = DEFAULT_OPS_PER_THREAD;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (args[i].equals("-t")) {
+        numThreads = Integer.valueOf(args[i + 1]);
+      } else if (args[i].equals("-d")) {
+        numDirs = Integer.valueOf(args[i + 1]);
+      } else if (args[i].equals("-o")) {
+        opsPerThread = Integer.valueOf(args[i + 1]);
+      } else {
+        printMenu();
+      }
+    }
+    if (args.length % 2 != 0 || numDirs < 2) {
+      printMenu();
+    }
+    new RenameStressBenchmark(numThreads, numDirs, opsPerThread).run(new HdfsConfiguration());
+  }
+
+  private static void printMenu() {
+    System.err.println("-t [num of threads] -d [num of shared directories, at least 2] -o [renames per thread]");
+    System.exit(-1);
+  }
+}
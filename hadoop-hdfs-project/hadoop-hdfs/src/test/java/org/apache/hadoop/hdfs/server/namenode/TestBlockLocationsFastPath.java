@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that the read committed fast path of getBlockLocations returns what
+ * the locked path returns.
+ */
+public class TestBlockLocationsFastPath {
+
+  private static final String NN_METRICS = "NameNodeActivity";
+  private static final int BLOCK_SIZE = 1024;
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem dfs;
+  private FSNamesystem fsn;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    conf.setBoolean(DFSConfigKeys.DFS_BLOCK_LOCATIONS_FAST_PATH_ENABLED_KEY, true);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    cluster.waitActive();
+    dfs = (DistributedFileSystem) cluster.getFileSystem();
+    fsn = cluster.getNamesystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testClosedFile() throws Exception {
+    String src = "/closed";
+    long len = 5L * BLOCK_SIZE + BLOCK_SIZE / 2;
+    DFSTestUtil.createFile(dfs, new Path(src), len, (short) 2, 0L);
+
+    LocatedBlocks fast = getBlockLocations(src, 0, len, true);
+    assertCounter("GetBlockLocationsFastPathHits", 1L, getMetrics(NN_METRICS));
+    assertSameLocations(getBlockLocations(src, 0, len, false), fast);
+    assertEquals(6, fast.locatedBlockCount());
+    // a range in the middle of the file
+    assertSameLocations(getBlockLocations(src, BLOCK_SIZE + 1, 2L * BLOCK_SIZE, false),
+            getBlockLocations(src, BLOCK_SIZE + 1, 2L * BLOCK_SIZE, true));
+    // the locked path alone is no miss of the fast path
+    assertCounter("GetBlockLocationsFastPathMisses", 0L, getMetrics(NN_METRICS));
+  }
+
+  @Test
+  public void testFileUnderConstruction() throws Exception {
+    String src = "/open";
+    FSDataOutputStream out = dfs.create(new Path(src), (short) 2);
+    out.write(new byte[2 * BLOCK_SIZE + 1]);
+    out.hflush();
+    try {
+      // the fast path leaves it to the locked path
+      assertSameLocations(getBlockLocations(src, 0, Long.MAX_VALUE, false),
+              getBlockLocations(src, 0, Long.MAX_VALUE, true));
+      assertCounter("GetBlockLocationsFastPathHits", 0L, getMetrics(NN_METRICS));
+      assertCounter("GetBlockLocationsFastPathMisses", 1L, getMetrics(NN_METRICS));
+    } finally {
+      out.close();
+    }
+  }
+
+  private LocatedBlocks getBlockLocations(String src, long offset, long length, boolean fastPath)
+          throws IOException {
+    fsn.blockLocationsFastPathEnabled = fastPath;
+    return fsn.getBlockLocations(src, offset, length, false, false);
+  }
+
+  private void assertSameLocations(LocatedBlocks expected, LocatedBlocks actual) {
+    assertNotNull(actual);
+    assertEquals(expected.getFileLength(), actual.getFileLength());
+    assertEquals(expected.isUnderConstruction(), actual.isUnderConstruction());
+    assertEquals(expected.isLastBlockComplete(), actual.isLastBlockComplete());
+    assertEquals(expected.locatedBlockCount(), actual.locatedBlockCount());
+    for (int i = 0; i < expected.locatedBlockCount(); i++) {
+      assertSameBlock(expected.get(i), actual.get(i));
+    }
+    if (expected.getLastLocatedBlock() == null) {
+      assertNull(actual.getLastLocatedBlock());
+    } else {
+      assertSameBlock(expected.getLastLocatedBlock(), actual.getLastLocatedBlock());
+    }
+  }
+
+  private void assertSameBlock(LocatedBlock expected, LocatedBlock actual) {
+    assertEquals(expected.getBlock(), actual.getBlock());
+    assertEquals(expected.getBlock().getGenerationStamp(), actual.getBlock().getGenerationStamp());
+    assertEquals(expected.getStartOffset(), actual.getStartOffset());
+    assertEquals(expected.isCorrupt(), actual.isCorrupt());
+    assertEquals(names(expected.getLocations()), names(actual.getLocations()));
+  }
+
+  /**
+   * The locations are shuffled for every request, so they are compared
+   * sorted.
+   */
+  private String names(DatanodeInfo[] locations) {
+    String[] names = new String[locations.length];
+    for (int i = 0; i < locations.length; i++) {
+      names[i] = locations[i].getName();
+    }
+    Arrays.sort(names);
+    return Arrays.toString(names);
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Test for {@link BlockReportTargetSelector} class
+ */
+public class TestBlockReportTargetSelector {
+
+  private static Leader namenode(long id, long backlog, int rate, long timeStamp) {
+    Leader namenode = new Leader(id, 1, timeStamp, "127.0.0.1:" + (8020 + id));
+    namenode.setReportBacklog(backlog);
+    namenode.setReportRate(rate);
+    return namenode;
+  }
+
+  @Test
+  public void testExpectedWait() {
+    assertEquals(2000, BlockReportTargetSelector.getExpectedWait(namenode(1, 2000, 1000, 0), 0, 1));
+    // a namenode without a rate is assumed to be as fast as the others
+    List<Leader> namenodes = Arrays.asList(namenode(1, 0, 1000, 0), namenode(2, 0, 3000, 0),
+            namenode(3, 4000, 0, 0));
+    assertEquals(2000, BlockReportTargetSelector.getAverageRate(namenodes), 0);
+    assertEquals(2000, BlockReportTargetSelector.getExpectedWait(namenodes.get(2), 0,
+            BlockReportTargetSelector.getAverageRate(namenodes)));
+  }
+
+  @Test
+  public void testLeastLoaded() {
+    BlockReportTargetSelector selector = new BlockReportTargetSelector(0, 1000);
+    List<Leader> namenodes = Arrays.asList(namenode(1, 1000000, 10000, 0),
+            namenode(2, 1000, 10000, 0), namenode(3, 1000, 100, 0));
+    assertEquals(2, selector.select(namenodes, 1000, 0).getId());
+  }
+
+  @Test
+  public void testAssignedReportsCount() {
+    BlockReportTargetSelector selector = new BlockReportTargetSelector(0, 1000);
+    List<Leader> namenodes = Arrays.asList(namenode(1, 0, 10000, 0), namenode(2, 0, 10000, 0));
+    // a large report goes to one namenode, the next report to the other one
+    long first = selector.select(namenodes, 1000000, 0).getId();
+    assertTrue(first != selector.select(namenodes, 1000000, 0).getId());
+
+    // idle namenodes get the reports in turn
+    selector = new BlockReportTargetSelector(0, 1000);
+    Set<Long> targets = new HashSet<Long>();
+    for (int i = 0; i < 2; i++) {
+      targets.add(selector.select(namenodes, 0, 0).getId());
+    }
+    assertEquals(2, targets.size());
+  }
+
+  @Test
+  public void testAssignmentsExpire() {
+    BlockReportTargetSelector selector = new BlockReportTargetSelector(1000, 1000);
+    List<Leader> namenodes = Arrays.asList(namenode(1, 0, 1000, 0));
+    assertNotNull(selector.select(namenodes, 5000, 0));
+    // the assigned report is not in the published load yet, the next waits
+    assertNull(selector.select(namenodes, 5000, 500));
+
+    // the namenode published its load after it got the report
+    namenodes = Arrays.asList(namenode(1, 0, 1000, 2000));
+    assertNotNull(selector.select(namenodes, 5000, 2000));
+  }
+
+  @Test
+  public void testDefer() {
+    BlockReportTargetSelector selector = new BlockReportTargetSelector(1000, 1000);
+    List<Leader> busy = Arrays.asList(namenode(1, 5000, 1000, 0), namenode(2, 8000, 1000, 0));
+    assertNull(selector.select(busy, 10, 0));
+
+    // without a maximum wait the report goes to the least busy namenode
+    selector = new BlockReportTargetSelector(0, 1000);
+    assertEquals(1, selector.select(busy, 10, 0).getId());
+  }
+}
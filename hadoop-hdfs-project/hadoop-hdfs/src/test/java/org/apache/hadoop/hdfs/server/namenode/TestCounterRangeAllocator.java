@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Test for {@link CounterRangeAllocator} class
+ */
+public class TestCounterRangeAllocator {
+
+  /**
+   * The counter of the storage, shared by the allocators of the namenodes.
+   */
+  static class Counter implements CounterRangeAllocator.RangeSource {
+
+    long counter = 0;
+    final AtomicInteger leases = new AtomicInteger();
+    final AtomicBoolean failing = new AtomicBoolean();
+
+    @Override
+    public synchronized long lease(long size) throws IOException {
+      if (failing.get()) {
+        throw new IOException("storage is down");
+      }
+      leases.incrementAndGet();
+      long first = counter + 1;
+      counter += size;
+      return first;
+    }
+  }
+
+  @Test
+  public void testValuesAreUniqueAcrossNamenodes() throws IOException {
+    Counter counter = new Counter();
+    CounterRangeAllocator nn1 = new CounterRangeAllocator(counter, 10, 3);
+    CounterRangeAllocator nn2 = new CounterRangeAllocator(counter, 10, 3);
+    Set<Long> values = new HashSet<Long>();
+    long last1 = 0;
+    long last2 = 0;
+    for (int i = 0; i < 100; i++) {
+      long value1 = nn1.next();
+      long value2 = nn2.next();
+      assertTrue(value1 > last1);
+      assertTrue(value2 > last2);
+      assertTrue(values.add(value1));
+      assertTrue(values.add(value2));
+      last1 = value1;
+      last2 = value2;
+    }
+    // a range is leased for every ten values, and one ahead at most
+    assertTrue(counter.leases.get() <= 22);
+    nn1.close();
+    nn2.close();
+  }
+
+  @Test
+  public void testNextAboveSkipsTheStampsOfTheOtherNamenode() throws IOException {
+    Counter counter = new Counter();
+    CounterRangeAllocator nn1 = new CounterRangeAllocator(counter, 10, 0);
+    CounterRangeAllocator nn2 = new CounterRangeAllocator(counter, 10, 0);
+    assertEquals(1, nn1.next());
+    long stamp = nn2.next();
+    assertEquals(11, stamp);
+    // the range of the first namenode is below the stamp, it leases a new one
+    assertEquals(21, nn1.nextAbove(stamp));
+    assertEquals(22, nn1.nextAbove(5));
+    nn1.close();
+    nn2.close();
+  }
+
+  @Test
+  public void testFailedLeaseIsRetried() throws IOException {
+    Counter counter = new Counter();
+    CounterRangeAllocator nn = new CounterRangeAllocator(counter, 10, 0);
+    counter.failing.set(true);
+    try {
+      nn.next();
+      fail("The range could not be leased");
+    } catch (IOException expected) {
+    }
+    counter.failing.set(false);
+    assertEquals(1, nn.next());
+    nn.close();
+  }
+}
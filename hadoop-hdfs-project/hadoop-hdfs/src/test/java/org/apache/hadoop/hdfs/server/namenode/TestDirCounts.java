@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the directory counters kept with quota, the {@link DirCountsDelta}s
+ * folded by {@link DirCountsAggregator} and the fixes of
+ * {@link DirCountsVerifier}.
+ */
+public class TestDirCounts {
+
+  private static final int FILE_LEN = 1024;
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem dfs;
+  private FSNamesystem fsn;
+  private DirCountsAggregator aggregator;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_QUOTA_ENABLED_KEY, true);
+    conf.setLong(DFSConfigKeys.DFS_DIR_COUNTS_VERIFY_INTERVAL_KEY, 0);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    dfs = (DistributedFileSystem) cluster.getFileSystem();
+    fsn = cluster.getNamesystem();
+    // the test folds and verifies the counters itself
+    fsn.dcathread.interrupt();
+    fsn.dcathread.join();
+    fsn.dcvthread.interrupt();
+    fsn.dcvthread.join();
+    aggregator = new DirCountsAggregator(fsn, 0, 1000);
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  private void assertSummary(Path dir, long dirs, long files, long length) throws IOException {
+    ContentSummary c = dfs.getContentSummary(dir);
+    assertEquals(dirs, c.getDirectoryCount());
+    assertEquals(files, c.getFileCount());
+    assertEquals(length, c.getLength());
+    assertEquals(length, c.getSpaceConsumed());
+  }
+
+  @Test
+  public void testCountsWithoutQuotaAreFolded() throws Exception {
+    Path a = new Path("/a");
+    dfs.mkdirs(new Path(a, "b"));
+    DFSTestUtil.createFile(dfs, new Path(a, "b/f1"), FILE_LEN, (short) 1, 0L);
+    DFSTestUtil.createFile(dfs, new Path(a, "f2"), FILE_LEN, (short) 1, 0L);
+
+    // the deltas are counted before they are folded
+    assertSummary(a, 2, 2, 2 * FILE_LEN);
+    assertTrue(aggregator.aggregate() > 0);
+    assertEquals(0, aggregator.aggregate());
+    assertSummary(a, 2, 2, 2 * FILE_LEN);
+
+    dfs.delete(new Path(a, "b"), true);
+    assertSummary(a, 1, 1, FILE_LEN);
+    assertTrue(aggregator.aggregate() > 0);
+    assertSummary(a, 1, 1, FILE_LEN);
+    assertSummary(new Path("/"), 2, 1, FILE_LEN);
+  }
+
+  @Test
+  public void testQuotaDirectoryIsUpdatedInPlace() throws Exception {
+    Path q = new Path("/q");
+    dfs.mkdirs(q);
+    dfs.setQuota(q, 3, HdfsConstants.QUOTA_DONT_SET);
+    DFSTestUtil.createFile(dfs, new Path(q, "f1"), FILE_LEN, (short) 1, 0L);
+    DFSTestUtil.createFile(dfs, new Path(q, "f2"), FILE_LEN, (short) 1, 0L);
+    try {
+      DFSTestUtil.createFile(dfs, new Path(q, "f3"), FILE_LEN, (short) 1, 0L);
+      fail("The namespace quota of " + q + " is exceeded");
+    } catch (NSQuotaExceededException expected) {
+    }
+    assertSummary(q, 1, 2, 2 * FILE_LEN);
+
+    // the deltas of a directory are folded when it gets a quota
+    Path d = new Path("/d");
+    dfs.mkdirs(d);
+    DFSTestUtil.createFile(dfs, new Path(d, "f1"), FILE_LEN, (short) 1, 0L);
+    dfs.setQuota(d, 2, HdfsConstants.QUOTA_DONT_SET);
+    try {
+      dfs.mkdirs(new Path(d, "e"));
+      fail("The namespace quota of " + d + " is exceeded");
+    } catch (NSQuotaExceededException expected) {
+    }
+    assertSummary(d, 1, 1, FILE_LEN);
+  }
+
+  @Test
+  public void testVerifierFixesDrift() throws Exception {
+    Path a = new Path("/a");
+    dfs.mkdirs(new Path(a, "b"));
+    DFSTestUtil.createFile(dfs, new Path(a, "b/f1"), FILE_LEN, (short) 1, 0L);
+    aggregator.aggregate();
+
+    drift("/a/b");
+    drift("/a");
+    assertSummary(a, 3, 2, 2 * FILE_LEN);
+
+    // with an interval of 0 the verifier makes a single pass
+    DirCountsVerifier verifier = new DirCountsVerifier(fsn, 0);
+    verifier.run();
+    assertSummary(a, 2, 1, FILE_LEN);
+    aggregator.aggregate();
+    assertSummary(a, 2, 1, FILE_LEN);
+    assertEquals(0, verifier.verify("/"));
+  }
+
+  @Test
+  public void testTreeIsWalkedWhileDeltasAreNotFolded() throws Exception {
+    Path a = new Path("/a");
+    dfs.mkdirs(new Path(a, "b"));
+    DFSTestUtil.createFile(dfs, new Path(a, "b/f1"), FILE_LEN, (short) 1, 0L);
+    aggregator.aggregate();
+
+    // the counters are read when everything is folded, the walk is exact
+    drift("/a");
+    assertSummary(a, 3, 2, 2 * FILE_LEN);
+    DFSTestUtil.createFile(dfs, new Path(a, "f2"), FILE_LEN, (short) 1, 0L);
+    assertSummary(a, 2, 2, 2 * FILE_LEN);
+    aggregator.aggregate();
+    assertSummary(a, 3, 3, 3 * FILE_LEN);
+  }
+
+  /**
+   * Changes the counters of a directory as an update missing from a path
+   * would.
+   */
+  private void drift(String path) throws IOException {
+    new TransactionalRequestHandler(OperationType.VERIFY_DIR_COUNTS) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        INodeDirectory dir = (INodeDirectory) fsn.dir.getRootDir().getNode((String) getParams()[0], false);
+        dir.updateNumItemsInTree(new INode.DirCounts(2, FILE_LEN, 1, FILE_LEN));
+        EntityManager.update(dir);
+        return null;
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager tla = new TransactionLockManager();
+        tla.addINode(TransactionLockManager.INodeResolveType.ONLY_PATH,
+                TransactionLockManager.INodeLockType.WRITE,
+                new String[]{(String) getParams()[0]}).
+                acquire();
+      }
+    }.setParams(path).handle();
+  }
+}
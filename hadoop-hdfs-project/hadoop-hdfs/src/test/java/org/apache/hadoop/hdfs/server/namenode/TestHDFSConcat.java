@@ -26,6 +26,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -38,9 +39,17 @@ import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
+import org.apache.hadoop.hdfs.server.namenode.lock.BlockINodeIdCache;
+import org.apache.hadoop.hdfs.server.namenode.lock.INodeUtil;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
 import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.junit.After;
@@ -390,4 +399,57 @@ public class TestHDFSConcat {
     }
  
   }
+
+  /**
+   * A concat moves the blocks of the sources to the target inode. A block
+   * operation through the hint of a namenode which did not run the concat
+   * finds the block under another inode than the one it locked, and locks the
+   * target inode when it runs again.
+   */
+  @Test
+  public void testBlockOperationWithStaleINodeHint() throws Exception {
+    Path trg = new Path("/trg");
+    Path src = new Path("/src");
+    DFSTestUtil.createFile(dfs, trg, blockSize, REPL_FACTOR, 1);
+    DFSTestUtil.createFile(dfs, src, blockSize, REPL_FACTOR, 1);
+    long trgInodeId = INodeUtil.findINodeIdByBlock(DFSTestUtil.getFirstBlock(dfs, trg).getBlockId());
+    final ExtendedBlock block = DFSTestUtil.getFirstBlock(dfs, src);
+    long srcInodeId = INodeUtil.findINodeIdByBlock(block.getBlockId());
+    assertTrue(srcInodeId != trgInodeId);
+
+    dfs.concat(trg, new Path[]{src});
+    assertEquals(trgInodeId, BlockINodeIdCache.get(block.getBlockId()));
+    // the hint of another namenode still points to the deleted source
+    BlockINodeIdCache.put(block.getBlockId(), srcInodeId);
+
+    final AtomicInteger attempts = new AtomicInteger();
+    final BlockManager bm = cluster.getNamesystem().getBlockManager();
+    Long lockedInodeId = (Long) new TransactionalRequestHandler(OperationType.TEST) {
+      long inodeId;
+
+      @Override
+      public void setUp() throws PersistanceException, IOException {
+        attempts.incrementAndGet();
+        inodeId = INodeUtil.findINodeIdByBlock(block.getBlockId());
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager lm = new TransactionLockManager();
+        lm.addINode(TransactionLockManager.INodeLockType.WRITE).
+                addBlock(TransactionLockManager.LockType.WRITE, block.getBlockId()).
+                addReplica(TransactionLockManager.LockType.READ).
+                acquireByBlock(inodeId);
+      }
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        // the inode is read from the transaction, it has to be locked
+        return bm.getStoredBlock(block.getLocalBlock()).getINode().getId();
+      }
+    }.handle();
+    assertEquals(2, attempts.get());
+    assertEquals(Long.valueOf(trgInodeId), lockedInodeId);
+    assertEquals(trgInodeId, BlockINodeIdCache.get(block.getBlockId()));
+  }
 }
@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+import java.io.IOException;
+import java.util.SortedMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.LightWeightRequestHandler;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.LeaseDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageFactory;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test for {@link LeaseRenewalBuffer} class
+ */
+public class TestLeaseRenewalBuffer {
+
+  private static final long HOUR = 60 * 60 * 1000L;
+  private MiniDFSCluster cluster;
+  private FSDataOutputStream out;
+
+  @After
+  public void tearDown() throws IOException {
+    if (out != null) {
+      out.close();
+    }
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testRenewalsOfAHolderAreCoalesced() {
+    LeaseRenewalBuffer buffer = new LeaseRenewalBuffer(null, new HdfsConfiguration());
+    assertTrue(buffer.isEnabled());
+    buffer.renew("DFSClient_1");
+    buffer.renew("DFSClient_2");
+    buffer.renew("DFSClient_1");
+    buffer.renew("DFSClient_1");
+    assertEquals(2, buffer.getPendingCount());
+  }
+
+  @Test
+  public void testDisabled() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_KEY, 0);
+    assertFalse(new LeaseRenewalBuffer(null, conf).isEnabled());
+  }
+
+  @Test
+  public void testLastUpdateNeverMovesBack() throws Exception {
+    String holder = openFile();
+    LeaseRenewalBuffer buffer = new LeaseRenewalBuffer(cluster.getNamesystem(), cluster.getConfiguration(0));
+
+    // the lease was written later than the renewal
+    long later = System.currentTimeMillis() + HOUR;
+    setLastUpdate(holder, later);
+    buffer.renew(holder);
+    assertEquals(0, buffer.flush());
+    assertEquals(later, getLastUpdate(holder));
+    assertEquals(0, buffer.getPendingCount());
+
+    // earlier, but within the limits so the lease monitor leaves it alone
+    long earlier = System.currentTimeMillis() - 1000;
+    setLastUpdate(holder, earlier);
+    buffer.renew(holder);
+    assertEquals(1, buffer.flush());
+    assertTrue(getLastUpdate(holder) > earlier);
+  }
+
+  @Test
+  public void testMissingLeasesAreSkipped() throws Exception {
+    String holder = openFile();
+    Configuration conf = new HdfsConfiguration(cluster.getConfiguration(0));
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_BATCH_SIZE_KEY, 2);
+    LeaseRenewalBuffer buffer = new LeaseRenewalBuffer(cluster.getNamesystem(), conf);
+    long earlier = System.currentTimeMillis() - 1000;
+    setLastUpdate(holder, earlier);
+
+    buffer.renew("DFSClient_gone_1");
+    buffer.renew(holder);
+    buffer.renew("DFSClient_gone_2");
+    assertEquals(1, buffer.flush());
+    assertEquals(0, buffer.getPendingCount());
+    assertTrue(getLastUpdate(holder) > earlier);
+    assertNull(findLease("DFSClient_gone_1"));
+    assertNull(findLease("DFSClient_gone_2"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFailedBatchIsRequeued() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_BATCH_SIZE_KEY, 2);
+    LeaseRenewalBuffer buffer = spy(new LeaseRenewalBuffer(null, conf));
+    doThrow(new IOException("injected")).when(buffer).writeBatch(any(SortedMap.class));
+
+    buffer.renew("DFSClient_1");
+    buffer.renew("DFSClient_2");
+    buffer.renew("DFSClient_3");
+    assertEquals(0, buffer.flush());
+    assertEquals(3, buffer.getPendingCount());
+
+    // a rolled back transaction is a failure too
+    doReturn(null).when(buffer).writeBatch(any(SortedMap.class));
+    assertEquals(0, buffer.flush());
+    assertEquals(3, buffer.getPendingCount());
+
+    doReturn(2).doReturn(1).when(buffer).writeBatch(any(SortedMap.class));
+    assertEquals(3, buffer.flush());
+    assertEquals(0, buffer.getPendingCount());
+  }
+
+  /**
+   * Opens a file, the flush thread of the namenode does not write back the
+   * renewals of its client.
+   *
+   * @return the holder of the lease of the file
+   */
+  private String openFile() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_KEY, HOUR);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+    cluster.waitActive();
+    out = cluster.getFileSystem().create(new Path("/open"));
+    return NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), "/open");
+  }
+
+  private void setLastUpdate(final String holder, final long time) throws IOException {
+    new TransactionalRequestHandler(OperationType.TEST) {
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockAcquirer.acquireLock(TransactionLockManager.LockType.WRITE, Lease.Finder.ByPKey, holder);
+      }
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        Lease lease = EntityManager.find(Lease.Finder.ByPKey, holder);
+        lease.setLastUpdate(time);
+        EntityManager.update(lease);
+        return null;
+      }
+    }.handle();
+  }
+
+  private long getLastUpdate(String holder) throws IOException {
+    return findLease(holder).getLastUpdated();
+  }
+
+  private Lease findLease(final String holder) throws IOException {
+    return (Lease) new LightWeightRequestHandler(OperationType.TEST) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        LeaseDataAccess da = (LeaseDataAccess) StorageFactory.getDataAccess(LeaseDataAccess.class);
+        return da.findByPKey(holder);
+      }
+    }.handle();
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory.MemoryConnector;
+import org.junit.Test;
+
+public class TestMultiNNThroughputBenchmark {
+
+  /**
+   * This test runs a small mixed workload of {@link MultiNNThroughputBenchmark}
+   * on two namenodes sharing the in-memory storage.
+   */
+  @Test
+  public void testMultiNNThroughput() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    String[] args = new String[] {"-namenodes", "2", "-datanodes", "1", "-threads", "4",
+      "-ops", "200", "-fanout", "2", "-depth", "2", "-hotspot", "0.5",
+      "-storage", MemoryConnector.MEMORY};
+    MultiNNThroughputBenchmark.runBenchmark(conf, Arrays.asList(args));
+  }
+}
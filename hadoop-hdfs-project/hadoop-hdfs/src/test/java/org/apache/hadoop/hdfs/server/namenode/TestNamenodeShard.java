@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
+import org.junit.Test;
+
+/**
+ * Test for {@link NamenodeShard} class
+ */
+public class TestNamenodeShard {
+
+  @Test
+  public void testForNamenode() {
+    List<Long> active = Arrays.asList(9L, 2L, 5L);
+    assertEquals(new NamenodeShard(0, 3), NamenodeShard.forNamenode(2, active));
+    assertEquals(new NamenodeShard(1, 3), NamenodeShard.forNamenode(5, active));
+    assertEquals(new NamenodeShard(2, 3), NamenodeShard.forNamenode(9, active));
+    assertNull(NamenodeShard.forNamenode(7, active));
+
+    // namenode 5 left, the others take over its work
+    assertEquals(new NamenodeShard(1, 2), NamenodeShard.forNamenode(9, Arrays.asList(9L, 2L)));
+  }
+
+  @Test
+  public void testEveryBlockHasOneOwner() {
+    NamenodeShard[] shards = new NamenodeShard[3];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new NamenodeShard(i, shards.length);
+    }
+    long[] blockIds = {0, 1, 2, 3, -1, -2, -3, Long.MIN_VALUE, Long.MAX_VALUE, 1073741825L};
+    for (long blockId : blockIds) {
+      int owners = 0;
+      for (NamenodeShard shard : shards) {
+        owners += shard.ownsId(blockId) ? 1 : 0;
+      }
+      assertEquals("block " + blockId, 1, owners);
+    }
+    String[] storageIds = {"DS-1", "DS-2", "DS-1733127620-10.0.0.1-50010-1349083811", ""};
+    for (String storageId : storageIds) {
+      int owners = 0;
+      for (NamenodeShard shard : shards) {
+        owners += shard.ownsKey(storageId) ? 1 : 0;
+      }
+      assertEquals("storage " + storageId, 1, owners);
+    }
+    String[] holders = {"DFSClient_NONMAPREDUCE_1", "DFSClient_attempt_201210011200_0001_m_000001_0",
+      HdfsServerConstants.NAMENODE_LEASE_HOLDER, HdfsServerConstants.getNamenodeLeaseHolder(1)};
+    for (String holder : holders) {
+      int owners = 0;
+      for (NamenodeShard shard : shards) {
+        owners += shard.ownsKey(holder) ? 1 : 0;
+      }
+      assertEquals("holder " + holder, 1, owners);
+    }
+  }
+
+  @Test
+  public void testAll() {
+    assertTrue(NamenodeShard.ALL.ownsId(-42));
+    assertTrue(NamenodeShard.ALL.ownsKey("DS-1"));
+    assertTrue(NamenodeShard.ALL.ownsKey("DFSClient_NONMAPREDUCE_1"));
+  }
+}
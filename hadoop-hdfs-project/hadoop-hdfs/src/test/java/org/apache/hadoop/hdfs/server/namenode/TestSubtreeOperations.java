@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.lock.INodeUtil;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.EntityManager;
+import org.apache.hadoop.hdfs.server.namenode.persistance.LightWeightRequestHandler;
+import org.apache.hadoop.hdfs.server.namenode.persistance.PersistanceException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.TransactionalRequestHandler;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.InodeDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the deletes run by {@link SubtreeOperations}: the subtree lock
+ * refusing the operations inside the tree, by path and by inode id, and the
+ * deletes finished by the monitor after they failed or their namenode died.
+ */
+public class TestSubtreeOperations {
+
+  private static final int FILE_LEN = 1024;
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem dfs;
+  private FSNamesystem fsn;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_SUBTREE_OPS_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_SUBTREE_BATCH_SIZE_KEY, 2);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    dfs = (DistributedFileSystem) cluster.getFileSystem();
+    fsn = cluster.getNamesystem();
+    // the test runs the recovery itself
+    fsn.stmthread.interrupt();
+    fsn.stmthread.join();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Creates a tree of three levels with two directories and three files in
+   * every directory, more than a batch.
+   */
+  private void createTree(Path root, int depth) throws IOException {
+    dfs.mkdirs(root);
+    for (int i = 0; i < 3; i++) {
+      DFSTestUtil.createFile(dfs, new Path(root, "file" + i), FILE_LEN, (short) 1, 0L);
+    }
+    if (depth > 1) {
+      for (int i = 0; i < 2; i++) {
+        createTree(new Path(root, "dir" + i), depth - 1);
+      }
+    }
+  }
+
+  @Test
+  public void testDeleteLargeDirectory() throws Exception {
+    Path big = new Path("/big");
+    createTree(big, 3);
+    FSDataOutputStream out = dfs.create(new Path(big, "dir0/open"));
+    out.write(new byte[FILE_LEN]);
+    out.hflush();
+
+    assertTrue(dfs.delete(big, true));
+    assertFalse(dfs.exists(big));
+    assertEquals(0, countSubtreeLocks());
+  }
+
+  @Test
+  public void testSubtreeLockRefusesPaths() throws Exception {
+    Path a = new Path("/a");
+    createTree(a, 2);
+    lockSubtree("/a", fsn.getNamenodeId(), false);
+    try {
+      dfs.create(new Path(a, "dir0/new")).close();
+      fail("created a file inside a subtree lock");
+    } catch (IOException expected) {
+    }
+    try {
+      dfs.rename(new Path(a, "dir0/file0"), new Path("/moved"));
+      fail("moved a file out of a subtree lock");
+    } catch (IOException expected) {
+    }
+    assertFalse(dfs.exists(new Path("/moved")));
+  }
+
+  @Test
+  public void testLockedSubtreeRefusesOperationsById() throws Exception {
+    Path file = new Path("/a/file");
+    DFSTestUtil.createFile(dfs, file, FILE_LEN, (short) 1, 0L);
+    long blockId = DFSTestUtil.getFirstBlock(dfs, file).getBlockId();
+    lockSubtree("/a", fsn.getNamenodeId(), false);
+    try {
+      lockByBlock(blockId);
+      fail("locked a file by id inside a subtree lock");
+    } catch (SubtreeLockedException expected) {
+    }
+  }
+
+  @Test
+  public void testMoveOrDeleteAroundSubtreeLockRefused() throws Exception {
+    Path a = new Path("/a");
+    createTree(a, 3);
+    lockSubtree("/a/dir0/dir1", fsn.getNamenodeId(), false);
+    try {
+      dfs.rename(a, new Path("/b"));
+      fail("moved a tree with a subtree lock inside");
+    } catch (IOException expected) {
+    }
+    try {
+      dfs.delete(a, true);
+      fail("deleted a tree with a subtree lock inside");
+    } catch (IOException expected) {
+    }
+    assertTrue(dfs.exists(new Path(a, "dir1/file0")));
+    // the rest of the namespace is not locked
+    assertTrue(dfs.rename(new Path(a, "dir1"), new Path("/b")));
+  }
+
+  @Test
+  public void testRecoverOwnDelete() throws Exception {
+    Path c = new Path("/c");
+    createTree(c, 3);
+    // as left by a delete which failed
+    lockSubtree("/c", fsn.getNamenodeId(), false);
+
+    fsn.subtreeOps.recover(false);
+    assertFalse(dfs.exists(c));
+    assertEquals(0, countSubtreeLocks());
+  }
+
+  @Test
+  public void testRecoverDeleteOfDeadNamenode() throws Exception {
+    Path c = new Path("/c");
+    createTree(c, 3);
+    long dead = fsn.getNamenodeId() + 1000;
+    assertFalse(fsn.getActiveNamenodeIds().contains(dead));
+    lockSubtree("/c", dead, false);
+
+    fsn.subtreeOps.recover(false);
+    assertEquals(1, countSubtreeLocks());
+    fsn.subtreeOps.recover(true);
+    assertFalse(dfs.exists(c));
+    assertEquals(0, countSubtreeLocks());
+  }
+
+  @Test
+  public void testRunningDeleteNotRecovered() throws Exception {
+    Path c = new Path("/c");
+    createTree(c, 2);
+    long rootId = lockSubtree("/c", fsn.getNamenodeId(), true);
+
+    fsn.subtreeOps.recover(true);
+    assertEquals(1, countSubtreeLocks());
+    fsn.subtreeOps.done(rootId);
+    fsn.subtreeOps.recover(true);
+    assertFalse(dfs.exists(c));
+  }
+
+  /**
+   * Sets the subtree lock of the directory.
+   *
+   * @param running locks it as a delete of this namenode which is running
+   * @return the id of the directory
+   */
+  private long lockSubtree(final String path, final long owner, final boolean running) throws IOException {
+    return (Long) new TransactionalRequestHandler(OperationType.SUBTREE_LOCK) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        INode inode = fsn.dir.getRootDir().getNode(path, false);
+        if (running) {
+          return fsn.subtreeOps.lockSubtree(inode);
+        }
+        inode.setSubtreeLockOwner(owner);
+        EntityManager.update(inode);
+        return inode.getId();
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager tla = new TransactionLockManager();
+        tla.addINode(TransactionLockManager.INodeResolveType.ONLY_PATH,
+                TransactionLockManager.INodeLockType.WRITE,
+                new String[]{path}).
+                acquire();
+      }
+    }.handle();
+  }
+
+  /**
+   * Locks the file of the block as commitBlockSynchronization does.
+   */
+  private void lockByBlock(final long blockId) throws IOException {
+    new TransactionalRequestHandler(OperationType.COMMIT_BLOCK_SYNCHRONIZATION) {
+
+      private LinkedList<INode> resolvedInodes = null;
+      private long inodeId;
+
+      @Override
+      public void setUp() throws PersistanceException {
+        inodeId = INodeUtil.findINodeIdByBlock(blockId);
+        resolvedInodes = INodeUtil.findPathINodesById(inodeId);
+      }
+
+      @Override
+      public void acquireLock() throws PersistanceException, IOException {
+        TransactionLockManager tla = new TransactionLockManager(resolvedInodes);
+        tla.addINode(TransactionLockManager.INodeResolveType.FROM_CHILD_TO_ROOT,
+                TransactionLockManager.INodeLockType.WRITE).
+                addBlock(TransactionLockManager.LockType.WRITE, blockId).
+                acquireByBlock(inodeId);
+      }
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        return null;
+      }
+    }.handle();
+  }
+
+  private int countSubtreeLocks() throws IOException {
+    return (Integer) new LightWeightRequestHandler(OperationType.SUBTREE_RECOVERY) {
+
+      @Override
+      public Object performTask() throws PersistanceException, IOException {
+        InodeDataAccess da = (InodeDataAccess) StorageFactory.getDataAccess(InodeDataAccess.class);
+        return da.findSubtreeLockedInodes().size();
+      }
+    }.handle();
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.lock;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link BlockINodeIdCache} class
+ */
+public class TestBlockINodeIdCache {
+
+  @Before
+  public void setUp() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_BLOCK_INODE_CACHE_SIZE_KEY, 1024);
+    BlockINodeIdCache.setConfiguration(conf);
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    BlockINodeIdCache.put(-7, 3);
+    BlockINodeIdCache.put(8, 3);
+    assertEquals(3, BlockINodeIdCache.get(-7));
+    assertEquals(3, BlockINodeIdCache.get(8));
+    assertEquals(INode.NON_EXISTING_ID, BlockINodeIdCache.get(9));
+
+    BlockINodeIdCache.remove(-7);
+    assertEquals(INode.NON_EXISTING_ID, BlockINodeIdCache.get(-7));
+    assertEquals(3, BlockINodeIdCache.get(8));
+
+    BlockINodeIdCache.clear();
+    assertEquals(INode.NON_EXISTING_ID, BlockINodeIdCache.get(8));
+  }
+
+  @Test
+  public void testCollision() {
+    // more blocks than slots, a hint is either right or missing
+    for (long bid = 0; bid < 4096; bid++) {
+      BlockINodeIdCache.put(bid, bid + 1);
+    }
+    int hits = 0;
+    for (long bid = 0; bid < 4096; bid++) {
+      long inodeId = BlockINodeIdCache.get(bid);
+      if (inodeId != INode.NON_EXISTING_ID) {
+        assertEquals(bid + 1, inodeId);
+        hits++;
+      }
+    }
+    assertTrue(hits > 0 && hits <= 1024);
+  }
+
+  @Test
+  public void testRemoveKeepsOtherBlock() {
+    // removing a block which is not in its slot does not drop the other hint
+    for (long bid = 0; bid < 4096; bid++) {
+      BlockINodeIdCache.put(bid, bid + 1);
+    }
+    for (long bid = 4096; bid < 8192; bid++) {
+      BlockINodeIdCache.remove(bid);
+    }
+    int hits = 0;
+    for (long bid = 0; bid < 4096; bid++) {
+      if (BlockINodeIdCache.get(bid) != INode.NON_EXISTING_ID) {
+        hits++;
+      }
+    }
+    assertTrue(hits > 0);
+  }
+
+  @Test
+  public void testDisabled() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_BLOCK_INODE_CACHE_ENABLED_KEY, false);
+    BlockINodeIdCache.setConfiguration(conf);
+    BlockINodeIdCache.put(1, 2);
+    assertEquals(INode.NON_EXISTING_ID, BlockINodeIdCache.get(1));
+  }
+}
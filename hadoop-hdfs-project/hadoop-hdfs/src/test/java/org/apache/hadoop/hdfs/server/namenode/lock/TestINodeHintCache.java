@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.lock;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link INodeHintCache} class
+ */
+public class TestINodeHintCache {
+
+  @Before
+  public void setUp() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_INODE_HINT_CACHE_SIZE_KEY, 3);
+    INodeHintCache.setConfiguration(conf);
+  }
+
+  @Test
+  public void testIdChain() {
+    INodeHintCache.put(0, "a", 1);
+    INodeHintCache.put(1, "b", 2);
+    INodeHintCache.put(2, "c", 3);
+    byte[][] components = INode.getPathComponents("/a/b/c/d");
+
+    assertArrayEquals(new long[]{1, 2, 3}, INodeHintCache.getIdChain(components, 3));
+    assertArrayEquals(new long[]{1, 2}, INodeHintCache.getIdChain(components, 2));
+
+    // the chain stops at the first component without a hint
+    INodeHintCache.remove(1, "b");
+    assertArrayEquals(new long[]{1}, INodeHintCache.getIdChain(components, 3));
+    assertEquals(0, INodeHintCache.getIdChain(components, 0).length);
+  }
+
+  @Test
+  public void testEviction() {
+    INodeHintCache.put(0, "a", 1);
+    INodeHintCache.put(0, "b", 2);
+    INodeHintCache.put(0, "c", 3);
+    // reference "a" so that the clock hand passes it and evicts "b"
+    assertEquals(Long.valueOf(1), INodeHintCache.get(0, "a"));
+    INodeHintCache.put(0, "d", 4);
+
+    assertEquals(3, INodeHintCache.size());
+    assertNull(INodeHintCache.get(0, "b"));
+    assertEquals(Long.valueOf(1), INodeHintCache.get(0, "a"));
+  }
+
+  @Test
+  public void testUnambiguousKeys() {
+    INodeHintCache.put(1, "23", 5);
+    assertNull(INodeHintCache.get(12, "3"));
+  }
+
+  @Test
+  public void testVerify() {
+    INodeHintCache.put(0, "a", 1);
+    assertTrue(INodeHintCache.verify(dir("a", 1, 0), 0, "a"));
+    assertEquals(Long.valueOf(1), INodeHintCache.get(0, "a"));
+
+    // the inode was renamed, the hint is dropped
+    assertFalse(INodeHintCache.verify(dir("b", 1, 0), 0, "a"));
+    assertNull(INodeHintCache.get(0, "a"));
+  }
+
+  @Test
+  public void testDisabled() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_INODE_HINT_CACHE_ENABLED_KEY, false);
+    INodeHintCache.setConfiguration(conf);
+    INodeHintCache.put(0, "a", 1);
+    assertNull(INodeHintCache.get(0, "a"));
+    assertFalse(INodeHintCache.isBatchedResolutionEnabled());
+  }
+
+  private static INode dir(String name, long id, long parentId) {
+    INode inode = new INodeDirectory(name,
+            new PermissionStatus("user", "group", FsPermission.getDefault()));
+    inode.setId(id);
+    inode.setParentId(parentId);
+    return inode;
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.lock;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectoryWithQuota;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockAcquirer.INodeLockTarget;
+import org.apache.hadoop.hdfs.server.namenode.lock.TransactionLockManager.INodeLockType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the lock order of the multi-path operations in
+ * {@link TransactionLockAcquirer}
+ */
+public class TestOrderedINodeLocks {
+
+  @Before
+  @After
+  public void resetConfiguration() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_QUOTA_ENABLED_KEY, false);
+    TransactionLockAcquirer.setConfiguration(conf);
+  }
+
+  @Test
+  public void testPathComponentLock() {
+    // "/a/b/c" has 4 components, the root at depth 0
+    assertEquals(INodeLockType.READ_COMMITED, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE, 0, 4));
+    assertEquals(INodeLockType.READ, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE, 2, 4));
+    assertEquals(INodeLockType.WRITE, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE, 3, 4));
+
+    assertEquals(INodeLockType.WRITE, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE_ON_PARENT, 2, 4));
+    assertEquals(INodeLockType.READ, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE_ON_PARENT, 1, 4));
+    assertEquals(INodeLockType.WRITE, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE_ON_PARENT, 0, 2));
+
+    assertEquals(INodeLockType.READ_COMMITED, TransactionLockAcquirer.pathComponentLock(INodeLockType.READ_COMMITED, 3, 4));
+    assertEquals(INodeLockType.WRITE, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE, 0, 1));
+  }
+
+  @Test
+  public void testOnlyQuotaLimitedAncestorsWriteLocked() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_QUOTA_ENABLED_KEY, true);
+    TransactionLockAcquirer.setConfiguration(conf);
+    PermissionStatus perm = new PermissionStatus("user", "group", FsPermission.getDefault());
+
+    // the ancestors are not write locked because of the quota
+    assertEquals(INodeLockType.READ_COMMITED, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE, 0, 4));
+    assertEquals(INodeLockType.READ, TransactionLockAcquirer.pathComponentLock(INodeLockType.WRITE, 2, 4));
+
+    INode root = new INodeDirectoryWithQuota("", perm, Integer.MAX_VALUE, -1);
+    INode plain = new INodeDirectory("a", perm);
+    INode limited = new INodeDirectoryWithQuota("b", perm, 10, -1);
+    assertFalse(TransactionLockAcquirer.isQuotaLimitedWrite(INodeLockType.WRITE, root));
+    assertFalse(TransactionLockAcquirer.isQuotaLimitedWrite(INodeLockType.WRITE, plain));
+    assertTrue(TransactionLockAcquirer.isQuotaLimitedWrite(INodeLockType.WRITE, limited));
+    assertTrue(TransactionLockAcquirer.isQuotaLimitedWrite(INodeLockType.WRITE_ON_PARENT, limited));
+    assertFalse(TransactionLockAcquirer.isQuotaLimitedWrite(INodeLockType.READ, limited));
+
+    // a quota set on the root is checked like on any other directory
+    INode limitedRoot = new INodeDirectoryWithQuota("", perm, 100, -1);
+    assertTrue(TransactionLockAcquirer.isQuotaLimitedWrite(INodeLockType.WRITE, limitedRoot));
+
+    conf.setBoolean(DFSConfigKeys.DFS_QUOTA_ENABLED_KEY, false);
+    TransactionLockAcquirer.setConfiguration(conf);
+    assertFalse(TransactionLockAcquirer.isQuotaLimitedWrite(INodeLockType.WRITE, limited));
+  }
+
+  @Test
+  public void testSortLockTargets() {
+    INodeLockTarget root = new INodeLockTarget(0, 0, INodeLockType.READ_COMMITED);
+    INodeLockTarget a = new INodeLockTarget(1, 7, INodeLockType.READ);
+    INodeLockTarget b = new INodeLockTarget(1, 3, INodeLockType.WRITE);
+    INodeLockTarget c = new INodeLockTarget(2, 1, INodeLockType.WRITE);
+
+    // the same targets give the same order whatever order the paths came in
+    List<INodeLockTarget> sorted = TransactionLockAcquirer.sortLockTargets(Arrays.asList(c, a, root, b));
+    assertEquals(Arrays.asList(b, a, c), sorted);
+    assertEquals(sorted, TransactionLockAcquirer.sortLockTargets(Arrays.asList(b, c, a, root)));
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics.Histogram;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics.OperationStats;
+import org.apache.hadoop.hdfs.server.namenode.metrics.TransactionMetrics.Phase;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.junit.Test;
+
+/**
+ * Test for {@link TransactionMetrics} class
+ */
+public class TestTransactionMetrics {
+
+  @Test
+  public void testHistogram() {
+    Histogram h = new Histogram();
+    assertEquals(0, h.getPercentile(99));
+    for (int i = 0; i < 98; i++) {
+      h.add(1);
+    }
+    h.add(100);
+    h.add(3000);
+
+    assertEquals(100, h.getCount());
+    assertEquals(98 + 100 + 3000, h.getTotal());
+    assertEquals(3000, h.getMax());
+    assertEquals(1, h.getPercentile(50));
+    // 100 msec falls in the 64..127 bucket
+    assertEquals(127, h.getPercentile(99));
+    assertEquals(3000, h.getPercentile(100));
+  }
+
+  @Test
+  public void testOperationStats() {
+    TransactionMetrics metrics = new TransactionMetrics();
+    assertTrue(metrics.getActiveOperations().isEmpty());
+
+    metrics.incrTransactions(OperationType.GET_BLOCK_LOCATIONS);
+    metrics.incrTransactions(OperationType.GET_BLOCK_LOCATIONS);
+    metrics.incrRetries(OperationType.GET_BLOCK_LOCATIONS);
+    metrics.incrRollbacks(OperationType.GET_BLOCK_LOCATIONS);
+    metrics.incrFailures(OperationType.GET_BLOCK_LOCATIONS);
+    metrics.addStorageAccesses(OperationType.GET_BLOCK_LOCATIONS, 7, 3);
+    metrics.addPhase(OperationType.GET_BLOCK_LOCATIONS, Phase.ACQUIRE_LOCK, 5);
+    metrics.addPhase(OperationType.GET_BLOCK_LOCATIONS, Phase.COMMIT, 2);
+
+    assertEquals(Arrays.asList(OperationType.GET_BLOCK_LOCATIONS), metrics.getActiveOperations());
+    OperationStats s = metrics.getStats(OperationType.GET_BLOCK_LOCATIONS);
+    assertEquals(2, s.getTransactions());
+    assertEquals(1, s.getRetries());
+    assertEquals(1, s.getRollbacks());
+    assertEquals(1, s.getFailures());
+    assertEquals(7, s.getStorageReads());
+    assertEquals(3, s.getCacheHits());
+    assertEquals(7, s.getTotalTime());
+    assertEquals(0, s.getPhase(Phase.SET_UP).getCount());
+  }
+
+  @Test
+  public void testMetricName() {
+    assertEquals("GetBlockLocations", TransactionMetrics.metricName(OperationType.GET_BLOCK_LOCATIONS));
+    assertEquals("Delete", TransactionMetrics.metricName(OperationType.DELETE));
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.namenode.lock.StaleINodeHintException;
+import org.apache.hadoop.hdfs.server.namenode.persistance.RequestHandler.OperationType;
+import org.apache.hadoop.hdfs.server.namenode.persistance.context.TransactionContextException;
+import org.junit.Test;
+
+/**
+ * Test for {@link TransactionRetryPolicy} class
+ */
+public class TestTransactionRetryPolicy {
+
+  @Test
+  public void testBackoff() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_TX_RETRY_COUNT_KEY, 5);
+    conf.setLong(DFSConfigKeys.DFS_TX_RETRY_BACKOFF_BASE_MS_KEY, 10);
+    conf.setLong(DFSConfigKeys.DFS_TX_RETRY_BACKOFF_MAX_MS_KEY, 100);
+    TransactionRetryPolicy.setConfiguration(conf);
+    assertEquals(5, TransactionRetryPolicy.getMaxRetries());
+
+    for (int i = 0; i < 100; i++) {
+      long first = TransactionRetryPolicy.backoff(1);
+      assertTrue(first >= 5 && first <= 10);
+      long third = TransactionRetryPolicy.backoff(3);
+      assertTrue(third >= 20 && third <= 40);
+      // capped by the maximum backoff
+      long tenth = TransactionRetryPolicy.backoff(10);
+      assertTrue(tenth >= 50 && tenth <= 100);
+      long huge = TransactionRetryPolicy.backoff(1000);
+      assertTrue(huge >= 50 && huge <= 100);
+    }
+  }
+
+  @Test
+  public void testContextErrorsAreNotRetried() {
+    assertFalse(TransactionRetryPolicy.isTransient(new TransactionContextException("bug")));
+  }
+
+  /**
+   * Another thread takes the namesystem lock while a transaction run under
+   * it backs off before its retry.
+   */
+  @Test
+  public void testNamesystemLockIsReleasedDuringBackoff() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_SYSTEM_LEVEL_LOCK_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_TX_RETRY_COUNT_KEY, 1);
+    conf.setLong(DFSConfigKeys.DFS_TX_RETRY_BACKOFF_BASE_MS_KEY, 1000);
+    conf.setLong(DFSConfigKeys.DFS_TX_RETRY_BACKOFF_MAX_MS_KEY, 1000);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+    try {
+      cluster.waitActive();
+      final FSNamesystem fsn = cluster.getNamesystem();
+      final CountDownLatch locked = new CountDownLatch(1);
+      final Thread other = new Thread() {
+
+        @Override
+        public void run() {
+          fsn.writeLock();
+          locked.countDown();
+          fsn.writeUnlock();
+        }
+      };
+      final long[] countAtRetry = new long[1];
+      Object result = new TransactionalRequestHandler(OperationType.TEST) {
+
+        private int attempt = 0;
+
+        @Override
+        public void acquireLock() throws PersistanceException, IOException {
+        }
+
+        @Override
+        public Object performTask() throws PersistanceException, IOException {
+          attempt++;
+          if (attempt == 1) {
+            // blocks on the lock this transaction holds
+            other.start();
+            throw new StaleINodeHintException("injected");
+          }
+          countAtRetry[0] = locked.getCount();
+          return attempt;
+        }
+      }.handleWithWriteLock(fsn);
+
+      assertEquals(2, result);
+      assertEquals("the lock was held during the back off", 0, countAtRetry[0]);
+      other.join();
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.context.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.hadoop.hdfs.server.blockmanagement.IndexedReplica;
+import org.apache.hadoop.hdfs.server.blockmanagement.UnderReplicatedBlock;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.ReplicaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.UnderReplicatedBlockDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.junit.Test;
+
+/**
+ * Checks that the multi-key block finders fill the per-block caches, so the
+ * block report batches do not go to the storage once the locks are taken.
+ */
+public class TestBatchedBlockFinders {
+
+  private static class FakeReplicaDataAccess extends ReplicaDataAccess {
+
+    List<IndexedReplica> rows = new ArrayList<IndexedReplica>();
+    int reads = 0;
+
+    @Override
+    public List<IndexedReplica> findReplicasById(long id) throws StorageException {
+      reads++;
+      return findReplicasByIds(Arrays.asList(id));
+    }
+
+    @Override
+    public List<IndexedReplica> findReplicasByIds(List<Long> blockIds) throws StorageException {
+      reads++;
+      List<IndexedReplica> result = new ArrayList<IndexedReplica>();
+      for (IndexedReplica r : rows) {
+        if (blockIds.contains(r.getBlockId())) {
+          result.add(r);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public void prepare(Collection<IndexedReplica> removed, Collection<IndexedReplica> newed, Collection<IndexedReplica> modified) throws StorageException {
+    }
+  }
+
+  private static class FakeUnderReplicatedBlockDataAccess extends UnderReplicatedBlockDataAccess {
+
+    List<UnderReplicatedBlock> rows = new ArrayList<UnderReplicatedBlock>();
+    int reads = 0;
+
+    @Override
+    public UnderReplicatedBlock findByBlockId(long blockId) throws StorageException {
+      reads++;
+      for (UnderReplicatedBlock urb : rows) {
+        if (urb.getBlockId() == blockId) {
+          return urb;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findByBlockIds(List<Long> blockIds) throws StorageException {
+      reads++;
+      List<UnderReplicatedBlock> result = new ArrayList<UnderReplicatedBlock>();
+      for (UnderReplicatedBlock urb : rows) {
+        if (blockIds.contains(urb.getBlockId())) {
+          result.add(urb);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findAll() throws StorageException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findByLevel(int level) throws StorageException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findByLevelFromBlockId(int level, long fromBlockId, int limit) throws StorageException {
+      reads++;
+      List<UnderReplicatedBlock> result = new ArrayList<UnderReplicatedBlock>();
+      for (UnderReplicatedBlock urb : rows) {
+        if (urb.getLevel() == level && urb.getBlockId() >= fromBlockId) {
+          result.add(urb);
+        }
+      }
+      Collections.sort(result, new Comparator<UnderReplicatedBlock>() {
+
+        @Override
+        public int compare(UnderReplicatedBlock o1, UnderReplicatedBlock o2) {
+          return o1.getBlockId() < o2.getBlockId() ? -1 : (o1.getBlockId() == o2.getBlockId() ? 0 : 1);
+        }
+      });
+      return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findAllLessThanLevel(int level) throws StorageException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void prepare(Collection<UnderReplicatedBlock> removed, Collection<UnderReplicatedBlock> newed, Collection<UnderReplicatedBlock> modified) throws StorageException {
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+      return rows.size();
+    }
+
+    @Override
+    public int countByLevel(int level) throws StorageException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int countLessThanALevel(int level) throws StorageException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  public void testReplicasByBlockIds() throws Exception {
+    FakeReplicaDataAccess da = new FakeReplicaDataAccess();
+    da.rows.add(new IndexedReplica(1, "s1", 0));
+    da.rows.add(new IndexedReplica(1, "s2", 1));
+    da.rows.add(new IndexedReplica(3, "s1", 0));
+    ReplicaContext context = new ReplicaContext(da);
+
+    Collection<IndexedReplica> replicas = context.findList(IndexedReplica.Finder.ByBlockIds, Arrays.asList(1L, 2L, 3L));
+    assertEquals(3, replicas.size());
+    assertEquals(1, da.reads);
+
+    // every block of the batch is cached, including the one without replicas.
+    assertEquals(2, context.findList(IndexedReplica.Finder.ByBlockId, 1L).size());
+    assertTrue(context.findList(IndexedReplica.Finder.ByBlockId, 2L).isEmpty());
+    assertEquals(2, context.findList(IndexedReplica.Finder.ByBlockIds, Arrays.asList(2L, 1L)).size());
+    assertEquals(1, da.reads);
+
+    // only the blocks which are not cached are read.
+    da.rows.add(new IndexedReplica(4, "s3", 0));
+    assertEquals(2, context.findList(IndexedReplica.Finder.ByBlockIds, Arrays.asList(3L, 4L)).size());
+    assertEquals(2, da.reads);
+  }
+
+  @Test
+  public void testUnderReplicatedByBlockIds() throws Exception {
+    FakeUnderReplicatedBlockDataAccess da = new FakeUnderReplicatedBlockDataAccess();
+    da.rows.add(new UnderReplicatedBlock(2, 5));
+    UnderReplicatedBlockContext context = new UnderReplicatedBlockContext(da);
+
+    assertEquals(1, context.findList(UnderReplicatedBlock.Finder.ByBlockIds, Arrays.asList(5L, 6L)).size());
+    assertEquals(1, da.reads);
+    assertNotNull(context.find(UnderReplicatedBlock.Finder.ByBlockId, 5L));
+    assertNull(context.find(UnderReplicatedBlock.Finder.ByBlockId, 6L));
+    assertEquals(1, da.reads);
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.context.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import org.apache.hadoop.hdfs.server.namenode.DirCountsDelta;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.DirCountsDeltaDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the deltas a transaction adds to a directory are written as
+ * one row, and that the deltas it folds are removed from the storage.
+ */
+public class TestDirCountsDeltaContext {
+
+  private static final long DIR = 1;
+  private static final long OTHER_DIR = 2;
+
+  /**
+   * The committed rows of the storage.
+   */
+  private static class FakeDirCountsDeltaDataAccess extends DirCountsDeltaDataAccess {
+
+    List<DirCountsDelta> rows = new ArrayList<DirCountsDelta>();
+    int reads = 0;
+
+    @Override
+    public List<DirCountsDelta> findByINodeIds(Collection<Long> inodeIds) throws StorageException {
+      reads++;
+      List<DirCountsDelta> result = new ArrayList<DirCountsDelta>();
+      for (DirCountsDelta delta : rows) {
+        if (inodeIds.contains(delta.getInodeId())) {
+          result.add(delta);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public Collection<Long> findINodeIds(int limit) throws StorageException {
+      TreeSet<Long> ids = new TreeSet<Long>();
+      for (int i = 0; i < rows.size() && i < limit; i++) {
+        ids.add(rows.get(i).getInodeId());
+      }
+      return ids;
+    }
+
+    @Override
+    public void prepare(Collection<DirCountsDelta> removed, Collection<DirCountsDelta> newed) throws StorageException {
+      rows.removeAll(removed);
+      rows.addAll(newed);
+    }
+  }
+  private FakeDirCountsDeltaDataAccess da;
+  private DirCountsDeltaContext context;
+
+  @Before
+  public void setUp() {
+    da = new FakeDirCountsDeltaDataAccess();
+    da.rows.add(new DirCountsDelta(DIR, 10, 1, 100, 1, 100));
+    da.rows.add(new DirCountsDelta(DIR, 11, 1, 50, 1, 50));
+    da.rows.add(new DirCountsDelta(OTHER_DIR, 12, -1, 0, 0, 0));
+    context = new DirCountsDeltaContext(da);
+  }
+
+  private Collection<DirCountsDelta> find(Long... ids) throws Exception {
+    return context.findList(DirCountsDelta.Finder.ByINodeIds, Arrays.asList(ids));
+  }
+
+  @Test
+  public void testAddedDeltasAreMerged() throws Exception {
+    context.add(new DirCountsDelta(DIR, 20, 1, 10, 1, 10));
+    context.add(new DirCountsDelta(DIR, 21, -1, -10, -1, -10));
+    context.add(new DirCountsDelta(DIR, 22, 2, 0, 0, 0));
+    context.add(new DirCountsDelta(OTHER_DIR, 23, 1, 0, 0, 0));
+    context.prepare();
+
+    assertEquals(5, da.rows.size());
+    for (DirCountsDelta delta : da.rows) {
+      if (delta.getId() == 20) {
+        assertEquals(2, delta.getNsDelta());
+        assertEquals(0, delta.getDsDelta());
+        assertEquals(0, delta.getFileDelta());
+        assertEquals(0, delta.getLengthDelta());
+      }
+    }
+  }
+
+  @Test
+  public void testFindReturnsStoredAndAddedDeltas() throws Exception {
+    context.add(new DirCountsDelta(DIR, 20, 1, 10, 1, 10));
+    assertEquals(3, find(DIR).size());
+    assertEquals(1, da.reads);
+
+    // the deltas of the directory are cached
+    assertEquals(4, find(DIR, OTHER_DIR).size());
+    assertEquals(2, da.reads);
+    assertEquals(4, find(OTHER_DIR, DIR).size());
+    assertEquals(2, da.reads);
+  }
+
+  @Test
+  public void testFoldedDeltasAreRemoved() throws Exception {
+    context.add(new DirCountsDelta(DIR, 20, 1, 10, 1, 10));
+    for (DirCountsDelta delta : find(DIR)) {
+      context.remove(delta);
+    }
+    assertTrue(find(DIR).isEmpty());
+    context.prepare();
+
+    assertEquals(1, da.rows.size());
+    assertEquals(OTHER_DIR, da.rows.get(0).getInodeId());
+  }
+
+  @Test
+  public void testPreventedStorageCallReturnsKnownDeltas() throws Exception {
+    assertEquals(2, find(DIR).size());
+    context.preventStorageCall();
+    context.add(new DirCountsDelta(OTHER_DIR, 20, 1, 0, 0, 0));
+
+    // the stored deltas of the other directory were not read while locking
+    assertEquals(3, find(DIR, OTHER_DIR).size());
+    assertEquals(1, da.reads);
+  }
+
+  @Test(expected = TransactionContextException.class)
+  public void testRemoveUnattachedDelta() throws Exception {
+    context.remove(new DirCountsDelta(DIR, 10, 1, 100, 1, 100));
+  }
+}
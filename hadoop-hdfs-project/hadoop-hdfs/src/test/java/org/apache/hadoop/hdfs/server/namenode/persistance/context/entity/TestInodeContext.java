@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.context.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.apache.hadoop.hdfs.server.namenode.persistance.data_access.entity.InodeDataAccess;
+import org.apache.hadoop.hdfs.server.namenode.persistance.storage.StorageException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the pages of children read for getListing, and that the inodes a
+ * transaction adds or removes show up in the pages it has already read.
+ */
+public class TestInodeContext {
+
+  private static final long PARENT = 1;
+
+  /**
+   * The committed rows of the storage.
+   */
+  private static class FakeInodeDataAccess extends InodeDataAccess {
+
+    List<INode> rows = new ArrayList<INode>();
+    int pageReads = 0;
+
+    @Override
+    public INode findInodeById(long inodeId) throws StorageException {
+      for (INode inode : rows) {
+        if (inode.getId() == inodeId) {
+          return inode;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public List<INode> findInodesByParentIdSortedByName(long parentId) throws StorageException {
+      List<INode> result = new ArrayList<INode>();
+      for (INode inode : rows) {
+        if (inode.getParentId() == parentId) {
+          result.add(inode);
+        }
+      }
+      Collections.sort(result, INode.Order.ByName);
+      return result;
+    }
+
+    @Override
+    public List<INode> findInodesByParentIdAfterName(long parentId, String startAfter, int limit) throws StorageException {
+      pageReads++;
+      byte[] after = DFSUtil.string2Bytes(startAfter);
+      List<INode> result = new ArrayList<INode>();
+      for (INode inode : findInodesByParentIdSortedByName(parentId)) {
+        if (result.size() < limit && (after.length == 0 || inode.compareTo(after) > 0)) {
+          result.add(inode);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public INode findInodeByNameAndParentId(String name, long parentId) throws StorageException {
+      for (INode inode : rows) {
+        if (inode.getParentId() == parentId && inode.getName().equals(name)) {
+          return inode;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public List<INode> findInodesByIds(List<Long> ids) throws StorageException {
+      List<INode> result = new ArrayList<INode>();
+      for (INode inode : rows) {
+        if (ids.contains(inode.getId())) {
+          result.add(inode);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public List<INode> findSubtreeLockedInodes() throws StorageException {
+      List<INode> result = new ArrayList<INode>();
+      for (INode inode : rows) {
+        if (inode.isSubtreeLocked()) {
+          result.add(inode);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public void prepare(Collection<INode> removed, Collection<INode> newed, Collection<INode> modified) throws StorageException {
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+      return rows.size();
+    }
+  }
+  private FakeInodeDataAccess da;
+  private InodeContext context;
+  private long nextId = 100;
+
+  private INode newChild(String name) {
+    INode inode = new INodeDirectory(name, new PermissionStatus("user", "group", FsPermission.getDefault()));
+    inode.setId(nextId++);
+    inode.setParentId(PARENT);
+    return inode;
+  }
+
+  private List<String> page(String startAfter, int limit) throws Exception {
+    List<String> names = new ArrayList<String>();
+    for (INode inode : context.findList(INode.Finder.ByParentIdAfterName, PARENT, startAfter, limit)) {
+      names.add(inode.getName());
+    }
+    return names;
+  }
+
+  @Before
+  public void setUp() {
+    da = new FakeInodeDataAccess();
+    for (String name : new String[]{"e", "a", "c", "b", "d"}) {
+      da.rows.add(newChild(name));
+    }
+    context = new InodeContext(da);
+  }
+
+  @Test
+  public void testPages() throws Exception {
+    assertEquals(names("a", "b"), page("", 2));
+    assertEquals(names("c", "d"), page("b", 2));
+    assertEquals(names("e"), page("d", 2));
+    assertEquals(names(), page("e", 2));
+    assertEquals(4, da.pageReads);
+
+    // the pages are cached
+    assertEquals(names("c", "d"), page("b", 2));
+    assertEquals(4, da.pageReads);
+  }
+
+  @Test
+  public void testAddedChildInPage() throws Exception {
+    assertEquals(names("a", "b"), page("", 2));
+    assertEquals(names("e"), page("d", 2));
+
+    context.add(newChild("aa"));
+    context.add(newChild("z"));
+    assertEquals(names("a", "aa"), page("", 2));
+    assertEquals(names("e", "z"), page("d", 2));
+    assertEquals(2, da.pageReads);
+  }
+
+  @Test
+  public void testRemovedChildInPage() throws Exception {
+    assertEquals(names("e"), page("d", 2));
+    context.remove(context.find(INode.Finder.ByNameAndParentId, "e", PARENT));
+    assertEquals(names(), page("d", 2));
+    assertEquals(1, da.pageReads);
+
+    // the child after a full page is not known, the page is read again with
+    // the removed row left out and the added one merged in
+    assertEquals(names("a", "b"), page("", 2));
+    context.add(newChild("bb"));
+    context.remove(context.find(INode.Finder.ByNameAndParentId, "a", PARENT));
+    assertEquals(names("b", "bb"), page("", 2));
+    assertEquals(3, da.pageReads);
+  }
+
+  private static List<String> names(String... names) {
+    List<String> list = new ArrayList<String>();
+    Collections.addAll(list, names);
+    return list;
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.persistance.storage.memory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MemoryConnectorTest {
+
+  MemoryConnector connector = MemoryConnector.INSTANCE;
+  GenerationStampMemory generationStamp = new GenerationStampMemory();
+  ExecutorService other;
+
+  @Before
+  public void setUp() throws Exception {
+    HdfsConfiguration conf = new HdfsConfiguration();
+    conf.set(DFSConfigKeys.DFS_STORAGE_TYPE_KEY, MemoryConnector.MEMORY);
+    conf.setLong(DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_TIMEOUT_MS_KEY, 100);
+    connector.setConfiguration(conf);
+    connector.formatStorage();
+    other = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    connector.rollback();
+    other.shutdownNow();
+  }
+
+  @Test
+  public void testCommitAndRollback() throws Exception {
+    connector.beginTransaction();
+    connector.writeLock();
+    generationStamp.prepare(5L);
+    // the write is not visible to the others before the commit
+    assertEquals(0L, readInOtherThread(MemorySession.LockMode.READ_COMMITTED));
+    assertEquals(5L, (long) generationStamp.findCounter());
+    connector.commit();
+    assertEquals(5L, readInOtherThread(MemorySession.LockMode.READ_COMMITTED));
+
+    connector.beginTransaction();
+    generationStamp.prepare(7L);
+    connector.rollback();
+    assertEquals(5L, readInOtherThread(MemorySession.LockMode.READ_COMMITTED));
+  }
+
+  @Test
+  public void testSharedLocks() throws Exception {
+    connector.beginTransaction();
+    connector.readLock();
+    assertEquals(0L, (long) generationStamp.findCounter());
+    assertEquals(0L, readInOtherThread(MemorySession.LockMode.SHARED));
+    connector.commit();
+  }
+
+  @Test
+  public void testExclusiveLockTimesOut() throws Exception {
+    connector.beginTransaction();
+    connector.writeLock();
+    assertEquals(0L, (long) generationStamp.findCounter());
+    try {
+      readInOtherThread(MemorySession.LockMode.SHARED);
+      fail("The shared lock should not be granted while the row is locked exclusively");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof LockWaitTimeoutException);
+      assertTrue(connector.isTransientError(e.getCause()));
+    }
+    // read committed does not wait for the lock
+    assertEquals(0L, readInOtherThread(MemorySession.LockMode.READ_COMMITTED));
+    connector.commit();
+    // the lock is released at commit
+    assertEquals(0L, readInOtherThread(MemorySession.LockMode.EXCLUSIVE));
+  }
+
+  @Test
+  public void testFormatResetsTheGenerationStamp() throws Exception {
+    connector.beginTransaction();
+    generationStamp.prepare(42L);
+    connector.commit();
+    connector.formatStorage();
+    connector.beginTransaction();
+    assertEquals(0L, (long) generationStamp.findCounter());
+    connector.commit();
+  }
+
+  private long readInOtherThread(final MemorySession.LockMode lockMode) throws Exception {
+    return other.submit(new Callable<Long>() {
+
+      @Override
+      public Long call() throws Exception {
+        connector.obtainSession().setLockMode(lockMode);
+        connector.beginTransaction();
+        try {
+          return generationStamp.findCounter();
+        } finally {
+          connector.rollback();
+        }
+      }
+    }).get();
+  }
+}
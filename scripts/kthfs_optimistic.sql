@@ -156,6 +156,33 @@ LOCK TABLES `delegation_key` WRITE;
 /*!40000 ALTER TABLE `delegation_key` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `dir_counts_deltas`
+--
+
+DROP TABLE IF EXISTS `dir_counts_deltas`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `dir_counts_deltas` (
+  `inode_id` bigint(20) NOT NULL,
+  `id` bigint(20) NOT NULL,
+  `ns_delta` bigint(20) NOT NULL,
+  `ds_delta` bigint(20) NOT NULL,
+  `file_delta` bigint(20) NOT NULL,
+  `length_delta` bigint(20) NOT NULL,
+  PRIMARY KEY (`inode_id`,`id`)
+) ENGINE=ndbcluster DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `dir_counts_deltas`
+--
+
+LOCK TABLES `dir_counts_deltas` WRITE;
+/*!40000 ALTER TABLE `dir_counts_deltas` DISABLE KEYS */;
+/*!40000 ALTER TABLE `dir_counts_deltas` ENABLE KEYS */;
+UNLOCK TABLES;
+
 --
 -- Table structure for table `excess_replicas`
 --
@@ -188,7 +215,7 @@ DROP TABLE IF EXISTS `inodes`;
 /*!40101 SET character_set_client = utf8 */;
 CREATE TABLE `inodes` (
   `id` bigint(20) NOT NULL,
-  `name` varchar(128) DEFAULT NULL,
+  `name` varchar(128) COLLATE latin1_bin DEFAULT NULL,
   `parent_id` bigint(20) DEFAULT NULL,
   `is_dir` bit(1) DEFAULT NULL,
   `modification_time` bigint(20) DEFAULT NULL,
@@ -205,11 +232,16 @@ CREATE TABLE `inodes` (
   `is_dir_with_quota` bit(1) DEFAULT NULL,
   `nscount` bigint(20) DEFAULT NULL,
   `dscount` bigint(20) DEFAULT NULL,
+  `filecount` bigint(20) DEFAULT NULL,
+  `lengthcount` bigint(20) DEFAULT NULL,
+  `subtree_lock_owner` bigint(20) NOT NULL DEFAULT '0',
   `symlink` varchar(25) DEFAULT NULL,
   `version` int(11) NOT NULL DEFAULT '0',
   PRIMARY KEY (`id`),
   KEY `path_lookup_idx` (`name`,`parent_id`),
-  KEY `parent_idx` (`parent_id`)
+  KEY `parent_idx` (`parent_id`),
+  KEY `parent_name_idx` (`parent_id`,`name`),
+  KEY `subtree_lock_idx` (`subtree_lock_owner`)
 ) ENGINE=ndbcluster DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -263,6 +295,9 @@ CREATE TABLE `leader` (
   `hostname` varchar(25) NOT NULL,
   `avg_request_processing_latency` int(11) DEFAULT NULL,
   `partition_val` int(11) NOT NULL DEFAULT '0',
+  `report_backlog` bigint(20) NOT NULL DEFAULT '0',
+  `report_rate` int(11) NOT NULL DEFAULT '0',
+  `rpc_queue_length` int(11) NOT NULL DEFAULT '0',
   PRIMARY KEY (`id`,`partition_val`)
 ) ENGINE=ndbcluster DEFAULT CHARSET=latin1
 /*!50100 PARTITION BY KEY (partition_val) */;
@@ -338,7 +373,8 @@ CREATE TABLE `pending_blocks` (
   `block_id` bigint(20) NOT NULL,
   `time_stamp` bigint(20) NOT NULL,
   `num_replicas_in_progress` int(11) NOT NULL,
-  PRIMARY KEY (`block_id`)
+  PRIMARY KEY (`block_id`),
+  KEY `time_stamp_idx` (`time_stamp`,`block_id`)
 ) ENGINE=ndbcluster DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -415,7 +451,8 @@ DROP TABLE IF EXISTS `under_replicated_blocks`;
 CREATE TABLE `under_replicated_blocks` (
   `block_id` bigint(20) NOT NULL,
   `level` int(11) DEFAULT NULL,
-  PRIMARY KEY (`block_id`)
+  PRIMARY KEY (`block_id`),
+  KEY `level_idx` (`level`,`block_id`)
 ) ENGINE=ndbcluster DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 